@@ -0,0 +1,17 @@
+package com.jason.common;
+
+/**
+ * etl阶段缓存相关的hadoop计数器
+ * 
+ * @author jason
+ *
+ */
+public enum CacheCounter {
+    IP_CACHE_HIT, // ip缓存命中次数
+    IP_CACHE_MISS, // ip缓存未命中次数
+    IP_CACHE_EVICTION, // ip缓存淘汰次数
+    USER_AGENT_CACHE_HIT, // user agent缓存命中次数
+    USER_AGENT_CACHE_MISS, // user agent缓存未命中次数
+    USER_AGENT_CACHE_EVICTION, // user agent缓存淘汰次数
+    ;
+}
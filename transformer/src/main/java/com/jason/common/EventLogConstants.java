@@ -10,7 +10,9 @@ package com.jason.common;
  */
 public class EventLogConstants {
     /**
-     * 事件枚举类。指定事件的名称
+     * 事件枚举类。指定事件的名称<br/>
+     * 别名到枚举对象的查找使用类加载时构建的完美哈希表(没有冲突)，查找时不遍历也不创建对象；
+     * code为一个字节的事件编码，etl写入event_logs表的_e列，transformer可以直接比较字节判断事件类型
      * 
      * @author jason
      *
@@ -27,11 +29,50 @@ public class EventLogConstants {
         public final int id; // id 唯一标识
         public final String name; // 名称
         public final String alias; // 别名，用于数据收集的简写
+        public final byte code; // 一个字节的事件编码，已经写入的数据依赖这个值，不能修改
+        private final byte[] aliasBytes; // 别名的ascii字节
+
+        // 按照别名哈希值定位的查找表，每个槽位最多一个事件
+        private static final EventEnum[] ALIAS_TABLE;
+        private static final int ALIAS_SHIFT;
+        // 按照code定位的查找表
+        private static final EventEnum[] CODE_TABLE = new EventEnum[256];
+
+        static {
+            // 从最小的表开始尝试，直到所有别名都落在不同的槽位上
+            int bits = 1;
+            EventEnum[] table = null;
+            while (table == null) {
+                if (bits > 16) {
+                    throw new IllegalStateException("事件别名没法构建完美哈希表");
+                }
+                table = new EventEnum[1 << bits];
+                for (EventEnum event : values()) {
+                    int slot = slot(event.alias.hashCode(), 32 - bits);
+                    if (table[slot] != null) {
+                        table = null;
+                        bits++;
+                        break;
+                    }
+                    table[slot] = event;
+                }
+            }
+            ALIAS_TABLE = table;
+            ALIAS_SHIFT = 32 - bits;
+            for (EventEnum event : values()) {
+                if (CODE_TABLE[event.code & 0xFF] != null) {
+                    throw new IllegalStateException("事件编码重复:" + event.code);
+                }
+                CODE_TABLE[event.code & 0xFF] = event;
+            }
+        }
 
         private EventEnum(int id, String name, String alias) {
             this.id = id;
             this.name = name;
             this.alias = alias;
+            this.code = (byte) id;
+            this.aliasBytes = toAsciiBytes(alias);
         }
 
         /**
@@ -41,12 +82,59 @@ public class EventLogConstants {
          * @return
          */
         public static EventEnum valueOfAlias(String alias) {
-            for (EventEnum event : values()) {
-                if (event.alias.equals(alias)) {
-                    return event;
+            if (alias == null) {
+                return null;
+            }
+            EventEnum event = ALIAS_TABLE[slot(alias.hashCode(), ALIAS_SHIFT)];
+            return event != null && event.alias.equals(alias) ? event : null;
+        }
+
+        /**
+         * 直接根据字节数组中的别名获取event枚举对象，不创建字符串，没有匹配的值返回null
+         * 
+         * @param bytes
+         * @param offset
+         * @param length
+         * @return
+         */
+        public static EventEnum valueOfAlias(byte[] bytes, int offset, int length) {
+            // 和String.hashCode的计算方式一致，别名都是ascii字符，非ascii字节不会匹配
+            int hash = 0;
+            for (int i = offset, end = offset + length; i < end; i++) {
+                hash = 31 * hash + (bytes[i] & 0xFF);
+            }
+            EventEnum event = ALIAS_TABLE[slot(hash, ALIAS_SHIFT)];
+            if (event == null || event.aliasBytes.length != length) {
+                return null;
+            }
+            for (int i = 0; i < length; i++) {
+                if (event.aliasBytes[i] != bytes[offset + i]) {
+                    return null;
                 }
             }
-            return null;
+            return event;
+        }
+
+        /**
+         * 根据一个字节的事件编码获取event枚举对象，没有匹配的值返回null
+         * 
+         * @param code
+         * @return
+         */
+        public static EventEnum valueOfCode(byte code) {
+            return CODE_TABLE[code & 0xFF];
+        }
+
+        private static int slot(int hash, int shift) {
+            return (hash * 0x9E3779B9) >>> shift;
+        }
+
+        private static byte[] toAsciiBytes(String s) {
+            byte[] bytes = new byte[s.length()];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) s.charAt(i);
+            }
+            return bytes;
         }
     }
 
@@ -80,6 +168,11 @@ public class EventLogConstants {
      */
     public static final String LOG_COLUMN_NAME_EVENT_NAME = "en";
 
+    /**
+     * 一个字节的事件编码(EventEnum.code)，由etl写入，列名以下划线开头，不会和日志参数的列名冲突
+     */
+    public static final String LOG_COLUMN_NAME_EVENT_CODE = "_e";
+
     /**
      * 数据收集端的版本信息
      */
@@ -64,4 +64,209 @@ public class GlobalConstants {
      */
     public static final String JDBC_PASSWORD = "mysql.%s.password";
 
+    /**
+     * mapper中异常记录日志的抽样间隔，单位毫秒；每个原因在一个间隔内最多输出一条日志
+     */
+    public static final String MAPPER_LOG_SAMPLE_INTERVAL = "mapper.log.sample.interval";
+
+    /**
+     * etl阶段ip解析缓存的容量
+     */
+    public static final String ETL_IP_CACHE_CAPACITY = "etl.ip.cache.capacity";
+
+    /**
+     * etl阶段user agent解析缓存的容量
+     */
+    public static final String ETL_USER_AGENT_CACHE_CAPACITY = "etl.user.agent.cache.capacity";
+
+    /**
+     * etl阶段user agent的解析实现类，默认使用uasparser；切换实现会改变操作系统版本号的值，见CompiledUserAgentParser
+     */
+    public static final String ETL_USER_AGENT_PARSER = "etl.user.agent.parser";
+
+    /**
+     * etl阶段是否使用bulk load方式写入hbase，默认为false(逐条put)
+     */
+    public static final String ETL_BULK_LOAD = "etl.bulk.load";
+
+    /**
+     * etl阶段bulk load生成的hfile的输出根目录，实际输出目录为: 根目录/运行日期
+     */
+    public static final String ETL_BULK_LOAD_OUTPUT_PATH = "etl.bulk.load.output.path";
+
+    /**
+     * 默认的hfile输出根目录
+     */
+    public static final String DEFAULT_ETL_BULK_LOAD_OUTPUT_PATH = "/user/hadoop/hfiles/";
+
+    /**
+     * etl阶段是否将多个小的日志文件合并到一个split中，默认为false(每个文件至少一个mapper)
+     */
+    public static final String ETL_COMBINE_INPUT = "etl.combine.input";
+
+    /**
+     * etl阶段合并split的最大字节数
+     */
+    public static final String ETL_COMBINE_MAX_SPLIT_SIZE = "etl.combine.max.split.size";
+
+    /**
+     * 默认的合并split最大字节数，256M
+     */
+    public static final long DEFAULT_ETL_COMBINE_MAX_SPLIT_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * etl阶段原始日志的存储格式: text(原始文本或者gzip文本，默认)或者sequence(块压缩的SequenceFile)
+     */
+    public static final String ETL_INPUT_FORMAT = "etl.input.format";
+
+    /**
+     * etl阶段原始日志的根目录
+     */
+    public static final String ETL_LOG_ROOT_PATH = "etl.log.root.path";
+
+    /**
+     * etl阶段原始日志的分区布局，SimpleDateFormat格式，例如yyyy/MM/dd/HH
+     */
+    public static final String ETL_LOG_PARTITION_LAYOUT = "etl.log.partition.layout";
+
+    /**
+     * etl阶段处理的时间范围开始时间戳(包含)
+     */
+    public static final String ETL_RUNNING_FROM = "etl.running.from";
+
+    /**
+     * etl阶段处理的时间范围结束时间戳(不包含)
+     */
+    public static final String ETL_RUNNING_TO = "etl.running.to";
+
+    /**
+     * etl阶段是否增量运行，增量运行时只导入检查点中没有记录的文件
+     */
+    public static final String ETL_INCREMENTAL = "etl.incremental";
+
+    /**
+     * 增量运行的检查点保存目录，etl和transformer共用
+     */
+    public static final String ETL_CHECKPOINT_DIR = "etl.checkpoint.dir";
+
+    /**
+     * etl阶段是否将过滤的原始日志写入死信目录，默认为false
+     */
+    public static final String ETL_DEAD_LETTER = "etl.dead.letter";
+
+    /**
+     * etl阶段死信的根目录，实际输出目录为: 根目录/运行日期/job提交时间戳
+     */
+    public static final String ETL_DEAD_LETTER_PATH = "etl.dead.letter.path";
+
+    /**
+     * 默认的死信根目录
+     */
+    public static final String DEFAULT_ETL_DEAD_LETTER_PATH = "/user/hadoop/deadletter/";
+
+    /**
+     * etl阶段重放的死信目录，设置之后不再读取原始日志
+     */
+    public static final String ETL_DEAD_LETTER_REPLAY = "etl.dead.letter.replay";
+
+    /**
+     * etl阶段每个map task中处理日志的线程个数，大于1的时候使用MultithreadedMapper，默认为1
+     */
+    public static final String ETL_MAPPER_THREADS = "etl.mapper.threads";
+
+    /**
+     * etl阶段是否同时将解析后的数据导出为按天和事件分区的orc文件，默认为false
+     */
+    public static final String ETL_EXPORT = "etl.export";
+
+    /**
+     * etl阶段导出的orc文件根目录，实际输出目录为: 根目录/day=yyyy-MM-dd/en=事件别名
+     */
+    public static final String ETL_EXPORT_PATH = "etl.export.path";
+
+    /**
+     * 默认的导出根目录
+     */
+    public static final String DEFAULT_ETL_EXPORT_PATH = "/user/hadoop/orc/event_logs/";
+
+    /**
+     * etl阶段直接put写入hbase时，死信以及导出文件的临时提交目录，job成功后移动到各自的目录
+     */
+    public static final String ETL_STAGING_PATH = "etl.staging.path";
+
+    /**
+     * 默认的临时提交目录
+     */
+    public static final String DEFAULT_ETL_STAGING_PATH = "/user/hadoop/etl/staging/";
+
+    /**
+     * transformer增量运行时，etl水位线超过运行日期结束多少分钟之后才认为当天的数据导入完成，切换到下一天
+     */
+    public static final String TRANSFORMER_INCREMENTAL_GRACE_MINUTES = "transformer.incremental.grace.minutes";
+
+    /**
+     * transformer增量运行成功之后保存到检查点的水位线
+     */
+    public static final String TRANSFORMER_CHECKPOINT_WATERMARK = "transformer.checkpoint.watermark";
+
+    /**
+     * transformer增量运行时etl水位线还没有到达运行日期，跳过本次运行
+     */
+    public static final String TRANSFORMER_INCREMENTAL_SKIP = "transformer.incremental.skip";
+
+    /**
+     * transformer增量运行时使用的检查点名称
+     */
+    public static final String TRANSFORMER_CHECKPOINT_NAME = "transformer.checkpoint.name";
+
+    /**
+     * 合并扫描job中运行的kpi模块，逗号分隔的模块名称(KpiModule，不区分大小写)，默认为所有模块
+     */
+    public static final String TRANSFORMER_FUSED_MODULES = "transformer.fused.modules";
+
+    /**
+     * 合并扫描job中每个kpi模块使用的reducer个数的前缀，后面跟上模块名称，例如transformer.fused.reducers.sessions
+     */
+    public static final String TRANSFORMER_FUSED_REDUCERS_PREFIX = "transformer.fused.reducers.";
+
+    /**
+     * transformer的mapper是否通过维度字典把输出key中的维度解析成id，默认为false
+     */
+    public static final String TRANSFORMER_DIMENSION_DICTIONARY = "transformer.dimension.dictionary";
+
+    /**
+     * transformer中uuid、会话id等去重计数是否使用HyperLogLog近似计算，默认为false(使用HashSet精确计算)
+     */
+    public static final String TRANSFORMER_DISTINCT_APPROXIMATE = "transformer.distinct.approximate";
+
+    /**
+     * 近似去重计数的相对标准误差，默认为0.01，误差越小每个sketch占用的内存越大
+     */
+    public static final String TRANSFORMER_DISTINCT_APPROXIMATE_ERROR = "transformer.distinct.approximate.error";
+
+    /**
+     * event_logs表rowkey的盐值分桶个数，0表示不加盐；etl和transformer必须使用相同的值
+     */
+    public static final String EVENT_LOGS_SALT_BUCKETS = "event.logs.salt.buckets";
+
+    /**
+     * event_logs表写入时使用的rowkey格式: string(默认)或者binary
+     */
+    public static final String EVENT_LOGS_ROWKEY_FORMAT = "event.logs.rowkey.format";
+
+    /**
+     * event_logs表读取时使用的rowkey格式，多个格式之间用逗号分隔，默认和写入格式一致
+     */
+    public static final String EVENT_LOGS_ROWKEY_READ_FORMATS = "event.logs.rowkey.read.formats";
+
+    /**
+     * event_logs表是否使用紧凑编码写入(所有参数打包到一列)，默认为false
+     */
+    public static final String EVENT_LOGS_COMPACT_RECORD = "event.logs.compact.record";
+
+    /**
+     * transformer是否使用一个字节的事件编码(_e列)过滤事件类型，默认为false(比较事件别名)
+     */
+    public static final String EVENT_LOGS_EVENT_CODE_FILTER = "event.logs.event.code.filter";
+
 }
@@ -0,0 +1,24 @@
+package com.jason.common;
+
+/**
+ * etl以及transformer中mapper处理记录的hadoop计数器，过滤的记录按照原因分别计数
+ * 
+ * @author jason
+ *
+ */
+public enum RecordCounter {
+    INPUT_RECORDS, // 输入记录数
+    OUTPUT_RECORDS, // 输出记录数
+    FILTER_RECORDS, // 过滤的记录总数
+    ETL_PARSE_FAILED, // 日志格式错误，没法解析
+    ETL_INVALID_SERVER_TIME, // 服务器时间为空或者解析失败
+    ETL_UNKNOWN_EVENT, // 没法识别的事件
+    ETL_EXCEPTION, // 处理日志出现异常
+    ETL_INVALID_PARAM, // 存在没法解析或者url解码失败的请求参数(只丢弃参数，不过滤记录)
+    MISSING_FIELDS, // 必要的字段为空，或者服务器时间不是时间戳
+    NOT_NEW_MEMBER, // 不是第一次访问网站的会员
+    NOT_INBOUND_URL, // 前一个页面的url不是外链
+    INBOUND_LOOKUP_FAILED, // 获取外链id出现异常(不一定过滤)
+    NO_KPI_MODULE, // 合并扫描job中没有模块处理该事件
+    ;
+}
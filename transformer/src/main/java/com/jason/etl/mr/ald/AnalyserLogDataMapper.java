@@ -1,51 +1,126 @@
 package com.jason.etl.mr.ald;
 
 import java.io.IOException;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.CRC32;
 
-import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.hbase.HConstants;
+import org.apache.hadoop.hbase.KeyValue;
 import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
 import org.apache.log4j.Logger;
 
 import com.jason.common.EventLogConstants;
 import com.jason.common.EventLogConstants.EventEnum;
+import com.jason.common.GlobalConstants;
+import com.jason.common.RecordCounter;
+import com.jason.etl.util.LogRecord;
 import com.jason.etl.util.LoggerUtil;
+import com.jason.util.CompactEventRecord;
+import com.jason.util.RecordDiagnostics;
+import com.jason.util.RowKeyUtil;
+import com.jason.util.rowkey.IRowKeyCodec;
 
 /**
- * 自定义数据解析map类
+ * 自定义数据解析map类<br/>
+ * 输出的key为rowkey，直接写hbase的时候会被忽略，bulk load的时候用于分区和排序<br/>
+ * 开启死信输出的时候，被过滤的原始日志通过名为deadletter的MultipleOutputs输出，key为过滤原因(RecordCounter的名称)，value为原始的一行日志<br/>
+ * 开启导出的时候，写入hbase的每条数据同时通过名为export的MultipleOutputs输出为orc格式，按照天和事件分区<br/>
+ * 多线程运行的时候MultithreadedMapper为每个线程创建一个mapper对象，所以crc32、record等成员变量只被一个线程访问，
+ * 共享的ip、user agent解析对象是线程安全的；每个线程的死信以及导出数据写入单独的文件
  * 
  * @author jason
  *
  */
-public class AnalyserLogDataMapper extends Mapper<Object, Text, NullWritable, Put> {
-    private final Logger logger = Logger.getLogger(AnalyserLogDataMapper.class);
+public class AnalyserLogDataMapper extends Mapper<Object, Text, ImmutableBytesWritable, Put> {
+    private static final Logger logger = Logger.getLogger(AnalyserLogDataMapper.class);
+    /**
+     * 死信输出的名称
+     */
+    public static final String DEAD_LETTER_OUTPUT = "deadletter";
+    /**
+     * 导出输出的名称，同时也是导出文件在job输出目录中的上级目录
+     */
+    public static final String EXPORT_OUTPUT = "export";
+    private static final AtomicInteger sequence = new AtomicInteger(); // 多线程时区分每个线程的输出文件
     private int inputRecords, filterRecords, outputRecords; // 主要用于标志，方便查看过滤数据
+    private RecordDiagnostics diagnostics; // 过滤原因的计数以及日志抽样
     private byte[] family = Bytes.toBytes(EventLogConstants.EVENT_LOGS_FAMILY_NAME);
     private CRC32 crc32 = new CRC32();
+    private LogRecord record = new LogRecord(); // 可重用的解析结果对象
+    private ImmutableBytesWritable outputKey = new ImmutableBytesWritable();
+    private IRowKeyCodec rowKeyCodec; // rowkey的编码器
+    private CompactEventRecord.Builder compactBuilder; // 紧凑编码，为null表示每个参数一列
+    private byte[] compactColumn = Bytes.toBytes(CompactEventRecord.COLUMN_NAME);
+    private byte[] eventNameColumn = Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME);
+    private byte[] eventCodeColumn = Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_EVENT_CODE);
+    private byte[][] eventCodes = new byte[EventEnum.values().length][]; // 每个事件编码对应的列值，put的时候会拷贝，可以共享
+    private MultipleOutputs<ImmutableBytesWritable, Put> sideOutputs; // 死信以及导出输出，都没有开启的时候为null
+    private boolean deadLetter; // 是否输出死信
+    private Text deadLetterReason = new Text();
+    private String deadLetterPath; // 死信文件的前缀，为null表示使用默认的文件名
+    private Text line; // 当前处理的原始日志
+    private OrcEventExporter exporter; // 导出数据，为null表示不导出
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+        LoggerUtil.configure(context.getConfiguration());
+        for (EventEnum event : EventEnum.values()) {
+            this.eventCodes[event.ordinal()] = new byte[] { event.code };
+        }
+        this.diagnostics = new RecordDiagnostics(logger, context.getConfiguration().getLong(GlobalConstants.MAPPER_LOG_SAMPLE_INTERVAL, RecordDiagnostics.DEFAULT_SAMPLE_INTERVAL));
+        this.rowKeyCodec = RowKeyUtil.getCodec(context.getConfiguration());
+        if (context.getConfiguration().getBoolean(GlobalConstants.EVENT_LOGS_COMPACT_RECORD, false)) {
+            this.compactBuilder = new CompactEventRecord.Builder();
+        }
+        this.deadLetter = context.getConfiguration().getBoolean(GlobalConstants.ETL_DEAD_LETTER, false);
+        boolean export = context.getConfiguration().getBoolean(GlobalConstants.ETL_EXPORT, false);
+        if (this.deadLetter || export) {
+            this.sideOutputs = new MultipleOutputs<ImmutableBytesWritable, Put>(context);
+            // 导出文件名由输入split决定，重新导入同一个split的时候替换之前导出的文件
+            String fileName = OrcEventExporter.getSplitName(context.getInputSplit());
+            if (context.getConfiguration().getInt(GlobalConstants.ETL_MAPPER_THREADS, 1) > 1) {
+                int seq = sequence.getAndIncrement();
+                this.deadLetterPath = DEAD_LETTER_OUTPUT + "-" + seq;
+                fileName = fileName + "-" + seq;
+            }
+            if (export) {
+                this.exporter = new OrcEventExporter(EXPORT_OUTPUT, fileName);
+            }
+        }
+    }
 
     @Override
     protected void map(Object key, Text value, Context context) throws IOException, InterruptedException {
         this.inputRecords++;
-        this.logger.debug("Analyse data of :" + value);
+        this.line = value;
+        if (logger.isDebugEnabled()) {
+            logger.debug("Analyse data of :" + value);
+        }
 
         try {
-            // 解析日志
-            Map<String, String> clientInfo = LoggerUtil.handleLog(value.toString());
-
-            // 过滤解析失败的数据
-            if (clientInfo.isEmpty()) {
-                this.filterRecords++;
+            // 解析日志，过滤解析失败的数据
+            if (!LoggerUtil.handleLog(value, this.record) || this.record.isEmpty()) {
+                this.filter(RecordCounter.ETL_PARSE_FAILED, "日志格式错误，数据:", value);
                 return;
             }
+            if (this.record.getInvalidParams() > 0) {
+                this.diagnostics.warn(RecordCounter.ETL_INVALID_PARAM, "丢弃了没法解析的参数，数据:", value);
+            }
 
-            // 获取事件名称
-            String eventAliasName = clientInfo.get(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME);
-            EventEnum event = EventEnum.valueOfAlias(eventAliasName);
+            // 直接在record的buffer上查找事件，不创建字符串
+            int index = this.record.indexOf(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME);
+            EventEnum event = index < 0 ? null : EventEnum.valueOfAlias(this.record.getBuffer(), this.record.getValueOffset(index), this.record.getValueLength(index));
+            if (event == null) {
+                this.filter(RecordCounter.ETL_UNKNOWN_EVENT, "该事件没法进行解析，事件名称为:", this.record.get(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME));
+                return;
+            }
             switch (event) {
             case LAUNCH:
             case PAGEVIEW:
@@ -54,58 +129,142 @@ public class AnalyserLogDataMapper extends Mapper<Object, Text, NullWritable, Pu
             case CHARGESUCCESS:
             case EVENT:
                 // 处理数据
-                this.handleData(clientInfo, event, context);
+                this.handleData(this.record, event, context);
                 break;
             default:
-                this.filterRecords++;
-                this.logger.warn("该事件没法进行解析，事件名称为:" + eventAliasName);
+                this.filter(RecordCounter.ETL_UNKNOWN_EVENT, "该事件没法进行解析，事件名称为:", event.alias);
             }
         } catch (Exception e) {
             this.filterRecords++;
-            this.logger.error("处理数据发出异常，数据:" + value, e);
+            this.diagnostics.error(RecordCounter.ETL_EXCEPTION, "处理数据发出异常，数据:", value, e);
+            this.writeDeadLetter(RecordCounter.ETL_EXCEPTION);
         }
     }
 
     @Override
     protected void cleanup(Context context) throws IOException, InterruptedException {
         super.cleanup(context);
-        logger.info("输入数据:" + this.inputRecords + "；输出数据:" + this.outputRecords + "；过滤数据:" + this.filterRecords);
+        LoggerUtil.reportCacheCounters(context);
+        // 输入、输出、过滤记录数会显示在job的计数器汇总中
+        context.getCounter(RecordCounter.INPUT_RECORDS).increment(this.inputRecords);
+        context.getCounter(RecordCounter.OUTPUT_RECORDS).increment(this.outputRecords);
+        context.getCounter(RecordCounter.FILTER_RECORDS).increment(this.filterRecords);
+        this.diagnostics.flush(context);
+        if (this.sideOutputs != null) {
+            this.sideOutputs.close();
+        }
+    }
+
+    /**
+     * 过滤一条记录，按照原因计数，日志只输出抽样，原始日志写入死信输出
+     * 
+     * @param reason
+     * @param message
+     * @param detail
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void filter(RecordCounter reason, String message, Object detail) throws IOException, InterruptedException {
+        this.filterRecords++;
+        this.diagnostics.warn(reason, message, detail);
+        this.writeDeadLetter(reason);
+    }
+
+    /**
+     * 将当前处理的原始日志连同过滤原因写入死信输出
+     * 
+     * @param reason
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void writeDeadLetter(RecordCounter reason) throws IOException, InterruptedException {
+        if (this.deadLetter) {
+            this.deadLetterReason.set(reason.name());
+            if (this.deadLetterPath == null) {
+                this.sideOutputs.write(DEAD_LETTER_OUTPUT, this.deadLetterReason, this.line);
+            } else {
+                this.sideOutputs.write(DEAD_LETTER_OUTPUT, this.deadLetterReason, this.line, this.deadLetterPath);
+            }
+        }
     }
 
     /**
      * 具体处理数据的方法
      * 
-     * @param clientInfo
+     * @param record
      * @param context
      * @param event
      * @throws InterruptedException
      * @throws IOException
      */
-    private void handleData(Map<String, String> clientInfo, EventEnum event, Context context) throws IOException, InterruptedException {
-        String uuid = clientInfo.get(EventLogConstants.LOG_COLUMN_NAME_UUID);
-        String memberId = clientInfo.get(EventLogConstants.LOG_COLUMN_NAME_MEMBER_ID);
-        String serverTime = clientInfo.get(EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME);
-        if (StringUtils.isNotBlank(serverTime)) {
-            // 要求服务器时间不为空
-            clientInfo.remove(EventLogConstants.LOG_COLUMN_NAME_USER_AGENT); // 浏览器信息去掉
-            String rowkey = this.generateRowKey(uuid, memberId, event.alias, serverTime); // timestamp
-                                                                                          // +
-                                                                                          // (uuid+memberid+event).crc
-            Put put = new Put(Bytes.toBytes(rowkey));
-            for (Map.Entry<String, String> entry : clientInfo.entrySet()) {
-                if (StringUtils.isNotBlank(entry.getKey()) && StringUtils.isNotBlank(entry.getValue())) {
-                    put.add(family, Bytes.toBytes(entry.getKey()), Bytes.toBytes(entry.getValue()));
-                }
+    private void handleData(LogRecord record, EventEnum event, Context context) throws IOException, InterruptedException {
+        String uuid = record.get(EventLogConstants.LOG_COLUMN_NAME_UUID);
+        String memberId = record.get(EventLogConstants.LOG_COLUMN_NAME_MEMBER_ID);
+        long serverTime = record.getServerTime();
+        if (serverTime >= 0) {
+            // 要求服务器时间解析成功
+            record.remove(EventLogConstants.LOG_COLUMN_NAME_USER_AGENT); // 浏览器信息去掉
+            byte[] row = this.generateRowKey(uuid, memberId, event.alias, serverTime); // [salt]+timestamp+(uuid+memberid+event).crc
+            Put put = this.compactBuilder == null ? this.createPut(row, record) : this.createCompactPut(row, record, event);
+            put.add(family, this.eventCodeColumn, this.eventCodes[event.ordinal()]);
+            this.outputKey.set(row);
+            context.write(this.outputKey, put);
+            if (this.exporter != null) {
+                this.sideOutputs.write(EXPORT_OUTPUT, NullWritable.get(), this.exporter.toRow(record, serverTime), this.exporter.getBaseOutputPath(event, serverTime));
             }
-            context.write(NullWritable.get(), put);
             this.outputRecords++;
         } else {
-            this.filterRecords++;
+            this.filter(RecordCounter.ETL_INVALID_SERVER_TIME, "服务器时间为空或者格式错误，uuid:", uuid);
         }
     }
 
     /**
-     * 根据uuid memberid servertime创建rowkey
+     * 每个参数一列
+     * 
+     * @param row
+     * @param record
+     * @return
+     */
+    private Put createPut(byte[] row, LogRecord record) {
+        Put put = new Put(row);
+        byte[] buffer = record.getBuffer();
+        for (int i = 0; i < record.size(); i++) {
+            int keyOffset = record.getKeyOffset(i), keyLength = record.getKeyLength(i);
+            int valueOffset = record.getValueOffset(i), valueLength = record.getValueLength(i);
+            if (!LogRecord.isBlank(buffer, keyOffset, keyLength) && !LogRecord.isBlank(buffer, valueOffset, valueLength)) {
+                // 直接从record的buffer中拷贝列名和列值，不创建中间的byte数组
+                put.add(new KeyValue(row, 0, row.length, family, 0, family.length, buffer, keyOffset, keyLength, HConstants.LATEST_TIMESTAMP, KeyValue.Type.Put, buffer, valueOffset, valueLength));
+            }
+        }
+        return put;
+    }
+
+    /**
+     * 所有参数打包成一列，事件名称额外保留一列，供transformer中的SingleColumnValueFilter使用
+     * 
+     * @param row
+     * @param record
+     * @param event
+     * @return
+     */
+    private Put createCompactPut(byte[] row, LogRecord record, EventEnum event) {
+        this.compactBuilder.reset();
+        byte[] buffer = record.getBuffer();
+        for (int i = 0; i < record.size(); i++) {
+            int keyOffset = record.getKeyOffset(i), keyLength = record.getKeyLength(i);
+            int valueOffset = record.getValueOffset(i), valueLength = record.getValueLength(i);
+            if (!LogRecord.isBlank(buffer, keyOffset, keyLength) && !LogRecord.isBlank(buffer, valueOffset, valueLength)) {
+                this.compactBuilder.add(buffer, keyOffset, keyLength, buffer, valueOffset, valueLength);
+            }
+        }
+        Put put = new Put(row);
+        put.add(family, this.compactColumn, this.compactBuilder.toBytes());
+        put.add(family, this.eventNameColumn, Bytes.toBytes(event.alias));
+        return put;
+    }
+
+    /**
+     * 根据uuid memberid servertime创建rowkey，具体格式由配置的编码器决定
      * 
      * @param uuid
      * @param memberId
@@ -113,18 +272,7 @@ public class AnalyserLogDataMapper extends Mapper<Object, Text, NullWritable, Pu
      * @param serverTime
      * @return
      */
-    private String generateRowKey(String uuid, String memberId, String eventAliasName, String serverTime) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(serverTime).append("_");
-        this.crc32.reset();
-        if (StringUtils.isNotBlank(uuid)) {
-            this.crc32.update(uuid.getBytes());
-        }
-        if (StringUtils.isNotBlank(memberId)) {
-            this.crc32.update(memberId.getBytes());
-        }
-        this.crc32.update(eventAliasName.getBytes());
-        sb.append(this.crc32.getValue() % 100000000L);
-        return sb.toString();
+    private byte[] generateRowKey(String uuid, String memberId, String eventAliasName, long serverTime) {
+        return RowKeyUtil.generateRowKey(this.rowKeyCodec, this.crc32, uuid, memberId, eventAliasName, serverTime);
     }
 }
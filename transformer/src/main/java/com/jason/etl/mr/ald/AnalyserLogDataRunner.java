@@ -1,34 +1,84 @@
 package com.jason.etl.mr.ald;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.client.HTable;
 import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.HFileOutputFormat2;
+import org.apache.hadoop.hbase.mapreduce.LoadIncrementalHFiles;
 import org.apache.hadoop.hbase.mapreduce.TableMapReduceUtil;
+import org.apache.hadoop.hive.ql.io.orc.OrcNewOutputFormat;
 import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.MRJobConfig;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.CombineSequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.CombineTextInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 
 import com.jason.common.EventLogConstants;
 import com.jason.common.GlobalConstants;
+import com.jason.etl.util.LogPathUtil;
+import com.jason.util.Checkpoint;
 import com.jason.util.TimeUtil;
 
 /**
- * 编写mapreduce的runner类
+ * 编写mapreduce的runner类<br/>
+ * 默认逐条put写入hbase；指定-bulkload参数(或者etl.bulk.load=true)的时候，
+ * 按照表的region边界分区生成hfile，job执行成功后一次性bulk load到表中，适合多天的数据回补<br/>
+ * 指定-combine参数(或者etl.combine.input=true)的时候，使用CombineTextInputFormat将多个小文件合并成大小接近etl.combine.max.split.size的split，
+ * 优先合并同一个节点、其次同一个机架上的数据块，mapper仍然逐行处理<br/>
+ * 指定-input sequence参数(或者etl.input.format=sequence)的时候，读取RawLogSequenceFileConverter转换生成的块压缩SequenceFile(*.seq)，
+ * 文件可以按照sync标记切分成多个split，value和文本格式一样是一行日志<br/>
+ * 输入目录按照etl.log.partition.layout布局枚举，-d指定处理一天，-from/-to(yyyy-MM-dd或者yyyy-MM-dd-HH，包含结束时间)指定处理一个时间范围，
+ * 小时分区的布局下可以只重新处理某一个小时，按天分区的布局下指定小时范围会直接报错<br/>
+ * 指定-incremental参数的时候增量运行，只导入hdfs检查点中没有记录的已经关闭的文件，适合每小时或者每15分钟运行一次<br/>
+ * 指定-deadletter参数(或者etl.dead.letter=true)的时候，被过滤的原始日志连同过滤原因写入死信目录(etl.dead.letter.path/运行日期/job提交时间戳)，格式为块压缩的SequenceFile，默认关闭；
+ * 修复解析问题之后，通过-replay 死信目录重新导入(rowkey相同，重复导入不会产生重复数据)，开启死信的时候仍然失败的记录会写入新的死信目录<br/>
+ * 指定-threads n参数(或者etl.mapper.threads=n)的时候，每个map task使用n个线程解析日志(MultithreadedMapper)，
+ * 适合使用少量多核的大container代替大量单核的小container；输出的rowkey和单线程完全一致，只是写出的顺序不同<br/>
+ * 指定-export参数(或者etl.export=true)的时候，写入hbase的数据同时导出为orc文件(etl.export.path/day=yyyy-MM-dd/en=事件别名)，
+ * 文件名以输入split的摘要开头，重新运行或者重放死信的时候替换同一个split之前导出的文件，不会产生重复的行；hive中通过event_logs_orc外部表查询，不需要扫描hbase
  * 
  * @author jason
  *
  */
 public class AnalyserLogDataRunner implements Tool {
     private static final Logger logger = Logger.getLogger(AnalyserLogDataRunner.class);
+    private static final long HOUR_OF_MILLISECONDS = 3600000L;
+    /**
+     * 原始文本格式
+     */
+    public static final String INPUT_FORMAT_TEXT = "text";
+    /**
+     * 块压缩的SequenceFile格式
+     */
+    public static final String INPUT_FORMAT_SEQUENCE = "sequence";
     private Configuration conf = null;
+    private Checkpoint checkpoint = null; // 增量运行时使用的检查点
+    private long runTime; // job提交时间，用于区分每次运行的死信目录以及临时目录
 
     public static void main(String[] args) {
         try {
@@ -41,6 +91,8 @@ public class AnalyserLogDataRunner implements Tool {
 
     @Override
     public void setConf(Configuration conf) {
+        // rowkey的盐值分桶等配置和transformer共用
+        conf.addResource("transformer-env.xml");
         this.conf = HBaseConfiguration.create(conf);
     }
 
@@ -52,7 +104,11 @@ public class AnalyserLogDataRunner implements Tool {
     @Override
     public int run(String[] args) throws Exception {
         Configuration conf = this.getConf();
+        this.runTime = System.currentTimeMillis();
         this.processArgs(conf, args);
+        if (conf.getBoolean(GlobalConstants.ETL_INCREMENTAL, false)) {
+            this.initIncrementalRange(conf);
+        }
 
         Job job = Job.getInstance(conf, "analyser_logdata");
 
@@ -62,9 +118,43 @@ public class AnalyserLogDataRunner implements Tool {
         // 设置本地提交job，集群运行，需要代码结束
 
         job.setJarByClass(AnalyserLogDataRunner.class);
-        job.setMapperClass(AnalyserLogDataMapper.class);
-        job.setMapOutputKeyClass(NullWritable.class);
+        this.setMapper(job);
+        job.setMapOutputKeyClass(ImmutableBytesWritable.class);
         job.setMapOutputValueClass(Put.class);
+
+        // 设置输入路径
+        if (!this.setJobInputPaths(job)) {
+            return 0;
+        }
+        Path deadLetterPath = this.setDeadLetterOutput(job);
+        Path exportPath = this.setExportOutput(job);
+
+        int result;
+        if (conf.getBoolean(GlobalConstants.ETL_BULK_LOAD, false)) {
+            result = this.runBulkLoadJob(job, deadLetterPath, exportPath);
+        } else {
+            result = this.runPutJob(job, deadLetterPath, exportPath);
+        }
+        if (result == 0 && this.checkpoint != null) {
+            // 导入成功后才保存检查点，失败的时候下次重新导入这些文件(rowkey相同，重复写入不会产生重复数据)
+            this.checkpoint.save(conf);
+            logger.info("保存检查点，水位线为:" + this.checkpoint.getWatermark());
+        }
+        return result;
+    }
+
+    /**
+     * 逐条put写入hbase，死信以及导出文件先提交到临时目录，job成功后再移动到各自的目录
+     * 
+     * @param job
+     * @param deadLetterPath
+     *            死信目录，为null表示不输出死信
+     * @param exportPath
+     *            导出根目录，为null表示不导出
+     * @return
+     * @throws Exception
+     */
+    private int runPutJob(Job job, Path deadLetterPath, Path exportPath) throws Exception {
         // 设置reducer配置
         // 1. 集群上运行，打成jar运行(要求addDependencyJars参数为true，默认就是true)
         TableMapReduceUtil.initTableReducerJob(EventLogConstants.HBASE_NAME_EVENT_LOGS, null, job);
@@ -72,10 +162,74 @@ public class AnalyserLogDataRunner implements Tool {
         // TableMapReduceUtil.initTableReducerJob(EventLogConstants.HBASE_NAME_EVENT_LOGS,
         // null, job, null, null, null, null, false);
         job.setNumReduceTasks(0);
+        if (deadLetterPath == null && exportPath == null) {
+            return job.waitForCompletion(true) ? 0 : -1;
+        }
 
-        // 设置输入路径
-        this.setJobInputPaths(job);
-        return job.waitForCompletion(true) ? 0 : -1;
+        // 死信以及导出文件由FileOutputCommitter提交到临时目录
+        Configuration conf = job.getConfiguration();
+        Path stagingPath = new Path(conf.get(GlobalConstants.ETL_STAGING_PATH, GlobalConstants.DEFAULT_ETL_STAGING_PATH).trim(), conf.get(GlobalConstants.RUNNING_DATE_PARAMES) + "_" + this.runTime);
+        job.setOutputFormatClass(SideOutputTableOutputFormat.class);
+        FileOutputFormat.setOutputPath(job, stagingPath);
+        try {
+            if (!job.waitForCompletion(true)) {
+                return -1;
+            }
+            this.commitSideOutputs(conf, stagingPath, deadLetterPath, exportPath);
+            return 0;
+        } finally {
+            FileSystem fs = stagingPath.getFileSystem(conf);
+            if (fs.exists(stagingPath)) {
+                fs.delete(stagingPath, true);
+            }
+        }
+    }
+
+    /**
+     * 以bulk load的方式执行job<br/>
+     * 1. 使用HFileOutputFormat2输出hfile，reducer个数等于region个数，TotalOrderPartitioner按照region的startkey分区<br/>
+     * 2. job执行成功后，通过LoadIncrementalHFiles将hfile移动到对应的region中，每个region的加载是原子的
+     * 
+     * @param job
+     * @param deadLetterPath
+     *            死信目录，为null表示不输出死信
+     * @param exportPath
+     *            导出根目录，为null表示不导出
+     * @return
+     * @throws Exception
+     */
+    private int runBulkLoadJob(Job job, Path deadLetterPath, Path exportPath) throws Exception {
+        Configuration conf = job.getConfiguration();
+        String date = conf.get(GlobalConstants.RUNNING_DATE_PARAMES);
+        Path outputPath = new Path(conf.get(GlobalConstants.ETL_BULK_LOAD_OUTPUT_PATH, GlobalConstants.DEFAULT_ETL_BULK_LOAD_OUTPUT_PATH), date);
+
+        HTable table = new HTable(conf, EventLogConstants.HBASE_NAME_EVENT_LOGS);
+        try {
+            FileSystem fs = outputPath.getFileSystem(conf);
+            if (fs.exists(outputPath)) {
+                // 删除上一次失败遗留的hfile，避免重复加载
+                fs.delete(outputPath, true);
+            }
+            FileOutputFormat.setOutputPath(job, outputPath);
+            // 设置PutSortReducer、TotalOrderPartitioner以及列簇的压缩/bloom filter等配置
+            HFileOutputFormat2.configureIncrementalLoad(job, table);
+            TableMapReduceUtil.addDependencyJars(job);
+            TableMapReduceUtil.initCredentials(job);
+
+            if (!job.waitForCompletion(true)) {
+                return -1;
+            }
+            // 死信以及导出文件和hfile提交在同一个目录中，加载之前先移走，否则会被当成列簇目录
+            this.commitSideOutputs(conf, outputPath, deadLetterPath, exportPath);
+
+            logger.info("开始bulk load，hfile目录为:" + outputPath);
+            new LoadIncrementalHFiles(conf).doBulkLoad(outputPath, table);
+            // 加载成功后hfile已经被移动，只剩下空的目录
+            fs.delete(outputPath, true);
+            return 0;
+        } finally {
+            table.close();
+        }
     }
 
     /**
@@ -85,41 +239,156 @@ public class AnalyserLogDataRunner implements Tool {
      * @param args
      */
     private void processArgs(Configuration conf, String[] args) {
-        String date = null;
+        String date = null, from = null, to = null;
         for (int i = 0; i < args.length; i++) {
             if ("-d".equals(args[i])) {
                 if (i + 1 < args.length) {
                     date = args[++i];
-                    break;
+                }
+            } else if ("-incremental".equals(args[i])) {
+                // 增量运行，只导入检查点之后的新文件
+                conf.setBoolean(GlobalConstants.ETL_INCREMENTAL, true);
+            } else if ("-from".equals(args[i])) {
+                // 时间范围的开始，格式为yyyy-MM-dd或者yyyy-MM-dd-HH
+                if (i + 1 < args.length) {
+                    from = args[++i];
+                }
+            } else if ("-to".equals(args[i])) {
+                // 时间范围的结束(包含)，默认和-from相同
+                if (i + 1 < args.length) {
+                    to = args[++i];
+                }
+            } else if ("-bulkload".equals(args[i])) {
+                // 使用bulk load方式写入hbase
+                conf.setBoolean(GlobalConstants.ETL_BULK_LOAD, true);
+            } else if ("-combine".equals(args[i])) {
+                // 合并小文件作为mapper的输入
+                conf.setBoolean(GlobalConstants.ETL_COMBINE_INPUT, true);
+            } else if ("-splitsize".equals(args[i])) {
+                // 合并split的最大字节数，单位为MB
+                if (i + 1 < args.length) {
+                    conf.setLong(GlobalConstants.ETL_COMBINE_MAX_SPLIT_SIZE, Long.parseLong(args[++i]) * 1024 * 1024);
+                }
+            } else if ("-input".equals(args[i])) {
+                // 原始日志的存储格式
+                if (i + 1 < args.length) {
+                    conf.set(GlobalConstants.ETL_INPUT_FORMAT, args[++i]);
+                }
+            } else if ("-replay".equals(args[i])) {
+                // 重新导入指定的死信目录
+                if (i + 1 < args.length) {
+                    conf.set(GlobalConstants.ETL_DEAD_LETTER_REPLAY, args[++i]);
+                }
+            } else if ("-export".equals(args[i])) {
+                // 同时导出orc文件
+                conf.setBoolean(GlobalConstants.ETL_EXPORT, true);
+            } else if ("-deadletter".equals(args[i])) {
+                // 输出死信
+                conf.setBoolean(GlobalConstants.ETL_DEAD_LETTER, true);
+            } else if ("-nodeadletter".equals(args[i])) {
+                // 不输出死信
+                conf.setBoolean(GlobalConstants.ETL_DEAD_LETTER, false);
+            } else if ("-threads".equals(args[i])) {
+                // 每个map task的解析线程个数
+                if (i + 1 < args.length) {
+                    conf.setInt(GlobalConstants.ETL_MAPPER_THREADS, Integer.parseInt(args[++i]));
+                }
+            } else if ("-o".equals(args[i])) {
+                // bulk load时hfile的输出根目录
+                if (i + 1 < args.length) {
+                    conf.set(GlobalConstants.ETL_BULK_LOAD_OUTPUT_PATH, args[++i]);
                 }
             }
         }
 
-        // 要求date格式为: yyyy-MM-dd
-        if (StringUtils.isBlank(date) || !TimeUtil.isValidateRunningDate(date)) {
-            // date是一个无效时间数据
-            date = TimeUtil.getYesterday(); // 默认时间是昨天
+        long startTime, endTime;
+        if (from != null) {
+            // 指定了时间范围，-d参数无效
+            startTime = LogPathUtil.parseRangeTime(from, false);
+            endTime = LogPathUtil.parseRangeTime(to == null ? from : to, true);
+            if (startTime < 0 || endTime < 0 || startTime >= endTime) {
+                throw new IllegalArgumentException("无效的时间范围:" + from + "~" + to);
+            }
+            LogPathUtil.checkRange(conf, startTime, endTime);
+            date = TimeUtil.parseLong2String(startTime);
+        } else {
+            // 要求date格式为: yyyy-MM-dd
+            if (StringUtils.isBlank(date) || !TimeUtil.isValidateRunningDate(date)) {
+                // date是一个无效时间数据
+                date = TimeUtil.getYesterday(); // 默认时间是昨天
+            }
+            startTime = TimeUtil.parseString2Long(date);
+            endTime = startTime + GlobalConstants.DAY_OF_MILLISECONDS;
         }
         conf.set(GlobalConstants.RUNNING_DATE_PARAMES, date);
+        conf.setLong(GlobalConstants.ETL_RUNNING_FROM, startTime);
+        conf.setLong(GlobalConstants.ETL_RUNNING_TO, endTime);
+        if (conf.get(GlobalConstants.ETL_DEAD_LETTER_REPLAY) != null && conf.getBoolean(GlobalConstants.ETL_INCREMENTAL, false)) {
+            throw new IllegalArgumentException("重放死信的时候不能增量运行");
+        }
     }
 
     /**
      * 设置job的输入路径
      * 
      * @param job
+     * @return 增量运行时如果没有新的文件，返回false
      */
-    private void setJobInputPaths(Job job) {
+    private boolean setJobInputPaths(Job job) {
         Configuration conf = job.getConfiguration();
         FileSystem fs = null;
         try {
             fs = FileSystem.get(conf);
-            String date = conf.get(GlobalConstants.RUNNING_DATE_PARAMES);
-            Path inputPath = new Path("/user/hadoop/logs/" + TimeUtil.parseLong2String(TimeUtil.parseString2Long(date), "MM/dd/"));
-            if (fs.exists(inputPath)) {
-                FileInputFormat.addInputPath(job, inputPath);
+            long startTime = conf.getLong(GlobalConstants.ETL_RUNNING_FROM, -1);
+            long endTime = conf.getLong(GlobalConstants.ETL_RUNNING_TO, -1);
+            boolean combine = conf.getBoolean(GlobalConstants.ETL_COMBINE_INPUT, false);
+            String replay = conf.get(GlobalConstants.ETL_DEAD_LETTER_REPLAY);
+            if (replay != null) {
+                return this.setReplayInputPath(job, fs, new Path(replay.trim()), combine);
+            }
+            String format = conf.get(GlobalConstants.ETL_INPUT_FORMAT, INPUT_FORMAT_TEXT).trim();
+            boolean sequence = INPUT_FORMAT_SEQUENCE.equalsIgnoreCase(format);
+            if (!sequence && !INPUT_FORMAT_TEXT.equalsIgnoreCase(format)) {
+                throw new IllegalArgumentException("不支持的输入格式:" + format);
+            }
+            // 只添加时间范围覆盖到并且存在的分区
+            List<Path> partitions = LogPathUtil.getPartitions(conf, startTime, endTime);
+            int count = 0;
+            if (this.checkpoint != null) {
+                count = this.addIncrementalInputPaths(job, fs, partitions, sequence);
+                if (count == 0) {
+                    logger.info("没有新的文件需要导入");
+                    return false;
+                }
             } else {
-                throw new RuntimeException("文件不存在:" + inputPath);
+                if (!sequence) {
+                    // 文本格式读取整个分区目录，跳过转换后的sequence文件，和增量运行的规则一致
+                    FileInputFormat.setInputPathFilter(job, RawLogSequenceFileConverter.RawLogPathFilter.class);
+                }
+                for (Path inputPath : partitions) {
+                    if (!fs.exists(inputPath)) {
+                        logger.warn("分区目录不存在，跳过:" + inputPath);
+                        continue;
+                    }
+                    // sequence格式只读取转换后的文件，避免和没有删除的原始文件重复
+                    FileInputFormat.addInputPath(job, sequence ? new Path(inputPath, "*" + RawLogSequenceFileConverter.FILE_SUFFIX) : inputPath);
+                    count++;
+                }
+                if (count == 0) {
+                    throw new RuntimeException("文件不存在:" + partitions);
+                }
             }
+            logger.info("输入路径个数为:" + count);
+
+            if (sequence) {
+                job.setInputFormatClass(combine ? CombineSequenceFileInputFormat.class : SequenceFileInputFormat.class);
+            } else if (combine) {
+                job.setInputFormatClass(CombineTextInputFormat.class);
+            }
+            if (combine) {
+                this.setCombineSplitSize(job);
+            }
+            return true;
         } catch (IOException e) {
             throw new RuntimeException("设置job的mapreduce输入路径出现异常", e);
         } finally {
@@ -133,4 +402,257 @@ public class AnalyserLogDataRunner implements Tool {
         }
     }
 
+    /**
+     * 设置mapper，线程个数大于1的时候由MultithreadedMapper在多个线程中运行AnalyserLogDataMapper<br/>
+     * 没有单独配置map task的cpu个数时，按照线程个数申请，保证yarn分配足够的cpu
+     * 
+     * @param job
+     */
+    private void setMapper(Job job) {
+        Configuration conf = job.getConfiguration();
+        int threads = conf.getInt(GlobalConstants.ETL_MAPPER_THREADS, 1);
+        if (threads <= 1) {
+            job.setMapperClass(AnalyserLogDataMapper.class);
+            return;
+        }
+        job.setMapperClass(MultithreadedMapper.class);
+        MultithreadedMapper.setMapperClass(job, AnalyserLogDataMapper.class);
+        MultithreadedMapper.setNumberOfThreads(job, threads);
+        if (conf.get(MRJobConfig.MAP_CPU_VCORES) == null) {
+            conf.setInt(MRJobConfig.MAP_CPU_VCORES, threads);
+        }
+        logger.info("多线程解析日志，每个map task的线程个数为:" + threads);
+    }
+
+    /**
+     * 重放死信时的输入路径，可以是某一次运行的死信目录，也可以是某一天的目录(递归读取其中每一次运行的死信文件)<br/>
+     * 死信文件的value和原始日志一样是一行日志，mapper的处理逻辑不变
+     * 
+     * @param job
+     * @param fs
+     * @param replayPath
+     * @param combine
+     * @return
+     * @throws IOException
+     */
+    private boolean setReplayInputPath(Job job, FileSystem fs, Path replayPath, boolean combine) throws IOException {
+        if (!fs.exists(replayPath)) {
+            throw new RuntimeException("死信目录不存在:" + replayPath);
+        }
+        FileInputFormat.addInputPath(job, replayPath);
+        job.getConfiguration().setBoolean(FileInputFormat.INPUT_DIR_RECURSIVE, true);
+        job.setInputFormatClass(combine ? CombineSequenceFileInputFormat.class : SequenceFileInputFormat.class);
+        if (combine) {
+            this.setCombineSplitSize(job);
+        }
+        logger.info("重放死信，输入目录为:" + replayPath);
+        return true;
+    }
+
+    /**
+     * 设置死信输出，每次运行使用一个新的目录，避免同一天多次运行(增量运行或者重放)的文件名冲突
+     * 
+     * @param job
+     * @return 死信目录，不输出死信的时候返回null
+     */
+    private Path setDeadLetterOutput(Job job) {
+        Configuration conf = job.getConfiguration();
+        // 默认值和mapper一致
+        if (!conf.getBoolean(GlobalConstants.ETL_DEAD_LETTER, false)) {
+            return null;
+        }
+        Path root = new Path(conf.get(GlobalConstants.ETL_DEAD_LETTER_PATH, GlobalConstants.DEFAULT_ETL_DEAD_LETTER_PATH).trim(), conf.get(GlobalConstants.RUNNING_DATE_PARAMES));
+        Path deadLetterPath = new Path(root, String.valueOf(this.runTime));
+        // key为过滤原因，value为原始日志；原因只有几种，块压缩之后基本只剩下日志本身的大小
+        MultipleOutputs.addNamedOutput(job, AnalyserLogDataMapper.DEAD_LETTER_OUTPUT, SequenceFileOutputFormat.class, Text.class, Text.class);
+        FileOutputFormat.setCompressOutput(job, true);
+        SequenceFileOutputFormat.setOutputCompressionType(job, CompressionType.BLOCK);
+        return deadLetterPath;
+    }
+
+    /**
+     * 设置导出输出，orc文件自带压缩(默认zlib)以及字符串列的字典编码，不使用job的输出压缩配置
+     * 
+     * @param job
+     * @return 导出根目录，不导出的时候返回null
+     * @throws IOException
+     */
+    private Path setExportOutput(Job job) throws IOException {
+        Configuration conf = job.getConfiguration();
+        if (!conf.getBoolean(GlobalConstants.ETL_EXPORT, false)) {
+            return null;
+        }
+        MultipleOutputs.addNamedOutput(job, AnalyserLogDataMapper.EXPORT_OUTPUT, OrcNewOutputFormat.class, NullWritable.class, Writable.class);
+        TableMapReduceUtil.addDependencyJars(conf, OrcNewOutputFormat.class);
+        Path exportPath = new Path(conf.get(GlobalConstants.ETL_EXPORT_PATH, GlobalConstants.DEFAULT_ETL_EXPORT_PATH).trim());
+        logger.info("导出orc文件，根目录为:" + exportPath);
+        return exportPath;
+    }
+
+    /**
+     * job执行成功后将死信以及导出文件从job的输出目录移动到各自的目录
+     * 
+     * @param conf
+     * @param jobOutputPath
+     * @param deadLetterPath
+     *            为null表示不输出死信
+     * @param exportPath
+     *            为null表示不导出
+     * @throws IOException
+     */
+    private void commitSideOutputs(Configuration conf, Path jobOutputPath, Path deadLetterPath, Path exportPath) throws IOException {
+        if (deadLetterPath != null) {
+            this.commitDeadLetters(conf, jobOutputPath, deadLetterPath);
+        }
+        if (exportPath != null) {
+            this.commitExports(conf, jobOutputPath, exportPath);
+        }
+    }
+
+    /**
+     * 将死信文件移动到死信目录；没有任何死信的时候不创建死信目录
+     * 
+     * @param conf
+     * @param jobOutputPath
+     * @param deadLetterPath
+     * @throws IOException
+     */
+    private void commitDeadLetters(Configuration conf, Path jobOutputPath, Path deadLetterPath) throws IOException {
+        FileSystem fs = deadLetterPath.getFileSystem(conf);
+        Path pattern = new Path(jobOutputPath, AnalyserLogDataMapper.DEAD_LETTER_OUTPUT + "-*");
+        FileStatus[] files = fs.globStatus(pattern);
+        if (files == null || files.length == 0) {
+            logger.info("没有被过滤的记录，不保留死信目录");
+            return;
+        }
+        fs.mkdirs(deadLetterPath);
+        for (FileStatus status : files) {
+            Path target = new Path(deadLetterPath, status.getPath().getName());
+            if (!fs.rename(status.getPath(), target)) {
+                throw new IOException("移动死信文件失败:" + status.getPath());
+            }
+        }
+        logger.info("死信文件个数为:" + files.length + "，目录为:" + deadLetterPath);
+    }
+
+    /**
+     * 将导出文件按照分区移动到导出根目录<br/>
+     * 文件名以输入split的摘要开头，移动之前先删除分区中同一个split之前导出的文件，同样的输入重新导入的时候替换而不是追加<br/>
+     * 移动完成后删除job输出目录中的导出目录
+     * 
+     * @param conf
+     * @param jobOutputPath
+     * @param exportPath
+     * @throws IOException
+     */
+    private void commitExports(Configuration conf, Path jobOutputPath, Path exportPath) throws IOException {
+        Path source = new Path(jobOutputPath, AnalyserLogDataMapper.EXPORT_OUTPUT);
+        FileSystem fs = source.getFileSystem(conf);
+        // export/day=yyyy-MM-dd/en=事件别名/文件
+        FileStatus[] files = fs.globStatus(new Path(source, "*/*/*"));
+        int count = 0, replaced = 0;
+        if (files != null) {
+            Set<Path> cleared = new HashSet<Path>(); // 已经删除过旧文件的分区/split前缀
+            for (FileStatus status : files) {
+                Path file = status.getPath();
+                Path partition = new Path(new Path(exportPath, file.getParent().getParent().getName()), file.getParent().getName());
+                fs.mkdirs(partition);
+                Path previous = new Path(partition, OrcEventExporter.getSplitPrefix(file.getName()) + "-*");
+                if (cleared.add(previous)) {
+                    FileStatus[] olds = fs.globStatus(previous);
+                    for (int i = 0; olds != null && i < olds.length; i++) {
+                        fs.delete(olds[i].getPath(), false);
+                        replaced++;
+                    }
+                }
+                if (!fs.rename(file, new Path(partition, file.getName()))) {
+                    throw new IOException("移动导出文件失败:" + file);
+                }
+                count++;
+            }
+        }
+        if (fs.exists(source)) {
+            fs.delete(source, true);
+        }
+        logger.info("导出文件个数为:" + count + "，替换的旧文件个数为:" + replaced + "，根目录为:" + exportPath);
+    }
+
+    /**
+     * 增量运行时逐个添加检查点中没有记录的文件，正在写入(.tmp结尾)的文件等flume关闭后再导入<br/>
+     * 新文件同时记录到检查点中，水位线推进到新文件的最大修改时间，job成功后才会保存
+     * 
+     * @param job
+     * @param fs
+     * @param partitions
+     * @param sequence
+     * @return 添加的文件个数
+     * @throws IOException
+     */
+    private int addIncrementalInputPaths(Job job, FileSystem fs, List<Path> partitions, boolean sequence) throws IOException {
+        List<String> prefixes = new ArrayList<String>();
+        int count = 0;
+        for (Path partition : partitions) {
+            prefixes.add(partition.toUri().getPath() + Path.SEPARATOR);
+            if (!fs.exists(partition)) {
+                continue;
+            }
+            for (FileStatus status : fs.listStatus(partition)) {
+                String name = status.getPath().getName();
+                if (status.isDirectory() || name.endsWith(".tmp") || name.startsWith(".") || name.startsWith("_") || sequence != name.endsWith(RawLogSequenceFileConverter.FILE_SUFFIX)) {
+                    continue;
+                }
+                String entry = status.getPath().toUri().getPath();
+                if (this.checkpoint.contains(entry)) {
+                    continue;
+                }
+                FileInputFormat.addInputPath(job, status.getPath());
+                this.checkpoint.add(entry);
+                this.checkpoint.advance(status.getModificationTime());
+                count++;
+            }
+        }
+        // 超出处理范围的分区不会再被枚举，对应的条目可以删除
+        this.checkpoint.retain(prefixes);
+        return count;
+    }
+
+    /**
+     * 增量运行时的处理范围: 从检查点水位线的前一天开始，到当前小时结束，
+     * 多往前枚举一天是为了导入跨过零点之后才被flume关闭的文件
+     * 
+     * @param conf
+     * @throws IOException
+     */
+    private void initIncrementalRange(Configuration conf) throws IOException {
+        this.checkpoint = Checkpoint.load(conf, Checkpoint.ETL);
+        long now = System.currentTimeMillis();
+        long watermark = this.checkpoint.getWatermark();
+        long startTime = TimeUtil.parseString2Long(TimeUtil.parseLong2String(watermark < 0 ? now : watermark)) - GlobalConstants.DAY_OF_MILLISECONDS;
+        conf.setLong(GlobalConstants.ETL_RUNNING_FROM, startTime);
+        conf.setLong(GlobalConstants.ETL_RUNNING_TO, now + HOUR_OF_MILLISECONDS);
+        conf.set(GlobalConstants.RUNNING_DATE_PARAMES, TimeUtil.parseLong2String(now));
+        logger.info("增量运行，检查点水位线为:" + watermark);
+    }
+
+    /**
+     * 设置合并小文件时split的大小<br/>
+     * 每个节点上剩余不足最大值一半的数据块交给机架级别合并，机架上剩余的再跨机架合并，尽量保证数据本地性
+     * 
+     * @param job
+     */
+    private void setCombineSplitSize(Job job) {
+        Configuration conf = job.getConfiguration();
+        long maxSplitSize = conf.getLong(GlobalConstants.ETL_COMBINE_MAX_SPLIT_SIZE, GlobalConstants.DEFAULT_ETL_COMBINE_MAX_SPLIT_SIZE);
+        if (maxSplitSize <= 0) {
+            throw new IllegalArgumentException("合并split的最大字节数必须大于0:" + maxSplitSize);
+        }
+        FileInputFormat.setMaxInputSplitSize(job, maxSplitSize);
+        if (conf.get(CombineFileInputFormat.SPLIT_MINSIZE_PERNODE) == null) {
+            conf.setLong(CombineFileInputFormat.SPLIT_MINSIZE_PERNODE, maxSplitSize / 2);
+        }
+        if (conf.get(CombineFileInputFormat.SPLIT_MINSIZE_PERRACK) == null) {
+            conf.setLong(CombineFileInputFormat.SPLIT_MINSIZE_PERRACK, maxSplitSize / 2);
+        }
+        logger.info("合并小文件输入，split最大字节数为:" + maxSplitSize);
+    }
 }
@@ -0,0 +1,84 @@
+package com.jason.etl.mr.ald;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.HColumnDescriptor;
+import org.apache.hadoop.hbase.HTableDescriptor;
+import org.apache.hadoop.hbase.TableName;
+import org.apache.hadoop.hbase.client.HBaseAdmin;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+import com.jason.common.EventLogConstants;
+import com.jason.common.GlobalConstants;
+import com.jason.util.RowKeyUtil;
+import com.jason.util.rowkey.IRowKeyCodec;
+
+/**
+ * 创建event_logs表，按照rowkey的盐值分桶进行预分区，每个分桶一个region<br/>
+ * 分桶个数和rowkey格式默认读取transformer-env.xml中的配置，也可以通过-salt和-format参数指定(需要同步修改配置文件)
+ * 
+ * @author jason
+ *
+ */
+public class EventLogsTableCreator implements Tool {
+    private static final Logger logger = Logger.getLogger(EventLogsTableCreator.class);
+    private Configuration conf = null;
+
+    public static void main(String[] args) {
+        try {
+            int exitCode = ToolRunner.run(new Configuration(), new EventLogsTableCreator(), args);
+            System.exit(exitCode);
+        } catch (Exception e) {
+            logger.error("创建event_logs表异常", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        conf.addResource("transformer-env.xml");
+        this.conf = HBaseConfiguration.create(conf);
+    }
+
+    @Override
+    public Configuration getConf() {
+        return this.conf;
+    }
+
+    @Override
+    public int run(String[] args) throws Exception {
+        Configuration conf = this.getConf();
+        for (int i = 0; i < args.length; i++) {
+            if ("-salt".equals(args[i]) && i + 1 < args.length) {
+                conf.set(GlobalConstants.EVENT_LOGS_SALT_BUCKETS, args[++i]);
+            } else if ("-format".equals(args[i]) && i + 1 < args.length) {
+                conf.set(GlobalConstants.EVENT_LOGS_ROWKEY_FORMAT, args[++i]);
+            }
+        }
+        int saltBuckets = RowKeyUtil.getSaltBuckets(conf);
+        IRowKeyCodec codec = RowKeyUtil.getCodec(conf);
+
+        HBaseAdmin admin = new HBaseAdmin(conf);
+        try {
+            TableName tableName = TableName.valueOf(EventLogConstants.HBASE_NAME_EVENT_LOGS);
+            if (admin.tableExists(tableName)) {
+                logger.warn("表已经存在，不进行创建:" + tableName);
+                return -1;
+            }
+            HTableDescriptor desc = new HTableDescriptor(tableName);
+            desc.addFamily(new HColumnDescriptor(EventLogConstants.EVENT_LOGS_FAMILY_NAME));
+            byte[][] splitKeys = codec.getSplitKeys();
+            if (splitKeys == null) {
+                admin.createTable(desc);
+            } else {
+                admin.createTable(desc, splitKeys);
+            }
+            logger.info("创建表" + tableName + "成功，盐值分桶个数为:" + saltBuckets);
+            return 0;
+        } finally {
+            admin.close();
+        }
+    }
+}
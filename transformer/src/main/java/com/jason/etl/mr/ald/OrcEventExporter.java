@@ -0,0 +1,271 @@
+package com.jason.etl.mr.ald;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hive.ql.io.orc.OrcSerde;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.MD5Hash;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.lib.input.CombineFileSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import com.jason.common.EventLogConstants;
+import com.jason.common.EventLogConstants.EventEnum;
+import com.jason.etl.util.LogRecord;
+import com.jason.util.TimeUtil;
+
+/**
+ * 将解析后的日志转换为orc格式的一行，和写入hbase的数据同时导出，供hive直接查询<br/>
+ * 导出目录按照天和事件分区: day=yyyy-MM-dd/en=事件别名，列和event_logs表的列名一致，kv_开头的事件参数放在kv这个map列中；
+ * 平台、浏览器、地域等取值较少的字符串列由orc自动使用字典编码<br/>
+ * 每一列使用可重用的Text/LongWritable对象，直接从LogRecord的buffer中拷贝字节，不创建字符串<br/>
+ * 文件名以输入split的摘要开头({@link #getSplitName(InputSplit)})，同一个split重新导入(重新运行或者重放死信)的时候文件名前缀相同，
+ * 提交的时候替换掉之前导出的文件，不会产生重复的行
+ *
+ * @author jason
+ *
+ */
+public class OrcEventExporter {
+    /**
+     * 天分区的名称
+     */
+    public static final String PARTITION_DAY = "day";
+    /**
+     * 事件分区的名称
+     */
+    public static final String PARTITION_EVENT = "en";
+    /**
+     * 事件参数的map列名称
+     */
+    public static final String COLUMN_KV = "kv";
+    private static final long HOUR_OF_MILLISECONDS = 3600000L;
+
+    // 导出的列，顺序不能修改，hive按照位置读取；服务器时间直接使用解析结果，user agent在写入hbase之前已经去掉
+    private static final String[] COLUMNS = new String[] { EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, EventLogConstants.LOG_COLUMN_NAME_IP, EventLogConstants.LOG_COLUMN_NAME_VERSION, EventLogConstants.LOG_COLUMN_NAME_UUID, EventLogConstants.LOG_COLUMN_NAME_MEMBER_ID, EventLogConstants.LOG_COLUMN_NAME_SESSION_ID,
+            EventLogConstants.LOG_COLUMN_NAME_CLIENT_TIME, EventLogConstants.LOG_COLUMN_NAME_LANGUAGE, EventLogConstants.LOG_COLUMN_NAME_RESOLUTION, EventLogConstants.LOG_COLUMN_NAME_PLATFORM, EventLogConstants.LOG_COLUMN_NAME_CURRENT_URL, EventLogConstants.LOG_COLUMN_NAME_REFERRER_URL, EventLogConstants.LOG_COLUMN_NAME_TITLE,
+            EventLogConstants.LOG_COLUMN_NAME_ORDER_ID, EventLogConstants.LOG_COLUMN_NAME_ORDER_NAME, EventLogConstants.LOG_COLUMN_NAME_ORDER_CURRENCY_AMOUNT, EventLogConstants.LOG_COLUMN_NAME_ORDER_CURRENCY_TYPE, EventLogConstants.LOG_COLUMN_NAME_ORDER_PAYMENT_TYPE, EventLogConstants.LOG_COLUMN_NAME_EVENT_CATEGORY,
+            EventLogConstants.LOG_COLUMN_NAME_EVENT_ACTION, EventLogConstants.LOG_COLUMN_NAME_EVENT_DURATION, EventLogConstants.LOG_COLUMN_NAME_OS_NAME, EventLogConstants.LOG_COLUMN_NAME_OS_VERSION, EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION,
+            EventLogConstants.LOG_COLUMN_NAME_COUNTRY, EventLogConstants.LOG_COLUMN_NAME_PROVINCE, EventLogConstants.LOG_COLUMN_NAME_CITY };
+    // bigint类型的列，其他都是string
+    private static final List<String> LONG_COLUMNS = Arrays.asList(EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, EventLogConstants.LOG_COLUMN_NAME_CLIENT_TIME, EventLogConstants.LOG_COLUMN_NAME_ORDER_CURRENCY_AMOUNT, EventLogConstants.LOG_COLUMN_NAME_EVENT_DURATION);
+    private static final byte[] KV_PREFIX = EventLogConstants.LOG_COLUMN_NAME_EVENT_KV_START.getBytes();
+
+    private final ObjectInspector inspector;
+    private final OrcSerde serde = new OrcSerde();
+    private final byte[][] columnBytes = new byte[COLUMNS.length][];
+    private final Writable[] values = new Writable[COLUMNS.length]; // 每一列可重用的值对象
+    private final List<Object> row = new ArrayList<Object>(COLUMNS.length + 1);
+    private final Map<Text, Text> kv = new HashMap<Text, Text>();
+    private final String prefix, fileName;
+    // 当前缓存的分区路径对应的天
+    private long dayStart = Long.MAX_VALUE, dayEnd = Long.MIN_VALUE;
+    private String day;
+    private final String[] paths = new String[EventEnum.values().length];
+
+    /**
+     * @param prefix
+     *            分区目录的上级目录，相对于job的输出目录
+     * @param fileName
+     *            分区中的文件名前缀，多线程运行时每个线程必须不同
+     */
+    public OrcEventExporter(String prefix, String fileName) {
+        this.prefix = prefix;
+        this.fileName = fileName;
+        List<String> names = new ArrayList<String>(COLUMNS.length + 1);
+        List<ObjectInspector> inspectors = new ArrayList<ObjectInspector>(COLUMNS.length + 1);
+        for (int i = 0; i < COLUMNS.length; i++) {
+            names.add(COLUMNS[i]);
+            this.columnBytes[i] = COLUMNS[i].getBytes();
+            if (LONG_COLUMNS.contains(COLUMNS[i])) {
+                inspectors.add(PrimitiveObjectInspectorFactory.writableLongObjectInspector);
+                this.values[i] = new LongWritable();
+            } else {
+                inspectors.add(PrimitiveObjectInspectorFactory.writableStringObjectInspector);
+                this.values[i] = new Text();
+            }
+            this.row.add(null);
+        }
+        names.add(COLUMN_KV);
+        inspectors.add(ObjectInspectorFactory.getStandardMapObjectInspector(PrimitiveObjectInspectorFactory.writableStringObjectInspector, PrimitiveObjectInspectorFactory.writableStringObjectInspector));
+        this.row.add(null);
+        this.inspector = ObjectInspectorFactory.getStandardStructObjectInspector(names, inspectors);
+    }
+
+    /**
+     * 根据输入split的文件、开始位置和长度生成导出文件名的前缀，同样的输入得到同样的前缀<br/>
+     * 合并小文件的split包含多个文件，只有文件集合和合并参数都相同的时候前缀才相同
+     *
+     * @param split
+     * @return 不包含-的字符串
+     */
+    public static String getSplitName(InputSplit split) {
+        StringBuilder sb = new StringBuilder();
+        if (split instanceof FileSplit) {
+            FileSplit fileSplit = (FileSplit) split;
+            sb.append(fileSplit.getPath()).append(':').append(fileSplit.getStart()).append('+').append(fileSplit.getLength());
+        } else if (split instanceof CombineFileSplit) {
+            CombineFileSplit combineSplit = (CombineFileSplit) split;
+            for (int i = 0; i < combineSplit.getNumPaths(); i++) {
+                sb.append(combineSplit.getPath(i)).append(':').append(combineSplit.getOffset(i)).append('+').append(combineSplit.getLength(i)).append(';');
+            }
+        } else {
+            sb.append(split);
+        }
+        return "s" + MD5Hash.digest(sb.toString()).toString().substring(0, 16);
+    }
+
+    /**
+     * 获取导出文件名中split摘要的前缀
+     *
+     * @param fileName
+     * @return
+     */
+    public static String getSplitPrefix(String fileName) {
+        int index = fileName.indexOf('-');
+        return index < 0 ? fileName : fileName.substring(0, index);
+    }
+
+    /**
+     * 将record转换为orc的一行，返回的对象在下一次调用的时候会被重用
+     *
+     * @param record
+     * @param serverTime
+     * @return
+     */
+    public Writable toRow(LogRecord record, long serverTime) {
+        for (int i = 0; i < this.row.size(); i++) {
+            this.row.set(i, null);
+        }
+        this.kv.clear();
+        ((LongWritable) this.values[0]).set(serverTime);
+        this.row.set(0, this.values[0]);
+
+        byte[] buffer = record.getBuffer();
+        for (int i = 0; i < record.size(); i++) {
+            int keyOffset = record.getKeyOffset(i), keyLength = record.getKeyLength(i);
+            int valueOffset = record.getValueOffset(i), valueLength = record.getValueLength(i);
+            if (LogRecord.isBlank(buffer, valueOffset, valueLength)) {
+                continue;
+            }
+            if (startsWith(buffer, keyOffset, keyLength, KV_PREFIX)) {
+                Text key = new Text();
+                key.set(buffer, keyOffset, keyLength);
+                Text value = new Text();
+                value.set(buffer, valueOffset, valueLength);
+                this.kv.put(key, value);
+                continue;
+            }
+            int column = this.indexOfColumn(buffer, keyOffset, keyLength);
+            if (column <= 0) {
+                // 不导出的列，或者服务器时间
+                continue;
+            }
+            Writable value = this.values[column];
+            if (value instanceof LongWritable) {
+                if (!parseLong(buffer, valueOffset, valueLength, (LongWritable) value)) {
+                    continue;
+                }
+            } else {
+                ((Text) value).set(buffer, valueOffset, valueLength);
+            }
+            this.row.set(column, value);
+        }
+        if (!this.kv.isEmpty()) {
+            this.row.set(COLUMNS.length, this.kv);
+        }
+        return this.serde.serialize(this.row, this.inspector);
+    }
+
+    /**
+     * 获取MultipleOutputs写入时使用的路径: 前缀/day=yyyy-MM-dd/en=事件别名/文件名<br/>
+     * 同一天的路径会被缓存，连续处理同一天的数据的时候不创建字符串
+     *
+     * @param event
+     * @param serverTime
+     * @return
+     */
+    public String getBaseOutputPath(EventEnum event, long serverTime) {
+        if (serverTime < this.dayStart || serverTime >= this.dayEnd) {
+            this.day = TimeUtil.parseLong2String(serverTime);
+            this.dayStart = TimeUtil.parseString2Long(this.day);
+            // 加26小时之后再取零点作为结束时间，兼容夏令时切换时23或者25小时的天
+            this.dayEnd = TimeUtil.parseString2Long(TimeUtil.parseLong2String(this.dayStart + 26 * HOUR_OF_MILLISECONDS));
+            Arrays.fill(this.paths, null);
+        }
+        String path = this.paths[event.ordinal()];
+        if (path == null) {
+            path = this.prefix + "/" + PARTITION_DAY + "=" + this.day + "/" + PARTITION_EVENT + "=" + event.alias + "/" + this.fileName;
+            this.paths[event.ordinal()] = path;
+        }
+        return path;
+    }
+
+    /**
+     * 查找列名对应的列下标
+     *
+     * @param buffer
+     * @param offset
+     * @param length
+     * @return 不导出的列返回-1
+     */
+    private int indexOfColumn(byte[] buffer, int offset, int length) {
+        for (int i = 0; i < this.columnBytes.length; i++) {
+            byte[] name = this.columnBytes[i];
+            if (name.length == length && startsWith(buffer, offset, length, name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] buffer, int offset, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 解析整数，格式不正确(包括小数)的时候该列导出为null
+     *
+     * @param buffer
+     * @param offset
+     * @param length
+     * @param result
+     * @return
+     */
+    private static boolean parseLong(byte[] buffer, int offset, int length, LongWritable result) {
+        int i = offset, end = offset + length;
+        boolean negative = i < end && buffer[i] == '-';
+        if (negative) {
+            i++;
+        }
+        if (i == end || end - i > 18) {
+            return false;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            value = value * 10 + digit;
+        }
+        result.set(negative ? -value : value);
+        return true;
+    }
+}
@@ -0,0 +1,174 @@
+package com.jason.etl.mr.ald;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.util.LineReader;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+import com.jason.common.GlobalConstants;
+import com.jason.etl.util.LogPathUtil;
+import com.jason.util.TimeUtil;
+
+/**
+ * 将指定日期所有分区中的原始日志(文本或者gzip等压缩文本)转换为块压缩的SequenceFile<br/>
+ * key为行号，value为一行日志；文件中每个压缩块之前都有sync标记，作为块的索引，
+ * mapreduce读取的时候可以从任意位置定位到下一个块，所以压缩后的文件仍然可以切分成多个split<br/>
+ * 每个原始文件生成一个同名的*.seq文件，指定-delete的时候转换成功后删除原始文件；正在写入的文件(.tmp结尾)以及隐藏文件不处理
+ *
+ * @author jason
+ *
+ */
+public class RawLogSequenceFileConverter implements Tool {
+    private static final Logger logger = Logger.getLogger(RawLogSequenceFileConverter.class);
+    /**
+     * 转换后的文件后缀
+     */
+    public static final String FILE_SUFFIX = ".seq";
+    private Configuration conf = null;
+
+    public static void main(String[] args) {
+        try {
+            int exitCode = ToolRunner.run(new Configuration(), new RawLogSequenceFileConverter(), args);
+            System.exit(exitCode);
+        } catch (Exception e) {
+            logger.error("转换原始日志异常", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        // 原始日志的目录布局和etl共用
+        conf.addResource("transformer-env.xml");
+        this.conf = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return this.conf;
+    }
+
+    @Override
+    public int run(String[] args) throws Exception {
+        Configuration conf = this.getConf();
+        String date = null;
+        String codecClass = DefaultCodec.class.getName();
+        boolean delete = false;
+        for (int i = 0; i < args.length; i++) {
+            if ("-d".equals(args[i]) && i + 1 < args.length) {
+                date = args[++i];
+            } else if ("-codec".equals(args[i]) && i + 1 < args.length) {
+                // 压缩算法，例如org.apache.hadoop.io.compress.SnappyCodec(需要本地库)
+                codecClass = args[++i];
+            } else if ("-delete".equals(args[i])) {
+                delete = true;
+            }
+        }
+        // 要求date格式为: yyyy-MM-dd
+        if (StringUtils.isBlank(date) || !TimeUtil.isValidateRunningDate(date)) {
+            // date是一个无效时间数据
+            date = TimeUtil.getYesterday(); // 默认时间是昨天
+        }
+        conf.set(GlobalConstants.RUNNING_DATE_PARAMES, date);
+        CompressionCodec codec = (CompressionCodec) ReflectionUtils.newInstance(Class.forName(codecClass), conf);
+
+        long startTime = TimeUtil.parseString2Long(date);
+        CompressionCodecFactory factory = new CompressionCodecFactory(conf);
+        int files = 0;
+        for (Path dir : LogPathUtil.getPartitions(conf, startTime, startTime + GlobalConstants.DAY_OF_MILLISECONDS)) {
+            FileSystem fs = dir.getFileSystem(conf);
+            if (!fs.exists(dir)) {
+                logger.warn("分区目录不存在，跳过:" + dir);
+                continue;
+            }
+            for (FileStatus status : fs.listStatus(dir)) {
+                String name = status.getPath().getName();
+                if (status.isDirectory() || name.endsWith(FILE_SUFFIX) || name.endsWith(".tmp") || name.startsWith(".") || name.startsWith("_")) {
+                    continue;
+                }
+                Path target = new Path(dir, name + FILE_SUFFIX);
+                long lines = this.convert(fs, status.getPath(), target, factory, codec);
+                logger.info("转换文件" + status.getPath() + "完成，行数为:" + lines);
+                if (delete) {
+                    fs.delete(status.getPath(), false);
+                }
+                files++;
+            }
+        }
+        logger.info("转换完成，文件个数为:" + files);
+        return 0;
+    }
+
+    /**
+     * 转换一个文件，先写入临时文件，完成后再重命名，避免etl读取到不完整的文件
+     *
+     * @param fs
+     * @param source
+     * @param target
+     * @param factory
+     *            根据文件后缀识别原始文件的压缩格式
+     * @param codec
+     * @return 行数
+     * @throws IOException
+     */
+    private long convert(FileSystem fs, Path source, Path target, CompressionCodecFactory factory, CompressionCodec codec) throws IOException {
+        Path tmp = new Path(target.getParent(), "_" + target.getName());
+        CompressionCodec sourceCodec = factory.getCodec(source);
+        InputStream in = null;
+        SequenceFile.Writer writer = null;
+        long lines = 0;
+        try {
+            in = sourceCodec == null ? fs.open(source) : sourceCodec.createInputStream(fs.open(source));
+            // 和TextInputFormat使用相同的LineReader，保证value的字节和直接读取文本完全一致
+            LineReader reader = new LineReader(in, this.conf);
+            writer = SequenceFile.createWriter(this.conf, SequenceFile.Writer.file(tmp), SequenceFile.Writer.keyClass(LongWritable.class), SequenceFile.Writer.valueClass(Text.class), SequenceFile.Writer.compression(CompressionType.BLOCK, codec));
+            LongWritable key = new LongWritable();
+            Text value = new Text();
+            while (reader.readLine(value) > 0) {
+                key.set(lines++);
+                writer.append(key, value);
+            }
+        } finally {
+            IOUtils.closeStream(in);
+            IOUtils.closeStream(writer);
+        }
+        if (fs.exists(target)) {
+            fs.delete(target, false);
+        }
+        if (!fs.rename(tmp, target)) {
+            throw new IOException("重命名文件失败:" + tmp);
+        }
+        return lines;
+    }
+
+    /**
+     * 文本格式输入的文件过滤器，没有指定-delete的时候转换后的文件和原始文件在同一个目录中，按照文本读取需要跳过
+     *
+     * @author jason
+     *
+     */
+    public static class RawLogPathFilter implements PathFilter {
+        @Override
+        public boolean accept(Path path) {
+            return !path.getName().endsWith(FILE_SUFFIX);
+        }
+    }
+}
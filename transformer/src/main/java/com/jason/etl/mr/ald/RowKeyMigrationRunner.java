@@ -0,0 +1,222 @@
+package com.jason.etl.mr.ald;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.CellUtil;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Delete;
+import org.apache.hadoop.hbase.client.Put;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.hbase.mapreduce.TableMapReduceUtil;
+import org.apache.hadoop.hbase.mapreduce.TableMapper;
+import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+import org.apache.log4j.Logger;
+
+import com.jason.common.EventLogConstants;
+import com.jason.common.GlobalConstants;
+import com.jason.common.RecordCounter;
+import com.jason.util.CompactEventRecord;
+import com.jason.util.RowKeyUtil;
+import com.jason.util.TimeUtil;
+import com.jason.util.rowkey.IRowKeyCodec;
+
+/**
+ * event_logs表rowkey格式迁移的runner类<br/>
+ * 扫描指定日期内旧格式(-from，默认string)的数据，按照新格式(-to，默认为配置的写入格式)重新写入，指定-delete的时候删除旧的数据<br/>
+ * 迁移期间transformer通过event.logs.rowkey.read.formats同时读取新旧两种格式，迁移完成后再去掉旧格式<br/>
+ * 字符串格式只保存了crc取模之后的值，所以新的rowkey不从旧rowkey中解码hash，而是和etl一样根据uuid、memberid和事件名称重新计算
+ *
+ * @author jason
+ *
+ */
+public class RowKeyMigrationRunner implements Tool {
+    private static final Logger logger = Logger.getLogger(RowKeyMigrationRunner.class);
+    public static final String MIGRATION_FROM_FORMAT = "event.logs.rowkey.migration.from";
+    public static final String MIGRATION_TO_FORMAT = "event.logs.rowkey.migration.to";
+    private static final String MIGRATION_DELETE = "event.logs.rowkey.migration.delete";
+    private Configuration conf = null;
+
+    public static void main(String[] args) {
+        try {
+            ToolRunner.run(new Configuration(), new RowKeyMigrationRunner(), args);
+        } catch (Exception e) {
+            logger.error("执行rowkey迁移job异常", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        conf.addResource("transformer-env.xml");
+        this.conf = HBaseConfiguration.create(conf);
+    }
+
+    @Override
+    public Configuration getConf() {
+        return this.conf;
+    }
+
+    @Override
+    public int run(String[] args) throws Exception {
+        Configuration conf = this.getConf();
+        this.processArgs(conf, args);
+
+        Job job = Job.getInstance(conf, "migrate_event_logs_rowkey");
+        job.setJarByClass(RowKeyMigrationRunner.class);
+
+        long startDate = TimeUtil.parseString2Long(conf.get(GlobalConstants.RUNNING_DATE_PARAMES));
+        long endDate = startDate + GlobalConstants.DAY_OF_MILLISECONDS;
+        List<IRowKeyCodec> codecs = new ArrayList<IRowKeyCodec>();
+        codecs.add(RowKeyUtil.createCodec(conf.get(MIGRATION_FROM_FORMAT), RowKeyUtil.getSaltBuckets(conf)));
+        List<Scan> scans = RowKeyUtil.createScans(codecs, startDate, endDate, null);
+        for (Scan scan : scans) {
+            scan.setCaching(500);
+            scan.setCacheBlocks(false);
+        }
+
+        TableMapReduceUtil.initTableMapperJob(scans, RowKeyMigrationMapper.class, ImmutableBytesWritable.class, Put.class, job);
+        TableMapReduceUtil.initTableReducerJob(EventLogConstants.HBASE_NAME_EVENT_LOGS, null, job);
+        job.setNumReduceTasks(0);
+        return job.waitForCompletion(true) ? 0 : -1;
+    }
+
+    /**
+     * 处理参数
+     *
+     * @param conf
+     * @param args
+     */
+    private void processArgs(Configuration conf, String[] args) {
+        String date = null;
+        String from = RowKeyUtil.FORMAT_STRING;
+        String to = conf.get(GlobalConstants.EVENT_LOGS_ROWKEY_FORMAT, RowKeyUtil.FORMAT_STRING);
+        for (int i = 0; i < args.length; i++) {
+            if ("-d".equals(args[i]) && i + 1 < args.length) {
+                date = args[++i];
+            } else if ("-from".equals(args[i]) && i + 1 < args.length) {
+                from = args[++i];
+            } else if ("-to".equals(args[i]) && i + 1 < args.length) {
+                to = args[++i];
+            } else if ("-delete".equals(args[i])) {
+                conf.setBoolean(MIGRATION_DELETE, true);
+            }
+        }
+
+        // 要求date格式为: yyyy-MM-dd
+        if (StringUtils.isBlank(date) || !TimeUtil.isValidateRunningDate(date)) {
+            // date是一个无效时间数据
+            date = TimeUtil.getYesterday(); // 默认时间是昨天
+        }
+        if (from.trim().equalsIgnoreCase(to.trim())) {
+            throw new IllegalArgumentException("迁移前后的rowkey格式相同:" + from);
+        }
+        conf.set(GlobalConstants.RUNNING_DATE_PARAMES, date);
+        conf.set(MIGRATION_FROM_FORMAT, from.trim());
+        conf.set(MIGRATION_TO_FORMAT, to.trim());
+    }
+
+    /**
+     * 将一行数据的所有cell按照新的rowkey重新写入，保留原有的时间戳；没有事件名称的行没法计算rowkey，跳过并且不删除
+     *
+     * @author jason
+     *
+     */
+    public static class RowKeyMigrationMapper extends TableMapper<ImmutableBytesWritable, Object> {
+        private IRowKeyCodec fromCodec;
+        private IRowKeyCodec toCodec;
+        private boolean delete;
+        private ImmutableBytesWritable outputKey = new ImmutableBytesWritable();
+        private CRC32 crc32 = new CRC32();
+        private CompactEventRecord compactRecord = new CompactEventRecord(); // 可重用的紧凑编码解码器
+        private byte[] family = Bytes.toBytes(EventLogConstants.EVENT_LOGS_FAMILY_NAME);
+        private byte[] compactColumn = Bytes.toBytes(CompactEventRecord.COLUMN_NAME);
+
+        @Override
+        protected void setup(Context context) throws IOException, InterruptedException {
+            this.configure(context.getConfiguration());
+        }
+
+        /**
+         * 根据配置创建迁移前后的rowkey编码器
+         *
+         * @param conf
+         */
+        public void configure(Configuration conf) {
+            int saltBuckets = RowKeyUtil.getSaltBuckets(conf);
+            this.fromCodec = RowKeyUtil.createCodec(conf.get(MIGRATION_FROM_FORMAT), saltBuckets);
+            this.toCodec = RowKeyUtil.createCodec(conf.get(MIGRATION_TO_FORMAT), saltBuckets);
+            this.delete = conf.getBoolean(MIGRATION_DELETE, false);
+        }
+
+        @Override
+        protected void map(ImmutableBytesWritable key, Result value, Context context) throws IOException, InterruptedException {
+            byte[] oldRow = value.getRow();
+            if (!this.fromCodec.accept(oldRow)) {
+                return;
+            }
+            byte[] newRow = this.generateRowKey(value);
+            if (newRow == null) {
+                context.getCounter(RecordCounter.MISSING_FIELDS).increment(1);
+                return;
+            }
+            Put put = new Put(newRow);
+            for (Cell cell : value.rawCells()) {
+                put.add(new KeyValue(newRow, CellUtil.cloneFamily(cell), CellUtil.cloneQualifier(cell), cell.getTimestamp(), CellUtil.cloneValue(cell)));
+            }
+            this.outputKey.set(newRow);
+            context.write(this.outputKey, put);
+            if (this.delete) {
+                this.outputKey.set(oldRow);
+                context.write(this.outputKey, new Delete(oldRow));
+            }
+        }
+
+        /**
+         * 从普通列或者紧凑编码的cell中获取uuid、memberid和事件名称，按照新格式计算rowkey，和etl直接写入的rowkey相同
+         *
+         * @param value
+         *            旧格式的一行数据
+         * @return 没有事件名称的时候返回null
+         */
+        public byte[] generateRowKey(Result value) {
+            Cell compactCell = value.getColumnLatestCell(this.family, this.compactColumn);
+            if (compactCell != null) {
+                this.compactRecord.reset(compactCell.getValueArray(), compactCell.getValueOffset(), compactCell.getValueLength());
+            }
+            String eventAliasName = this.getValue(value, compactCell != null, EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME);
+            if (eventAliasName == null) {
+                return null;
+            }
+            String uuid = this.getValue(value, compactCell != null, EventLogConstants.LOG_COLUMN_NAME_UUID);
+            String memberId = this.getValue(value, compactCell != null, EventLogConstants.LOG_COLUMN_NAME_MEMBER_ID);
+            return RowKeyUtil.generateRowKey(this.toCodec, this.crc32, uuid, memberId, eventAliasName, this.fromCodec.decodeServerTime(value.getRow()));
+        }
+
+        /**
+         * 获取列的值，紧凑编码的行从打包的cell中获取
+         *
+         * @param value
+         * @param compact
+         * @param column
+         * @return
+         */
+        private String getValue(Result value, boolean compact, String column) {
+            if (compact) {
+                return this.compactRecord.get(column);
+            }
+            return Bytes.toString(value.getValue(this.family, Bytes.toBytes(column)));
+        }
+    }
+}
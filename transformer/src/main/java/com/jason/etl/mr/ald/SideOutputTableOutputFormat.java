@@ -0,0 +1,26 @@
+package com.jason.etl.mr.ald;
+
+import java.io.IOException;
+
+import org.apache.hadoop.mapreduce.OutputCommitter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.hbase.mapreduce.TableOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputCommitter;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+/**
+ * 直接put写入hbase时使用的outputformat<br/>
+ * TableOutputFormat自带的committer不做任何事情，所以MultipleOutputs写出的死信以及导出文件不会被提交；
+ * 这里换成以临时提交目录(FileOutputFormat的输出目录)为根目录的FileOutputCommitter，hbase的写入方式不变
+ *
+ * @author jason
+ *
+ * @param <KEY>
+ */
+public class SideOutputTableOutputFormat<KEY> extends TableOutputFormat<KEY> {
+
+    @Override
+    public OutputCommitter getOutputCommitter(TaskAttemptContext context) throws IOException, InterruptedException {
+        return new FileOutputCommitter(FileOutputFormat.getOutputPath(context), context);
+    }
+}
@@ -1,5 +1,8 @@
 package com.jason.etl.util;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import com.jason.etl.util.ip.IPSeeker;
 
 /**
@@ -7,29 +10,65 @@ import com.jason.etl.util.ip.IPSeeker;
  * 解析ip最终的返回时：国家名称 省份名称 城市名称<br/>
  * 如果是国外的ip，那么直接设置为unknown unknown unknown<br/>
  * 如果是国内ip，如果没法进行解析，那么就设置为中国 unknown unknown<br/>
- * 
+ * 解析结果和ip段记录的国家信息偏移绑定，同一个偏移只解析一次，返回的RegionInfo是共享的不可变对象<br/>
+ *
  * @author gerry
  *
  */
 public class IPSeekerExt extends IPSeeker {
-	private RegionInfo DEFAULT_INFO = new RegionInfo();
+	private static final RegionInfo DEFAULT_INFO = new RegionInfo();
+	// 按照ip段记录下标保存的解析结果，第一次访问的时候填充
+	private final RegionInfo[] regions = new RegionInfo[getRecordCount()];
+	// 按照国家信息在文件中的偏移保存的解析结果，多个ip段记录共享同一个国家信息
+	private final ConcurrentMap<Integer, RegionInfo> regionsOfOffset = new ConcurrentHashMap<Integer, RegionInfo>();
 
 	/**
 	 * 解析ip地址，返回该ip地址对应的国家省份信息<br/>
 	 * 如果该ip解析失败，那么直接返回默认值
-	 * 
+	 *
 	 * @param ip
 	 *            要解析的ip地址，格式为: 120.197.87.216
 	 * @return
 	 */
 	public RegionInfo analyticIp(String ip) {
-		if (ip == null || ip.trim().isEmpty()) {
+		if (ip == null || ip.trim().isEmpty() || !isLoaded()) {
 			return DEFAULT_INFO;
 		}
 
-		RegionInfo info = new RegionInfo();
+		long value = IPSeekerUtils.parseIp(ip);
+		if (value == IPSeekerUtils.INVALID_IP) {
+			return DEFAULT_INFO;
+		}
+		int index = locate((int) value);
+		if (index < 0) {
+			return DEFAULT_INFO;
+		}
+		RegionInfo info = this.regions[index];
+		if (info == null) {
+			Integer offset = getCountryOffsetOfRecord(index);
+			info = this.regionsOfOffset.get(offset);
+			if (info == null) {
+				info = parseRegion(getCountryOfRecord(index));
+				RegionInfo exists = this.regionsOfOffset.putIfAbsent(offset, info);
+				if (exists != null) {
+					info = exists;
+				}
+			}
+			this.regions[index] = info;
+		}
+		return info;
+	}
+
+	/**
+	 * 解析qqwry中的国家字符串，得到国家省份城市信息
+	 *
+	 * @param country
+	 *            qqwry记录中的国家信息，eg: 广东省广州市
+	 * @return
+	 */
+	private static RegionInfo parseRegion(String country) {
+		String countryName = RegionInfo.DEFAULT_VALUE, province = RegionInfo.DEFAULT_VALUE, city = RegionInfo.DEFAULT_VALUE;
 		try {
-			String country = super.getCountry(ip);
 			if (country != null && !country.trim().isEmpty()) {
 				// 表示该ip还一个可以解析的ip
 				country = country.trim();
@@ -37,16 +76,15 @@ public class IPSeekerExt extends IPSeeker {
 				int index = country.indexOf('省');
 				if (index > 0) {
 					// 当前ip属于23个省之间的一个，country的格式为：xxx省(xxx市)(xxx县/区)
-					info.setCountry("中国");
+					countryName = "中国";
 					if (index == length - 1) {
-						info.setProvince(country); // 设置省份，格式列入： 广东省
+						province = country; // 设置省份，格式列入： 广东省
 					} else {
 						// 格式为：广东省广州市
-						info.setProvince(country.substring(0, index + 1)); // 设置省份
+						province = country.substring(0, index + 1); // 设置省份
 						int index2 = country.indexOf('市', index); // 查看下一个出现市的位置
 						if (index2 > 0) {
-							country.substring(1,1);
-							info.setCity(country.substring(index + 1, Math.min(index2 + 1, length))); // 设置city
+							city = country.substring(index + 1, Math.min(index2 + 1, length)); // 设置city
 						}
 					}
 				} else {
@@ -54,13 +92,13 @@ public class IPSeekerExt extends IPSeeker {
 					String flag = country.substring(0, 2); // 拿字符串前两位
 					switch (flag) {
 					case "内蒙":
-						info.setCountry("中国");
-						info.setProvince("内蒙古自治区");
+						countryName = "中国";
+						province = "内蒙古自治区";
 						country = country.substring(3);
 						if (country != null && !country.isEmpty()) {
 							index = country.indexOf('市');
 							if (index > 0) {
-								info.setCity(country.substring(0, Math.min(index + 1, country.length()))); // 设置市
+								city = country.substring(0, Math.min(index + 1, country.length())); // 设置市
 							}
 						}
 						break;
@@ -68,13 +106,13 @@ public class IPSeekerExt extends IPSeeker {
 					case "西藏":
 					case "宁夏":
 					case "新疆":
-						info.setCountry("中国");
-						info.setProvince(flag);
+						countryName = "中国";
+						province = flag;
 						country = country.substring(2);
 						if (country != null && !country.isEmpty()) {
 							index = country.indexOf('市');
 							if (index > 0) {
-								info.setCity(country.substring(0, Math.min(index + 1, country.length()))); // 设置市
+								city = country.substring(0, Math.min(index + 1, country.length())); // 设置市
 							}
 						}
 						break;
@@ -82,31 +120,31 @@ public class IPSeekerExt extends IPSeeker {
 					case "北京":
 					case "天津":
 					case "重庆":
-						info.setCountry("中国");
-						info.setProvince(flag + "市");
+						countryName = "中国";
+						province = flag + "市";
 						country = country.substring(3); // 去除这个省份/直辖市
 						if (country != null && !country.isEmpty()) {
 							index = country.indexOf('区');
 							if (index > 0) {
 								char ch = country.charAt(index - 1);
 								if (ch != '校' || ch != '小') {
-									info.setCity(country.substring(0, Math.min(index + 1, country.length()))); // 设置区
+									city = country.substring(0, Math.min(index + 1, country.length())); // 设置区
 								}
 							}
 
-							if (RegionInfo.DEFAULT_VALUE.equals(info.getCity())) {
+							if (RegionInfo.DEFAULT_VALUE.equals(city)) {
 								// city还是默认值
 								index = country.indexOf('县');
 								if (index > 0) {
-									info.setCity(country.substring(0, Math.min(index + 1, country.length()))); // 设置区
+									city = country.substring(0, Math.min(index + 1, country.length())); // 设置区
 								}
 							}
 						}
 						break;
 					case "香港":
 					case "澳门":
-						info.setCountry("中国");
-						info.setProvince(flag + "特别行政区");
+						countryName = "中国";
+						province = flag + "特别行政区";
 						break;
 					default:
 						break;
@@ -117,45 +155,44 @@ public class IPSeekerExt extends IPSeeker {
 			// 解析过程中出现异常
 			e.printStackTrace();
 		}
-		return info;
+		// 进行intern操作，相同的省份城市名称只保留一份
+		return new RegionInfo(countryName.intern(), province.intern(), city.intern());
 	}
 
 	/**
-	 * ip地域相关的一个model
-	 * 
+	 * ip地域相关的一个model，创建之后不可修改
+	 *
 	 * @author gerry
 	 *
 	 */
 	public static class RegionInfo {
 		public static final String DEFAULT_VALUE = "unknown"; // 默认值
-		private String country = DEFAULT_VALUE; // 国家
-		private String province = DEFAULT_VALUE; // 省份
-		private String city = DEFAULT_VALUE; // 城市
+		private final String country; // 国家
+		private final String province; // 省份
+		private final String city; // 城市
 
-		public String getCountry() {
-			return country;
+		public RegionInfo() {
+			this(DEFAULT_VALUE, DEFAULT_VALUE, DEFAULT_VALUE);
 		}
 
-		public void setCountry(String country) {
+		public RegionInfo(String country, String province, String city) {
 			this.country = country;
+			this.province = province;
+			this.city = city;
 		}
 
-		public String getProvince() {
-			return province;
+		public String getCountry() {
+			return country;
 		}
 
-		public void setProvince(String province) {
-			this.province = province;
+		public String getProvince() {
+			return province;
 		}
 
 		public String getCity() {
 			return city;
 		}
 
-		public void setCity(String city) {
-			this.city = city;
-		}
-
 		@Override
 		public String toString() {
 			return "RegionInfo [country=" + country + ", province=" + province + ", city=" + city + "]";
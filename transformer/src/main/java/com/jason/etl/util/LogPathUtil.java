@@ -0,0 +1,117 @@
+package com.jason.etl.util;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+
+import com.jason.common.GlobalConstants;
+import com.jason.util.TimeUtil;
+
+/**
+ * 原始日志目录相关的工具类<br/>
+ * 日志按照etl.log.partition.layout(SimpleDateFormat格式，默认MM/dd/)分目录存放在etl.log.root.path下，
+ * 布局中包含HH的时候按照小时分区，否则按照天分区；运行的时候只枚举[from, to)时间范围覆盖到的分区目录，
+ * 按天分区的布局下只能指定整天的时间范围
+ *
+ * @author jason
+ *
+ */
+public class LogPathUtil {
+    /**
+     * 默认的原始日志根目录
+     */
+    public static final String DEFAULT_ROOT_PATH = "/user/hadoop/logs/";
+    /**
+     * 默认的分区布局，和flume的hdfs.path保持一致
+     */
+    public static final String DEFAULT_PARTITION_LAYOUT = "MM/dd/";
+    private static final long HOUR_OF_MILLISECONDS = 3600000L;
+    private static final String HOUR_REGEX = "[0-9]{4}-[0-9]{2}-[0-9]{2}-[0-9]{2}";
+    private static final String HOUR_FORMAT = "yyyy-MM-dd-HH";
+
+    /**
+     * 判断配置的分区布局是否是小时粒度
+     *
+     * @param conf
+     * @return
+     */
+    public static boolean isHourly(Configuration conf) {
+        return getLayout(conf).contains("HH");
+    }
+
+    /**
+     * 检查[from, to)时间范围和分区布局是否匹配<br/>
+     * 按天分区的布局下，小时范围会枚举到整天的分区目录，导入范围外的数据，所以直接拒绝
+     *
+     * @param conf
+     * @param from
+     * @param to
+     * @throws IllegalArgumentException
+     *             按天分区的布局下时间范围不是整天
+     */
+    public static void checkRange(Configuration conf, long from, long to) {
+        if (!isHourly(conf) && (!isStartOfDay(from) || !isStartOfDay(to))) {
+            throw new IllegalArgumentException("分区布局" + getLayout(conf) + "按天分区，不能指定小时范围:" + TimeUtil.parseLong2String(from, HOUR_FORMAT) + "~" + TimeUtil.parseLong2String(to, HOUR_FORMAT));
+        }
+    }
+
+    /**
+     * 获取[from, to)时间范围覆盖到的所有分区目录，按照时间顺序排列，不检查目录是否存在
+     *
+     * @param conf
+     * @param from
+     * @param to
+     * @return
+     */
+    public static List<Path> getPartitions(Configuration conf, long from, long to) {
+        String root = conf.get(GlobalConstants.ETL_LOG_ROOT_PATH, DEFAULT_ROOT_PATH).trim();
+        SimpleDateFormat sdf = new SimpleDateFormat(getLayout(conf));
+        // 按照小时枚举，天粒度的布局中同一天的小时会得到相同的目录
+        Set<String> partitions = new LinkedHashSet<String>();
+        for (long time = from; time < to; time += HOUR_OF_MILLISECONDS) {
+            partitions.add(sdf.format(new Date(time)));
+        }
+        List<Path> paths = new ArrayList<Path>(partitions.size());
+        for (String partition : partitions) {
+            paths.add(new Path(root, partition));
+        }
+        return paths;
+    }
+
+    /**
+     * 解析时间范围参数，支持yyyy-MM-dd和yyyy-MM-dd-HH两种格式
+     *
+     * @param input
+     * @param end
+     *            是否是范围的结束参数，结束参数包含指定的天或者小时
+     * @return 格式不正确返回-1
+     */
+    public static long parseRangeTime(String input, boolean end) {
+        if (input == null) {
+            return -1L;
+        }
+        input = input.trim();
+        if (TimeUtil.isValidateRunningDate(input)) {
+            long time = TimeUtil.parseString2Long(input);
+            return end ? time + GlobalConstants.DAY_OF_MILLISECONDS : time;
+        } else if (input.matches(HOUR_REGEX)) {
+            long time = TimeUtil.parseString2Long(input, HOUR_FORMAT);
+            return end ? time + HOUR_OF_MILLISECONDS : time;
+        }
+        return -1L;
+    }
+
+    private static boolean isStartOfDay(long time) {
+        return TimeUtil.parseString2Long(TimeUtil.parseLong2String(time)) == time;
+    }
+
+    private static String getLayout(Configuration conf) {
+        return conf.get(GlobalConstants.ETL_LOG_PARTITION_LAYOUT, DEFAULT_PARTITION_LAYOUT).trim();
+    }
+}
@@ -0,0 +1,412 @@
+package com.jason.etl.util;
+
+import java.nio.charset.Charset;
+
+/**
+ * 可重复使用的日志解析结果对象<br/>
+ * 所有的列名和列值都以utf-8字节的形式保存在同一个buffer中，通过偏移量和长度进行定位；<br/>
+ * 每次解析前调用clear方法，buffer和偏移量数组不会重新创建，避免每条记录都产生map和字符串对象
+ *
+ * @author jason
+ *
+ */
+public class LogRecord {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int DEFAULT_BUFFER_SIZE = 1024; // 默认buffer大小
+    private static final int DEFAULT_FIELD_SIZE = 32; // 默认的列个数
+
+    private byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+    private int length; // buffer中已经使用的字节数
+    private int[] keyOffsets = new int[DEFAULT_FIELD_SIZE];
+    private int[] keyLengths = new int[DEFAULT_FIELD_SIZE];
+    private int[] valueOffsets = new int[DEFAULT_FIELD_SIZE];
+    private int[] valueLengths = new int[DEFAULT_FIELD_SIZE];
+    private int size; // 列个数
+    private long serverTime = -1; // 服务器时间，解析失败为-1
+    private int invalidParams; // 没法解析而被丢弃的请求参数个数
+
+    /**
+     * 清空记录，准备解析下一行日志
+     */
+    public void clear() {
+        this.length = 0;
+        this.size = 0;
+        this.serverTime = -1;
+        this.invalidParams = 0;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * 获取没法解析(没有=或者url解码失败)而被丢弃的请求参数个数
+     *
+     * @return
+     */
+    public int getInvalidParams() {
+        return this.invalidParams;
+    }
+
+    public void addInvalidParam() {
+        this.invalidParams++;
+    }
+
+    /**
+     * 获取服务器时间的毫秒数，生成rowkey的时候直接使用，不需要从字符串列值中重新解析
+     *
+     * @return 没有设置或者解析失败返回-1
+     */
+    public long getServerTime() {
+        return this.serverTime;
+    }
+
+    /**
+     * 设置服务器时间，同时以十进制字符串的形式保存到key对应的列中
+     *
+     * @param key
+     * @param serverTime
+     */
+    public void putServerTime(String key, long serverTime) {
+        this.serverTime = serverTime;
+        int keyOffset = this.length;
+        this.appendString(key);
+        int valueOffset = this.length;
+        this.appendLong(serverTime);
+        this.commit(keyOffset, valueOffset - keyOffset, valueOffset, this.length - valueOffset);
+    }
+
+    /**
+     * 获取存储列名和列值的buffer，配合偏移量使用
+     *
+     * @return
+     */
+    public byte[] getBuffer() {
+        return this.buffer;
+    }
+
+    public int getKeyOffset(int index) {
+        return this.keyOffsets[index];
+    }
+
+    public int getKeyLength(int index) {
+        return this.keyLengths[index];
+    }
+
+    public int getValueOffset(int index) {
+        return this.valueOffsets[index];
+    }
+
+    public int getValueLength(int index) {
+        return this.valueLengths[index];
+    }
+
+    /**
+     * 获取列名对应的下标，如果不存在返回-1
+     *
+     * @param key
+     *            列名，要求是ascii字符
+     * @return
+     */
+    public int indexOf(String key) {
+        for (int i = 0; i < this.size; i++) {
+            if (equalsAscii(this.buffer, this.keyOffsets[i], this.keyLengths[i], key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public boolean containsKey(String key) {
+        return this.indexOf(key) > -1;
+    }
+
+    /**
+     * 获取列值，如果不存在返回null
+     *
+     * @param key
+     * @return
+     */
+    public String get(String key) {
+        int index = this.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        return new String(this.buffer, this.valueOffsets[index], this.valueLengths[index], UTF8);
+    }
+
+    /**
+     * 添加列，如果列已经存在，那么进行覆盖；如果value为null，那么删除该列
+     *
+     * @param key
+     * @param value
+     */
+    public void put(String key, String value) {
+        if (value == null) {
+            this.remove(key);
+            return;
+        }
+        int keyOffset = this.length;
+        this.appendString(key);
+        int valueOffset = this.length;
+        this.appendString(value);
+        this.commit(keyOffset, valueOffset - keyOffset, valueOffset, this.length - valueOffset);
+    }
+
+    /**
+     * 添加列，列值直接从src字节数组中拷贝
+     *
+     * @param key
+     * @param src
+     * @param offset
+     * @param len
+     */
+    public void put(String key, byte[] src, int offset, int len) {
+        int keyOffset = this.length;
+        this.appendString(key);
+        int valueOffset = this.length;
+        this.append(src, offset, len);
+        this.commit(keyOffset, valueOffset - keyOffset, valueOffset, len);
+    }
+
+    /**
+     * 删除列
+     *
+     * @param key
+     */
+    public void remove(String key) {
+        int index = this.indexOf(key);
+        if (index < 0) {
+            return;
+        }
+        int moved = this.size - index - 1;
+        if (moved > 0) {
+            System.arraycopy(this.keyOffsets, index + 1, this.keyOffsets, index, moved);
+            System.arraycopy(this.keyLengths, index + 1, this.keyLengths, index, moved);
+            System.arraycopy(this.valueOffsets, index + 1, this.valueOffsets, index, moved);
+            System.arraycopy(this.valueLengths, index + 1, this.valueLengths, index, moved);
+        }
+        this.size--;
+    }
+
+    /**
+     * 当前buffer的写入位置
+     *
+     * @return
+     */
+    int mark() {
+        return this.length;
+    }
+
+    /**
+     * 回退到指定的写入位置，丢弃之后写入的字节
+     *
+     * @param mark
+     */
+    void reset(int mark) {
+        this.length = mark;
+    }
+
+    /**
+     * 追加一个字节
+     *
+     * @param b
+     */
+    void append(byte b) {
+        if (this.length == this.buffer.length) {
+            this.grow(this.length + 1);
+        }
+        this.buffer[this.length++] = b;
+    }
+
+    /**
+     * 追加一段字节
+     *
+     * @param src
+     * @param offset
+     * @param len
+     */
+    void append(byte[] src, int offset, int len) {
+        if (this.length + len > this.buffer.length) {
+            this.grow(this.length + len);
+        }
+        System.arraycopy(src, offset, this.buffer, this.length, len);
+        this.length += len;
+    }
+
+    /**
+     * 将buffer中指定位置的列名/列值登记为一列，列名已经存在的时候进行覆盖
+     *
+     * @param keyOffset
+     * @param keyLength
+     * @param valueOffset
+     * @param valueLength
+     */
+    void commit(int keyOffset, int keyLength, int valueOffset, int valueLength) {
+        int index = this.indexOf(this.buffer, keyOffset, keyLength);
+        if (index < 0) {
+            if (this.size == this.keyOffsets.length) {
+                this.growFields();
+            }
+            index = this.size++;
+        }
+        this.keyOffsets[index] = keyOffset;
+        this.keyLengths[index] = keyLength;
+        this.valueOffsets[index] = valueOffset;
+        this.valueLengths[index] = valueLength;
+    }
+
+    /**
+     * 以十进制ascii字符追加非负整数，和String.valueOf的结果一致
+     *
+     * @param value
+     */
+    private void appendLong(long value) {
+        if (value < 0) {
+            this.appendString(String.valueOf(value));
+            return;
+        }
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10) {
+            digits++;
+        }
+        if (this.length + digits > this.buffer.length) {
+            this.grow(this.length + digits);
+        }
+        for (int i = this.length + digits - 1; i >= this.length; i--) {
+            this.buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        this.length += digits;
+    }
+
+    /**
+     * 以utf-8编码追加字符串
+     *
+     * @param s
+     */
+    private void appendString(String s) {
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                this.append((byte) c);
+            } else if (c < 0x800) {
+                this.append((byte) (0xC0 | (c >> 6)));
+                this.append((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                this.append((byte) (0xF0 | (cp >> 18)));
+                this.append((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                this.append((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                this.append((byte) (0x80 | (cp & 0x3F)));
+            } else {
+                this.append((byte) (0xE0 | (c >> 12)));
+                this.append((byte) (0x80 | ((c >> 6) & 0x3F)));
+                this.append((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * 查找和buffer中指定区间相同的列名
+     *
+     * @param src
+     * @param offset
+     * @param len
+     * @return
+     */
+    private int indexOf(byte[] src, int offset, int len) {
+        for (int i = 0; i < this.size; i++) {
+            if (this.keyLengths[i] == len && equalsBytes(this.buffer, this.keyOffsets[i], src, offset, len)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void grow(int minCapacity) {
+        int capacity = Math.max(this.buffer.length << 1, minCapacity);
+        byte[] newBuffer = new byte[capacity];
+        System.arraycopy(this.buffer, 0, newBuffer, 0, this.length);
+        this.buffer = newBuffer;
+    }
+
+    private void growFields() {
+        int capacity = this.keyOffsets.length << 1;
+        this.keyOffsets = copyOf(this.keyOffsets, capacity);
+        this.keyLengths = copyOf(this.keyLengths, capacity);
+        this.valueOffsets = copyOf(this.valueOffsets, capacity);
+        this.valueLengths = copyOf(this.valueLengths, capacity);
+    }
+
+    private static int[] copyOf(int[] src, int capacity) {
+        int[] dest = new int[capacity];
+        System.arraycopy(src, 0, dest, 0, src.length);
+        return dest;
+    }
+
+    private static boolean equalsBytes(byte[] a, int aOffset, byte[] b, int bOffset, int len) {
+        for (int i = 0; i < len; i++) {
+            if (a[aOffset + i] != b[bOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 比较字节区间和ascii字符串是否相同
+     *
+     * @param src
+     * @param offset
+     * @param len
+     * @param s
+     * @return
+     */
+    static boolean equalsAscii(byte[] src, int offset, int len, String s) {
+        if (s == null || s.length() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (src[offset + i] != (byte) s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 判断字节区间是否全部由空白字符组成，和StringUtils.isBlank保持一致
+     *
+     * @param src
+     * @param offset
+     * @param len
+     * @return
+     */
+    public static boolean isBlank(byte[] src, int offset, int len) {
+        for (int i = offset, end = offset + len; i < end; i++) {
+            if (src[i] < 0 || !Character.isWhitespace((char) src[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("LogRecord [");
+        for (int i = 0; i < this.size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(new String(this.buffer, this.keyOffsets[i], this.keyLengths[i], UTF8));
+            sb.append('=');
+            sb.append(new String(this.buffer, this.valueOffsets[i], this.valueLengths[i], UTF8));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -1,125 +1,330 @@
 package com.jason.etl.util;
 
-import java.net.URLDecoder;
-import java.util.HashMap;
-import java.util.Map;
-
-import org.apache.commons.lang.StringUtils;
-import org.apache.log4j.Logger;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
+import com.jason.common.CacheCounter;
 import com.jason.common.EventLogConstants;
+import com.jason.common.GlobalConstants;
 import com.jason.etl.util.IPSeekerExt.RegionInfo;
 import com.jason.etl.util.UserAgentUtil.UserAgentInfo;
+import com.jason.etl.util.ip.IPSeeker;
+import com.jason.util.ClockCache;
 import com.jason.util.TimeUtil;
 
 /**
- * 处理日志数据的具体工作类
- * 
+ * 处理日志数据的具体工作类<br/>
+ * 直接在Text的字节数组上进行一次扫描，定位^A分隔符以及&和=的边界，url解码的结果写入可重用的LogRecord中<br/>
+ * 解析方法没有共享的可变状态(ip和user agent的解析对象以及缓存都是线程安全的)，可以被MultithreadedMapper的多个线程同时调用；
+ * 没法解析的参数只在record中计数，由mapper统一抽样输出日志
+ *
  * @author jason
  *
  */
 public class LoggerUtil {
-    private static final Logger logger = Logger.getLogger(LoggerUtil.class);
-    private static IPSeekerExt ipSeekerExt = new IPSeekerExt();
+    private static final IPSeekerExt ipSeekerExt = new IPSeekerExt(); // 所有线程共享
+    // 已经输出到计数器中的缓存统计值，每次只输出增量
+    private static long[] reportedIpCache = new long[3], reportedUserAgentCache = new long[3];
 
     /**
-     * 处理日志数据logText，返回处理结果map集合<br/>
-     * 如果logText没有指定数据格式，那么直接返回empty的集合
-     * 
+     * 根据job配置调整解析过程中使用的缓存，多线程的mapper中每个线程都会调用一次
+     *
+     * @param conf
+     */
+    public static synchronized void configure(Configuration conf) {
+        ipSeekerExt.setCacheCapacity(conf.getInt(GlobalConstants.ETL_IP_CACHE_CAPACITY, IPSeeker.DEFAULT_CACHE_CAPACITY));
+        UserAgentUtil.setCacheCapacity(conf.getInt(GlobalConstants.ETL_USER_AGENT_CACHE_CAPACITY, UserAgentUtil.DEFAULT_CACHE_CAPACITY));
+        String parserClass = conf.get(GlobalConstants.ETL_USER_AGENT_PARSER);
+        if (parserClass != null && !parserClass.trim().isEmpty()) {
+            UserAgentUtil.setParser(parserClass.trim());
+        }
+    }
+
+    /**
+     * 将缓存的命中、未命中以及淘汰次数输出到hadoop计数器中
+     *
+     * @param context
+     */
+    public static synchronized void reportCacheCounters(TaskAttemptContext context) {
+        reportCacheCounters(context, ipSeekerExt.getCache(), reportedIpCache, CacheCounter.IP_CACHE_HIT, CacheCounter.IP_CACHE_MISS, CacheCounter.IP_CACHE_EVICTION);
+        reportCacheCounters(context, UserAgentUtil.getCache(), reportedUserAgentCache, CacheCounter.USER_AGENT_CACHE_HIT, CacheCounter.USER_AGENT_CACHE_MISS, CacheCounter.USER_AGENT_CACHE_EVICTION);
+    }
+
+    /**
+     * 输出单个缓存的统计值增量
+     *
+     * @param context
+     * @param cache
+     * @param reported
+     *            已经输出的命中、未命中、淘汰次数
+     * @param hit
+     * @param miss
+     * @param eviction
+     */
+    private static void reportCacheCounters(TaskAttemptContext context, ClockCache<?> cache, long[] reported, CacheCounter hit, CacheCounter miss, CacheCounter eviction) {
+        long[] current = new long[] { cache.hitCount(), cache.missCount(), cache.evictionCount() };
+        // 缓存被重新创建后统计值从0开始
+        if (current[0] < reported[0] || current[1] < reported[1] || current[2] < reported[2]) {
+            reported[0] = reported[1] = reported[2] = 0;
+        }
+        context.getCounter(hit).increment(current[0] - reported[0]);
+        context.getCounter(miss).increment(current[1] - reported[1]);
+        context.getCounter(eviction).increment(current[2] - reported[2]);
+        System.arraycopy(current, 0, reported, 0, current.length);
+    }
+
+    /**
+     * 处理日志数据logText，处理结果填充到record中<br/>
+     * 如果logText没有指定数据格式，那么record为empty
+     *
      * @param logText
-     * @return
+     * @param record
+     *            可重用的结果对象，方法开始时会被清空
+     * @return 解析成功返回true
      */
-    public static Map<String, String> handleLog(String logText) {
-        Map<String, String> clientInfo = new HashMap<String, String>();
-        if (StringUtils.isNotBlank(logText)) {
-            String[] splits = logText.trim().split(EventLogConstants.LOG_SEPARTIOR);
-            if (splits.length == 4) {
-                // 日志格式为: ip^A服务器时间^Ahost^A请求参数
-                clientInfo.put(EventLogConstants.LOG_COLUMN_NAME_IP, splits[0].trim()); // 设置ip
-                // 设置服务器时间
-                clientInfo.put(EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, String.valueOf(TimeUtil.parseNginxServerTime2Long(splits[1].trim())));
-                int index = splits[3].indexOf("?");
-                if (index > -1) {
-                    String requestBody = splits[3].substring(index + 1); // 获取请求参数，也就是我们的收集数据
-                    // 处理请求参数
-                    handleRequestBody(requestBody, clientInfo);
-                    // 处理userAgent
-                    handleUserAgent(clientInfo);
-                    // 处理ip地址
-                    handleIp(clientInfo);
-                } else {
-                    // 数据格式异常
-                    clientInfo.clear();
+    public static boolean handleLog(Text logText, LogRecord record) {
+        record.clear();
+        byte[] bytes = logText.getBytes();
+        // 去掉前后的空白字符，和String.trim保持一致
+        int start = trimStart(bytes, 0, logText.getLength());
+        int end = trimEnd(bytes, start, logText.getLength());
+
+        // 日志格式为: ip^A服务器时间^Ahost^A请求参数
+        int sep1 = indexOfSeparator(bytes, start, end);
+        int sep2 = sep1 < 0 ? -1 : indexOfSeparator(bytes, sep1 + 2, end);
+        int sep3 = sep2 < 0 ? -1 : indexOfSeparator(bytes, sep2 + 2, end);
+        if (sep3 < 0) {
+            return false;
+        }
+        int requestStart = sep3 + 2;
+        int requestEnd = indexOfSeparator(bytes, requestStart, end);
+        if (requestEnd < 0) {
+            requestEnd = end;
+        } else {
+            // 后面只允许出现空的列(split会去掉末尾的空字符串)
+            for (int i = requestEnd; i < end; i += 2) {
+                if (!isSeparator(bytes, i, end)) {
+                    return false;
                 }
             }
         }
-        return clientInfo;
+        if (requestStart == requestEnd) {
+            return false;
+        }
+
+        // 设置ip
+        int from = trimStart(bytes, start, sep1), to = trimEnd(bytes, from, sep1);
+        record.put(EventLogConstants.LOG_COLUMN_NAME_IP, bytes, from, to - from);
+        // 设置服务器时间
+        from = trimStart(bytes, sep1 + 2, sep2);
+        to = trimEnd(bytes, from, sep2);
+        long serverTime = TimeUtil.parseNginxServerTime2Long(bytes, from, to - from);
+        if (serverTime >= 0) {
+            record.putServerTime(EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, serverTime);
+        }
+
+        int index = indexOf(bytes, requestStart, requestEnd, (byte) '?');
+        if (index > -1) {
+            // 处理请求参数，也就是我们的收集数据
+            handleRequestBody(bytes, index + 1, requestEnd, record);
+            // 处理userAgent
+            handleUserAgent(record);
+            // 处理ip地址
+            handleIp(record);
+            return true;
+        } else {
+            // 数据格式异常
+            record.clear();
+            return false;
+        }
     }
 
     /**
      * 处理ip地址
-     * 
-     * @param clientInfo
+     *
+     * @param record
      */
-    private static void handleIp(Map<String,String> clientInfo) {
-        if (clientInfo.containsKey(EventLogConstants.LOG_COLUMN_NAME_IP)) {
-            String ip = clientInfo.get(EventLogConstants.LOG_COLUMN_NAME_IP);
+    private static void handleIp(LogRecord record) {
+        String ip = record.get(EventLogConstants.LOG_COLUMN_NAME_IP);
+        if (ip != null) {
             RegionInfo info = ipSeekerExt.analyticIp(ip);
             if (info != null) {
-                clientInfo.put(EventLogConstants.LOG_COLUMN_NAME_COUNTRY, info.getCountry());
-                clientInfo.put(EventLogConstants.LOG_COLUMN_NAME_PROVINCE, info.getProvince());
-                clientInfo.put(EventLogConstants.LOG_COLUMN_NAME_CITY, info.getCity());
+                record.put(EventLogConstants.LOG_COLUMN_NAME_COUNTRY, info.getCountry());
+                record.put(EventLogConstants.LOG_COLUMN_NAME_PROVINCE, info.getProvince());
+                record.put(EventLogConstants.LOG_COLUMN_NAME_CITY, info.getCity());
             }
         }
     }
 
     /**
      * 处理浏览器的userAgent信息
-     * 
-     * @param clientInfo
+     *
+     * @param record
      */
-    private static void handleUserAgent(Map<String, String> clientInfo) {
-        if (clientInfo.containsKey(EventLogConstants.LOG_COLUMN_NAME_USER_AGENT)) {
-            UserAgentInfo info = UserAgentUtil.analyticUserAgent(clientInfo.get(EventLogConstants.LOG_COLUMN_NAME_USER_AGENT));
+    private static void handleUserAgent(LogRecord record) {
+        String userAgent = record.get(EventLogConstants.LOG_COLUMN_NAME_USER_AGENT);
+        if (userAgent != null) {
+            UserAgentInfo info = UserAgentUtil.analyticUserAgent(userAgent);
             if (info != null) {
-                clientInfo.put(EventLogConstants.LOG_COLUMN_NAME_OS_NAME, info.getOsName());
-                clientInfo.put(EventLogConstants.LOG_COLUMN_NAME_OS_VERSION, info.getOsVersion());
-                clientInfo.put(EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, info.getBrowserName());
-                clientInfo.put(EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION, info.getBrowserVersion());
+                record.put(EventLogConstants.LOG_COLUMN_NAME_OS_NAME, info.getOsName());
+                record.put(EventLogConstants.LOG_COLUMN_NAME_OS_VERSION, info.getOsVersion());
+                record.put(EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, info.getBrowserName());
+                record.put(EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION, info.getBrowserVersion());
+            }
+        }
+    }
+
+    /**
+     * 处理请求参数，参数之间用&分隔
+     *
+     * @param bytes
+     * @param start
+     * @param end
+     * @param record
+     */
+    private static void handleRequestBody(byte[] bytes, int start, int end, LogRecord record) {
+        int from = start;
+        while (from < end) {
+            int to = indexOf(bytes, from, end, (byte) '&');
+            if (to < 0) {
+                to = end;
             }
+            handleRequestParam(bytes, from, to, record);
+            from = to + 1;
+        }
+    }
+
+    /**
+     * 处理单个请求参数，格式为key=value，value需要进行url解码，没有=或者解码失败的参数被丢弃
+     *
+     * @param bytes
+     * @param from
+     * @param to
+     * @param record
+     */
+    private static void handleRequestParam(byte[] bytes, int from, int to, LogRecord record) {
+        if (LogRecord.isBlank(bytes, from, to - from)) {
+            return;
+        }
+        int index = indexOf(bytes, from, to, (byte) '=');
+        if (index < 0) {
+            record.addInvalidParam();
+            return;
         }
+        int keyLength = index - from;
+        if (LogRecord.isBlank(bytes, from, keyLength)) {
+            return;
+        }
+
+        int mark = record.mark();
+        record.append(bytes, from, keyLength);
+        int valueOffset = record.mark();
+        if (!urlDecode(bytes, index + 1, to, record)) {
+            record.reset(mark);
+            record.addInvalidParam();
+            return;
+        }
+        int valueLength = record.mark() - valueOffset;
+        if (LogRecord.isBlank(record.getBuffer(), valueOffset, valueLength)) {
+            record.reset(mark);
+            return;
+        }
+        record.commit(mark, keyLength, valueOffset, valueLength);
     }
 
     /**
-     * 处理请求参数
-     * 
-     * @param requestBody
-     * @param clientInfo
+     * 按照URLDecoder的规则进行解码，结果直接追加到record的buffer中
+     *
+     * @param bytes
+     * @param from
+     * @param to
+     * @param record
+     * @return 如果存在非法的%转义，返回false
      */
-    private static void handleRequestBody(String requestBody, Map<String, String> clientInfo) {
-        if (StringUtils.isNotBlank(requestBody)) {
-            String[] requestParams = requestBody.split("&");
-            for (String param : requestParams) {
-                if (StringUtils.isNotBlank(param)) {
-                    int index = param.indexOf("=");
-                    if (index < 0) {
-                        logger.warn("没法进行解析参数:" + param + "， 请求参数为:" + requestBody);
-                        continue;
-                    }
-
-                    String key = null, value = null;
-                    try {
-                        key = param.substring(0, index);
-                        value = URLDecoder.decode(param.substring(index + 1), "utf-8");
-                    } catch (Exception e) {
-                        logger.warn("解码操作出现异常", e);
-                        continue;
-                    }
-                    if (StringUtils.isNotBlank(key) && StringUtils.isNotBlank(value)) {
-                        clientInfo.put(key, value);
-                    }
+    private static boolean urlDecode(byte[] bytes, int from, int to, LogRecord record) {
+        int i = from;
+        while (i < to) {
+            byte b = bytes[i];
+            if (b == '+') {
+                record.append((byte) ' ');
+                i++;
+            } else if (b == '%') {
+                if (i + 2 >= to) {
+                    return false;
                 }
+                int high = Character.digit((char) bytes[i + 1], 16);
+                int low = Character.digit((char) bytes[i + 2], 16);
+                if (high < 0 || low < 0) {
+                    return false;
+                }
+                record.append((byte) ((high << 4) + low));
+                i += 3;
+            } else {
+                record.append(b);
+                i++;
             }
         }
+        return true;
+    }
+
+    /**
+     * 查找日志分隔符^A的位置，没有找到返回-1
+     *
+     * @param bytes
+     * @param from
+     * @param to
+     * @return
+     */
+    private static int indexOfSeparator(byte[] bytes, int from, int to) {
+        for (int i = from; i < to - 1; i++) {
+            if (bytes[i] == '^' && bytes[i + 1] == 'A') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isSeparator(byte[] bytes, int index, int to) {
+        return index + 1 < to && bytes[index] == '^' && bytes[index + 1] == 'A';
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte target) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 跳过区间开头的空白字符，返回第一个非空白字符的位置
+     *
+     * @param bytes
+     * @param start
+     * @param end
+     * @return
+     */
+    private static int trimStart(byte[] bytes, int start, int end) {
+        while (start < end && (bytes[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * 跳过区间末尾的空白字符，返回最后一个非空白字符之后的位置
+     *
+     * @param bytes
+     * @param start
+     * @param end
+     * @return
+     */
+    private static int trimEnd(byte[] bytes, int start, int end) {
+        while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        return end;
     }
 }
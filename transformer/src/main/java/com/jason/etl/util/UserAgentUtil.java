@@ -2,30 +2,89 @@ package com.jason.etl.util;
 
 import java.io.IOException;
 
-import cz.mallat.uasparser.OnlineUpdater;
-import cz.mallat.uasparser.UASparser;
+import com.jason.etl.util.ua.IUserAgentParser;
+import com.jason.etl.util.ua.UASparserUserAgentParser;
+import com.jason.util.ClockCache;
 
 /**
- * 解析浏览器的user agent的工具类，内部就是调用这个uasparser jar文件
+ * 解析浏览器的user agent的工具类，默认调用uasparser jar文件，也可以通过setParser替换为其他的解析实现<br/>
+ * 解析结果保存在有容量上限的缓存中，相同的user agent只解析一次<br/>
+ * 解析方法可以被多个线程同时调用，设置解析实现以及缓存容量的方法之间互斥
  * 
  * @author jason
  *
  */
 public class UserAgentUtil {
-	static UASparser uasParser = null;
+	public static final int DEFAULT_CACHE_CAPACITY = 10000; // 默认缓存的user agent个数
+	static volatile IUserAgentParser parser = null;
+	// 解析结果缓存，key为user agent字符串的64位哈希值
+	private static volatile ClockCache<CachedUserAgent> cache = new ClockCache<CachedUserAgent>(DEFAULT_CACHE_CAPACITY);
+	private static volatile int cacheCapacity = DEFAULT_CACHE_CAPACITY; // 请求的缓存容量，ClockCache内部会按照分段个数调整
 
-	// static 代码块, 初始化uasParser对象
+	// static 代码块, 初始化默认的解析对象
 	static {
 		try {
-			uasParser = new UASparser(OnlineUpdater.getVendoredInputStream());
+			parser = new UASparserUserAgentParser();
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * 设置具体的解析实现，会丢弃当前缓存的解析结果
+	 * 
+	 * @param userAgentParser
+	 */
+	public static synchronized void setParser(IUserAgentParser userAgentParser) {
+		if (parser == null || userAgentParser.getClass() != parser.getClass()) {
+			parser = userAgentParser;
+			cache = new ClockCache<CachedUserAgent>(cacheCapacity);
+		}
+	}
+
+	/**
+	 * 根据类名设置具体的解析实现
+	 * 
+	 * @param className
+	 *            IUserAgentParser的实现类
+	 */
+	public static synchronized void setParser(String className) {
+		if (parser != null && parser.getClass().getName().equals(className)) {
+			return;
+		}
+		try {
+			setParser((IUserAgentParser) Class.forName(className).newInstance());
+		} catch (Exception e) {
+			throw new RuntimeException("创建user agent解析对象失败:" + className, e);
+		}
+	}
+
+	/**
+	 * 设置解析结果缓存的容量，会丢弃当前的缓存内容
+	 * 
+	 * @param capacity
+	 */
+	public static synchronized void setCacheCapacity(int capacity) {
+		// 和请求的容量比较，ClockCache.capacity()是调整后的值，不能直接比较，否则每次调用都会清空缓存
+		if (capacity != cacheCapacity) {
+			cache = new ClockCache<CachedUserAgent>(capacity);
+			cacheCapacity = capacity;
+		}
+	}
+
+	/**
+	 * 获取解析结果缓存，主要用于读取命中率等统计信息
+	 * 
+	 * @return
+	 */
+	public static ClockCache<?> getCache() {
+		return cache;
+	}
+
 	/**
 	 * 解析浏览器的user agent字符串，返回UserAgentInfo对象。<br/>
-	 * 如果user agent为空，返回null。如果解析失败，也直接返回null。
+	 * 如果user agent为空，返回null。如果解析失败，也直接返回null。<br/>
+	 * 相同的user agent返回同一个不可变的UserAgentInfo对象
 	 * 
 	 * @param userAgent
 	 *            要解析的user agent字符串
@@ -35,14 +94,16 @@ public class UserAgentUtil {
 		UserAgentInfo result = null;
 		if (!(userAgent == null || userAgent.trim().isEmpty())) {
 			// 此时userAgent不为null，而且不是由全部空格组成的
+			ClockCache<CachedUserAgent> current = cache;
+			long hash = hash64(userAgent);
+			CachedUserAgent cached = current.get(hash);
+			if (cached != null && cached.userAgent.equals(userAgent)) {
+				return cached.info;
+			}
 			try {
-				cz.mallat.uasparser.UserAgentInfo info = null;
-				info = uasParser.parse(userAgent);
-				result = new UserAgentInfo();
-				result.setBrowserName(info.getUaFamily());
-				result.setBrowserVersion(info.getBrowserVersionInfo());
-				result.setOsName(info.getOsFamily());
-				result.setOsVersion(info.getOsName());
+				UserAgentInfo info = parser.parse(userAgent);
+				result = new UserAgentInfo(intern(info.getBrowserName()), intern(info.getBrowserVersion()), intern(info.getOsName()), intern(info.getOsVersion()));
+				current.put(hash, new CachedUserAgent(userAgent, result));
 			} catch (IOException e) {
 				// 出现异常，将返回值设置为null
 				result = null;
@@ -52,49 +113,75 @@ public class UserAgentUtil {
 	}
 
 	/**
-	 * 内部解析后的浏览器信息model对象
+	 * 计算字符串的64位FNV-1a哈希值
+	 * 
+	 * @param s
+	 * @return
+	 */
+	static long hash64(String s) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0, len = s.length(); i < len; i++) {
+			hash ^= s.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static String intern(String s) {
+		return s == null ? null : s.intern();
+	}
+
+	/**
+	 * 缓存的元素，保存原始的user agent用于排除哈希冲突
 	 * 
 	 * @author jason
 	 *
 	 */
-	public static class UserAgentInfo {
-		private String browserName; // 浏览器名称
-		private String browserVersion; // 浏览器版本号
-		private String osName; // 操作系统名称
-		private String osVersion; // 操作系统版本号
+	private static class CachedUserAgent {
+		private final String userAgent;
+		private final UserAgentInfo info;
 
-		public String getBrowserName() {
-			return browserName;
+		CachedUserAgent(String userAgent, UserAgentInfo info) {
+			this.userAgent = userAgent;
+			this.info = info;
 		}
+	}
 
-		public void setBrowserName(String browserName) {
+	/**
+	 * 内部解析后的浏览器信息model对象，创建之后不可修改
+	 * 
+	 * @author jason
+	 *
+	 */
+	public static class UserAgentInfo {
+		private final String browserName; // 浏览器名称
+		private final String browserVersion; // 浏览器版本号
+		private final String osName; // 操作系统名称
+		private final String osVersion; // 操作系统版本号
+
+		public UserAgentInfo(String browserName, String browserVersion, String osName, String osVersion) {
 			this.browserName = browserName;
+			this.browserVersion = browserVersion;
+			this.osName = osName;
+			this.osVersion = osVersion;
 		}
 
-		public String getBrowserVersion() {
-			return browserVersion;
+		public String getBrowserName() {
+			return browserName;
 		}
 
-		public void setBrowserVersion(String browserVersion) {
-			this.browserVersion = browserVersion;
+		public String getBrowserVersion() {
+			return browserVersion;
 		}
 
 		public String getOsName() {
 			return osName;
 		}
 
-		public void setOsName(String osName) {
-			this.osName = osName;
-		}
-
 		public String getOsVersion() {
 			return osVersion;
 		}
 
-		public void setOsVersion(String osVersion) {
-			this.osVersion = osVersion;
-		}
-
 		@Override
 		public String toString() {
 			return "UserAgentInfo [browserName=" + browserName + ", browserVersion=" + browserVersion + ", osName="
@@ -1,16 +1,19 @@
 package com.jason.etl.util.ip;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.net.URL;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-import java.util.Hashtable;
 import java.util.List;
 
+import org.apache.log4j.Logger;
+
+import com.jason.util.ClockCache;
+
 /** */
 /**
  * * 用来读取QQwry.dat文件，以根据ip获得好友位置，QQwry.dat的格式是 一. 文件头，共8字节 1. 第一个起始IP的绝对偏移， 4字节
@@ -27,66 +30,101 @@ import java.util.List;
  * @author jason
  */
 public class IPSeeker {
+    private static final Logger logger = Logger.getLogger(IPSeeker.class);
     // 一些固定常量，比如记录长度等等
     private static final int IP_RECORD_LENGTH = 7;
     private static final byte AREA_FOLLOWED = 0x01;
     private static final byte NO_AREA = 0x2;
-
-    // 用来做为cache，查询一个ip时首先查看cache，以减少不必要的重复查找
-    private Hashtable ipCache;
-    // 随机文件访问类
-    private RandomAccessFile ipFile;
-    // 内存映射文件
+    private static final String UNKNOWN_COUNTRY = "未知国家";
+    private static final String UNKNOWN_AREA = "未知地区";
+    private static final String ERROR_FILE = "错误的IP数据库文件";
+    public static final int DEFAULT_CACHE_CAPACITY = 100000; // 默认缓存的ip个数
+
+    // 用来做为cache，key为int形式的ip，value为记录下标(-1表示没有找到)；有容量上限，不会无限增长
+    private volatile ClockCache<Integer> ipCache;
+    private volatile int cacheCapacity = DEFAULT_CACHE_CAPACITY; // 请求的缓存容量，ClockCache内部会按照分段个数调整
+    // 内存映射文件，加载完成后只进行绝对位置的读取，不修改position，可以被多个线程共享
     private MappedByteBuffer mbb;
     // 单一模式实例
     private static IPSeeker instance = null;
     // 起始地区的开始和结束的绝对偏移
-    private long ipBegin, ipEnd;
-    // 为提高效率而采用的临时变量
-    private IPLocation loc;
-    private byte[] buf;
-    private byte[] b4;
-    private byte[] b3;
+    private int ipBegin, ipEnd;
+    // 内存中的ip段索引，下标相同的元素属于同一条记录。起始/结束ip的最高位取反，这样直接用有符号比较就是无符号ip的顺序
+    private int[] startIps;
+    private int[] endIps;
+    private int[] recordOffsets; // "结束地址/国家/区域"记录的绝对偏移
+    // 每条记录解析后的国家和地区名称，第一次访问的时候填充；String是不可变对象，多个线程重复填充也没有问题
+    private String[] countries;
+    private String[] areas;
 
     /** */
     /**
      * 私有构造函数
      */
     protected IPSeeker() {
-        ipCache = new Hashtable();
-        loc = new IPLocation();
-        buf = new byte[100];
-        b4 = new byte[4];
-        b3 = new byte[3];
-        try {
-            String ipFilePath = IPSeeker.class.getResource("qqwry.dat").getFile();
-            ipFile = new RandomAccessFile(ipFilePath, "r");
-        } catch (FileNotFoundException e) {
+        ipCache = new ClockCache<Integer>(DEFAULT_CACHE_CAPACITY);
+        URL url = IPSeeker.class.getResource("qqwry.dat");
+        if (url == null) {
             System.out.println("IP地址信息文件没有找到，IP显示功能将无法使用");
-            ipFile = null;
-
+            return;
         }
-        // 如果打开文件成功，读取文件头信息
-        if (ipFile != null) {
-            try {
-                ipBegin = readLong4(0);
-                ipEnd = readLong4(4);
-                if (ipBegin == -1 || ipEnd == -1) {
+        RandomAccessFile ipFile = null;
+        try {
+            // 将整个ip信息文件映射到内存中，文件句柄在映射完成后就可以关闭了
+            ipFile = new RandomAccessFile(url.getFile(), "r");
+            FileChannel fc = ipFile.getChannel();
+            MappedByteBuffer buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, ipFile.length());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            this.load(buffer);
+        } catch (Exception e) {
+            System.out.println("IP地址信息文件格式有错误，IP显示功能将无法使用");
+            this.mbb = null;
+        } finally {
+            if (ipFile != null) {
+                try {
                     ipFile.close();
-                    ipFile = null;
+                } catch (IOException e) {
+                    // nothing
                 }
-            } catch (IOException e) {
-                System.out.println("IP地址信息文件格式有错误，IP显示功能将无法使用");
-                ipFile = null;
             }
         }
     }
 
+    /**
+     * 读取文件头以及全部的"起始地址/结束地址偏移"记录，构建内存中的有序索引
+     * 
+     * @param buffer
+     */
+    private void load(MappedByteBuffer buffer) {
+        int begin = buffer.getInt(0);
+        int end = buffer.getInt(4);
+        if (begin < 0 || end < begin || end + IP_RECORD_LENGTH > buffer.limit()) {
+            throw new IllegalArgumentException("文件头信息异常, begin:" + begin + ", end:" + end);
+        }
+        int count = (end - begin) / IP_RECORD_LENGTH + 1;
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        int[] offsets = new int[count];
+        for (int i = 0, offset = begin; i < count; i++, offset += IP_RECORD_LENGTH) {
+            starts[i] = buffer.getInt(offset) ^ Integer.MIN_VALUE;
+            offsets[i] = readInt3(buffer, offset + 4);
+            ends[i] = buffer.getInt(offsets[i]) ^ Integer.MIN_VALUE;
+        }
+        this.ipBegin = begin;
+        this.ipEnd = end;
+        this.startIps = starts;
+        this.endIps = ends;
+        this.recordOffsets = offsets;
+        this.countries = new String[count];
+        this.areas = new String[count];
+        this.mbb = buffer;
+    }
+
     /** */
     /**
      * @return 单一实例
      */
-    public static IPSeeker getInstance() {
+    public static synchronized IPSeeker getInstance() {
         if (instance == null) {
             instance = new IPSeeker();
         }
@@ -102,31 +140,7 @@ public class IPSeeker {
      * @return 包含IPEntry类型的List
      */
     public List getIPEntriesDebug(String s) {
-        List ret = new ArrayList();
-        long endOffset = ipEnd + 4;
-        for (long offset = ipBegin + 4; offset <= endOffset; offset += IP_RECORD_LENGTH) {
-            // 读取结束IP偏移
-            long temp = readLong3(offset);
-            // 如果temp不等于-1，读取IP的地点信息
-            if (temp != -1) {
-                IPLocation loc = getIPLocation(temp);
-                // 判断是否这个地点里面包含了s子串，如果包含了，添加这个记录到List中，如果没有，继续
-                if (loc.country.indexOf(s) != -1 || loc.area.indexOf(s) != -1) {
-                    IPEntry entry = new IPEntry();
-                    entry.country = loc.country;
-                    entry.area = loc.area;
-                    // 得到起始IP
-                    readIP(offset - 4, b4);
-                    entry.beginIp = IPSeekerUtils.getIpStringFromBytes(b4);
-                    // 得到结束IP
-                    readIP(temp, b4);
-                    entry.endIp = IPSeekerUtils.getIpStringFromBytes(b4);
-                    // 添加该记录
-                    ret.add(entry);
-                }
-            }
-        }
-        return ret;
+        return getIPEntries(s);
     }
 
     /** */
@@ -139,63 +153,25 @@ public class IPSeeker {
      */
     public List getIPEntries(String s) {
         List ret = new ArrayList();
-        try {
-            // 映射IP信息文件到内存中
-            if (mbb == null) {
-                FileChannel fc = ipFile.getChannel();
-                mbb = fc.map(FileChannel.MapMode.READ_ONLY, 0, ipFile.length());
-                mbb.order(ByteOrder.LITTLE_ENDIAN);
-            }
-
-            int endOffset = (int) ipEnd;
-            for (int offset = (int) ipBegin + 4; offset <= endOffset; offset += IP_RECORD_LENGTH) {
-                int temp = readInt3(offset);
-                if (temp != -1) {
-                    IPLocation loc = getIPLocation(temp);
-                    // 判断是否这个地点里面包含了s子串，如果包含了，添加这个记录到List中，如果没有，继续
-                    if (loc.country.indexOf(s) != -1 || loc.area.indexOf(s) != -1) {
-                        IPEntry entry = new IPEntry();
-                        entry.country = loc.country;
-                        entry.area = loc.area;
-                        // 得到起始IP
-                        readIP(offset - 4, b4);
-                        entry.beginIp = IPSeekerUtils.getIpStringFromBytes(b4);
-                        // 得到结束IP
-                        readIP(temp, b4);
-                        entry.endIp = IPSeekerUtils.getIpStringFromBytes(b4);
-                        // 添加该记录
-                        ret.add(entry);
-                    }
-                }
+        if (mbb == null)
+            return ret;
+        for (int index = 0; index < recordOffsets.length; index++) {
+            String country = getCountryOfRecord(index);
+            String area = getAreaOfRecord(index);
+            // 判断是否这个地点里面包含了s子串，如果包含了，添加这个记录到List中，如果没有，继续
+            if (country.indexOf(s) != -1 || area.indexOf(s) != -1) {
+                IPEntry entry = new IPEntry();
+                entry.country = country;
+                entry.area = area;
+                entry.beginIp = IPSeekerUtils.getIpStringFromInt(startIps[index] ^ Integer.MIN_VALUE);
+                entry.endIp = IPSeekerUtils.getIpStringFromInt(endIps[index] ^ Integer.MIN_VALUE);
+                // 添加该记录
+                ret.add(entry);
             }
-        } catch (IOException e) {
-            System.out.println(e.getMessage());
         }
         return ret;
     }
 
-    /** */
-    /**
-     * 从内存映射文件的offset位置开始的3个字节读取一个int
-     * 
-     * @param offset
-     * @return
-     */
-    private int readInt3(int offset) {
-        mbb.position(offset);
-        return mbb.getInt() & 0x00FFFFFF;
-    }
-
-    /** */
-    /**
-     * 从内存映射文件的当前位置开始的3个字节读取一个int
-     * 
-     * @return
-     */
-    private int readInt3() {
-        return mbb.getInt() & 0x00FFFFFF;
-    }
-
     /** */
     /**
      * 根据IP得到国家名
@@ -205,20 +181,7 @@ public class IPSeeker {
      * @return 国家名字符串
      */
     public String getCountry(byte[] ip) {
-        // 检查ip地址文件是否正常
-        if (ipFile == null)
-            return "错误的IP数据库文件";
-        // 保存ip，转换ip字节数组为字符串形式
-        String ipStr = IPSeekerUtils.getIpStringFromBytes(ip);
-        // 先检查cache中是否已经包含有这个ip的结果，没有再搜索文件
-        if (ipCache.containsKey(ipStr)) {
-            IPLocation loc = (IPLocation) ipCache.get(ipStr);
-            return loc.country;
-        } else {
-            IPLocation loc = getIPLocation(ip);
-            ipCache.put(ipStr, loc.getCopy());
-            return loc.country;
-        }
+        return getCountry(IPSeekerUtils.getIpIntFromBytes(ip));
     }
 
     /** */
@@ -230,7 +193,23 @@ public class IPSeeker {
      * @return 国家名字符串
      */
     public String getCountry(String ip) {
-        return getCountry(IPSeekerUtils.getIpByteArrayFromString(ip));
+        long value = IPSeekerUtils.parseIp(ip);
+        return value == IPSeekerUtils.INVALID_IP ? UNKNOWN_COUNTRY : getCountry((int) value);
+    }
+
+    /**
+     * 根据IP得到国家名，先查看cache，没有再在内存索引上查找
+     * 
+     * @param ip
+     *            IP的int形式(big-endian)
+     * @return 国家名字符串
+     */
+    public String getCountry(int ip) {
+        // 检查ip地址文件是否正常
+        if (mbb == null)
+            return ERROR_FILE;
+        int index = locate(ip);
+        return index < 0 ? UNKNOWN_COUNTRY : getCountryOfRecord(index);
     }
 
     /** */
@@ -242,20 +221,7 @@ public class IPSeeker {
      * @return 地区名字符串
      */
     public String getArea(byte[] ip) {
-        // 检查ip地址文件是否正常
-        if (ipFile == null)
-            return "错误的IP数据库文件";
-        // 保存ip，转换ip字节数组为字符串形式
-        String ipStr = IPSeekerUtils.getIpStringFromBytes(ip);
-        // 先检查cache中是否已经包含有这个ip的结果，没有再搜索文件
-        if (ipCache.containsKey(ipStr)) {
-            IPLocation loc = (IPLocation) ipCache.get(ipStr);
-            return loc.area;
-        } else {
-            IPLocation loc = getIPLocation(ip);
-            ipCache.put(ipStr, loc.getCopy());
-            return loc.area;
-        }
+        return getArea(IPSeekerUtils.getIpIntFromBytes(ip));
     }
 
     /**
@@ -266,292 +232,207 @@ public class IPSeeker {
      * @return 地区名字符串
      */
     public String getArea(String ip) {
-        return getArea(IPSeekerUtils.getIpByteArrayFromString(ip));
+        long value = IPSeekerUtils.parseIp(ip);
+        return value == IPSeekerUtils.INVALID_IP ? UNKNOWN_AREA : getArea((int) value);
     }
 
-    /** */
     /**
-     * 根据ip搜索ip信息文件，得到IPLocation结构，所搜索的ip参数从类成员ip中得到
+     * 根据IP得到地区名，先查看cache，没有再在内存索引上查找
      * 
      * @param ip
-     *            要查询的IP
-     * @return IPLocation结构
+     *            IP的int形式(big-endian)
+     * @return 地区名字符串
      */
-    public IPLocation getIPLocation(byte[] ip) {
-        IPLocation info = null;
-        long offset = locateIP(ip);
-        if (offset != -1)
-            info = getIPLocation(offset);
-        if (info == null) {
-            info = new IPLocation();
-            info.country = "未知国家";
-            info.area = "未知地区";
-        }
-        return info;
+    public String getArea(int ip) {
+        // 检查ip地址文件是否正常
+        if (mbb == null)
+            return ERROR_FILE;
+        int index = locate(ip);
+        return index < 0 ? UNKNOWN_AREA : getAreaOfRecord(index);
     }
 
+    /** */
     /**
-     * 从offset位置读取4个字节为一个long，因为java为big-endian格式，所以没办法 用了这么一个函数来做转换
+     * 根据ip搜索ip信息文件，得到IPLocation结构
      * 
-     * @param offset
-     * @return 读取的long值，返回-1表示读取文件失败
+     * @param ip
+     *            要查询的IP
+     * @return IPLocation结构
      */
-    private long readLong4(long offset) {
-        long ret = 0;
-        try {
-            ipFile.seek(offset);
-            ret |= (ipFile.readByte() & 0xFF);
-            ret |= ((ipFile.readByte() << 8) & 0xFF00);
-            ret |= ((ipFile.readByte() << 16) & 0xFF0000);
-            ret |= ((ipFile.readByte() << 24) & 0xFF000000);
-            return ret;
-        } catch (IOException e) {
-            return -1;
+    public IPLocation getIPLocation(byte[] ip) {
+        IPLocation info = new IPLocation();
+        int index = mbb == null ? -1 : locateRecord(IPSeekerUtils.getIpIntFromBytes(ip));
+        if (index < 0) {
+            info.country = UNKNOWN_COUNTRY;
+            info.area = UNKNOWN_AREA;
+        } else {
+            info.country = getCountryOfRecord(index);
+            info.area = getAreaOfRecord(index);
         }
+        return info;
     }
 
     /**
-     * 从offset位置读取3个字节为一个long，因为java为big-endian格式，所以没办法 用了这么一个函数来做转换
+     * ip信息文件是否加载成功
      * 
-     * @param offset
-     * @return 读取的long值，返回-1表示读取文件失败
+     * @return
      */
-    private long readLong3(long offset) {
-        long ret = 0;
-        try {
-            ipFile.seek(offset);
-            ipFile.readFully(b3);
-            ret |= (b3[0] & 0xFF);
-            ret |= ((b3[1] << 8) & 0xFF00);
-            ret |= ((b3[2] << 16) & 0xFF0000);
-            return ret;
-        } catch (IOException e) {
-            return -1;
-        }
+    protected boolean isLoaded() {
+        return mbb != null;
     }
 
     /**
-     * 从当前位置读取3个字节转换成long
+     * ip段记录的个数，文件加载失败的时候返回0
      * 
      * @return
      */
-    private long readLong3() {
-        long ret = 0;
-        try {
-            ipFile.readFully(b3);
-            ret |= (b3[0] & 0xFF);
-            ret |= ((b3[1] << 8) & 0xFF00);
-            ret |= ((b3[2] << 16) & 0xFF0000);
-            return ret;
-        } catch (IOException e) {
-            return -1;
-        }
+    protected int getRecordCount() {
+        return mbb == null ? 0 : recordOffsets.length;
     }
 
     /**
-     * 从offset位置读取四个字节的ip地址放入ip数组中，读取后的ip为big-endian格式，但是
-     * 文件中是little-endian形式，将会进行转换
+     * 设置ip缓存的容量，会丢弃当前的缓存内容
      * 
-     * @param offset
-     * @param ip
+     * @param capacity
      */
-    private void readIP(long offset, byte[] ip) {
-        try {
-            ipFile.seek(offset);
-            ipFile.readFully(ip);
-            byte temp = ip[0];
-            ip[0] = ip[3];
-            ip[3] = temp;
-            temp = ip[1];
-            ip[1] = ip[2];
-            ip[2] = temp;
-        } catch (IOException e) {
-            System.out.println(e.getMessage());
+    public synchronized void setCacheCapacity(int capacity) {
+        // 和请求的容量比较，ClockCache.capacity()是调整后的值，不能直接比较，否则每次调用都会清空缓存
+        if (capacity != cacheCapacity) {
+            ipCache = new ClockCache<Integer>(capacity);
+            cacheCapacity = capacity;
         }
     }
 
     /**
-     * 从offset位置读取四个字节的ip地址放入ip数组中，读取后的ip为big-endian格式，但是
-     * 文件中是little-endian形式，将会进行转换
+     * 获取ip缓存，主要用于读取命中率等统计信息
      * 
-     * @param offset
-     * @param ip
+     * @return
      */
-    private void readIP(int offset, byte[] ip) {
-        mbb.position(offset);
-        mbb.get(ip);
-        byte temp = ip[0];
-        ip[0] = ip[3];
-        ip[3] = temp;
-        temp = ip[1];
-        ip[1] = ip[2];
-        ip[2] = temp;
+    public ClockCache<Integer> getCache() {
+        return ipCache;
     }
 
     /**
-     * 把类成员ip和beginIp比较，注意这个beginIp是big-endian的
+     * 查找包含ip的记录下标，先查看cache，没有再搜索内存索引并放入cache
      * 
      * @param ip
-     *            要查询的IP
-     * @param beginIp
-     *            和被查询IP相比较的IP
-     * @return 相等返回0，ip大于beginIp则返回1，小于返回-1。
+     * @return 如果找到了，返回记录下标，如果没有找到，返回-1
      */
-    private int compareIP(byte[] ip, byte[] beginIp) {
-        for (int i = 0; i < 4; i++) {
-            int r = compareByte(ip[i], beginIp[i]);
-            if (r != 0)
-                return r;
+    protected int locate(int ip) {
+        ClockCache<Integer> cache = ipCache;
+        Integer index = cache.get(ip);
+        if (index == null) {
+            index = locateRecord(ip);
+            cache.put(ip, index);
         }
-        return 0;
+        return index;
     }
 
     /**
-     * 把两个byte当作无符号数进行比较
+     * 在内存索引上二分查找包含ip的记录下标
      * 
-     * @param b1
-     * @param b2
-     * @return 若b1大于b2则返回1，相等返回0，小于返回-1
+     * @param ip
+     *            IP的int形式(big-endian)
+     * @return 如果找到了，返回记录下标，如果没有找到，返回-1
      */
-    private int compareByte(byte b1, byte b2) {
-        if ((b1 & 0xFF) > (b2 & 0xFF)) // 比较是否大于
-            return 1;
-        else if ((b1 ^ b2) == 0)// 判断是否相等
-            return 0;
-        else
+    protected int locateRecord(int ip) {
+        int key = ip ^ Integer.MIN_VALUE;
+        int[] starts = this.startIps;
+        int low = 0, high = starts.length - 1;
+        // 查找最后一个起始ip小于等于key的记录
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (high < 0 || key > this.endIps[high]) {
             return -1;
+        }
+        return high;
     }
 
     /**
-     * 这个方法将根据ip的内容，定位到包含这个ip国家地区的记录处，返回一个绝对偏移 方法使用二分法查找。
+     * 获取记录下标对应的国家名
      * 
-     * @param ip
-     *            要查询的IP
-     * @return 如果找到了，返回结束IP的偏移，如果没有找到，返回-1
+     * @param index
+     * @return
      */
-    private long locateIP(byte[] ip) {
-        long m = 0;
-        int r;
-        // 比较第一个ip项
-        readIP(ipBegin, b4);
-        r = compareIP(ip, b4);
-        if (r == 0)
-            return ipBegin;
-        else if (r < 0)
-            return -1;
-        // 开始二分搜索
-        for (long i = ipBegin, j = ipEnd; i < j;) {
-            m = getMiddleOffset(i, j);
-            readIP(m, b4);
-            r = compareIP(ip, b4);
-            // log.debug(Utils.getIpStringFromBytes(b));
-            if (r > 0)
-                i = m;
-            else if (r < 0) {
-                if (m == j) {
-                    j -= IP_RECORD_LENGTH;
-                    m = j;
-                } else
-                    j = m;
-            } else
-                return readLong3(m + 4);
+    protected String getCountryOfRecord(int index) {
+        String country = this.countries[index];
+        if (country == null) {
+            this.resolveRecord(index);
+            country = this.countries[index];
         }
-        // 如果循环结束了，那么i和j必定是相等的，这个记录为最可能的记录，但是并非
-        // 肯定就是，还要检查一下，如果是，就返回结束地址区的绝对偏移
-        m = readLong3(m + 4);
-        readIP(m, b4);
-        r = compareIP(ip, b4);
-        if (r <= 0)
-            return m;
-        else
-            return -1;
+        return country;
     }
 
     /**
-     * 得到begin偏移和end偏移中间位置记录的偏移
+     * 获取记录下标对应的地区名
      * 
-     * @param begin
-     * @param end
+     * @param index
      * @return
      */
-    private long getMiddleOffset(long begin, long end) {
-        long records = (end - begin) / IP_RECORD_LENGTH;
-        records >>= 1;
-        if (records == 0)
-            records = 1;
-        return begin + records * IP_RECORD_LENGTH;
+    protected String getAreaOfRecord(int index) {
+        String area = this.areas[index];
+        if (area == null) {
+            this.resolveRecord(index);
+            area = this.areas[index];
+        }
+        return area;
     }
 
     /**
-     * 给定一个ip国家地区记录的偏移，返回一个IPLocation结构
+     * 获取记录对应的国家信息在文件中的绝对偏移，多个记录可能重定向到同一个国家信息
      * 
-     * @param offset
+     * @param index
      * @return
      */
-    private IPLocation getIPLocation(long offset) {
-        try {
-            // 跳过4字节ip
-            ipFile.seek(offset + 4);
-            // 读取第一个字节判断是否标志字节
-            byte b = ipFile.readByte();
-            if (b == AREA_FOLLOWED) {
-                // 读取国家偏移
-                long countryOffset = readLong3();
-                // 跳转至偏移处
-                ipFile.seek(countryOffset);
-                // 再检查一次标志字节，因为这个时候这个地方仍然可能是个重定向
-                b = ipFile.readByte();
-                if (b == NO_AREA) {
-                    loc.country = readString(readLong3());
-                    ipFile.seek(countryOffset + 4);
-                } else
-                    loc.country = readString(countryOffset);
-                // 读取地区标志
-                loc.area = readArea(ipFile.getFilePointer());
-            } else if (b == NO_AREA) {
-                loc.country = readString(readLong3());
-                loc.area = readArea(offset + 8);
-            } else {
-                loc.country = readString(ipFile.getFilePointer() - 1);
-                loc.area = readArea(ipFile.getFilePointer());
-            }
-            return loc;
-        } catch (IOException e) {
-            return null;
+    protected int getCountryOffsetOfRecord(int index) {
+        int offset = this.recordOffsets[index];
+        byte b = mbb.get(offset + 4);
+        if (b == AREA_FOLLOWED) {
+            int countryOffset = readInt3(mbb, offset + 5);
+            return mbb.get(countryOffset) == NO_AREA ? readInt3(mbb, countryOffset + 1) : countryOffset;
+        } else if (b == NO_AREA) {
+            return readInt3(mbb, offset + 5);
         }
+        return offset + 4;
     }
 
     /**
-     * @param offset
-     * @return
+     * 解析记录的国家和地区信息，结果保存到countries和areas中
+     * 
+     * @param index
      */
-    private IPLocation getIPLocation(int offset) {
-        // 跳过4字节ip
-        mbb.position(offset + 4);
-        // 读取第一个字节判断是否标志字节
-        byte b = mbb.get();
+    private void resolveRecord(int index) {
+        int offset = this.recordOffsets[index];
+        String country, area;
+        // 跳过4字节ip, 读取第一个字节判断是否标志字节
+        byte b = mbb.get(offset + 4);
         if (b == AREA_FOLLOWED) {
             // 读取国家偏移
-            int countryOffset = readInt3();
-            // 跳转至偏移处
-            mbb.position(countryOffset);
+            int countryOffset = readInt3(mbb, offset + 5);
             // 再检查一次标志字节，因为这个时候这个地方仍然可能是个重定向
-            b = mbb.get();
-            if (b == NO_AREA) {
-                loc.country = readString(readInt3());
-                mbb.position(countryOffset + 4);
-            } else
-                loc.country = readString(countryOffset);
-            // 读取地区标志
-            loc.area = readArea(mbb.position());
+            if (mbb.get(countryOffset) == NO_AREA) {
+                country = readString(readInt3(mbb, countryOffset + 1));
+                area = readArea(countryOffset + 4);
+            } else {
+                country = readString(countryOffset);
+                area = readArea(indexOfZero(countryOffset) + 1);
+            }
         } else if (b == NO_AREA) {
-            loc.country = readString(readInt3());
-            loc.area = readArea(offset + 8);
+            country = readString(readInt3(mbb, offset + 5));
+            area = readArea(offset + 8);
         } else {
-            loc.country = readString(mbb.position() - 1);
-            loc.area = readArea(mbb.position());
+            country = readString(offset + 4);
+            area = readArea(indexOfZero(offset + 4) + 1);
         }
-        return loc;
+        // 先设置area再设置country, 读取的时候两个值都是完整的
+        this.areas[index] = area;
+        this.countries[index] = country;
     }
 
     /**
@@ -559,15 +440,13 @@ public class IPSeeker {
      * 
      * @param offset
      * @return 地区名字符串
-     * @throws IOException
      */
-    private String readArea(long offset) throws IOException {
-        ipFile.seek(offset);
-        byte b = ipFile.readByte();
+    private String readArea(int offset) {
+        byte b = mbb.get(offset);
         if (b == 0x01 || b == 0x02) {
-            long areaOffset = readLong3(offset + 1);
+            int areaOffset = readInt3(mbb, offset + 1);
             if (areaOffset == 0)
-                return "未知地区";
+                return UNKNOWN_AREA;
             else
                 return readString(areaOffset);
         } else
@@ -575,60 +454,46 @@ public class IPSeeker {
     }
 
     /**
+     * 从内存映射文件的offset位置得到一个0结尾字符串
+     * 
      * @param offset
-     * @return
+     * @return 读取的字符串，出错返回空字符串
      */
-    private String readArea(int offset) {
-        mbb.position(offset);
-        byte b = mbb.get();
-        if (b == 0x01 || b == 0x02) {
-            int areaOffset = readInt3();
-            if (areaOffset == 0)
-                return "未知地区";
-            else
-                return readString(areaOffset);
-        } else
-            return readString(offset);
+    private String readString(int offset) {
+        int end = indexOfZero(offset);
+        int length = end - offset;
+        if (length <= 0)
+            return "";
+        byte[] buf = new byte[length];
+        for (int i = 0; i < length; i++) {
+            buf[i] = mbb.get(offset + i);
+        }
+        return IPSeekerUtils.getString(buf, 0, length, "GBK");
     }
 
     /**
-     * 从offset偏移处读取一个以0结束的字符串
+     * 从offset位置开始查找字符串结尾0的位置
      * 
      * @param offset
-     * @return 读取的字符串，出错返回空字符串
+     * @return
      */
-    private String readString(long offset) {
-        try {
-            ipFile.seek(offset);
-            int i;
-            for (i = 0, buf[i] = ipFile.readByte(); buf[i] != 0; buf[++i] = ipFile.readByte())
-                ;
-            if (i != 0)
-                return IPSeekerUtils.getString(buf, 0, i, "GBK");
-        } catch (IOException e) {
-            System.out.println(e.getMessage());
+    private int indexOfZero(int offset) {
+        int limit = mbb.limit();
+        while (offset < limit && mbb.get(offset) != 0) {
+            offset++;
         }
-        return "";
+        return offset;
     }
 
     /**
-     * 从内存映射文件的offset位置得到一个0结尾字符串
+     * 从buffer的offset位置(绝对位置)开始的3个字节读取一个int，不修改buffer的position
      * 
+     * @param buffer
      * @param offset
      * @return
      */
-    private String readString(int offset) {
-        try {
-            mbb.position(offset);
-            int i;
-            for (i = 0, buf[i] = mbb.get(); buf[i] != 0; buf[++i] = mbb.get())
-                ;
-            if (i != 0)
-                return IPSeekerUtils.getString(buf, 0, i, "GBK");
-        } catch (IllegalArgumentException e) {
-            System.out.println(e.getMessage());
-        }
-        return "";
+    private static int readInt3(MappedByteBuffer buffer, int offset) {
+        return (buffer.get(offset) & 0xFF) | ((buffer.get(offset + 1) & 0xFF) << 8) | ((buffer.get(offset + 2) & 0xFF) << 16);
     }
 
     public String getAddress(String ip) {
@@ -688,6 +553,8 @@ public class IPSeeker {
      * 
      */
     public static class IPSeekerUtils {
+        public static final long INVALID_IP = -1L; // parseIp解析失败的返回值
+
         /**
          * 从ip的字符串形式得到字节数组形式
          * 
@@ -782,25 +649,84 @@ public class IPSeeker {
             sb.append(ip[3] & 0xFF);
             return sb.toString();
         }
+
+        /**
+         * 解析ip的字符串形式，必须是四段0-255的十进制数字
+         * 
+         * @param ip
+         *            字符串形式的ip
+         * @return 无符号的ip值，高32位为0，强转为int就是big-endian的int形式；ip无效的时候返回INVALID_IP
+         */
+        public static long parseIp(String ip) {
+            if (ip == null) {
+                return INVALID_IP;
+            }
+            long ret = 0;
+            int part = 0, digits = 0, parts = 0;
+            for (int i = 0, len = ip.length(); i <= len; i++) {
+                char c = i < len ? ip.charAt(i) : '.';
+                if (c >= '0' && c <= '9' && digits < 3) {
+                    part = part * 10 + (c - '0');
+                    digits++;
+                } else if (c == '.' && digits > 0 && part <= 255 && parts < 4) {
+                    ret = (ret << 8) | part;
+                    parts++;
+                    part = digits = 0;
+                } else {
+                    parts = -1; // 非法字符、某一段超过3位或者大于255、多于4段
+                    break;
+                }
+            }
+            if (parts != 4) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("无效的ip地址:" + ip);
+                }
+                return INVALID_IP;
+            }
+            return ret;
+        }
+
+        /**
+         * @param ip
+         *            ip的字节数组形式
+         * @return int形式的ip(big-endian)
+         */
+        public static int getIpIntFromBytes(byte[] ip) {
+            return ((ip[0] & 0xFF) << 24) | ((ip[1] & 0xFF) << 16) | ((ip[2] & 0xFF) << 8) | (ip[3] & 0xFF);
+        }
+
+        /**
+         * @param ip
+         *            ip的int形式(big-endian)
+         * @return 字符串形式的ip
+         */
+        public static String getIpStringFromInt(int ip) {
+            StringBuilder sb = new StringBuilder(15);
+            sb.append((ip >>> 24) & 0xFF);
+            sb.append('.');
+            sb.append((ip >>> 16) & 0xFF);
+            sb.append('.');
+            sb.append((ip >>> 8) & 0xFF);
+            sb.append('.');
+            sb.append(ip & 0xFF);
+            return sb.toString();
+        }
     }
 
     /**
-     * 获取全部ip地址集合列表
+     * 获取全部ip地址集合列表，每条记录取结束ip
      * 
      * @return
      */
     public List<String> getAllIp() {
-		List<String> list = new ArrayList<String>();
-		byte[] buf = new byte[4];
-		for (long i = ipBegin; i < ipEnd; i += IP_RECORD_LENGTH) {
-			try {
-				this.readIP(this.readLong3(i + 4), buf); // 读取ip，最终ip放到buf中
-				String ip = IPSeekerUtils.getIpStringFromBytes(buf);
-				list.add(ip);
-			} catch (Exception e) {
-				// nothing
-			}
-		}
-		return list;
-	}
+        List<String> list = new ArrayList<String>();
+        if (mbb == null) {
+            return list;
+        }
+        // 和之前的实现保持一致，不包含最后一条记录
+        for (int i = 0; i < endIps.length - 1; i++) {
+            list.add(IPSeekerUtils.getIpStringFromInt(endIps[i] ^ Integer.MIN_VALUE));
+        }
+        return list;
+    }
 }
\ No newline at end of file
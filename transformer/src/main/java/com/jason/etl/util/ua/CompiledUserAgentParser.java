@@ -0,0 +1,242 @@
+package com.jason.etl.util.ua;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.jason.etl.util.UserAgentUtil.UserAgentInfo;
+
+/**
+ * 将浏览器和操作系统的识别规则编译成一个多模式匹配自动机(Aho-Corasick)的解析实现<br/>
+ * 自动机在创建的时候构建完成，解析的时候只对user agent扫描一遍，记录每个规则第一次出现的位置，
+ * 然后按照规则的优先级选出浏览器和操作系统，只在需要的位置截取版本号。<br/>
+ * 自动机构建完成后不再修改，可以被多个线程共享<br/>
+ * 浏览器名称、浏览器版本号和操作系统名称按照uasparser的命名输出；操作系统版本号直接使用user agent中的版本号，
+ * 例如"OS X 10.11.1"、"iOS 9.1"、"Android 5.1.1"，和uasparser数据库中的发行版本名称不同。
+ * 从uasparser切换过来之后，event_logs中新写入的os_v列的值会变化，按照操作系统版本统计的时候需要从切换的那一天开始重新统计
+ *
+ * @author jason
+ *
+ */
+public class CompiledUserAgentParser implements IUserAgentParser {
+    private static final String UNKNOWN = "unknown";
+    private static final int ALPHABET = 128; // 规则只包含ascii字符
+
+    private static final int TYPE_BROWSER = 0; // 浏览器规则
+    private static final int TYPE_OS = 1; // 操作系统规则
+    private static final int TYPE_VERSION = 2; // 只用于提供版本号的辅助规则
+
+    private final Rule[] rules;
+    private final int[][] transitions; // 自动机的状态转移表
+    private final int[][] outputs; // 每个状态匹配到的规则下标
+
+    public CompiledUserAgentParser() {
+        this.rules = defaultRules();
+        // 构建trie树
+        List<int[]> delta = new ArrayList<int[]>();
+        List<int[]> out = new ArrayList<int[]>();
+        delta.add(newState());
+        out.add(new int[0]);
+        for (int r = 0; r < this.rules.length; r++) {
+            int state = 0;
+            for (char c : this.rules[r].token.toCharArray()) {
+                if (delta.get(state)[c] < 0) {
+                    delta.get(state)[c] = delta.size();
+                    delta.add(newState());
+                    out.add(new int[0]);
+                }
+                state = delta.get(state)[c];
+            }
+            out.set(state, append(out.get(state), r));
+        }
+        // 广度优先计算失败指针，同时补全状态转移表
+        int[] fail = new int[delta.size()];
+        LinkedList<Integer> queue = new LinkedList<Integer>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = delta.get(0)[c];
+            if (next < 0) {
+                delta.get(0)[c] = 0;
+            } else {
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.removeFirst();
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = delta.get(state)[c];
+                if (next < 0) {
+                    delta.get(state)[c] = delta.get(fail[state])[c];
+                } else {
+                    fail[next] = delta.get(fail[state])[c];
+                    for (int r : out.get(fail[next])) {
+                        out.set(next, append(out.get(next), r));
+                    }
+                    queue.add(next);
+                }
+            }
+        }
+        this.transitions = delta.toArray(new int[delta.size()][]);
+        this.outputs = out.toArray(new int[out.size()][]);
+    }
+
+    @Override
+    public UserAgentInfo parse(String userAgent) {
+        // 扫描一遍，记录每个规则第一次匹配结束的位置
+        int[] ends = new int[this.rules.length];
+        Arrays.fill(ends, -1);
+        int state = 0;
+        for (int i = 0, len = userAgent.length(); i < len; i++) {
+            char c = userAgent.charAt(i);
+            state = c < ALPHABET ? this.transitions[state][c] : 0;
+            for (int r : this.outputs[state]) {
+                if (ends[r] < 0) {
+                    ends[r] = i + 1;
+                }
+            }
+        }
+
+        String browserName = UNKNOWN, browserVersion = UNKNOWN, osName = UNKNOWN, osVersion = UNKNOWN;
+        Rule browser = this.first(ends, TYPE_BROWSER);
+        if (browser != null) {
+            browserName = browser.family;
+            int from = browser.versionRule < 0 ? ends[browser.index] : ends[browser.versionRule];
+            if (from >= 0 && (browser.versionRule >= 0 || browser.extractVersion)) {
+                browserVersion = version(userAgent, from);
+            }
+        }
+        Rule os = this.first(ends, TYPE_OS);
+        if (os != null) {
+            osName = os.family;
+            osVersion = os.extractVersion ? os.name + version(userAgent, ends[os.index]).replace('_', '.') : os.name;
+        }
+        return new UserAgentInfo(browserName, browserVersion, osName, osVersion);
+    }
+
+    /**
+     * 按照优先级获取第一个匹配的规则
+     *
+     * @param ends
+     * @param type
+     * @return
+     */
+    private Rule first(int[] ends, int type) {
+        for (Rule rule : this.rules) {
+            if (rule.type == type && ends[rule.index] >= 0) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从from位置开始截取版本号，版本号由字母、数字、点和下划线组成
+     *
+     * @param userAgent
+     * @param from
+     * @return
+     */
+    private static String version(String userAgent, int from) {
+        int to = from;
+        while (to < userAgent.length()) {
+            char c = userAgent.charAt(to);
+            if (!(Character.isLetterOrDigit(c) || c == '.' || c == '_')) {
+                break;
+            }
+            to++;
+        }
+        return to == from ? UNKNOWN : userAgent.substring(from, to);
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = value;
+        return result;
+    }
+
+    /**
+     * 默认的识别规则，同一类型的规则按照定义顺序确定优先级<br/>
+     * 例如chrome的user agent中同时包含Safari/，所以Chrome/需要定义在Safari/前面
+     *
+     * @return
+     */
+    private static Rule[] defaultRules() {
+        List<Rule> rules = new ArrayList<Rule>();
+        // 辅助规则
+        Rule version = add(rules, TYPE_VERSION, "Version/", null, null, false);
+        Rule rv = add(rules, TYPE_VERSION, "rv:", null, null, false);
+        // 浏览器规则
+        add(rules, TYPE_BROWSER, "Edge/", "Edge", null, true);
+        add(rules, TYPE_BROWSER, "OPR/", "Opera", null, true);
+        add(rules, TYPE_BROWSER, "MetaSr", "Sogou Explorer", null, false);
+        add(rules, TYPE_BROWSER, "QQBrowser/", "QQ Browser", null, true);
+        add(rules, TYPE_BROWSER, "UCBrowser/", "UC Browser", null, true);
+        add(rules, TYPE_BROWSER, "Maxthon/", "Maxthon", null, true);
+        add(rules, TYPE_BROWSER, "Firefox/", "Firefox", null, true);
+        add(rules, TYPE_BROWSER, "MSIE ", "IE", null, true);
+        add(rules, TYPE_BROWSER, "Trident/", "IE", null, false).versionRule = rv.index;
+        add(rules, TYPE_BROWSER, "CriOS/", "Chrome Mobile", null, true);
+        add(rules, TYPE_BROWSER, "Chrome/", "Chrome", null, true);
+        add(rules, TYPE_BROWSER, "Mobile Safari/", "Android Webkit", null, false).versionRule = version.index;
+        add(rules, TYPE_BROWSER, "Mobile/", "Mobile Safari", null, false).versionRule = version.index;
+        add(rules, TYPE_BROWSER, "Safari/", "Safari", null, false).versionRule = version.index;
+        add(rules, TYPE_BROWSER, "Opera/", "Opera", null, false).versionRule = version.index;
+        // 操作系统规则
+        add(rules, TYPE_OS, "Windows Phone", "Windows Phone", "Windows Phone", false);
+        add(rules, TYPE_OS, "Windows NT 10.0", "Windows", "Windows 10", false);
+        add(rules, TYPE_OS, "Windows NT 6.3", "Windows", "Windows 8.1", false);
+        add(rules, TYPE_OS, "Windows NT 6.2", "Windows", "Windows 8", false);
+        add(rules, TYPE_OS, "Windows NT 6.1", "Windows", "Windows 7", false);
+        add(rules, TYPE_OS, "Windows NT 6.0", "Windows", "Windows Vista", false);
+        add(rules, TYPE_OS, "Windows NT 5.2", "Windows", "Windows XP", false);
+        add(rules, TYPE_OS, "Windows NT 5.1", "Windows", "Windows XP", false);
+        add(rules, TYPE_OS, "Windows NT 5.0", "Windows", "Windows 2000", false);
+        add(rules, TYPE_OS, "Windows", "Windows", "Windows", false);
+        add(rules, TYPE_OS, "iPhone OS ", "iOS", "iOS ", true);
+        add(rules, TYPE_OS, "CPU OS ", "iOS", "iOS ", true);
+        add(rules, TYPE_OS, "Android ", "Android", "Android ", true);
+        add(rules, TYPE_OS, "Mac OS X ", "OS X", "OS X ", true);
+        add(rules, TYPE_OS, "CrOS", "Chrome OS", "Chrome OS", false);
+        add(rules, TYPE_OS, "Ubuntu", "Linux", "Ubuntu", false);
+        add(rules, TYPE_OS, "Linux", "Linux", "Linux", false);
+        return rules.toArray(new Rule[rules.size()]);
+    }
+
+    private static Rule add(List<Rule> rules, int type, String token, String family, String name, boolean extractVersion) {
+        Rule rule = new Rule(rules.size(), type, token, family, name, extractVersion);
+        rules.add(rule);
+        return rule;
+    }
+
+    /**
+     * 一条识别规则
+     *
+     * @author jason
+     *
+     */
+    private static class Rule {
+        private final int index; // 规则下标
+        private final int type; // 规则类型
+        private final String token; // 需要匹配的字符串
+        private final String family; // 浏览器名称或者操作系统名称
+        private final String name; // 操作系统版本，如果需要截取版本号，那么作为版本号的前缀
+        private final boolean extractVersion; // 是否从匹配结束的位置截取版本号
+        private int versionRule = -1; // 从其他规则匹配结束的位置截取版本号
+
+        Rule(int index, int type, String token, String family, String name, boolean extractVersion) {
+            this.index = index;
+            this.type = type;
+            this.token = token;
+            this.family = family;
+            this.name = name;
+            this.extractVersion = extractVersion;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.jason.etl.util.ua;
+
+import java.io.IOException;
+
+import com.jason.etl.util.UserAgentUtil.UserAgentInfo;
+
+/**
+ * 浏览器user agent的解析接口，UserAgentUtil通过该接口调用具体的解析实现<br/>
+ * 解析对象被所有线程共享，实现类必须是线程安全的
+ * 
+ * @author jason
+ *
+ */
+public interface IUserAgentParser {
+    /**
+     * 解析user agent，返回浏览器名称、版本号以及操作系统名称、版本号
+     * 
+     * @param userAgent
+     *            不为空的user agent字符串
+     * @return
+     * @throws IOException
+     */
+    public UserAgentInfo parse(String userAgent) throws IOException;
+}
@@ -0,0 +1,30 @@
+package com.jason.etl.util.ua;
+
+import java.io.IOException;
+
+import com.jason.etl.util.UserAgentUtil.UserAgentInfo;
+
+import cz.mallat.uasparser.OnlineUpdater;
+import cz.mallat.uasparser.UASparser;
+
+/**
+ * 基于uasparser jar文件的解析实现，默认的解析方式<br/>
+ * uasparser不保证线程安全，解析方法在对象上同步；UserAgentUtil的缓存命中的时候不会调用解析，多线程时竞争不大，
+ * 缓存命中率不高的时候建议使用CompiledUserAgentParser
+ * 
+ * @author jason
+ *
+ */
+public class UASparserUserAgentParser implements IUserAgentParser {
+    private UASparser uasParser = null;
+
+    public UASparserUserAgentParser() throws IOException {
+        this.uasParser = new UASparser(OnlineUpdater.getVendoredInputStream());
+    }
+
+    @Override
+    public synchronized UserAgentInfo parse(String userAgent) throws IOException {
+        cz.mallat.uasparser.UserAgentInfo info = this.uasParser.parse(userAgent);
+        return new UserAgentInfo(info.getUaFamily(), info.getBrowserVersionInfo(), info.getOsFamily(), info.getOsName());
+    }
+}
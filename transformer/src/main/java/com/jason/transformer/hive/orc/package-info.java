@@ -0,0 +1,7 @@
+/**
+ * etl导出的orc格式event_logs相关文件
+ * 
+ * @author jason
+ *
+ */
+package com.jason.transformer.hive.orc;
\ No newline at end of file
@@ -101,6 +101,45 @@ public class StatsCommonDimension extends StatsDimension {
         return tmp;
     }
 
+    /**
+     * 直接比较序列化后的字节，顺序和compareTo一致
+     * 
+     * @param b1
+     * @param s1
+     * @param b2
+     * @param s2
+     * @return
+     */
+    public static int compareRaw(byte[] b1, int s1, byte[] b2, int s2) {
+        int tmp = DateDimension.compareRaw(b1, s1, b2, s2);
+        if (tmp != 0) {
+            return tmp;
+        }
+        // 前面的维度相等的时候占用的字节数也相等
+        int length = DateDimension.getRawLength(b1, s1);
+        s1 += length;
+        s2 += length;
+        tmp = PlatformDimension.compareRaw(b1, s1, b2, s2);
+        if (tmp != 0) {
+            return tmp;
+        }
+        length = PlatformDimension.getRawLength(b1, s1);
+        return KpiDimension.compareRaw(b1, s1 + length, b2, s2 + length);
+    }
+
+    /**
+     * 获取序列化后占用的字节数
+     * 
+     * @param b
+     * @param s
+     * @return
+     */
+    public static int getRawLength(byte[] b, int s) {
+        int length = DateDimension.getRawLength(b, s);
+        length += PlatformDimension.getRawLength(b, s + length);
+        return length + KpiDimension.getRawLength(b, s + length);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
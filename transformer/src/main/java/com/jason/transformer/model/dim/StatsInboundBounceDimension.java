@@ -4,6 +4,8 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import org.apache.hadoop.io.WritableComparator;
+
 import com.jason.transformer.model.dim.base.BaseDimension;
 
 /**
@@ -17,6 +19,11 @@ public class StatsInboundBounceDimension extends StatsDimension {
     private String sid;
     private long serverTime;
 
+    static {
+        // 注册按照序列化字节比较的comparator，shuffle排序的时候不需要反序列化key
+        WritableComparator.define(StatsInboundBounceDimension.class, new Comparator());
+    }
+
     /**
      * 克隆一个对象
      * 
@@ -91,4 +98,32 @@ public class StatsInboundBounceDimension extends StatsDimension {
         return tmp;
     }
 
+    /**
+     * 按照statsCommon、sid、serverTime的顺序直接比较序列化后的字节
+     * 
+     * @author jason
+     *
+     */
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(StatsInboundBounceDimension.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            int tmp = StatsCommonDimension.compareRaw(b1, s1, b2, s2);
+            if (tmp != 0) {
+                return tmp;
+            }
+            int length = StatsCommonDimension.getRawLength(b1, s1);
+            s1 += length;
+            s2 += length;
+            tmp = compareUTF(b1, s1, b2, s2);
+            if (tmp != 0) {
+                return tmp;
+            }
+            length = getUTFLength(b1, s1);
+            return Long.compare(readLong(b1, s1 + length), readLong(b2, s2 + length));
+        }
+    }
 }
@@ -4,6 +4,8 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import org.apache.hadoop.io.WritableComparator;
+
 import com.jason.transformer.model.dim.base.BaseDimension;
 import com.jason.transformer.model.dim.base.LocationDimension;
 
@@ -17,6 +19,11 @@ public class StatsLocationDimension extends StatsDimension {
     private StatsCommonDimension statsCommon = new StatsCommonDimension();
     private LocationDimension location = new LocationDimension();
 
+    static {
+        // 注册按照序列化字节比较的comparator，shuffle排序的时候不需要反序列化key
+        WritableComparator.define(StatsLocationDimension.class, new Comparator());
+    }
+
     /**
      * 根据现有的location对象复制一个
      * 
@@ -80,4 +87,25 @@ public class StatsLocationDimension extends StatsDimension {
         return tmp;
     }
 
+    /**
+     * 按照statsCommon、location的顺序直接比较序列化后的字节
+     * 
+     * @author jason
+     *
+     */
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(StatsLocationDimension.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            int tmp = StatsCommonDimension.compareRaw(b1, s1, b2, s2);
+            if (tmp != 0) {
+                return tmp;
+            }
+            int length = StatsCommonDimension.getRawLength(b1, s1);
+            return LocationDimension.compareRaw(b1, s1 + length, b2, s2 + length);
+        }
+    }
 }
@@ -4,6 +4,8 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import org.apache.hadoop.io.WritableComparator;
+
 import com.jason.transformer.model.dim.base.BaseDimension;
 import com.jason.transformer.model.dim.base.BrowserDimension;
 
@@ -17,6 +19,11 @@ public class StatsUserDimension extends StatsDimension {
     private StatsCommonDimension statsCommon = new StatsCommonDimension();
     private BrowserDimension browser = new BrowserDimension();
 
+    static {
+        // 注册按照序列化字节比较的comparator，shuffle排序的时候不需要反序列化key
+        WritableComparator.define(StatsUserDimension.class, new Comparator());
+    }
+
     /**
      * clone一个实例对象
      * 
@@ -25,6 +32,7 @@ public class StatsUserDimension extends StatsDimension {
      */
     public static StatsUserDimension clone(StatsUserDimension dimension) {
         BrowserDimension browser = new BrowserDimension(dimension.browser.getBrowserName(), dimension.browser.getBrowserVersion());
+        browser.setId(dimension.browser.getId());
         StatsCommonDimension statsCommon = StatsCommonDimension.clone(dimension.statsCommon);
         return new StatsUserDimension(statsCommon, browser);
     }
@@ -82,4 +90,25 @@ public class StatsUserDimension extends StatsDimension {
         return tmp;
     }
 
+    /**
+     * 按照statsCommon、browser的顺序直接比较序列化后的字节
+     * 
+     * @author jason
+     *
+     */
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(StatsUserDimension.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            int tmp = StatsCommonDimension.compareRaw(b1, s1, b2, s2);
+            if (tmp != 0) {
+                return tmp;
+            }
+            int length = StatsCommonDimension.getRawLength(b1, s1);
+            return BrowserDimension.compareRaw(b1, s1 + length, b2, s2 + length);
+        }
+    }
 }
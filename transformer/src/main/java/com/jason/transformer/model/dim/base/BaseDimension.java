@@ -1,13 +1,72 @@
 package com.jason.transformer.model.dim.base;
 
+import java.io.IOException;
+
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 /**
- * 顶级的维度信息类
- * 
+ * 顶级的维度信息类<br/>
+ * 维度的序列化格式中int/long为大端字节序，字符串为writeUTF格式(两个字节的长度加上modified utf-8编码)，
+ * 子类可以直接在序列化后的字节上按照字段顺序比较，结果和compareTo一致，shuffle排序的时候不需要反序列化<br/>
+ * 维度id使用变长int写在最前面，id不为0表示mapper已经通过维度字典解析出了数据库中的id，后面不再写维度的值
+ *
  * @author jason
  *
  */
 public abstract class BaseDimension implements WritableComparable<BaseDimension>{
-    // nothing
+
+    /**
+     * 比较两个writeUTF写入的字符串<br/>
+     * modified utf-8按照无符号字节比较的顺序和String.compareTo(utf-16编码单元)的顺序一致，只有'\0'例外，维度值中不会出现
+     *
+     * @param b1
+     * @param s1
+     * @param b2
+     * @param s2
+     * @return
+     */
+    protected static int compareUTF(byte[] b1, int s1, byte[] b2, int s2) {
+        int l1 = WritableComparator.readUnsignedShort(b1, s1);
+        int l2 = WritableComparator.readUnsignedShort(b2, s2);
+        return WritableComparator.compareBytes(b1, s1 + 2, l1, b2, s2 + 2, l2);
+    }
+
+    /**
+     * 获取writeUTF写入的字符串占用的字节数
+     *
+     * @param b
+     * @param s
+     * @return
+     */
+    protected static int getUTFLength(byte[] b, int s) {
+        return 2 + WritableComparator.readUnsignedShort(b, s);
+    }
+
+    /**
+     * 读取WritableUtils.writeVInt写入的int
+     *
+     * @param b
+     * @param s
+     * @return
+     */
+    protected static int readVInt(byte[] b, int s) {
+        try {
+            return WritableComparator.readVInt(b, s);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * 获取WritableUtils.writeVInt写入的int占用的字节数，0只占用一个字节
+     *
+     * @param b
+     * @param s
+     * @return
+     */
+    protected static int getVIntLength(byte[] b, int s) {
+        return WritableUtils.decodeVIntSize(b[s]);
+    }
 }
@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.io.WritableUtils;
 
 import com.jason.common.GlobalConstants;
 
@@ -95,16 +96,24 @@ public class BrowserDimension extends BaseDimension {
 
     @Override
     public void write(DataOutput out) throws IOException {
-        out.writeInt(this.id);
-        out.writeUTF(this.browserName);
-        out.writeUTF(this.browserVersion);
+        // id不为0表示已经在mapper中解析过，只输出id
+        WritableUtils.writeVInt(out, this.id);
+        if (this.id == 0) {
+            out.writeUTF(this.browserName);
+            out.writeUTF(this.browserVersion);
+        }
     }
 
     @Override
     public void readFields(DataInput in) throws IOException {
-        this.id = in.readInt();
-        this.browserName = in.readUTF();
-        this.browserVersion = in.readUTF();
+        this.id = WritableUtils.readVInt(in);
+        if (this.id == 0) {
+            this.browserName = in.readUTF();
+            this.browserVersion = in.readUTF();
+        } else {
+            this.browserName = null;
+            this.browserVersion = null;
+        }
     }
 
     @Override
@@ -115,7 +124,8 @@ public class BrowserDimension extends BaseDimension {
 
         BrowserDimension other = (BrowserDimension) o;
         int tmp = Integer.compare(this.id, other.id);
-        if (tmp != 0) {
+        if (tmp != 0 || this.id != 0) {
+            // id相同而且不为0表示是同一个维度值
             return tmp;
         }
         tmp = this.browserName.compareTo(other.browserName);
@@ -126,6 +136,48 @@ public class BrowserDimension extends BaseDimension {
         return tmp;
     }
 
+    /**
+     * 直接比较序列化后的字节，顺序和compareTo一致
+     * 
+     * @param b1
+     * @param s1
+     * @param b2
+     * @param s2
+     * @return
+     */
+    public static int compareRaw(byte[] b1, int s1, byte[] b2, int s2) {
+        int id1 = readVInt(b1, s1);
+        int tmp = Integer.compare(id1, readVInt(b2, s2));
+        if (tmp != 0 || id1 != 0) {
+            return tmp;
+        }
+        // id为0的时候只占用一个字节
+        s1++;
+        s2++;
+        tmp = compareUTF(b1, s1, b2, s2);
+        if (tmp != 0) {
+            return tmp;
+        }
+        // 字符串相等，占用的字节数也相等
+        int length = getUTFLength(b1, s1);
+        return compareUTF(b1, s1 + length, b2, s2 + length);
+    }
+
+    /**
+     * 获取序列化后占用的字节数
+     * 
+     * @param b
+     * @param s
+     * @return
+     */
+    public static int getRawLength(byte[] b, int s) {
+        if (readVInt(b, s) != 0) {
+            return getVIntLength(b, s);
+        }
+        int length = 1 + getUTFLength(b, s + 1);
+        return length + getUTFLength(b, s + length);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
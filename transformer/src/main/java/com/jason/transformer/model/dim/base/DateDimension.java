@@ -5,12 +5,18 @@ import java.io.DataOutput;
 import java.io.IOException;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 import com.jason.common.DateEnum;
+import com.jason.util.DayTable;
 import com.jason.util.TimeUtil;
 
 /**
- * 时间维度信息类
+ * 时间维度信息类<br/>
+ * buildDate返回的对象是按照(天, 类型)缓存的共享对象，不允许修改，调用set方法或者readFields会抛出异常
  * 
  * @author jason
  *
@@ -24,6 +30,12 @@ public class DateDimension extends BaseDimension {
     private int day;
     private String type; // 类型
     private Date calendar = new Date(); //当前日期
+    private boolean immutable = false; // 是否是不可修改的共享对象
+
+    // 日期表范围内的缓存，下标为: 类型 * 天数 + 该类型对应的第一天的下标
+    private static final DateEnum[] CACHED_TYPES = new DateEnum[] { DateEnum.YEAR, DateEnum.SEASON, DateEnum.MONTH, DateEnum.WEEK, DateEnum.DAY };
+    private static final int CACHED_DAYS = DayTable.size();
+    private static final AtomicReferenceArray<DateDimension> CACHE = new AtomicReferenceArray<DateDimension>(CACHED_TYPES.length * CACHED_DAYS);
 
     /**
      * 根据type类型获取对应的时间维度对象
@@ -35,6 +47,92 @@ public class DateDimension extends BaseDimension {
      * @return
      */
     public static DateDimension buildDate(long time, DateEnum type) {
+        int index = DayTable.indexOf(time);
+        int typeIndex = cachedTypeIndex(type);
+        if (index < 0 || typeIndex < 0) {
+            return buildDateByCalendar(time, type);
+        }
+        // 同一类型的维度只和该类型的第一天相关
+        int first;
+        switch (type) {
+        case YEAR:
+            first = DayTable.firstDayOfYear(index);
+            break;
+        case SEASON:
+            first = DayTable.firstDayOfSeason(index);
+            break;
+        case MONTH:
+            first = DayTable.firstDayOfMonth(index);
+            break;
+        case WEEK:
+            first = DayTable.firstDayOfWeek(index);
+            break;
+        default:
+            first = index;
+        }
+        if (first < 0) {
+            return buildDateByCalendar(time, type);
+        }
+        int slot = typeIndex * CACHED_DAYS + first;
+        DateDimension dimension = CACHE.get(slot);
+        if (dimension == null) {
+            dimension = buildDateByTable(first, type);
+            dimension.immutable = true;
+            if (!CACHE.compareAndSet(slot, null, dimension)) {
+                dimension = CACHE.get(slot);
+            }
+        }
+        return dimension;
+    }
+
+    /**
+     * 根据日期表中的数据创建维度对象，first为该类型的第一天(年、季度、月、周的第一天或者当天)
+     * 
+     * @param first
+     * @param type
+     * @return
+     */
+    private static DateDimension buildDateByTable(int first, DateEnum type) {
+        int year = DayTable.year(first);
+        Date date = new Date(DayTable.startOf(first));
+        if (DateEnum.YEAR.equals(type)) {
+            return new DateDimension(year, 0, 0, 0, 0, type.name, date);
+        }
+        int season = DayTable.season(first);
+        if (DateEnum.SEASON.equals(type)) {
+            return new DateDimension(year, season, 0, 0, 0, type.name, date);
+        }
+        int month = DayTable.month(first);
+        if (DateEnum.MONTH.equals(type)) {
+            return new DateDimension(year, season, month, 0, 0, type.name, date);
+        }
+        int week = DayTable.week(first);
+        if (month == 12 && week == 1) {
+            week = 53;
+        }
+        if (DateEnum.WEEK.equals(type)) {
+            return new DateDimension(year, season, month, week, 0, type.name, date);
+        }
+        return new DateDimension(year, season, month, week, DayTable.day(first), type.name, date);
+    }
+
+    private static int cachedTypeIndex(DateEnum type) {
+        for (int i = 0; i < CACHED_TYPES.length; i++) {
+            if (CACHED_TYPES[i] == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 使用Calendar创建维度对象，超出日期表范围的时候使用，返回的对象不缓存
+     * 
+     * @param time
+     * @param type
+     * @return
+     */
+    private static DateDimension buildDateByCalendar(long time, DateEnum type) {
         int year = TimeUtil.getDateInfo(time, DateEnum.YEAR);
         Calendar calendar = Calendar.getInstance();
         calendar.clear();
@@ -105,6 +203,7 @@ public class DateDimension extends BaseDimension {
     }
 
     public void setId(int id) {
+        this.checkMutable();
         this.id = id;
     }
 
@@ -113,6 +212,7 @@ public class DateDimension extends BaseDimension {
     }
 
     public void setYear(int year) {
+        this.checkMutable();
         this.year = year;
     }
 
@@ -121,6 +221,7 @@ public class DateDimension extends BaseDimension {
     }
 
     public void setSeason(int season) {
+        this.checkMutable();
         this.season = season;
     }
 
@@ -129,6 +230,7 @@ public class DateDimension extends BaseDimension {
     }
 
     public void setMonth(int month) {
+        this.checkMutable();
         this.month = month;
     }
 
@@ -137,6 +239,7 @@ public class DateDimension extends BaseDimension {
     }
 
     public void setWeek(int week) {
+        this.checkMutable();
         this.week = week;
     }
 
@@ -145,6 +248,7 @@ public class DateDimension extends BaseDimension {
     }
 
     public void setDay(int day) {
+        this.checkMutable();
         this.day = day;
     }
 
@@ -153,6 +257,7 @@ public class DateDimension extends BaseDimension {
     }
 
     public void setType(String type) {
+        this.checkMutable();
         this.type = type;
     }
 
@@ -161,31 +266,55 @@ public class DateDimension extends BaseDimension {
     }
 
     public void setCalendar(Date calendar) {
+        this.checkMutable();
         this.calendar = calendar;
     }
 
+    /**
+     * buildDate返回的共享对象不允许修改
+     */
+    private void checkMutable() {
+        if (this.immutable) {
+            throw new UnsupportedOperationException("buildDate返回的DateDimension是共享对象，不允许修改");
+        }
+    }
+
     @Override
     public void write(DataOutput out) throws IOException {
-        out.writeInt(this.id);
-        out.writeInt(this.year);
-        out.writeInt(this.season);
-        out.writeInt(this.month);
-        out.writeInt(this.week);
-        out.writeInt(this.day);
-        out.writeUTF(this.type);
-        out.writeLong(this.calendar.getTime());
+        // id不为0表示已经在mapper中解析过，只输出id
+        WritableUtils.writeVInt(out, this.id);
+        if (this.id == 0) {
+            out.writeInt(this.year);
+            out.writeInt(this.season);
+            out.writeInt(this.month);
+            out.writeInt(this.week);
+            out.writeInt(this.day);
+            out.writeUTF(this.type);
+            out.writeLong(this.calendar.getTime());
+        }
     }
 
     @Override
     public void readFields(DataInput in) throws IOException {
-        this.id = in.readInt();
-        this.year = in.readInt();
-        this.season = in.readInt();
-        this.month = in.readInt();
-        this.week = in.readInt();
-        this.day = in.readInt();
-        this.type = in.readUTF();
-        this.calendar.setTime(in.readLong());
+        this.checkMutable();
+        this.id = WritableUtils.readVInt(in);
+        if (this.id == 0) {
+            this.year = in.readInt();
+            this.season = in.readInt();
+            this.month = in.readInt();
+            this.week = in.readInt();
+            this.day = in.readInt();
+            this.type = in.readUTF();
+            this.calendar.setTime(in.readLong());
+        } else {
+            this.year = 0;
+            this.season = 0;
+            this.month = 0;
+            this.week = 0;
+            this.day = 0;
+            this.type = null;
+            this.calendar.setTime(0);
+        }
     }
 
     @Override
@@ -196,7 +325,8 @@ public class DateDimension extends BaseDimension {
 
         DateDimension other = (DateDimension) o;
         int tmp = Integer.compare(this.id, other.id);
-        if (tmp != 0) {
+        if (tmp != 0 || this.id != 0) {
+            // id相同而且不为0表示是同一个维度值
             return tmp;
         }
 
@@ -229,6 +359,48 @@ public class DateDimension extends BaseDimension {
         return tmp;
     }
 
+    /**
+     * 直接比较序列化后的字节，顺序和compareTo一致
+     * 
+     * @param b1
+     * @param s1
+     * @param b2
+     * @param s2
+     * @return
+     */
+    public static int compareRaw(byte[] b1, int s1, byte[] b2, int s2) {
+        int id1 = readVInt(b1, s1);
+        int tmp = Integer.compare(id1, readVInt(b2, s2));
+        if (tmp != 0 || id1 != 0) {
+            return tmp;
+        }
+        // id为0的时候只占用一个字节，后面是year、season、month、week、day五个int
+        s1++;
+        s2++;
+        for (int i = 0; i < 20; i += 4) {
+            tmp = Integer.compare(WritableComparator.readInt(b1, s1 + i), WritableComparator.readInt(b2, s2 + i));
+            if (tmp != 0) {
+                return tmp;
+            }
+        }
+        // calendar不参与比较
+        return compareUTF(b1, s1 + 20, b2, s2 + 20);
+    }
+
+    /**
+     * 获取序列化后占用的字节数
+     * 
+     * @param b
+     * @param s
+     * @return
+     */
+    public static int getRawLength(byte[] b, int s) {
+        if (readVInt(b, s) != 0) {
+            return getVIntLength(b, s);
+        }
+        return 21 + getUTFLength(b, s + 21) + 8;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
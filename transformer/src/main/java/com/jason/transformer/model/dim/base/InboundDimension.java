@@ -4,6 +4,8 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import org.apache.hadoop.io.WritableUtils;
+
 /**
  * 表dimension_inbound对应的model类<br/>
  * 由于我们在代码中不需要进行插入操作(往数据库插入新的数据)，所有最终的mapper端和reducer端通信的时候，只需要传递id即可。
@@ -102,12 +104,12 @@ public class InboundDimension extends BaseDimension {
 
     @Override
     public void write(DataOutput out) throws IOException {
-        out.writeInt(this.id);
+        WritableUtils.writeVInt(out, this.id);
     }
 
     @Override
     public void readFields(DataInput in) throws IOException {
-        this.id = in.readInt();
+        this.id = WritableUtils.readVInt(in);
     }
 
     @Override
@@ -115,4 +117,28 @@ public class InboundDimension extends BaseDimension {
         return Integer.compare(this.id, ((InboundDimension) o).id);
     }
 
+    /**
+     * 直接比较序列化后的字节，顺序和compareTo一致
+     * 
+     * @param b1
+     * @param s1
+     * @param b2
+     * @param s2
+     * @return
+     */
+    public static int compareRaw(byte[] b1, int s1, byte[] b2, int s2) {
+        return Integer.compare(readVInt(b1, s1), readVInt(b2, s2));
+    }
+
+    /**
+     * 获取序列化后占用的字节数
+     * 
+     * @param b
+     * @param s
+     * @return
+     */
+    public static int getRawLength(byte[] b, int s) {
+        return getVIntLength(b, s);
+    }
+
 }
@@ -4,9 +4,14 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import org.apache.hadoop.io.WritableUtils;
+
+import com.jason.common.KpiType;
+
 public class KpiDimension extends BaseDimension {
     private int id;
     private String kpiName;
+    private int code = -1; // 序列化使用的编码: KpiType的序号加1，0表示不是KpiType中的kpi，-1表示还没有计算
 
     public KpiDimension() {
         super();
@@ -37,18 +42,42 @@ public class KpiDimension extends BaseDimension {
 
     public void setKpiName(String kpiName) {
         this.kpiName = kpiName;
+        this.code = -1;
+    }
+
+    /**
+     * 获取kpi名称的编码，KpiType中的kpi只需要序列化编码，不需要序列化名称
+     * 
+     * @return
+     */
+    private int getCode() {
+        if (this.code == -1) {
+            this.code = 0;
+            for (KpiType type : KpiType.values()) {
+                if (type.name.equals(this.kpiName)) {
+                    this.code = type.ordinal() + 1;
+                    break;
+                }
+            }
+        }
+        return this.code;
     }
 
     @Override
     public void write(DataOutput out) throws IOException {
-        out.writeInt(this.id);
-        out.writeUTF(this.kpiName);
+        WritableUtils.writeVInt(out, this.id);
+        int code = this.getCode();
+        WritableUtils.writeVInt(out, code);
+        if (code == 0) {
+            out.writeUTF(this.kpiName);
+        }
     }
 
     @Override
     public void readFields(DataInput in) throws IOException {
-        this.id = in.readInt();
-        this.kpiName = in.readUTF();
+        this.id = WritableUtils.readVInt(in);
+        this.code = WritableUtils.readVInt(in);
+        this.kpiName = this.code == 0 ? in.readUTF() : KpiType.values()[this.code - 1].name;
     }
 
     @Override
@@ -62,10 +91,55 @@ public class KpiDimension extends BaseDimension {
         if (tmp != 0) {
             return tmp;
         }
+        tmp = Integer.compare(this.getCode(), other.getCode());
+        if (tmp != 0 || this.code != 0) {
+            return tmp;
+        }
         tmp = this.kpiName.compareTo(other.kpiName);
         return tmp;
     }
 
+    /**
+     * 直接比较序列化后的字节，顺序和compareTo一致
+     * 
+     * @param b1
+     * @param s1
+     * @param b2
+     * @param s2
+     * @return
+     */
+    public static int compareRaw(byte[] b1, int s1, byte[] b2, int s2) {
+        int tmp = Integer.compare(readVInt(b1, s1), readVInt(b2, s2));
+        if (tmp != 0) {
+            return tmp;
+        }
+        // id相同的时候占用的字节数也相同
+        int length = getVIntLength(b1, s1);
+        s1 += length;
+        s2 += length;
+        int code1 = readVInt(b1, s1);
+        tmp = Integer.compare(code1, readVInt(b2, s2));
+        if (tmp != 0 || code1 != 0) {
+            return tmp;
+        }
+        return compareUTF(b1, s1 + 1, b2, s2 + 1);
+    }
+
+    /**
+     * 获取序列化后占用的字节数
+     * 
+     * @param b
+     * @param s
+     * @return
+     */
+    public static int getRawLength(byte[] b, int s) {
+        int length = getVIntLength(b, s);
+        if (readVInt(b, s + length) != 0) {
+            return length + getVIntLength(b, s + length);
+        }
+        return length + 1 + getUTFLength(b, s + length + 1);
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
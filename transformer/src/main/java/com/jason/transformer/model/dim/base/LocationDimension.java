@@ -7,6 +7,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.io.WritableUtils;
 
 import com.jason.common.GlobalConstants;
 
@@ -121,25 +122,35 @@ public class LocationDimension extends BaseDimension {
 
     @Override
     public void write(DataOutput out) throws IOException {
-        out.writeInt(this.id);
-        out.writeUTF(this.country);
-        out.writeUTF(this.province);
-        out.writeUTF(this.city);
+        // id不为0表示已经在mapper中解析过，只输出id
+        WritableUtils.writeVInt(out, this.id);
+        if (this.id == 0) {
+            out.writeUTF(this.country);
+            out.writeUTF(this.province);
+            out.writeUTF(this.city);
+        }
     }
 
     @Override
     public void readFields(DataInput in) throws IOException {
-        this.id = in.readInt();
-        this.country = in.readUTF();
-        this.province = in.readUTF();
-        this.city = in.readUTF();
+        this.id = WritableUtils.readVInt(in);
+        if (this.id == 0) {
+            this.country = in.readUTF();
+            this.province = in.readUTF();
+            this.city = in.readUTF();
+        } else {
+            this.country = null;
+            this.province = null;
+            this.city = null;
+        }
     }
 
     @Override
     public int compareTo(BaseDimension o) {
         LocationDimension other = (LocationDimension) o;
         int tmp = Integer.compare(this.id, other.id);
-        if (tmp != 0) {
+        if (tmp != 0 || this.id != 0) {
+            // id相同而且不为0表示是同一个维度值
             return tmp;
         }
 
@@ -157,4 +168,53 @@ public class LocationDimension extends BaseDimension {
         return tmp;
     }
 
+    /**
+     * 直接比较序列化后的字节，顺序和compareTo一致
+     * 
+     * @param b1
+     * @param s1
+     * @param b2
+     * @param s2
+     * @return
+     */
+    public static int compareRaw(byte[] b1, int s1, byte[] b2, int s2) {
+        int id1 = readVInt(b1, s1);
+        int tmp = Integer.compare(id1, readVInt(b2, s2));
+        if (tmp != 0 || id1 != 0) {
+            return tmp;
+        }
+        // id为0的时候只占用一个字节
+        s1++;
+        s2++;
+        // 依次比较country、province、city，前面的字符串相等的时候占用的字节数也相等
+        for (int i = 0; i < 3; i++) {
+            tmp = compareUTF(b1, s1, b2, s2);
+            if (tmp != 0) {
+                return tmp;
+            }
+            int length = getUTFLength(b1, s1);
+            s1 += length;
+            s2 += length;
+        }
+        return 0;
+    }
+
+    /**
+     * 获取序列化后占用的字节数
+     * 
+     * @param b
+     * @param s
+     * @return
+     */
+    public static int getRawLength(byte[] b, int s) {
+        if (readVInt(b, s) != 0) {
+            return getVIntLength(b, s);
+        }
+        int length = 1;
+        for (int i = 0; i < 3; i++) {
+            length += getUTFLength(b, s + length);
+        }
+        return length;
+    }
+
 }
@@ -5,12 +5,15 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.io.WritableUtils;
 
 import com.jason.common.KpiType;
 import com.jason.transformer.model.value.BaseStatsValueWritable;
+import com.jason.util.HyperLogLog;
 
 /**
- * 定义一系列的字符串输出类
+ * 定义一系列的字符串输出类<br/>
+ * 近似去重模式下combiner把同一个key的uuid和会话id分别合并成HyperLogLog sketch输出，序列化的时候最前面是sketch个数(变长int)，0表示是原始的字符串
  * 
  * @author jason
  *
@@ -19,6 +22,8 @@ public class TextsOutputValue extends BaseStatsValueWritable {
     private KpiType kpiType;
     private String uuid; // 用户唯一标识符
     private String sid; // 会话id
+    private HyperLogLog uuidSketch; // combiner合并后的uuid sketch，为null表示是原始的字符串
+    private HyperLogLog sidSketch; // combiner合并后的会话id sketch
 
     public TextsOutputValue() {
         super();
@@ -50,10 +55,36 @@ public class TextsOutputValue extends BaseStatsValueWritable {
         this.kpiType = kpiType;
     }
 
+    public HyperLogLog getUuidSketch() {
+        return uuidSketch;
+    }
+
+    public HyperLogLog getSidSketch() {
+        return sidSketch;
+    }
+
+    /**
+     * 设置合并后的sketch，都为null表示输出原始的字符串
+     * 
+     * @param uuidSketch
+     * @param sidSketch
+     */
+    public void setSketches(HyperLogLog uuidSketch, HyperLogLog sidSketch) {
+        this.uuidSketch = uuidSketch;
+        this.sidSketch = sidSketch;
+    }
+
     @Override
     public void write(DataOutput out) throws IOException {
-        this.internalWriteString(out, this.uuid);
-        this.internalWriteString(out, this.sid);
+        if (this.uuidSketch == null) {
+            WritableUtils.writeVInt(out, 0);
+            this.internalWriteString(out, this.uuid);
+            this.internalWriteString(out, this.sid);
+        } else {
+            WritableUtils.writeVInt(out, 2);
+            this.uuidSketch.write(out);
+            this.sidSketch.write(out);
+        }
     }
 
     private void internalWriteString(DataOutput out, String value) throws IOException {
@@ -67,8 +98,21 @@ public class TextsOutputValue extends BaseStatsValueWritable {
 
     @Override
     public void readFields(DataInput in) throws IOException {
-        this.uuid = this.internalReadString(in);
-        this.sid = this.internalReadString(in);
+        if (WritableUtils.readVInt(in) == 0) {
+            this.uuidSketch = null;
+            this.sidSketch = null;
+            this.uuid = this.internalReadString(in);
+            this.sid = this.internalReadString(in);
+        } else {
+            this.uuid = null;
+            this.sid = null;
+            if (this.uuidSketch == null) {
+                this.uuidSketch = new HyperLogLog();
+                this.sidSketch = new HyperLogLog();
+            }
+            this.uuidSketch.readFields(in); // 复用已有的寄存器数组
+            this.sidSketch.readFields(in);
+        }
     }
 
     private String internalReadString(DataInput in) throws IOException {
@@ -4,12 +4,23 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import org.apache.hadoop.io.WritableUtils;
+
 import com.jason.common.KpiType;
 import com.jason.transformer.model.value.BaseStatsValueWritable;
+import com.jason.util.HyperLogLog;
 
+/**
+ * 输出id和时间戳的value类<br/>
+ * 近似去重模式下combiner把同一个key的id合并成HyperLogLog sketch输出，序列化的时候最前面是sketch个数(变长int)，0表示是原始的id和时间戳
+ * 
+ * @author jason
+ *
+ */
 public class TimeOutputValue extends BaseStatsValueWritable {
     private String id; // id
     private long time; // 时间戳
+    private HyperLogLog[] sketches; // combiner合并后的sketch，为null表示是原始的id和时间戳
 
     public String getId() {
         return id;
@@ -27,16 +38,48 @@ public class TimeOutputValue extends BaseStatsValueWritable {
         this.time = time;
     }
 
+    public HyperLogLog[] getSketches() {
+        return sketches;
+    }
+
+    public void setSketches(HyperLogLog[] sketches) {
+        this.sketches = sketches;
+    }
+
     @Override
     public void write(DataOutput out) throws IOException {
-        out.writeUTF(this.id);
-        out.writeLong(this.time);
+        if (this.sketches == null) {
+            WritableUtils.writeVInt(out, 0);
+            out.writeUTF(this.id);
+            out.writeLong(this.time);
+        } else {
+            WritableUtils.writeVInt(out, this.sketches.length);
+            for (HyperLogLog sketch : this.sketches) {
+                sketch.write(out);
+            }
+        }
     }
 
     @Override
     public void readFields(DataInput in) throws IOException {
-        this.id = in.readUTF();
-        this.time = in.readLong();
+        int size = WritableUtils.readVInt(in);
+        if (size == 0) {
+            this.sketches = null;
+            this.id = in.readUTF();
+            this.time = in.readLong();
+        } else {
+            this.id = null;
+            this.time = 0;
+            if (this.sketches == null || this.sketches.length != size) {
+                this.sketches = new HyperLogLog[size];
+                for (int i = 0; i < size; i++) {
+                    this.sketches[i] = new HyperLogLog();
+                }
+            }
+            for (HyperLogLog sketch : this.sketches) {
+                sketch.readFields(in); // 复用已有的寄存器数组
+            }
+        }
     }
 
     @Override
@@ -0,0 +1,134 @@
+package com.jason.transformer.mr;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.jason.transformer.model.dim.base.BaseDimension;
+import com.jason.transformer.model.dim.base.BrowserDimension;
+import com.jason.transformer.model.dim.base.DateDimension;
+import com.jason.transformer.model.dim.base.LocationDimension;
+import com.jason.transformer.model.dim.base.PlatformDimension;
+import com.jason.transformer.service.rpc.IDimensionConverter;
+import com.jason.transformer.service.rpc.client.DimensionConverterClient;
+import com.jason.transformer.service.rpc.server.DimensionConverterImpl;
+
+/**
+ * mapper使用的维度字典，把输出key中的日期、平台、浏览器、地域维度解析成数据库中的id<br/>
+ * 解析过的维度序列化的时候只输出变长的id，shuffle的数据量大大减少；collector直接使用维度中的id，不需要再次查询<br/>
+ * 每个task一个字典，通过dimension converter服务(rpc)获取id，获取过的维度缓存在task内不会重复请求
+ *
+ * @author jason
+ *
+ */
+public class DimensionDictionary {
+    private IDimensionConverter converter = null;
+    private Map<String, Integer> ids = new HashMap<String, Integer>(); // key为DimensionConverterImpl.buildCacheKey
+    private Map<DateDimension, DateDimension> dates = new HashMap<DateDimension, DateDimension>(); // 解析过的日期维度副本
+
+    public DimensionDictionary(Configuration conf) throws IOException {
+        this.converter = DimensionConverterClient.createDimensionConverter(conf);
+    }
+
+    /**
+     * 解析日期维度，buildDate返回的是不能修改的共享对象，所以返回一个设置了id的副本
+     *
+     * @param date
+     * @return
+     * @throws IOException
+     */
+    public DateDimension resolveDate(DateDimension date) throws IOException {
+        if (date.getId() != 0) {
+            return date;
+        }
+        DateDimension resolved = this.dates.get(date);
+        if (resolved == null) {
+            resolved = new DateDimension(this.getId(date), date.getYear(), date.getSeason(), date.getMonth(), date.getWeek(), date.getDay(), date.getType(), date.getCalendar());
+            this.dates.put(date, resolved);
+        }
+        return resolved;
+    }
+
+    /**
+     * 解析平台、浏览器、地域维度，直接设置维度的id
+     *
+     * @param dimension
+     * @throws IOException
+     */
+    public void resolve(BaseDimension dimension) throws IOException {
+        if (getResolvedId(dimension) != 0) {
+            return;
+        }
+        int id = this.getId(dimension);
+        if (dimension instanceof PlatformDimension) {
+            ((PlatformDimension) dimension).setId(id);
+        } else if (dimension instanceof BrowserDimension) {
+            ((BrowserDimension) dimension).setId(id);
+        } else if (dimension instanceof LocationDimension) {
+            ((LocationDimension) dimension).setId(id);
+        } else {
+            throw new IllegalArgumentException("不支持解析此dimension:" + dimension.getClass());
+        }
+    }
+
+    /**
+     * 解析维度集合中的所有维度
+     *
+     * @param dimensions
+     * @throws IOException
+     */
+    public void resolve(List<? extends BaseDimension> dimensions) throws IOException {
+        for (BaseDimension dimension : dimensions) {
+            this.resolve(dimension);
+        }
+    }
+
+    /**
+     * 关闭rpc连接
+     */
+    public void close() {
+        DimensionConverterClient.stopDimensionConverterProxy(this.converter);
+    }
+
+    /**
+     * 从缓存或者dimension converter服务获取维度的id
+     *
+     * @param dimension
+     * @return
+     * @throws IOException
+     */
+    private int getId(BaseDimension dimension) throws IOException {
+        String key = DimensionConverterImpl.buildCacheKey(dimension);
+        Integer id = this.ids.get(key);
+        if (id == null) {
+            id = this.converter.getDimensionIdByValue(dimension);
+            if (id == 0) {
+                throw new IOException("获取维度id失败:" + key);
+            }
+            this.ids.put(key, id);
+        }
+        return id;
+    }
+
+    /**
+     * 获取mapper中已经解析的维度id，没有解析或者不支持解析的维度返回0
+     *
+     * @param dimension
+     * @return
+     */
+    public static int getResolvedId(BaseDimension dimension) {
+        if (dimension instanceof DateDimension) {
+            return ((DateDimension) dimension).getId();
+        } else if (dimension instanceof PlatformDimension) {
+            return ((PlatformDimension) dimension).getId();
+        } else if (dimension instanceof BrowserDimension) {
+            return ((BrowserDimension) dimension).getId();
+        } else if (dimension instanceof LocationDimension) {
+            return ((LocationDimension) dimension).getId();
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,107 @@
+package com.jason.transformer.mr;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+
+import com.jason.common.GlobalConstants;
+import com.jason.util.Checkpoint;
+import com.jason.util.TimeUtil;
+
+/**
+ * transformer增量运行时的扫描窗口<br/>
+ * 统计结果是按天汇总的(活跃用户等指标不能累加)，所以每次都重新扫描运行日期的一整天，也就是到目前为止导入的数据都会被统计到；<br/>
+ * etl检查点的水位线是最近导入的文件的修改时间，不是事件时间：flume关闭文件有延迟，水位线超过当天结束的时候当天的数据不一定都已经导入，
+ * 所以水位线超过当天结束+宽限时间(transformer.incremental.grace.minutes)之前，每次运行都重新统计这一天，之后才切换到下一天；
+ * 超过宽限时间才导入的数据需要通过-d指定日期重新运行<br/>
+ * 运行日期取自每个runner自己的检查点，etl水位线还没有到达运行日期的时候跳过本次运行
+ *
+ * @author jason
+ *
+ */
+public class IncrementalScanWindow {
+    private static final Logger logger = Logger.getLogger(IncrementalScanWindow.class);
+    private static final long DEFAULT_GRACE_MINUTES = 60;
+
+    /**
+     * 判断参数中是否指定了增量运行
+     *
+     * @param args
+     * @return
+     */
+    public static boolean isIncremental(String[] args) {
+        for (String arg : args) {
+            if ("-incremental".equals(arg)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 根据检查点计算运行日期，以及job成功之后要保存的检查点水位线，保存到conf中
+     *
+     * @param conf
+     * @param name
+     *            检查点名称，每个runner一个
+     * @return 运行日期，格式为yyyy-MM-dd
+     */
+    public static String open(Configuration conf, String name) {
+        try {
+            long etlWatermark = Checkpoint.load(conf, Checkpoint.ETL).getWatermark();
+            if (etlWatermark < 0) {
+                throw new IllegalStateException("etl还没有增量运行过，没有可用的检查点");
+            }
+            long watermark = Checkpoint.load(conf, getCheckpointName(name)).getWatermark();
+            String date = TimeUtil.parseLong2String(watermark < 0 ? etlWatermark : watermark);
+            long startDate = TimeUtil.parseString2Long(date);
+            long endDate = startDate + GlobalConstants.DAY_OF_MILLISECONDS;
+            conf.set(GlobalConstants.TRANSFORMER_CHECKPOINT_NAME, name);
+            if (etlWatermark < startDate) {
+                // etl的检查点被回退过，运行日期还没有任何数据导入
+                conf.setBoolean(GlobalConstants.TRANSFORMER_INCREMENTAL_SKIP, true);
+                logger.info("增量运行" + name + "，etl水位线" + etlWatermark + "还没有到达运行日期" + date + "，跳过本次运行");
+                return date;
+            }
+            long grace = conf.getLong(GlobalConstants.TRANSFORMER_INCREMENTAL_GRACE_MINUTES, DEFAULT_GRACE_MINUTES) * 60000L;
+            boolean complete = etlWatermark >= endDate + grace;
+            // 当天没有导入完成的时候检查点停留在当天零点，下一次运行继续统计这一天
+            conf.setLong(GlobalConstants.TRANSFORMER_CHECKPOINT_WATERMARK, complete ? endDate : startDate);
+            logger.info("增量运行" + name + "，运行日期为:" + date + "，etl水位线为:" + etlWatermark + (complete ? "，当天数据已经导入完成" : "，当天数据还没有导入完成"));
+            return date;
+        } catch (IOException e) {
+            throw new RuntimeException("读取检查点出现异常", e);
+        }
+    }
+
+    /**
+     * 判断本次增量运行是否需要跳过，跳过的时候不运行job也不保存检查点
+     *
+     * @param conf
+     * @return
+     */
+    public static boolean isSkipped(Configuration conf) {
+        return conf.getBoolean(GlobalConstants.TRANSFORMER_INCREMENTAL_SKIP, false);
+    }
+
+    /**
+     * job执行成功后保存检查点，非增量运行时不做任何操作
+     *
+     * @param conf
+     * @throws IOException
+     */
+    public static void commit(Configuration conf) throws IOException {
+        String name = conf.get(GlobalConstants.TRANSFORMER_CHECKPOINT_NAME);
+        if (name == null || isSkipped(conf)) {
+            return;
+        }
+        Checkpoint checkpoint = Checkpoint.load(conf, getCheckpointName(name));
+        checkpoint.advance(conf.getLong(GlobalConstants.TRANSFORMER_CHECKPOINT_WATERMARK, -1));
+        checkpoint.save(conf);
+    }
+
+    private static String getCheckpointName(String name) {
+        return "transformer_" + name;
+    }
+}
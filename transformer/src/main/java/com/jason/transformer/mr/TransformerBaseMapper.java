@@ -2,18 +2,31 @@ package com.jason.transformer.mr;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
 import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.mapreduce.TableMapper;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.log4j.Logger;
 
 import com.jason.common.EventLogConstants;
+import com.jason.common.EventLogConstants.EventEnum;
+import com.jason.common.GlobalConstants;
+import com.jason.common.RecordCounter;
+import com.jason.transformer.model.dim.base.BaseDimension;
+import com.jason.transformer.model.dim.base.DateDimension;
+import com.jason.util.CompactEventRecord;
+import com.jason.util.RecordDiagnostics;
 
 /**
- * transformer相关mapper reducer job代码中mapper公用父类，主要提供计数和hbase value的获取
+ * transformer相关mapper reducer job代码中mapper公用父类，主要提供计数和hbase value的获取<br/>
+ * 输入、输出以及按照原因区分的过滤记录数在cleanup的时候输出到hadoop计数器(RecordCounter)中，过滤记录的日志只输出抽样<br/>
+ * 如果数据是紧凑编码(所有参数打包在一列中)的，那么第一次获取值的时候绑定打包的cell，只解码访问到的字段<br/>
+ * 开启维度字典(transformer.dimension.dictionary)的时候，子类通过resolve方法把输出的维度解析成id，shuffle的时候只传输id
  * 
  * @author jason
  *
@@ -22,12 +35,19 @@ import com.jason.common.EventLogConstants;
  */
 public class TransformerBaseMapper<KEYOUT, VALUEOUT> extends TableMapper<KEYOUT, VALUEOUT> {
     private static final Logger logger = Logger.getLogger(TransformerBaseMapper.class);
-    private long startTime = System.currentTimeMillis();
     public static final byte[] family = Bytes.toBytes(EventLogConstants.EVENT_LOGS_FAMILY_NAME); // hbase的family名称
     protected Configuration conf = null;
     protected int inputRecords = 0; // 输入记录数
     protected int filterRecords = 0; // 过滤的记录数, 要求输入的记录没有进行任何输出
     protected int outputRecords = 0; // 输出的记录条数
+    private static final byte[] compactColumn = Bytes.toBytes(CompactEventRecord.COLUMN_NAME);
+    private static final byte[] eventCodeColumn = Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_EVENT_CODE);
+    private CompactEventRecord compactRecord = new CompactEventRecord(); // 可重用的紧凑编码解码器
+    private Result compactResult = null; // compactRecord当前绑定的结果集
+    private boolean compact = false; // 当前结果集是否是紧凑编码
+    private RecordDiagnostics diagnostics = null; // 过滤原因的计数以及日志抽样
+    private DimensionDictionary dictionary = null; // 维度字典，没有开启的时候为null
+    private boolean sharedDictionary = false; // 是否使用合并扫描job的mapper共享的维度字典，共享的字典由合并的mapper关闭
 
     /**
      * 初始化方法
@@ -36,28 +56,137 @@ public class TransformerBaseMapper<KEYOUT, VALUEOUT> extends TableMapper<KEYOUT,
     protected void setup(Context context) throws IOException, InterruptedException {
         super.setup(context);
         this.conf = context.getConfiguration();
+        this.diagnostics = new RecordDiagnostics(Logger.getLogger(this.getClass()), this.conf.getLong(GlobalConstants.MAPPER_LOG_SAMPLE_INTERVAL, RecordDiagnostics.DEFAULT_SAMPLE_INTERVAL));
+        if (!this.sharedDictionary && this.conf.getBoolean(GlobalConstants.TRANSFORMER_DIMENSION_DICTIONARY, false)) {
+            this.dictionary = new DimensionDictionary(this.conf);
+        }
     }
 
     @Override
     protected void cleanup(Context context) throws IOException, InterruptedException {
         super.cleanup(context);
-        // 不希望这块代码影响整体功能，所以用try-catch括起来
-        try {
-            // 打印提示信息格式为: jobid 运行时间 输入记录数 过滤记录数 输出记录数
-            long endTime = System.currentTimeMillis();
-            StringBuilder sb = new StringBuilder();
-            sb.append("job_id:").append(context.getJobID().toString());
-            sb.append("; start_time:").append(this.startTime);
-            sb.append("; end_time:").append(endTime);
-            sb.append("; using_time:").append((endTime - this.startTime)).append("ms");
-            sb.append("; input records:").append(this.inputRecords);
-            sb.append("; filter records:").append(this.filterRecords);
-            sb.append("; output records:").append(this.outputRecords);
-
-            logger.info(sb.toString());
-        } catch (Throwable e) {
-            // nothing
+        // 输入、输出、过滤记录数会显示在job的计数器汇总中
+        context.getCounter(RecordCounter.INPUT_RECORDS).increment(this.inputRecords);
+        context.getCounter(RecordCounter.OUTPUT_RECORDS).increment(this.outputRecords);
+        context.getCounter(RecordCounter.FILTER_RECORDS).increment(this.filterRecords);
+        this.diagnostics.flush(context);
+        if (this.dictionary != null && !this.sharedDictionary) {
+            this.dictionary.close();
+        }
+    }
+
+    /**
+     * 作为合并扫描job中的一个kpi模块初始化，context只接收这个模块的输出<br/>
+     * 所有模块共用合并的mapper的维度字典，不再各自创建连接和缓存
+     *
+     * @param context
+     * @param dictionary
+     *            合并的mapper的维度字典，没有开启的时候为null
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void setupModule(Context context, DimensionDictionary dictionary) throws IOException, InterruptedException {
+        this.dictionary = dictionary;
+        this.sharedDictionary = true;
+        this.setup(context);
+    }
+
+    /**
+     * 作为合并扫描job中的一个kpi模块处理一条记录，由合并的mapper对每条需要的记录调用
+     *
+     * @param key
+     * @param value
+     * @param context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void mapModule(ImmutableBytesWritable key, Result value, Context context) throws IOException, InterruptedException {
+        this.map(key, value, context);
+    }
+
+    /**
+     * 作为合并扫描job中的一个kpi模块结束处理
+     *
+     * @param context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void cleanupModule(Context context) throws IOException, InterruptedException {
+        this.cleanup(context);
+    }
+
+    /**
+     * 获取维度字典，没有开启的时候返回null
+     *
+     * @return
+     */
+    protected DimensionDictionary getDictionary() {
+        return this.dictionary;
+    }
+
+    /**
+     * 开启维度字典的时候获取设置了id的日期维度，否则直接返回
+     * 
+     * @param date
+     * @return
+     * @throws IOException
+     */
+    protected DateDimension resolveDate(DateDimension date) throws IOException {
+        return this.dictionary == null ? date : this.dictionary.resolveDate(date);
+    }
+
+    /**
+     * 开启维度字典的时候设置平台、浏览器、地域维度的id
+     * 
+     * @param dimension
+     * @return 传入的维度对象
+     * @throws IOException
+     */
+    protected <T extends BaseDimension> T resolve(T dimension) throws IOException {
+        if (this.dictionary != null) {
+            this.dictionary.resolve(dimension);
         }
+        return dimension;
+    }
+
+    /**
+     * 开启维度字典的时候设置集合中所有维度的id
+     * 
+     * @param dimensions
+     * @return 传入的维度集合
+     * @throws IOException
+     */
+    protected <T extends BaseDimension> List<T> resolve(List<T> dimensions) throws IOException {
+        if (this.dictionary != null) {
+            this.dictionary.resolve(dimensions);
+        }
+        return dimensions;
+    }
+
+    /**
+     * 过滤一条记录，按照原因计数，日志只输出抽样
+     * 
+     * @param reason
+     *            过滤原因
+     * @param message
+     * @param detail
+     *            附加在消息后面的明细，只在抽样命中的时候才转换成字符串，可以为null
+     */
+    protected void filter(RecordCounter reason, String message, Object detail) {
+        this.filterRecords++;
+        this.diagnostics.warn(reason, message, detail);
+    }
+
+    /**
+     * 记录一个不导致过滤的问题，按照原因计数，日志只输出抽样
+     * 
+     * @param reason
+     * @param message
+     * @param detail
+     * @param e
+     */
+    protected void warn(RecordCounter reason, String message, Object detail, Throwable e) {
+        this.diagnostics.warn(reason, message, detail, e);
     }
 
     /**
@@ -130,6 +259,20 @@ public class TransformerBaseMapper<KEYOUT, VALUEOUT> extends TableMapper<KEYOUT,
         return this.fetchValue(value, EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME);
     }
 
+    /**
+     * 获取事件类型，优先直接读取一个字节的事件编码，没有编码列的旧数据再根据事件名称查找
+     * 
+     * @param value
+     * @return 没法识别返回null
+     */
+    public EventEnum getEvent(Result value) {
+        Cell cell = value.getColumnLatestCell(family, eventCodeColumn);
+        if (cell != null && cell.getValueLength() == 1) {
+            return EventEnum.valueOfCode(cell.getValueArray()[cell.getValueOffset()]);
+        }
+        return EventEnum.valueOfAlias(this.getEventName(value));
+    }
+
     /**
      * 获取版本号
      * 
@@ -297,6 +440,9 @@ public class TransformerBaseMapper<KEYOUT, VALUEOUT> extends TableMapper<KEYOUT,
      * @return
      */
     public Map<String, String> getEventMap(Result value) {
+        if (this.bindCompactRecord(value)) {
+            return this.compactRecord.getOthers(EventLogConstants.LOG_COLUMN_NAME_EVENT_KV_START);
+        }
         Map<String, String> map = new HashMap<String, String>();
         for (Map.Entry<byte[], byte[]> entry : value.getFamilyMap(family).entrySet()) {
             String column = Bytes.toString(entry.getKey());
@@ -375,7 +521,28 @@ public class TransformerBaseMapper<KEYOUT, VALUEOUT> extends TableMapper<KEYOUT,
      * @return
      */
     private String fetchValue(Result value, String column) {
+        if (this.bindCompactRecord(value)) {
+            return this.compactRecord.get(column);
+        }
         return Bytes.toString(value.getValue(family, Bytes.toBytes(column)));
     }
 
+    /**
+     * 将解码器绑定到结果集中打包的cell上，同一个结果集只绑定一次
+     * 
+     * @param value
+     * @return 如果结果集是紧凑编码的返回true
+     */
+    private boolean bindCompactRecord(Result value) {
+        if (value != this.compactResult) {
+            this.compactResult = value;
+            Cell cell = value.getColumnLatestCell(family, compactColumn);
+            this.compact = cell != null;
+            if (this.compact) {
+                this.compactRecord.reset(cell.getValueArray(), cell.getValueOffset(), cell.getValueLength());
+            }
+        }
+        return this.compact;
+    }
+
 }
\ No newline at end of file
@@ -21,10 +21,10 @@ import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
 import org.apache.log4j.Logger;
 
-import com.jason.common.EventLogConstants;
 import com.jason.common.GlobalConstants;
+import com.jason.util.CompactEventRecord;
+import com.jason.util.RowKeyUtil;
 import com.jason.util.TimeUtil;
-import com.google.common.collect.Lists;
 
 /**
  * 所有transformer相关mr程序入口类的公用父类
@@ -167,13 +167,18 @@ public abstract class TransformerBaseRunner implements Tool {
         Configuration conf = this.getConf(); // 获取configuration对象
         // 初始化参数
         this.processArgs(conf, args);
+        if (IncrementalScanWindow.isSkipped(conf)) {
+            // 增量运行时etl还没有导入运行日期的数据，不运行job
+            return 0;
+        }
         Job job = this.initJob(conf); // 创建job
         // 执行job
         this.beforeRunJob(job); // 在job执行前运行
         Throwable error = null;
+        int result;
         try {
             this.startTime = System.currentTimeMillis();
-            return job.waitForCompletion(true) ? 0 : -1;
+            result = job.waitForCompletion(true) ? 0 : -1;
         } catch (Throwable e) {
             error = e;
             logger.error("执行" + this.jobName + "job出现异常", e);
@@ -181,6 +186,11 @@ public abstract class TransformerBaseRunner implements Tool {
         } finally {
             this.afterRunJob(job, error); // 在代码执行后运行
         }
+        if (result == 0) {
+            // afterRunJob也执行成功后再保存增量运行的检查点
+            IncrementalScanWindow.commit(conf);
+        }
+        return result;
     }
 
     /**
@@ -270,6 +280,11 @@ public abstract class TransformerBaseRunner implements Tool {
             }
         }
 
+        if (IncrementalScanWindow.isIncremental(args)) {
+            // 增量运行，运行日期由检查点决定
+            date = IncrementalScanWindow.open(conf, this.jobName);
+        }
+
         // 要求date格式为: yyyy-MM-dd
         if (StringUtils.isBlank(date) || !TimeUtil.isValidateRunningDate(date)) {
             // date是一个无效时间数据
@@ -291,17 +306,8 @@ public abstract class TransformerBaseRunner implements Tool {
         long startDate = TimeUtil.parseString2Long(date);
         long endDate = startDate + GlobalConstants.DAY_OF_MILLISECONDS;
 
-        Scan scan = new Scan();
-        // 定义hbase扫描的开始rowkey和结束rowkey
-        scan.setStartRow(Bytes.toBytes("" + startDate));
-        scan.setStopRow(Bytes.toBytes("" + endDate));
-
-        scan.setAttribute(Scan.SCAN_ATTRIBUTES_TABLE_NAME, Bytes.toBytes(EventLogConstants.HBASE_NAME_EVENT_LOGS));
-        Filter filter = this.fetchHbaseFilter();
-        if (filter != null) {
-            scan.setFilter(filter);
-        }
-        return Lists.newArrayList(scan);
+        // 每个盐值分桶一个scan
+        return RowKeyUtil.createScans(conf, startDate, endDate, this.fetchHbaseFilter());
     }
 
     /**
@@ -320,11 +326,23 @@ public abstract class TransformerBaseRunner implements Tool {
      * @return
      */
     protected Filter getColumnFilter(String[] columns) {
+        return createColumnFilter(columns);
+    }
+
+    /**
+     * 创建列名过滤的filter，没有继承TransformerBaseRunner的runner也使用
+     * 
+     * @param columns
+     * @return
+     */
+    public static Filter createColumnFilter(String[] columns) {
         int length = columns.length;
-        byte[][] filter = new byte[length][];
+        byte[][] filter = new byte[length + 1][];
         for (int i = 0; i < length; i++) {
             filter[i] = Bytes.toBytes(columns[i]);
         }
+        // 紧凑编码的数据所有参数都在同一列中
+        filter[length] = Bytes.toBytes(CompactEventRecord.COLUMN_NAME);
         return new MultipleColumnPrefixFilter(filter);
     }
 }
@@ -38,7 +38,8 @@ public class TransformerOutputFormat extends OutputFormat<BaseDimension, BaseSta
     public RecordWriter<BaseDimension, BaseStatsValueWritable> getRecordWriter(TaskAttemptContext context) throws IOException, InterruptedException {
         Configuration conf = context.getConfiguration();
         Connection conn = null;
-        IDimensionConverter converter = new DimensionConverterImpl();
+        // mapper中已经通过维度字典解析过的维度直接使用维度中的id
+        IDimensionConverter converter = new ResolvedDimensionConverter(new DimensionConverterImpl());
         try {
             conn = JdbcManager.getConnection(conf, GlobalConstants.WAREHOUSE_OF_REPORT);
             conn.setAutoCommit(false);
@@ -59,6 +60,26 @@ public class TransformerOutputFormat extends OutputFormat<BaseDimension, BaseSta
         return new FileOutputCommitter(FileOutputFormat.getOutputPath(context), context);
     }
 
+    /**
+     * 优先使用mapper中通过维度字典(DimensionDictionary)解析好的维度id，没有解析过的维度交给实际的converter获取
+     * 
+     * @author jason
+     *
+     */
+    private static class ResolvedDimensionConverter implements IDimensionConverter {
+        private IDimensionConverter converter = null;
+
+        public ResolvedDimensionConverter(IDimensionConverter converter) {
+            this.converter = converter;
+        }
+
+        @Override
+        public int getDimensionIdByValue(BaseDimension dimension) throws IOException {
+            int id = DimensionDictionary.getResolvedId(dimension);
+            return id != 0 ? id : this.converter.getDimensionIdByValue(dimension);
+        }
+    }
+
     /**
      * 自定义具体数据输出writer
      * 
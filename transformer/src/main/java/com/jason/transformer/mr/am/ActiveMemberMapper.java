@@ -6,13 +6,13 @@ import java.util.List;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
-import org.apache.hadoop.hbase.mapreduce.TableMapper;
 import org.apache.hadoop.hbase.util.Bytes;
-import org.apache.log4j.Logger;
 
 import com.jason.common.DateEnum;
 import com.jason.common.EventLogConstants;
 import com.jason.common.KpiType;
+import com.jason.common.RecordCounter;
+import com.jason.transformer.mr.TransformerBaseMapper;
 import com.jason.transformer.model.dim.StatsCommonDimension;
 import com.jason.transformer.model.dim.StatsUserDimension;
 import com.jason.transformer.model.dim.base.BrowserDimension;
@@ -28,8 +28,7 @@ import com.jason.transformer.model.value.map.TimeOutputValue;
  * @author gerry
  *
  */
-public class ActiveMemberMapper extends TableMapper<StatsUserDimension, TimeOutputValue> {
-    private static final Logger logger = Logger.getLogger(ActiveMemberMapper.class);
+public class ActiveMemberMapper extends TransformerBaseMapper<StatsUserDimension, TimeOutputValue> {
     public static final byte[] family = Bytes.toBytes(EventLogConstants.EVENT_LOGS_FAMILY_NAME);
     private StatsUserDimension outputKey = new StatsUserDimension();
     private TimeOutputValue outputValue = new TimeOutputValue();
@@ -39,47 +38,49 @@ public class ActiveMemberMapper extends TableMapper<StatsUserDimension, TimeOutp
 
     @Override
     protected void map(ImmutableBytesWritable key, Result value, Context context) throws IOException, InterruptedException {
+        this.inputRecords++;
         // 获取u_mid&platform&serverTime，从hbase返回的结果集Result中
-        String memberId = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_MEMBER_ID)));
-        String platform = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_PLATFORM)));
-        String serverTime = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME)));
+        String memberId = this.getMemberId(value);
+        String platform = this.getPlatform(value);
+        String serverTime = this.getServerTime(value);
 
         // 过滤无效数据
         if (StringUtils.isBlank(memberId) || StringUtils.isBlank(platform) || StringUtils.isBlank(serverTime) || !StringUtils.isNumeric(serverTime.trim())) {
-            System.out.println(Bytes.toString(value.getRow()));
-            logger.warn("memberId&platform&serverTime不能为空，而且serverTime必须为时间戳");
+            this.filter(RecordCounter.MISSING_FIELDS, "memberId&platform&serverTime不能为空，而且serverTime必须为时间戳，rowkey:", Bytes.toStringBinary(value.getRow()));
             return;
         }
 
         long longOfServerTime = Long.valueOf(serverTime.trim());
-        DateDimension dateDimension = DateDimension.buildDate(longOfServerTime, DateEnum.DAY);
+        DateDimension dateDimension = this.resolveDate(DateDimension.buildDate(longOfServerTime, DateEnum.DAY));
         this.outputValue.setId(memberId);
 
         // 进行platform的构建
-        List<PlatformDimension> platforms = PlatformDimension.buildList(platform); // 进行platform创建
+        List<PlatformDimension> platforms = this.resolve(PlatformDimension.buildList(platform)); // 进行platform创建
         // 获取browser name和browser version
-        String browser = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME)));
-        String browserVersion = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION)));
+        String browser = this.getBrowserName(value);
+        String browserVersion = this.getBrowserVersion(value);
         // 进行browser的维度信息构建
-        List<BrowserDimension> browsers = BrowserDimension.buildList(browser, browserVersion);
+        List<BrowserDimension> browsers = this.resolve(BrowserDimension.buildList(browser, browserVersion));
 
         // 开始进行输出
         StatsCommonDimension statsCommonDimension = this.outputKey.getStatsCommon();
         // 设置date dimension
         statsCommonDimension.setDate(dateDimension);
         for (PlatformDimension pf : platforms) {
-            this.outputKey.setBrowser(defaultBrowser); // 进行覆盖操作
+            this.outputKey.setBrowser(this.resolve(defaultBrowser)); // 进行覆盖操作
             // 设置platform dimension
             statsCommonDimension.setPlatform(pf);
             // 设置kpi dimension
             statsCommonDimension.setKpi(activeMemberKpi);
             context.write(this.outputKey, this.outputValue);
+            this.outputRecords++;
 
             // 输出browser维度统计
             statsCommonDimension.setKpi(activeMemberOfBrowserKpi);
             for (BrowserDimension bw : browsers) {
                 this.outputKey.setBrowser(bw); // 设置对应的browsers
                 context.write(this.outputKey, this.outputValue);
+                this.outputRecords++;
             }
         }
     }
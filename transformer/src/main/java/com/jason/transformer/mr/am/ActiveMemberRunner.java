@@ -6,13 +6,8 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.client.Scan;
-import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
-import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.filter.FilterList;
-import org.apache.hadoop.hbase.filter.MultipleColumnPrefixFilter;
-import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
 import org.apache.hadoop.hbase.mapreduce.TableMapReduceUtil;
-import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
@@ -24,9 +19,12 @@ import com.jason.common.EventLogConstants.EventEnum;
 import com.jason.transformer.model.dim.StatsUserDimension;
 import com.jason.transformer.model.value.map.TimeOutputValue;
 import com.jason.transformer.model.value.reduce.MapWritableValue;
+import com.jason.transformer.mr.IncrementalScanWindow;
+import com.jason.transformer.mr.TransformerBaseRunner;
 import com.jason.transformer.mr.TransformerOutputFormat;
+import com.jason.util.EventFilterUtil;
+import com.jason.util.RowKeyUtil;
 import com.jason.util.TimeUtil;
-import com.google.common.collect.Lists;
 
 /**
  * 统计active member数量的执行入口类
@@ -75,6 +73,10 @@ public class ActiveMemberRunner implements Tool {
         Configuration conf = this.getConf();
         // 初始化参数
         this.processArgs(conf, args);
+        if (IncrementalScanWindow.isSkipped(conf)) {
+            // 增量运行时etl还没有导入运行日期的数据，不运行job
+            return 0;
+        }
 
         // 创建job
         Job job = Job.getInstance(conf, "active_member");
@@ -98,7 +100,11 @@ public class ActiveMemberRunner implements Tool {
         // 开始毫秒数
         long startTime = System.currentTimeMillis();
         try {
-            return job.waitForCompletion(true) ? 0 : -1;
+            if (job.waitForCompletion(true)) {
+                IncrementalScanWindow.commit(conf);
+                return 0;
+            }
+            return -1;
         } finally {
             // 结束的毫秒数
             long endTime = System.currentTimeMillis();
@@ -123,6 +129,11 @@ public class ActiveMemberRunner implements Tool {
             }
         }
 
+        if (IncrementalScanWindow.isIncremental(args)) {
+            // 增量运行，运行日期由检查点决定
+            date = IncrementalScanWindow.open(conf, "active_member");
+        }
+
         // 要求date格式为: yyyy-MM-dd
         if (StringUtils.isBlank(date) || !TimeUtil.isValidateRunningDate(date)) {
             // date是一个无效时间数据
@@ -144,11 +155,6 @@ public class ActiveMemberRunner implements Tool {
         long startDate = TimeUtil.parseString2Long(date);
         long endDate = startDate + GlobalConstants.DAY_OF_MILLISECONDS;
 
-        Scan scan = new Scan();
-        // 定义hbase扫描的开始rowkey和结束rowkey
-        scan.setStartRow(Bytes.toBytes("" + startDate));
-        scan.setStopRow(Bytes.toBytes("" + endDate));
-
         FilterList filterList = new FilterList();
         // 定义mapper中需要获取的列名
         String[] columns = new String[] { EventLogConstants.LOG_COLUMN_NAME_MEMBER_ID, // 会员id
@@ -156,29 +162,13 @@ public class ActiveMemberRunner implements Tool {
                 EventLogConstants.LOG_COLUMN_NAME_PLATFORM, // 平台名称
                 EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, // 浏览器名称
                 EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION, // 浏览器版本号
-                EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME // 添加一个事件名称获取列，在使用singlecolumnvaluefilter的时候必须指定对应的列是一个返回列
+                EventFilterUtil.getEventColumn(conf) // 添加一个事件名称获取列，在使用singlecolumnvaluefilter的时候必须指定对应的列是一个返回列
         };
-        filterList.addFilter(this.getColumnFilter(columns));
+        filterList.addFilter(TransformerBaseRunner.createColumnFilter(columns));
         // 只需要page view事件，所以进行过滤
-        filterList.addFilter(new SingleColumnValueFilter(ActiveMemberMapper.family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME), CompareOp.EQUAL, Bytes.toBytes(EventEnum.PAGEVIEW.alias)));
-
-        scan.setAttribute(Scan.SCAN_ATTRIBUTES_TABLE_NAME, Bytes.toBytes(EventLogConstants.HBASE_NAME_EVENT_LOGS));
-        scan.setFilter(filterList);
-        return Lists.newArrayList(scan);
-    }
+        filterList.addFilter(EventFilterUtil.createEventFilter(conf, EventEnum.PAGEVIEW));
 
-    /**
-     * 获取这个列名过滤的column
-     * 
-     * @param columns
-     * @return
-     */
-    private Filter getColumnFilter(String[] columns) {
-        int length = columns.length;
-        byte[][] filter = new byte[length][];
-        for (int i = 0; i < length; i++) {
-            filter[i] = Bytes.toBytes(columns[i]);
-        }
-        return new MultipleColumnPrefixFilter(filter);
+        // 每个盐值分桶一个scan
+        return RowKeyUtil.createScans(conf, startDate, endDate, filterList);
     }
 }
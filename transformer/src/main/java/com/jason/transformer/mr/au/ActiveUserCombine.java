@@ -4,20 +4,68 @@ import java.io.IOException;
 
 import org.apache.hadoop.mapreduce.Reducer;
 
+import com.jason.common.KpiType;
 import com.jason.transformer.model.dim.StatsUserDimension;
 import com.jason.transformer.model.value.map.TimeOutputValue;
+import com.jason.util.HyperLogLog;
+import com.jason.util.TimeUtil;
 
 /**
- * combine类
- * 
+ * combine类，近似去重模式(transformer.distinct.approximate)下使用<br/>
+ * 把同一个key的uuid合并成HyperLogLog sketch，hourly active user按照访问的小时合并成24个sketch；输入可能已经是sketch(多次combine)
+ *
  * @author jason
  *
  */
 public class ActiveUserCombine extends Reducer<StatsUserDimension, TimeOutputValue, StatsUserDimension, TimeOutputValue> {
+    private HyperLogLog[] unique = new HyperLogLog[1];
+    private HyperLogLog[] hourlyUnique = new HyperLogLog[24];
+    private TimeOutputValue outputValue = new TimeOutputValue();
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+        this.unique[0] = HyperLogLog.create(context.getConfiguration());
+        for (int i = 0; i < 24; i++) {
+            this.hourlyUnique[i] = HyperLogLog.create(context.getConfiguration());
+        }
+    }
+
     @Override
     protected void reduce(StatsUserDimension key, Iterable<TimeOutputValue> values, Context context) throws IOException, InterruptedException {
-        for (TimeOutputValue tov : values) {
-            context.write(key, tov);
+        boolean hourly = KpiType.HOURLY_ACTIVE_USER.name.equals(key.getStatsCommon().getKpi().getKpiName());
+        HyperLogLog[] sketches = hourly ? this.hourlyUnique : this.unique;
+        try {
+            for (TimeOutputValue value : values) {
+                add(sketches, value, hourly);
+            }
+            this.outputValue.setSketches(sketches);
+            context.write(key, this.outputValue);
+        } finally {
+            for (HyperLogLog sketch : sketches) {
+                sketch.clear();
+            }
+        }
+    }
+
+    /**
+     * 把value中的id或者sketch合并到sketches中，reducer中也使用
+     *
+     * @param sketches
+     *            hourly active user为24个sketch，其他为1个
+     * @param value
+     * @param hourly
+     *            是否是hourly active user
+     */
+    static void add(HyperLogLog[] sketches, TimeOutputValue value, boolean hourly) {
+        if (value.getSketches() != null) {
+            for (int i = 0; i < sketches.length; i++) {
+                sketches[i].merge(value.getSketches()[i]);
+            }
+        } else if (hourly) {
+            sketches[TimeUtil.getHourOfDay(value.getTime())].offer(value.getId());
+        } else {
+            sketches[0].offer(value.getId());
         }
     }
 }
@@ -6,10 +6,10 @@ import java.util.List;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
-import org.apache.log4j.Logger;
 
 import com.jason.common.DateEnum;
 import com.jason.common.KpiType;
+import com.jason.common.RecordCounter;
 import com.jason.transformer.model.dim.StatsCommonDimension;
 import com.jason.transformer.model.dim.StatsUserDimension;
 import com.jason.transformer.model.dim.base.BrowserDimension;
@@ -26,7 +26,6 @@ import com.jason.transformer.mr.TransformerBaseMapper;
  *
  */
 public class ActiveUserMapper extends TransformerBaseMapper<StatsUserDimension, TimeOutputValue> {
-    private static final Logger logger = Logger.getLogger(ActiveUserMapper.class);
     private StatsUserDimension outputKey = new StatsUserDimension();
     private TimeOutputValue outputValue = new TimeOutputValue();
     private BrowserDimension defaultBrowser = new BrowserDimension("", ""); // 默认的browser对象
@@ -47,30 +46,29 @@ public class ActiveUserMapper extends TransformerBaseMapper<StatsUserDimension,
 
         // 过滤无效数据
         if (StringUtils.isBlank(uuid) || StringUtils.isBlank(platform) || StringUtils.isBlank(serverTime) || !StringUtils.isNumeric(serverTime.trim())) {
-            logger.warn("uuid&platform&serverTime不能为空，而且serverTime必须为时间戳");
-            this.filterRecords++;
+            this.filter(RecordCounter.MISSING_FIELDS, "uuid&platform&serverTime不能为空，而且serverTime必须为时间戳", null);
             return;
         }
 
         long longOfServerTime = Long.valueOf(serverTime.trim());
-        DateDimension dateDimension = DateDimension.buildDate(longOfServerTime, DateEnum.DAY);
+        DateDimension dateDimension = this.resolveDate(DateDimension.buildDate(longOfServerTime, DateEnum.DAY));
         this.outputValue.setId(uuid); // 设置用户id
         this.outputValue.setTime(longOfServerTime); // 设置访问的服务器时间，可以用来计算该用户访问的时间是哪个时间段。
 
         // 进行platform的构建
-        List<PlatformDimension> platforms = PlatformDimension.buildList(platform); // 进行platform创建
+        List<PlatformDimension> platforms = this.resolve(PlatformDimension.buildList(platform)); // 进行platform创建
         // 获取browser name和browser version
         this.browser = this.getBrowserName(value);
         this.browserVersion = this.getBrowserVersion(value);
         // 进行browser的维度信息构建
-        List<BrowserDimension> browsers = BrowserDimension.buildList(browser, browserVersion);
+        List<BrowserDimension> browsers = this.resolve(BrowserDimension.buildList(browser, browserVersion));
 
         // 开始进行输出
         StatsCommonDimension statsCommonDimension = this.outputKey.getStatsCommon();
         // 设置date dimension
         statsCommonDimension.setDate(dateDimension);
         for (PlatformDimension pf : platforms) {
-            this.outputKey.setBrowser(defaultBrowser); // 进行覆盖操作
+            this.outputKey.setBrowser(this.resolve(defaultBrowser)); // 进行覆盖操作
             // 设置platform dimension
             statsCommonDimension.setPlatform(pf);
 
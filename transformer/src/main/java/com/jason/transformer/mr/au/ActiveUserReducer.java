@@ -10,15 +10,17 @@ import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.MapWritable;
 import org.apache.hadoop.mapreduce.Reducer;
 
-import com.jason.common.DateEnum;
+import com.jason.common.GlobalConstants;
 import com.jason.common.KpiType;
 import com.jason.transformer.model.dim.StatsUserDimension;
 import com.jason.transformer.model.value.map.TimeOutputValue;
 import com.jason.transformer.model.value.reduce.MapWritableValue;
+import com.jason.util.HyperLogLog;
 import com.jason.util.TimeUtil;
 
 /**
- * 统计active user， 其实就是计算本一组中这个uuid的个数
+ * 统计active user， 其实就是计算本一组中这个uuid的个数<br/>
+ * 近似去重模式(transformer.distinct.approximate)下合并HyperLogLog sketch计算uuid的个数，内存占用和uuid的个数无关
  * 
  * @author jason
  *
@@ -29,6 +31,8 @@ public class ActiveUserReducer extends Reducer<StatsUserDimension, TimeOutputVal
     private MapWritableValue outputValue = new MapWritableValue();
     private MapWritable map = new MapWritable();
     private MapWritable hourlyMap = new MapWritable();
+    private HyperLogLog[] sketches = null; // 近似去重模式下使用，否则为null
+    private HyperLogLog[] hourlySketches = null;
 
     @Override
     protected void setup(Context context) throws IOException, InterruptedException {
@@ -38,17 +42,26 @@ public class ActiveUserReducer extends Reducer<StatsUserDimension, TimeOutputVal
             this.hourlyMap.put(new IntWritable(i), new IntWritable(0));
             this.hourlyUnique.put(i, new HashSet<String>());
         }
+        if (context.getConfiguration().getBoolean(GlobalConstants.TRANSFORMER_DISTINCT_APPROXIMATE, false)) {
+            this.sketches = new HyperLogLog[] { HyperLogLog.create(context.getConfiguration()) };
+            this.hourlySketches = new HyperLogLog[24];
+            for (int i = 0; i < 24; i++) {
+                this.hourlySketches[i] = HyperLogLog.create(context.getConfiguration());
+            }
+        }
     }
 
     @Override
     protected void reduce(StatsUserDimension key, Iterable<TimeOutputValue> values, Context context) throws IOException, InterruptedException {
         try {
             String kpiName = key.getStatsCommon().getKpi().getKpiName();
-            if (KpiType.HOURLY_ACTIVE_USER.name.equals(kpiName)) {
+            if (this.sketches != null) {
+                this.reduceApproximate(key, values, context);
+            } else if (KpiType.HOURLY_ACTIVE_USER.name.equals(kpiName)) {
                 // 计算hourly active user
                 for (TimeOutputValue value : values) {
                     // 计算出访问的小时，从[0,23]的区间段
-                    int hour = TimeUtil.getDateInfo(value.getTime(), DateEnum.HOUR);
+                    int hour = TimeUtil.getHourOfDay(value.getTime());
                     this.hourlyUnique.get(hour).add(value.getId()); // 将会话id添加到对应的时间段中
                 }
 
@@ -92,4 +105,40 @@ public class ActiveUserReducer extends Reducer<StatsUserDimension, TimeOutputVal
         }
 
     }
+
+    /**
+     * 近似去重模式下合并sketch，输出和精确模式相同
+     * 
+     * @param key
+     * @param values
+     * @param context
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private void reduceApproximate(StatsUserDimension key, Iterable<TimeOutputValue> values, Context context) throws IOException, InterruptedException {
+        boolean hourly = KpiType.HOURLY_ACTIVE_USER.name.equals(key.getStatsCommon().getKpi().getKpiName());
+        HyperLogLog[] sketches = hourly ? this.hourlySketches : this.sketches;
+        try {
+            for (TimeOutputValue value : values) {
+                ActiveUserCombine.add(sketches, value, hourly);
+            }
+
+            if (hourly) {
+                this.outputValue.setKpi(KpiType.HOURLY_ACTIVE_USER);
+                for (int i = 0; i < 24; i++) {
+                    this.hourlyMap.put(new IntWritable(i), new IntWritable((int) sketches[i].cardinality()));
+                }
+                this.outputValue.setValue(this.hourlyMap);
+            } else {
+                this.outputValue.setKpi(KpiType.valueOfName(key.getStatsCommon().getKpi().getKpiName()));
+                this.map.put(new IntWritable(-1), new IntWritable((int) sketches[0].cardinality()));
+                this.outputValue.setValue(this.map);
+            }
+            context.write(key, this.outputValue);
+        } finally {
+            for (HyperLogLog sketch : sketches) {
+                sketch.clear();
+            }
+        }
+    }
 }
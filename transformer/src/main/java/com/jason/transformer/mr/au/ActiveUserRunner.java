@@ -9,6 +9,7 @@ import org.apache.hadoop.mapreduce.Partitioner;
 import org.apache.log4j.Logger;
 
 import com.jason.common.EventLogConstants;
+import com.jason.common.GlobalConstants;
 import com.jason.common.KpiType;
 import com.jason.transformer.model.dim.StatsUserDimension;
 import com.jason.transformer.model.value.map.TimeOutputValue;
@@ -47,6 +48,9 @@ public class ActiveUserRunner extends TransformerBaseRunner {
         super.beforeRunJob(job);
         job.setNumReduceTasks(3); // 每个统计维度一个reducer
         job.setPartitionerClass(ActiveUserPartitioner.class); // 设置分区类
+        if (job.getConfiguration().getBoolean(GlobalConstants.TRANSFORMER_DISTINCT_APPROXIMATE, false)) {
+            job.setCombinerClass(ActiveUserCombine.class); // 近似去重，map端把uuid合并成sketch
+        }
         // 不启动推测执行
         job.setMapSpeculativeExecution(false);
         job.setReduceSpeculativeExecution(false);
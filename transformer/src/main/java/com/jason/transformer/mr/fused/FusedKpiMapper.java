@@ -0,0 +1,122 @@
+package com.jason.transformer.mr.fused;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.mapreduce.MapContext;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.lib.map.WrappedMapper;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.jason.common.EventLogConstants.EventEnum;
+import com.jason.common.RecordCounter;
+import com.jason.transformer.model.dim.base.BaseDimension;
+import com.jason.transformer.mr.TransformerBaseMapper;
+
+/**
+ * 合并扫描job的mapper类<br/>
+ * 为每个kpi模块创建一个原来的mapper对象，每条记录只解析一次事件类型，然后交给所有需要这个事件的模块处理；
+ * 模块的输出加上模块序号作为标签后写出，模块的计数器(RecordCounter)记录在以模块名称为组名的计数器中；
+ * 开启维度字典的时候所有模块共用这个mapper创建的字典
+ *
+ * @author jason
+ *
+ */
+public class FusedKpiMapper extends TransformerBaseMapper<TaggedKey, TaggedValue> {
+    private KpiModule[] modules;
+    @SuppressWarnings("rawtypes")
+    private TransformerBaseMapper[] mappers;
+    @SuppressWarnings("rawtypes")
+    private Mapper.Context[] contexts;
+    private boolean needEvent = false; // 是否有模块只处理指定的事件
+    private TaggedKey outputKey = new TaggedKey();
+    private TaggedValue outputValue = new TaggedValue();
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+        List<KpiModule> list = KpiModule.getModules(context.getConfiguration());
+        this.modules = list.toArray(new KpiModule[list.size()]);
+        this.mappers = new TransformerBaseMapper[this.modules.length];
+        this.contexts = new Mapper.Context[this.modules.length];
+        for (int i = 0; i < this.modules.length; i++) {
+            KpiModule module = this.modules[i];
+            this.needEvent = this.needEvent || module.event != null;
+            MapContext moduleContext = (MapContext) Proxy.newProxyInstance(MapContext.class.getClassLoader(), new Class<?>[] { MapContext.class }, new ModuleContextHandler(module, context));
+            this.contexts[i] = new WrappedMapper().getMapContext(moduleContext);
+            this.mappers[i] = ReflectionUtils.newInstance(module.mapperClass, context.getConfiguration());
+            this.mappers[i].setupModule(this.contexts[i], this.getDictionary());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void map(ImmutableBytesWritable key, Result value, Context context) throws IOException, InterruptedException {
+        this.inputRecords++;
+        EventEnum event = this.needEvent ? this.getEvent(value) : null;
+        boolean accepted = false;
+        for (int i = 0; i < this.modules.length; i++) {
+            if (this.modules[i].accept(event)) {
+                this.mappers[i].mapModule(key, value, this.contexts[i]);
+                accepted = true;
+            }
+        }
+        if (!accepted) {
+            this.filter(RecordCounter.NO_KPI_MODULE, "没有模块需要该事件，事件为:", event);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+        for (int i = 0; i < this.modules.length; i++) {
+            this.mappers[i].cleanupModule(this.contexts[i]);
+        }
+        super.cleanup(context);
+    }
+
+    /**
+     * 模块mapper使用的context，写出的时候加上模块标签，计数器按照模块分组，其他方法直接交给外层的context
+     *
+     * @author jason
+     *
+     */
+    private class ModuleContextHandler implements InvocationHandler {
+        private final KpiModule module;
+        private final Context context;
+
+        ModuleContextHandler(KpiModule module, Context context) {
+            this.module = module;
+            this.context = context;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("write".equals(name) && args.length == 2) {
+                outputKey.set(this.module, (BaseDimension) args[0]);
+                outputValue.set(this.module, (Writable) args[1]);
+                // map输出在write的时候就已经序列化，可以重用标签对象
+                this.context.write(outputKey, outputValue);
+                outputRecords++;
+                return null;
+            }
+            if ("getCounter".equals(name) && args.length == 1) {
+                return this.context.getCounter(this.module.name(), ((Enum<?>) args[0]).name());
+            }
+            try {
+                return method.invoke(this.context, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
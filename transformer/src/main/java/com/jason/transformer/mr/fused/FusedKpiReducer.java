@@ -0,0 +1,117 @@
+package com.jason.transformer.mr.fused;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+
+import org.apache.hadoop.mapreduce.ReduceContext;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.log4j.Logger;
+
+import com.jason.transformer.model.dim.base.BaseDimension;
+import com.jason.transformer.model.value.BaseStatsValueWritable;
+
+/**
+ * 合并扫描job的reducer类<br/>
+ * 每个kpi模块占用一段连续的reducer分区，一个reducer task只处理一个模块的数据，
+ * 所以直接根据分区号找到模块，把去掉标签后的key/value交给原来job的reducer处理
+ *
+ * @author jason
+ *
+ */
+public class FusedKpiReducer extends Reducer<TaggedKey, TaggedValue, BaseDimension, BaseStatsValueWritable> {
+    private static final Logger logger = Logger.getLogger(FusedKpiReducer.class);
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Override
+    public void run(Context context) throws IOException, InterruptedException {
+        KpiModule module = this.getModule(context);
+        if (module == null) {
+            logger.warn("分区" + context.getTaskAttemptID().getTaskID().getId() + "没有对应的kpi模块");
+            return;
+        }
+        logger.info("运行kpi模块:" + module);
+        Reducer reducer = ReflectionUtils.newInstance(module.reducerClass, context.getConfiguration());
+        ReduceContext moduleContext = (ReduceContext) Proxy.newProxyInstance(ReduceContext.class.getClassLoader(), new Class<?>[] { ReduceContext.class }, new ModuleContextHandler(context));
+        reducer.run(new WrappedReducer().getReducerContext(moduleContext));
+    }
+
+    /**
+     * 根据当前的分区号获取对应的kpi模块
+     *
+     * @param context
+     * @return
+     */
+    private KpiModule getModule(Context context) {
+        int partition = context.getTaskAttemptID().getTaskID().getId();
+        int[] offsets = KpiModule.getPartitionOffsets(context.getConfiguration());
+        KpiModule result = null;
+        for (KpiModule module : KpiModule.values()) {
+            int offset = offsets[module.ordinal()];
+            if (offset != -1 && offset <= partition) {
+                result = module; // 模块按照序号依次分配分区，取最后一个起始分区不大于当前分区的模块
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 模块reducer使用的context，读取key/value的时候去掉标签，其他方法直接交给外层的context
+     *
+     * @author jason
+     *
+     */
+    private static class ModuleContextHandler implements InvocationHandler {
+        private final Context context;
+
+        ModuleContextHandler(Context context) {
+            this.context = context;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("getCurrentKey".equals(name)) {
+                return this.context.getCurrentKey().getKey();
+            }
+            if ("getCurrentValue".equals(name)) {
+                return this.context.getCurrentValue().getValue();
+            }
+            if ("getValues".equals(name)) {
+                final Iterable<TaggedValue> values = this.context.getValues();
+                return new Iterable<Object>() {
+                    @Override
+                    public Iterator<Object> iterator() {
+                        final Iterator<TaggedValue> it = values.iterator();
+                        return new Iterator<Object>() {
+                            @Override
+                            public boolean hasNext() {
+                                return it.hasNext();
+                            }
+
+                            @Override
+                            public Object next() {
+                                return it.next().getValue();
+                            }
+
+                            @Override
+                            public void remove() {
+                                it.remove();
+                            }
+                        };
+                    }
+                };
+            }
+            try {
+                return method.invoke(this.context, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.jason.transformer.mr.fused;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * 合并扫描job的分区和分组使用到的类
+ *
+ * @author jason
+ *
+ */
+public class FusedKpiRouting {
+    /**
+     * 自定义分区类，每个模块的数据只会分配到该模块自己的分区段，模块内部使用原来job的分区类或者按照key的hash分区
+     *
+     * @author jason
+     *
+     */
+    public static class FusedKpiPartitioner extends Partitioner<TaggedKey, TaggedValue> implements Configurable {
+        private Configuration conf;
+        private int[] offsets;
+        @SuppressWarnings("rawtypes")
+        private Partitioner[] partitioners = new Partitioner[KpiModule.values().length];
+
+        @Override
+        public void setConf(Configuration conf) {
+            this.conf = conf;
+            this.offsets = KpiModule.getPartitionOffsets(conf);
+            for (KpiModule module : KpiModule.values()) {
+                if (module.partitionerClass != null) {
+                    this.partitioners[module.ordinal()] = ReflectionUtils.newInstance(module.partitionerClass, conf);
+                }
+            }
+        }
+
+        @Override
+        public Configuration getConf() {
+            return this.conf;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public int getPartition(TaggedKey key, TaggedValue value, int numPartitions) {
+            KpiModule module = key.getModule();
+            int reducers = module.getReducers(this.conf);
+            int partition;
+            if (this.partitioners[module.ordinal()] != null) {
+                partition = this.partitioners[module.ordinal()].getPartition(key.getKey(), value.getValue(), reducers);
+            } else {
+                partition = (key.getKey().hashCode() & Integer.MAX_VALUE) % reducers;
+            }
+            return this.offsets[module.ordinal()] + partition;
+        }
+    }
+
+    /**
+     * 自定义分组类，不同模块的key不会分到同一组，模块内部使用原来job的分组类或者按照key分组
+     *
+     * @author jason
+     *
+     */
+    public static class FusedKpiGroupingComparator extends WritableComparator {
+        private WritableComparator[] comparators = new WritableComparator[KpiModule.values().length];
+
+        public FusedKpiGroupingComparator() {
+            super(TaggedKey.class, true);
+        }
+
+        @SuppressWarnings("rawtypes")
+        @Override
+        public int compare(WritableComparable a, WritableComparable b) {
+            TaggedKey key1 = (TaggedKey) a;
+            TaggedKey key2 = (TaggedKey) b;
+            KpiModule module = key1.getModule();
+            if (module != key2.getModule()) {
+                return module.ordinal() - key2.getModule().ordinal();
+            }
+            if (module.groupingComparatorClass == null) {
+                return key1.getKey().compareTo(key2.getKey());
+            }
+            WritableComparator comparator = this.comparators[module.ordinal()];
+            if (comparator == null) {
+                comparator = ReflectionUtils.newInstance(module.groupingComparatorClass, null);
+                this.comparators[module.ordinal()] = comparator;
+            }
+            return comparator.compare(key1.getKey(), key2.getKey());
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            int tmp = b1[s1] - b2[s2];
+            if (tmp != 0) {
+                return tmp;
+            }
+            KpiModule module = KpiModule.values()[b1[s1]];
+            WritableComparator comparator = this.comparators[module.ordinal()];
+            if (comparator == null) {
+                if (module.groupingComparatorClass == null) {
+                    comparator = WritableComparator.get(module.keyClass);
+                } else {
+                    comparator = ReflectionUtils.newInstance(module.groupingComparatorClass, null);
+                }
+                this.comparators[module.ordinal()] = comparator;
+            }
+            // 跳过模块序号，直接比较模块key的序列化字节
+            return comparator.compare(b1, s1 + 1, l1 - 1, b2, s2 + 1, l2 - 1);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.jason.transformer.mr.fused;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.FilterList;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.log4j.Logger;
+
+import com.jason.common.EventLogConstants.EventEnum;
+import com.jason.common.GlobalConstants;
+import com.jason.transformer.model.dim.base.BaseDimension;
+import com.jason.transformer.model.value.BaseStatsValueWritable;
+import com.jason.transformer.mr.TransformerBaseRunner;
+import com.jason.transformer.mr.fused.FusedKpiRouting.FusedKpiGroupingComparator;
+import com.jason.transformer.mr.fused.FusedKpiRouting.FusedKpiPartitioner;
+import com.jason.transformer.mr.nm.NewMemberRunner;
+import com.jason.transformer.mr.nu.NewInstallUserRunner;
+import com.jason.util.EventFilterUtil;
+
+/**
+ * 合并扫描job的入口类，只扫描一次event_logs表，同时计算多个kpi<br/>
+ * 参数-kpi指定需要运行的模块，多个用逗号分隔，例如: -kpi active_user,sessions，不指定运行所有的模块
+ *
+ * @author jason
+ *
+ */
+public class FusedKpiRunner extends TransformerBaseRunner {
+    private static final Logger logger = Logger.getLogger(FusedKpiRunner.class);
+
+    public static void main(String[] args) {
+        FusedKpiRunner runner = new FusedKpiRunner();
+        runner.setupRunner("fused_kpi", FusedKpiRunner.class, FusedKpiMapper.class, FusedKpiReducer.class, TaggedKey.class, TaggedValue.class, BaseDimension.class, BaseStatsValueWritable.class);
+        try {
+            runner.startRunner(args);
+        } catch (Exception e) {
+            logger.error("执行异常", e);
+            throw new RuntimeException("执行异常", e);
+        }
+    }
+
+    @Override
+    protected void processArgs(Configuration conf, String[] args) {
+        super.processArgs(conf, args);
+        for (int i = 0; i < args.length; i++) {
+            if ("-kpi".equals(args[i]) && i + 1 < args.length) {
+                conf.set(GlobalConstants.TRANSFORMER_FUSED_MODULES, args[++i]);
+            }
+        }
+        // 提前校验模块名称
+        logger.info("运行的kpi模块:" + KpiModule.getModules(conf));
+    }
+
+    @Override
+    protected void beforeRunJob(Job job) throws IOException {
+        super.beforeRunJob(job);
+        int[] offsets = KpiModule.getPartitionOffsets(job.getConfiguration());
+        job.setNumReduceTasks(offsets[offsets.length - 1]); // 所有模块的reducer个数之和
+        job.setPartitionerClass(FusedKpiPartitioner.class);
+        job.setGroupingComparatorClass(FusedKpiGroupingComparator.class);
+        // 和单独的job一样，reducer有写mysql的操作，关闭推测执行
+        job.setMapSpeculativeExecution(false);
+        job.setReduceSpeculativeExecution(false);
+    }
+
+    @Override
+    protected void afterRunJob(Job job, Throwable error) throws IOException {
+        try {
+            if (error == null && job.isSuccessful()) {
+                // 和单独运行的job一样，计算总用户数和总会员数
+                List<KpiModule> modules = KpiModule.getModules(job.getConfiguration());
+                if (modules.contains(KpiModule.NEW_INSTALL_USER)) {
+                    NewInstallUserRunner.calculateTotalUsers(job.getConfiguration());
+                }
+                if (modules.contains(KpiModule.NEW_MEMBER)) {
+                    NewMemberRunner.calculateTotalMembers(job.getConfiguration());
+                }
+            } else if (error == null) {
+                throw new RuntimeException("job 运行失败");
+            }
+        } catch (Throwable e) {
+            if (error != null) {
+                error = e;
+            }
+            throw new IOException("调用afterRunJob产生异常", e);
+        } finally {
+            super.afterRunJob(job, error);
+        }
+    }
+
+    @Override
+    protected Filter fetchHbaseFilter() {
+        List<KpiModule> modules = KpiModule.getModules(this.conf);
+        Set<String> columns = new LinkedHashSet<String>();
+        Set<EventEnum> events = new LinkedHashSet<EventEnum>();
+        boolean allEvents = false; // 是否有模块需要所有的事件
+        for (KpiModule module : modules) {
+            for (String column : module.columns) {
+                columns.add(column);
+            }
+            if (module.event == null) {
+                allEvents = true;
+            } else {
+                events.add(module.event);
+            }
+        }
+        if (!events.isEmpty()) {
+            columns.add(EventFilterUtil.getEventColumn(this.conf)); // mapper需要根据事件分发给模块
+        }
+
+        FilterList list = new FilterList();
+        list.addFilter(this.getColumnFilter(columns.toArray(new String[columns.size()])));
+        if (!allEvents) {
+            // 所有模块都只处理指定的事件，只需要扫描这些事件
+            List<Filter> eventFilters = new ArrayList<Filter>();
+            for (EventEnum event : events) {
+                eventFilters.add(EventFilterUtil.createEventFilter(this.conf, event));
+            }
+            list.addFilter(eventFilters.size() == 1 ? eventFilters.get(0) : new FilterList(FilterList.Operator.MUST_PASS_ONE, eventFilters));
+        }
+        return list;
+    }
+}
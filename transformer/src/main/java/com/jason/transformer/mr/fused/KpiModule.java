@@ -0,0 +1,169 @@
+package com.jason.transformer.mr.fused;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapreduce.Partitioner;
+import org.apache.hadoop.mapreduce.Reducer;
+
+import com.jason.common.EventLogConstants;
+import com.jason.common.EventLogConstants.EventEnum;
+import com.jason.common.GlobalConstants;
+import com.jason.transformer.model.dim.StatsInboundBounceDimension;
+import com.jason.transformer.model.dim.StatsInboundDimension;
+import com.jason.transformer.model.dim.StatsLocationDimension;
+import com.jason.transformer.model.dim.StatsUserDimension;
+import com.jason.transformer.model.dim.base.BaseDimension;
+import com.jason.transformer.model.value.map.TextsOutputValue;
+import com.jason.transformer.model.value.map.TimeOutputValue;
+import com.jason.transformer.mr.TransformerBaseMapper;
+import com.jason.transformer.mr.am.ActiveMemberMapper;
+import com.jason.transformer.mr.am.ActiveMemberReducer;
+import com.jason.transformer.mr.au.ActiveUserMapper;
+import com.jason.transformer.mr.au.ActiveUserReducer;
+import com.jason.transformer.mr.au.ActiveUserRunner.ActiveUserPartitioner;
+import com.jason.transformer.mr.inbound.InboundMapper;
+import com.jason.transformer.mr.inbound.InboundReducer;
+import com.jason.transformer.mr.inbound.bounce.InboundBounceMapper;
+import com.jason.transformer.mr.inbound.bounce.InboundBounceReducer;
+import com.jason.transformer.mr.inbound.bounce.InboundBounceSecondSort.InboundBounceGroupingComparator;
+import com.jason.transformer.mr.inbound.bounce.InboundBounceSecondSort.InboundBouncePartitioner;
+import com.jason.transformer.mr.location.LocationMapper;
+import com.jason.transformer.mr.location.LocationReducer;
+import com.jason.transformer.mr.nm.NewMemberMapper;
+import com.jason.transformer.mr.nm.NewMemberReducer;
+import com.jason.transformer.mr.nu.NewInstallUserMapper;
+import com.jason.transformer.mr.nu.NewInstallUserReducer;
+import com.jason.transformer.mr.pv.PageViewMapper;
+import com.jason.transformer.mr.pv.PageViewReducer;
+import com.jason.transformer.mr.sessions.SessionsMapper;
+import com.jason.transformer.mr.sessions.SessionsReducer;
+
+/**
+ * 合并扫描job中可以运行的kpi模块，每个模块对应原来一个单独的mapreduce job，直接复用它的mapper和reducer<br/>
+ * 模块的序号作为输出key/value的标签，所以只能在末尾添加新的模块，不能调整顺序<br/>
+ * 原来job中scan使用的事件过滤改为在合并的mapper中判断，需要的列取所有模块的并集
+ *
+ * @author jason
+ *
+ */
+public enum KpiModule {
+    ACTIVE_USER(ActiveUserMapper.class, ActiveUserReducer.class, StatsUserDimension.class, TimeOutputValue.class, ActiveUserPartitioner.class, null, 3, null, //
+            EventLogConstants.LOG_COLUMN_NAME_UUID, EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, EventLogConstants.LOG_COLUMN_NAME_PLATFORM, EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION), //
+    NEW_INSTALL_USER(NewInstallUserMapper.class, NewInstallUserReducer.class, StatsUserDimension.class, TimeOutputValue.class, null, null, 1, EventEnum.LAUNCH, //
+            EventLogConstants.LOG_COLUMN_NAME_UUID, EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, EventLogConstants.LOG_COLUMN_NAME_PLATFORM, EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION), //
+    SESSIONS(SessionsMapper.class, SessionsReducer.class, StatsUserDimension.class, TimeOutputValue.class, null, null, 1, null, //
+            EventLogConstants.LOG_COLUMN_NAME_SESSION_ID, EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, EventLogConstants.LOG_COLUMN_NAME_PLATFORM, EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION), //
+    PAGEVIEW(PageViewMapper.class, PageViewReducer.class, StatsUserDimension.class, NullWritable.class, null, null, 1, EventEnum.PAGEVIEW, //
+            EventLogConstants.LOG_COLUMN_NAME_CURRENT_URL, EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, EventLogConstants.LOG_COLUMN_NAME_PLATFORM, EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION), //
+    LOCATION(LocationMapper.class, LocationReducer.class, StatsLocationDimension.class, TextsOutputValue.class, null, null, 1, EventEnum.PAGEVIEW, //
+            EventLogConstants.LOG_COLUMN_NAME_PLATFORM, EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, EventLogConstants.LOG_COLUMN_NAME_UUID, EventLogConstants.LOG_COLUMN_NAME_SESSION_ID, EventLogConstants.LOG_COLUMN_NAME_COUNTRY, EventLogConstants.LOG_COLUMN_NAME_PROVINCE, EventLogConstants.LOG_COLUMN_NAME_CITY), //
+    INBOUND(InboundMapper.class, InboundReducer.class, StatsInboundDimension.class, TextsOutputValue.class, null, null, 1, EventEnum.PAGEVIEW, //
+            EventLogConstants.LOG_COLUMN_NAME_REFERRER_URL, EventLogConstants.LOG_COLUMN_NAME_UUID, EventLogConstants.LOG_COLUMN_NAME_SESSION_ID, EventLogConstants.LOG_COLUMN_NAME_PLATFORM, EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME), //
+    INBOUND_BOUNCE(InboundBounceMapper.class, InboundBounceReducer.class, StatsInboundBounceDimension.class, IntWritable.class, InboundBouncePartitioner.class, InboundBounceGroupingComparator.class, 1, EventEnum.PAGEVIEW, //
+            EventLogConstants.LOG_COLUMN_NAME_REFERRER_URL, EventLogConstants.LOG_COLUMN_NAME_SESSION_ID, EventLogConstants.LOG_COLUMN_NAME_PLATFORM, EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME), //
+    ACTIVE_MEMBER(ActiveMemberMapper.class, ActiveMemberReducer.class, StatsUserDimension.class, TimeOutputValue.class, null, null, 1, EventEnum.PAGEVIEW, //
+            EventLogConstants.LOG_COLUMN_NAME_MEMBER_ID, EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, EventLogConstants.LOG_COLUMN_NAME_PLATFORM, EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION), //
+    NEW_MEMBER(NewMemberMapper.class, NewMemberReducer.class, StatsUserDimension.class, TimeOutputValue.class, null, null, 1, null, //
+            EventLogConstants.LOG_COLUMN_NAME_MEMBER_ID, EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, EventLogConstants.LOG_COLUMN_NAME_PLATFORM, EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION);
+
+    @SuppressWarnings("rawtypes")
+    public final Class<? extends TransformerBaseMapper> mapperClass;
+    @SuppressWarnings("rawtypes")
+    public final Class<? extends Reducer> reducerClass;
+    public final Class<? extends BaseDimension> keyClass; // 原来job的map输出key
+    public final Class<? extends Writable> valueClass; // 原来job的map输出value
+    @SuppressWarnings("rawtypes")
+    public final Class<? extends Partitioner> partitionerClass; // 模块内部的分区类，为null表示按照key的hash分区
+    public final Class<? extends WritableComparator> groupingComparatorClass; // 模块内部的分组类，为null表示按照key分组
+    public final int defaultReducers; // 默认的reducer个数，自定义分区类要求的个数是固定的
+    public final EventEnum event; // 只处理这个事件，为null表示处理所有事件
+    public final String[] columns; // mapper需要的列(不包括事件列)
+
+    @SuppressWarnings("rawtypes")
+    private KpiModule(Class<? extends TransformerBaseMapper> mapperClass, Class<? extends Reducer> reducerClass, Class<? extends BaseDimension> keyClass, Class<? extends Writable> valueClass, Class<? extends Partitioner> partitionerClass, Class<? extends WritableComparator> groupingComparatorClass, int defaultReducers, EventEnum event, String... columns) {
+        this.mapperClass = mapperClass;
+        this.reducerClass = reducerClass;
+        this.keyClass = keyClass;
+        this.valueClass = valueClass;
+        this.partitionerClass = partitionerClass;
+        this.groupingComparatorClass = groupingComparatorClass;
+        this.defaultReducers = defaultReducers;
+        this.event = event;
+        this.columns = columns;
+    }
+
+    /**
+     * 判断该模块是否处理这个事件
+     *
+     * @param event
+     * @return
+     */
+    public boolean accept(EventEnum event) {
+        return this.event == null || this.event == event;
+    }
+
+    /**
+     * 获取该模块的reducer个数，自定义了分区类的模块不能修改
+     *
+     * @param conf
+     * @return
+     */
+    public int getReducers(Configuration conf) {
+        if (this.partitionerClass != null) {
+            return this.defaultReducers;
+        }
+        return Math.max(1, conf.getInt(GlobalConstants.TRANSFORMER_FUSED_REDUCERS_PREFIX + this.name().toLowerCase(), this.defaultReducers));
+    }
+
+    /**
+     * 获取配置的需要运行的模块，按照序号排序
+     *
+     * @param conf
+     * @return
+     */
+    public static List<KpiModule> getModules(Configuration conf) {
+        String value = conf.get(GlobalConstants.TRANSFORMER_FUSED_MODULES);
+        List<KpiModule> modules = new ArrayList<KpiModule>();
+        if (StringUtils.isBlank(value)) {
+            Collections.addAll(modules, values());
+            return modules;
+        }
+        for (String name : value.split(",")) {
+            if (StringUtils.isNotBlank(name)) {
+                KpiModule module = valueOf(name.trim().toUpperCase());
+                if (!modules.contains(module)) {
+                    modules.add(module);
+                }
+            }
+        }
+        Collections.sort(modules);
+        return modules;
+    }
+
+    /**
+     * 计算每个模块在合并job中的第一个reducer分区，数组下标为模块的序号，没有运行的模块为-1，最后一个元素为reducer的总个数
+     *
+     * @param conf
+     * @return
+     */
+    public static int[] getPartitionOffsets(Configuration conf) {
+        int[] offsets = new int[values().length + 1];
+        Arrays.fill(offsets, -1);
+        int total = 0;
+        for (KpiModule module : getModules(conf)) {
+            offsets[module.ordinal()] = total;
+            total += module.getReducers(conf);
+        }
+        offsets[offsets.length - 1] = total;
+        return offsets;
+    }
+}
@@ -0,0 +1,115 @@
+package com.jason.transformer.mr.fused;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.util.ReflectionUtils;
+
+import com.jason.transformer.model.dim.base.BaseDimension;
+
+/**
+ * 合并扫描job的map输出key，第一个字节为kpi模块的序号，后面是原来job的map输出key<br/>
+ * 先按照模块排序，同一个模块内按照原来的key排序；反序列化的时候如果模块没有变化，重用原来的key对象，
+ * 保证二次排序的reducer在遍历value的时候拿到的key是同一个对象
+ *
+ * @author jason
+ *
+ */
+public class TaggedKey implements WritableComparable<TaggedKey> {
+    private KpiModule module;
+    private BaseDimension key;
+
+    static {
+        WritableComparator.define(TaggedKey.class, new Comparator());
+    }
+
+    public TaggedKey() {
+        super();
+    }
+
+    public void set(KpiModule module, BaseDimension key) {
+        this.module = module;
+        this.key = key;
+    }
+
+    public KpiModule getModule() {
+        return this.module;
+    }
+
+    public BaseDimension getKey() {
+        return this.key;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(this.module.ordinal());
+        this.key.write(out);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        KpiModule module = KpiModule.values()[in.readByte()];
+        if (module != this.module || this.key == null) {
+            this.module = module;
+            this.key = ReflectionUtils.newInstance(module.keyClass, null);
+        }
+        this.key.readFields(in);
+    }
+
+    @Override
+    public int compareTo(TaggedKey o) {
+        if (this.module != o.module) {
+            return this.module.ordinal() - o.module.ordinal();
+        }
+        return this.key.compareTo(o.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.module.ordinal() * 31 + this.key.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof TaggedKey)) {
+            return false;
+        }
+        TaggedKey other = (TaggedKey) obj;
+        return this.module == other.module && this.key.equals(other.key);
+    }
+
+    /**
+     * 直接比较序列化后的字节，先比较模块序号，同一个模块内使用模块key注册的comparator比较
+     *
+     * @author jason
+     *
+     */
+    public static class Comparator extends WritableComparator {
+        private WritableComparator[] comparators = new WritableComparator[KpiModule.values().length];
+
+        public Comparator() {
+            super(TaggedKey.class);
+        }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            int tmp = b1[s1] - b2[s2];
+            if (tmp != 0) {
+                return tmp;
+            }
+            KpiModule module = KpiModule.values()[b1[s1]];
+            WritableComparator comparator = this.comparators[module.ordinal()];
+            if (comparator == null) {
+                comparator = WritableComparator.get(module.keyClass);
+                this.comparators[module.ordinal()] = comparator;
+            }
+            return comparator.compare(b1, s1 + 1, l1 - 1, b2, s2 + 1, l2 - 1);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.jason.transformer.mr.fused;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * 合并扫描job的map输出value，第一个字节为kpi模块的序号，后面是原来job的map输出value
+ *
+ * @author jason
+ *
+ */
+public class TaggedValue implements Writable {
+    private KpiModule module;
+    private Writable value;
+
+    public TaggedValue() {
+        super();
+    }
+
+    public void set(KpiModule module, Writable value) {
+        this.module = module;
+        this.value = value;
+    }
+
+    public KpiModule getModule() {
+        return this.module;
+    }
+
+    public Writable getValue() {
+        return this.value;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(this.module.ordinal());
+        this.value.write(out);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        KpiModule module = KpiModule.values()[in.readByte()];
+        if (module != this.module || this.value == null) {
+            this.module = module;
+            this.value = ReflectionUtils.newInstance(module.valueClass, null);
+        }
+        this.value.readFields(in);
+    }
+}
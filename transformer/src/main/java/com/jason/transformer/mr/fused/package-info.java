@@ -0,0 +1,7 @@
+/**
+ * 合并扫描job，只扫描一次event_logs表，复用各个kpi的mapper和reducer同时计算多个kpi
+ * 
+ * @author jason
+ *
+ */
+package com.jason.transformer.mr.fused;
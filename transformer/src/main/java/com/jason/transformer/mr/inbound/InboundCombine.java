@@ -0,0 +1,60 @@
+package com.jason.transformer.mr.inbound;
+
+import java.io.IOException;
+
+import org.apache.hadoop.mapreduce.Reducer;
+
+import com.jason.transformer.model.dim.StatsInboundDimension;
+import com.jason.transformer.model.value.map.TextsOutputValue;
+import com.jason.util.HyperLogLog;
+
+/**
+ * combine类，近似去重模式(transformer.distinct.approximate)下使用<br/>
+ * 把同一个key的uuid和会话id分别合并成HyperLogLog sketch；输入可能已经是sketch(多次combine)
+ *
+ * @author jason
+ *
+ */
+public class InboundCombine extends Reducer<StatsInboundDimension, TextsOutputValue, StatsInboundDimension, TextsOutputValue> {
+    private HyperLogLog uvs = null;
+    private HyperLogLog visits = null;
+    private TextsOutputValue outputValue = new TextsOutputValue();
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+        this.uvs = HyperLogLog.create(context.getConfiguration());
+        this.visits = HyperLogLog.create(context.getConfiguration());
+    }
+
+    @Override
+    protected void reduce(StatsInboundDimension key, Iterable<TextsOutputValue> values, Context context) throws IOException, InterruptedException {
+        try {
+            for (TextsOutputValue value : values) {
+                add(this.uvs, this.visits, value);
+            }
+            this.outputValue.setSketches(this.uvs, this.visits);
+            context.write(key, this.outputValue);
+        } finally {
+            this.uvs.clear();
+            this.visits.clear();
+        }
+    }
+
+    /**
+     * 把value中的uuid和会话id或者sketch合并到对应的sketch中，reducer中也使用
+     *
+     * @param uvs
+     * @param visits
+     * @param value
+     */
+    static void add(HyperLogLog uvs, HyperLogLog visits, TextsOutputValue value) {
+        if (value.getUuidSketch() != null) {
+            uvs.merge(value.getUuidSketch());
+            visits.merge(value.getSidSketch());
+        } else {
+            uvs.offer(value.getUuid());
+            visits.offer(value.getSid());
+        }
+    }
+}
@@ -13,6 +13,7 @@ import org.apache.log4j.Logger;
 
 import com.jason.common.DateEnum;
 import com.jason.common.KpiType;
+import com.jason.common.RecordCounter;
 import com.jason.transformer.model.dim.StatsCommonDimension;
 import com.jason.transformer.model.dim.StatsInboundDimension;
 import com.jason.transformer.model.dim.base.DateDimension;
@@ -62,8 +63,7 @@ public class InboundMapper extends TransformerBaseMapper<StatsInboundDimension,
 
         // 过滤无效数据
         if (StringUtils.isBlank(platform) || StringUtils.isBlank(uuid) || StringUtils.isBlank(sid) || StringUtils.isBlank(referrerUrl) || StringUtils.isBlank(serverTime) || !StringUtils.isNumeric(serverTime.trim())) {
-            logger.warn("平台&uuid&会话id&前一个页面的url&服务器时间不能为空，而且服务器时间必须为时间戳形式。");
-            this.filterRecords++;
+            this.filter(RecordCounter.MISSING_FIELDS, "平台&uuid&会话id&前一个页面的url&服务器时间不能为空，而且服务器时间必须为时间戳形式。", null);
             return;
         }
 
@@ -72,25 +72,24 @@ public class InboundMapper extends TransformerBaseMapper<StatsInboundDimension,
         try {
             inboundId = this.getInboundIdByHost(UrlUtil.getHost(referrerUrl));
         } catch (Throwable e) {
-            logger.warn("获取referrer url对应的inbound id异常", e);
+            this.warn(RecordCounter.INBOUND_LOOKUP_FAILED, "获取referrer url对应的inbound id异常:", referrerUrl, e);
             inboundId = 0;
         }
         // 过滤无效inbound id
         if (inboundId <= 0) {
             // 如果获取的inbound id小于等于0，那么表示无效inbound
-            logger.warn("该url对应的不是外链url:" + referrerUrl);
-            this.filterRecords++;
+            this.filter(RecordCounter.NOT_INBOUND_URL, "该url对应的不是外链url:", referrerUrl);
             return;
         }
 
         // 构建platform维度
-        List<PlatformDimension> platforms = PlatformDimension.buildList(platform);
+        List<PlatformDimension> platforms = this.resolve(PlatformDimension.buildList(platform));
 
         // 构建输出对象
         this.outputValue.setSid(sid);
         this.outputValue.setUuid(uuid);
         StatsCommonDimension statsCommon = this.statsInboundDimension.getStatsCommon();
-        statsCommon.setDate(DateDimension.buildDate(Long.valueOf(serverTime.trim()), DateEnum.DAY));
+        statsCommon.setDate(this.resolveDate(DateDimension.buildDate(Long.valueOf(serverTime.trim()), DateEnum.DAY)));
         statsCommon.setKpi(this.inboundKpiDimension);
 
         // 输出
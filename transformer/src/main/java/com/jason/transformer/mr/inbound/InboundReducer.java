@@ -6,13 +6,16 @@ import java.util.Set;
 
 import org.apache.hadoop.mapreduce.Reducer;
 
+import com.jason.common.GlobalConstants;
 import com.jason.common.KpiType;
 import com.jason.transformer.model.dim.StatsInboundDimension;
 import com.jason.transformer.model.value.map.TextsOutputValue;
 import com.jason.transformer.model.value.reduce.InboundReduceValue;
+import com.jason.util.HyperLogLog;
 
 /**
- * 计算reducer类
+ * 计算reducer类<br/>
+ * 近似去重模式(transformer.distinct.approximate)下合并HyperLogLog sketch计算uuid和会话个数
  * 
  * @author jason
  *
@@ -21,23 +24,46 @@ public class InboundReducer extends Reducer<StatsInboundDimension, TextsOutputVa
     private Set<String> uvs = new HashSet<String>();
     private Set<String> visits = new HashSet<String>();
     private InboundReduceValue outputValue = new InboundReduceValue();
+    private HyperLogLog uvSketch = null; // 近似去重模式下使用，否则为null
+    private HyperLogLog visitSketch = null;
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+        if (context.getConfiguration().getBoolean(GlobalConstants.TRANSFORMER_DISTINCT_APPROXIMATE, false)) {
+            this.uvSketch = HyperLogLog.create(context.getConfiguration());
+            this.visitSketch = HyperLogLog.create(context.getConfiguration());
+        }
+    }
 
     @Override
     protected void reduce(StatsInboundDimension key, Iterable<TextsOutputValue> values, Context context) throws IOException, InterruptedException {
         try {
-            for (TextsOutputValue value : values) {
-                this.uvs.add(value.getUuid());
-                this.visits.add(value.getSid());
+            if (this.uvSketch != null) {
+                for (TextsOutputValue value : values) {
+                    InboundCombine.add(this.uvSketch, this.visitSketch, value);
+                }
+                this.outputValue.setUvs((int) this.uvSketch.cardinality());
+                this.outputValue.setVisit((int) this.visitSketch.cardinality());
+            } else {
+                for (TextsOutputValue value : values) {
+                    this.uvs.add(value.getUuid());
+                    this.visits.add(value.getSid());
+                }
+                this.outputValue.setUvs(this.uvs.size());
+                this.outputValue.setVisit(this.visits.size());
             }
 
             this.outputValue.setKpi(KpiType.valueOfName(key.getStatsCommon().getKpi().getKpiName()));
-            this.outputValue.setUvs(this.uvs.size());
-            this.outputValue.setVisit(this.visits.size());
             context.write(key, this.outputValue);
         } finally {
             // 清空操作
             this.uvs.clear();
             this.visits.clear();
+            if (this.uvSketch != null) {
+                this.uvSketch.clear();
+                this.visitSketch.clear();
+            }
         }
     }
 }
@@ -1,18 +1,20 @@
 package com.jason.transformer.mr.inbound;
 
-import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import java.io.IOException;
+
 import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.filter.FilterList;
-import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
-import org.apache.hadoop.hbase.util.Bytes;
+import org.apache.hadoop.mapreduce.Job;
 import org.apache.log4j.Logger;
 
 import com.jason.common.EventLogConstants;
 import com.jason.common.EventLogConstants.EventEnum;
+import com.jason.common.GlobalConstants;
 import com.jason.transformer.model.dim.StatsInboundDimension;
 import com.jason.transformer.model.value.map.TextsOutputValue;
 import com.jason.transformer.model.value.reduce.InboundReduceValue;
 import com.jason.transformer.mr.TransformerBaseRunner;
+import com.jason.util.EventFilterUtil;
 
 /**
  * 计算活跃用户和总会话的入口类
@@ -34,6 +36,14 @@ public class InboundRunner extends TransformerBaseRunner {
         }
     }
 
+    @Override
+    protected void beforeRunJob(Job job) throws IOException {
+        super.beforeRunJob(job);
+        if (job.getConfiguration().getBoolean(GlobalConstants.TRANSFORMER_DISTINCT_APPROXIMATE, false)) {
+            job.setCombinerClass(InboundCombine.class); // 近似去重，map端把uuid和会话id合并成sketch
+        }
+    }
+
     @Override
     protected Filter fetchHbaseFilter() {
         FilterList list = new FilterList();
@@ -42,10 +52,10 @@ public class InboundRunner extends TransformerBaseRunner {
                 EventLogConstants.LOG_COLUMN_NAME_SESSION_ID, // 会话id
                 EventLogConstants.LOG_COLUMN_NAME_PLATFORM, // 平台名称
                 EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, // 服务器时间
-                EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME // 事件名称
+                EventFilterUtil.getEventColumn(this.conf) // 事件名称
         };
         list.addFilter(this.getColumnFilter(columns));
-        list.addFilter(new SingleColumnValueFilter(InboundMapper.family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME), CompareOp.EQUAL, Bytes.toBytes(EventEnum.PAGEVIEW.alias)));
+        list.addFilter(EventFilterUtil.createEventFilter(this.conf, EventEnum.PAGEVIEW));
         return list;
     }
 
@@ -13,6 +13,7 @@ import org.apache.log4j.Logger;
 
 import com.jason.common.DateEnum;
 import com.jason.common.KpiType;
+import com.jason.common.RecordCounter;
 import com.jason.transformer.model.dim.StatsCommonDimension;
 import com.jason.transformer.model.dim.StatsInboundBounceDimension;
 import com.jason.transformer.model.dim.base.DateDimension;
@@ -63,24 +64,23 @@ public class InboundBounceMapper extends TransformerBaseMapper<StatsInboundBounc
 
         // 过滤
         if (StringUtils.isBlank(platform) || StringUtils.isBlank(serverTime) || StringUtils.isBlank(referrerUrl) || StringUtils.isBlank(sid) || !StringUtils.isNumeric(serverTime.trim())) {
-            this.filterRecords++;
-            logger.warn("平台&服务器时间&前一个页面的url&会话id不能为空，而且服务器时间必须为时间戳形式");
+            this.filter(RecordCounter.MISSING_FIELDS, "平台&服务器时间&前一个页面的url&会话id不能为空，而且服务器时间必须为时间戳形式", null);
             return;
         }
 
         // 创建polatform
-        List<PlatformDimension> platforms = PlatformDimension.buildList(platform);
+        List<PlatformDimension> platforms = this.resolve(PlatformDimension.buildList(platform));
 
         // 创建date
         long longOfTime = Long.valueOf(serverTime.trim());
-        DateDimension dayOfDimension = DateDimension.buildDate(longOfTime, DateEnum.DAY);
+        DateDimension dayOfDimension = this.resolveDate(DateDimension.buildDate(longOfTime, DateEnum.DAY));
 
         // 构建inbound；转换url为外链id
         int inboundId = DEFAULT_INBOUND_ID;
         try {
             inboundId = this.getInboundIdByHost(UrlUtil.getHost(referrerUrl));
         } catch (Throwable e) {
-            logger.warn("获取referrer url对应的inbound id异常", e);
+            this.warn(RecordCounter.INBOUND_LOOKUP_FAILED, "获取referrer url对应的inbound id异常:", referrerUrl, e);
             inboundId = DEFAULT_INBOUND_ID;
         }
 
@@ -95,6 +95,7 @@ public class InboundBounceMapper extends TransformerBaseMapper<StatsInboundBounc
             statsCommon.setPlatform(pf);
             context.write(this.statsInboundBounceDimension, this.outputValue);
             this.outputRecords++;
+            this.outputRecords++;
         }
     }
 
@@ -1,13 +1,10 @@
 package com.jason.transformer.mr.inbound.bounce;
 
-import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
 
 import java.io.IOException;
 
 import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.filter.FilterList;
-import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
-import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.log4j.Logger;
@@ -21,6 +18,7 @@ import com.jason.transformer.mr.TransformerBaseRunner;
 import com.jason.transformer.mr.inbound.InboundMapper;
 import com.jason.transformer.mr.inbound.bounce.InboundBounceSecondSort.InboundBounceGroupingComparator;
 import com.jason.transformer.mr.inbound.bounce.InboundBounceSecondSort.InboundBouncePartitioner;
+import com.jason.util.EventFilterUtil;
 
 /**
  * 计算inbound 跳出率的入口类
@@ -57,10 +55,10 @@ public class InboundBounceRunner extends TransformerBaseRunner {
                 EventLogConstants.LOG_COLUMN_NAME_SESSION_ID, // 会话id
                 EventLogConstants.LOG_COLUMN_NAME_PLATFORM, // 平台名称
                 EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, // 服务器时间
-                EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME // 事件名称
+                EventFilterUtil.getEventColumn(this.conf) // 事件名称
         };
         list.addFilter(this.getColumnFilter(columns));
-        list.addFilter(new SingleColumnValueFilter(InboundMapper.family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME), CompareOp.EQUAL, Bytes.toBytes(EventEnum.PAGEVIEW.alias)));
+        list.addFilter(EventFilterUtil.createEventFilter(this.conf, EventEnum.PAGEVIEW));
         return list;
     }
 }
@@ -35,6 +35,12 @@ public class InboundBounceSecondSort {
             StatsInboundBounceDimension key2 = (StatsInboundBounceDimension) b;
             return key1.getStatsCommon().compareTo(key2.getStatsCommon());
         }
+
+        @Override
+        public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+            // statsCommon在序列化字节的最前面，直接比较字节，不需要反序列化
+            return StatsCommonDimension.compareRaw(b1, s1, b2, s2);
+        }
     }
 
     /**
@@ -6,10 +6,10 @@ import java.util.List;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
-import org.apache.log4j.Logger;
 
 import com.jason.common.DateEnum;
 import com.jason.common.KpiType;
+import com.jason.common.RecordCounter;
 import com.jason.transformer.model.dim.StatsCommonDimension;
 import com.jason.transformer.model.dim.StatsLocationDimension;
 import com.jason.transformer.model.dim.base.DateDimension;
@@ -28,7 +28,6 @@ import com.jason.transformer.mr.TransformerBaseMapper;
  *
  */
 public class LocationMapper extends TransformerBaseMapper<StatsLocationDimension, TextsOutputValue> {
-    private static final Logger logger = Logger.getLogger(LocationMapper.class);
     private StatsLocationDimension statsLocationDimension = new StatsLocationDimension();
     private TextsOutputValue outputValue = new TextsOutputValue();
     private KpiDimension locationKpiDimension = new KpiDimension(KpiType.LOCATION.name);
@@ -44,23 +43,22 @@ public class LocationMapper extends TransformerBaseMapper<StatsLocationDimension
 
         // 过滤无效数据
         if (StringUtils.isBlank(platform) || StringUtils.isBlank(uuid) || StringUtils.isBlank(sid) || StringUtils.isBlank(serverTime) || !StringUtils.isNumeric(serverTime.trim())) {
-            logger.warn("平台&uuid&会话id&服务器时间不能为空，而且服务器时间必须为时间戳类型");
-            this.filterRecords++;
+            this.filter(RecordCounter.MISSING_FIELDS, "平台&uuid&会话id&服务器时间不能为空，而且服务器时间必须为时间戳类型", null);
             return;
         }
 
         // 时间维度创建
         long longOfTime = Long.valueOf(serverTime.trim());
-        DateDimension dayOfDimension = DateDimension.buildDate(longOfTime, DateEnum.DAY);
+        DateDimension dayOfDimension = this.resolveDate(DateDimension.buildDate(longOfTime, DateEnum.DAY));
 
         // platform维度创建
-        List<PlatformDimension> platforms = PlatformDimension.buildList(platform);
+        List<PlatformDimension> platforms = this.resolve(PlatformDimension.buildList(platform));
 
         // location维度创建
         String country = this.getCountry(value);
         String province = this.getProvince(value);
         String city = this.getCity(value);
-        List<LocationDimension> locations = LocationDimension.buildList(country, province, city);
+        List<LocationDimension> locations = this.resolve(LocationDimension.buildList(country, province, city));
 
         // 进行输出定义
         this.outputValue.setUuid(uuid);
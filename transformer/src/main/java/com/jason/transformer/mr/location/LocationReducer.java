@@ -8,13 +8,17 @@ import java.util.Set;
 
 import org.apache.hadoop.mapreduce.Reducer;
 
+import com.jason.common.GlobalConstants;
 import com.jason.common.KpiType;
 import com.jason.transformer.model.dim.StatsLocationDimension;
 import com.jason.transformer.model.value.map.TextsOutputValue;
 import com.jason.transformer.model.value.reduce.LocationReducerOutputValue;
+import com.jason.util.HyperLogLog;
 
 /**
- * 统计location维度指标的reducer类
+ * 统计location维度指标的reducer类<br/>
+ * 近似去重模式(transformer.distinct.approximate)下uuid使用HyperLogLog sketch计数；
+ * 跳出会话需要知道每个会话的访问次数，所以会话还是精确计数
  * 
  * @author jason
  *
@@ -23,6 +27,15 @@ public class LocationReducer extends Reducer<StatsLocationDimension, TextsOutput
     private Set<String> uvs = new HashSet<String>();
     private Map<String, Integer> sessions = new HashMap<String, Integer>();
     private LocationReducerOutputValue outputValue = new LocationReducerOutputValue();
+    private HyperLogLog uvSketch = null; // 近似去重模式下使用，否则为null
+
+    @Override
+    protected void setup(Context context) throws IOException, InterruptedException {
+        super.setup(context);
+        if (context.getConfiguration().getBoolean(GlobalConstants.TRANSFORMER_DISTINCT_APPROXIMATE, false)) {
+            this.uvSketch = HyperLogLog.create(context.getConfiguration());
+        }
+    }
 
     @Override
     protected void reduce(StatsLocationDimension key, Iterable<TextsOutputValue> values, Context context) throws IOException, InterruptedException {
@@ -32,7 +45,11 @@ public class LocationReducer extends Reducer<StatsLocationDimension, TextsOutput
                 String sid = value.getSid();
 
                 // 将uuid添加的uvs集合中
-                this.uvs.add(uuid);
+                if (this.uvSketch != null) {
+                    this.uvSketch.offer(uuid);
+                } else {
+                    this.uvs.add(uuid);
+                }
                 // 将sid添加到sessions集合中
                 if (this.sessions.containsKey(sid)) {
                     // 表示该sid已经有访问过的数据
@@ -45,7 +62,7 @@ public class LocationReducer extends Reducer<StatsLocationDimension, TextsOutput
 
             // 输出对象的创建
             this.outputValue.setKpi(KpiType.valueOfName(key.getStatsCommon().getKpi().getKpiName()));
-            this.outputValue.setUvs(this.uvs.size());
+            this.outputValue.setUvs(this.uvSketch != null ? (int) this.uvSketch.cardinality() : this.uvs.size());
             this.outputValue.setVisits(this.sessions.size());
             int bounceNumber = 0;
             for (Map.Entry<String, Integer> entry : this.sessions.entrySet()) {
@@ -61,6 +78,9 @@ public class LocationReducer extends Reducer<StatsLocationDimension, TextsOutput
             // 清空操作
             this.uvs.clear();
             this.sessions.clear();
+            if (this.uvSketch != null) {
+                this.uvSketch.clear();
+            }
         }
 
     }
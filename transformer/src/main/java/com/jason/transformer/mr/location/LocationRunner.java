@@ -2,9 +2,6 @@ package com.jason.transformer.mr.location;
 
 import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.filter.FilterList;
-import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
-import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
-import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.log4j.Logger;
 
 import com.jason.common.EventLogConstants;
@@ -13,6 +10,7 @@ import com.jason.transformer.model.dim.StatsLocationDimension;
 import com.jason.transformer.model.value.map.TextsOutputValue;
 import com.jason.transformer.model.value.reduce.LocationReducerOutputValue;
 import com.jason.transformer.mr.TransformerBaseRunner;
+import com.jason.util.EventFilterUtil;
 
 /**
  * 统计location维度信息的入口类
@@ -44,11 +42,11 @@ public class LocationRunner extends TransformerBaseRunner {
                 EventLogConstants.LOG_COLUMN_NAME_COUNTRY, // 国家
                 EventLogConstants.LOG_COLUMN_NAME_PROVINCE, // 省份
                 EventLogConstants.LOG_COLUMN_NAME_CITY, // 城市
-                EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME, // 事件名称
+                EventFilterUtil.getEventColumn(this.conf), // 事件名称
         };
         list.addFilter(this.getColumnFilter(columns));
         // 过滤只需要pageview事件
-        list.addFilter(new SingleColumnValueFilter(LocationMapper.family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME), CompareOp.EQUAL, Bytes.toBytes(EventEnum.PAGEVIEW.alias)));
+        list.addFilter(EventFilterUtil.createEventFilter(this.conf, EventEnum.PAGEVIEW));
         return list;
     }
 
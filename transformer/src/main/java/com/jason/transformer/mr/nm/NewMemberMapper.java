@@ -9,7 +9,6 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
-import org.apache.hadoop.hbase.mapreduce.TableMapper;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.log4j.Logger;
 
@@ -17,6 +16,8 @@ import com.jason.common.DateEnum;
 import com.jason.common.EventLogConstants;
 import com.jason.common.GlobalConstants;
 import com.jason.common.KpiType;
+import com.jason.common.RecordCounter;
+import com.jason.transformer.mr.TransformerBaseMapper;
 import com.jason.transformer.model.dim.StatsCommonDimension;
 import com.jason.transformer.model.dim.StatsUserDimension;
 import com.jason.transformer.model.dim.base.BrowserDimension;
@@ -33,7 +34,7 @@ import com.jason.util.JdbcManager;
  * @author jason
  *
  */
-public class NewMemberMapper extends TableMapper<StatsUserDimension, TimeOutputValue> {
+public class NewMemberMapper extends TransformerBaseMapper<StatsUserDimension, TimeOutputValue> {
     private static final Logger logger = Logger.getLogger(NewMemberMapper.class);
     public static final byte[] family = Bytes.toBytes(EventLogConstants.EVENT_LOGS_FAMILY_NAME);
     private StatsUserDimension outputKey = new StatsUserDimension();
@@ -60,12 +61,13 @@ public class NewMemberMapper extends TableMapper<StatsUserDimension, TimeOutputV
 
     @Override
     protected void map(ImmutableBytesWritable key, Result value, Context context) throws IOException, InterruptedException {
+        this.inputRecords++;
         // 获取会员id
-        String memberId = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_MEMBER_ID)));
+        String memberId = this.getMemberId(value);
         // 判断member id是否是第一次访问
         try {
-            if (StringUtils.isBlank(memberId) || !MemberUtil.isValidateMemberId(memberId) || !MemberUtil.isNewMemberId(memberId, this.connection)) {
-                logger.warn("member id不能为空，而且要是是第一次访问网站的会员id");
+            if (StringUtils.isBlank(memberId) || !MemberUtil.isValidateMemberId(memberId) || !MemberUtil.isNewMemberId(memberId, this.conf.get(GlobalConstants.RUNNING_DATE_PARAMES), this.connection)) {
+                this.filter(RecordCounter.NOT_NEW_MEMBER, "member id不能为空，而且要是是第一次访问网站的会员id", null);
                 return;
             }
         } catch (SQLException e) {
@@ -74,40 +76,42 @@ public class NewMemberMapper extends TableMapper<StatsUserDimension, TimeOutputV
         }
 
         // member id是第一次访问，获取平台名称、服务器时间
-        String platform = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_PLATFORM)));
-        String serverTime = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME)));
+        String platform = this.getPlatform(value);
+        String serverTime = this.getServerTime(value);
 
         // 过滤无效数据
         if (StringUtils.isBlank(platform) || StringUtils.isBlank(serverTime) || !StringUtils.isNumeric(serverTime.trim())) {
-            logger.warn("平台名称&服务器时间不能为空，而且服务器时间必须为时间戳形式");
+            this.filter(RecordCounter.MISSING_FIELDS, "平台名称&服务器时间不能为空，而且服务器时间必须为时间戳形式", null);
             return;
         }
 
         long longOfTime = Long.valueOf(serverTime.trim());
-        DateDimension dayOfDimension = DateDimension.buildDate(longOfTime, DateEnum.DAY);
+        DateDimension dayOfDimension = this.resolveDate(DateDimension.buildDate(longOfTime, DateEnum.DAY));
 
         // 创建platform 维度信息
-        List<PlatformDimension> platforms = PlatformDimension.buildList(platform);
+        List<PlatformDimension> platforms = this.resolve(PlatformDimension.buildList(platform));
         // 创建browser 维度信息
-        String browserName = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME)));
-        String browserVersion = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION)));
-        List<BrowserDimension> browsers = BrowserDimension.buildList(browserName, browserVersion);
+        String browserName = this.getBrowserName(value);
+        String browserVersion = this.getBrowserVersion(value);
+        List<BrowserDimension> browsers = this.resolve(BrowserDimension.buildList(browserName, browserVersion));
         // 设置输出
         this.outputValue.setId(memberId);
         StatsCommonDimension statsCommon = this.outputKey.getStatsCommon();
         statsCommon.setDate(dayOfDimension);
         for (PlatformDimension pf : platforms) {
             // 基本信息输出
-            this.outputKey.setBrowser(this.defaultBrowserDimension); // 设置一个默认值，方便进行控制
+            this.outputKey.setBrowser(this.resolve(this.defaultBrowserDimension)); // 设置一个默认值，方便进行控制
             statsCommon.setKpi(this.newMemberKpi);
             statsCommon.setPlatform(pf);
             context.write(this.outputKey, this.outputValue);
+            this.outputRecords++;
 
             // 浏览器信息输出
             statsCommon.setKpi(this.newMemberOfBrowserKpi);
             for (BrowserDimension br : browsers) {
                 this.outputKey.setBrowser(br);
                 context.write(this.outputKey, this.outputValue);
+                this.outputRecords++;
             }
         }
 
@@ -13,11 +13,8 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.client.Scan;
-import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.filter.FilterList;
-import org.apache.hadoop.hbase.filter.MultipleColumnPrefixFilter;
 import org.apache.hadoop.hbase.mapreduce.TableMapReduceUtil;
-import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.util.Tool;
 import org.apache.hadoop.util.ToolRunner;
@@ -30,10 +27,12 @@ import com.jason.transformer.model.dim.StatsUserDimension;
 import com.jason.transformer.model.dim.base.DateDimension;
 import com.jason.transformer.model.value.map.TimeOutputValue;
 import com.jason.transformer.model.value.reduce.MapWritableValue;
+import com.jason.transformer.mr.IncrementalScanWindow;
+import com.jason.transformer.mr.TransformerBaseRunner;
 import com.jason.transformer.mr.TransformerOutputFormat;
 import com.jason.util.JdbcManager;
+import com.jason.util.RowKeyUtil;
 import com.jason.util.TimeUtil;
-import com.google.common.collect.Lists;
 
 /**
  * 计算新增会员的入口类
@@ -74,6 +73,10 @@ public class NewMemberRunner implements Tool {
         Configuration conf = this.getConf();
         // 处理参数
         this.processArgs(conf, args);
+        if (IncrementalScanWindow.isSkipped(conf)) {
+            // 增量运行时etl还没有导入运行日期的数据，不运行job
+            return 0;
+        }
 
         // 创建job
         Job job = Job.getInstance(conf, "new_member");
@@ -90,7 +93,8 @@ public class NewMemberRunner implements Tool {
         job.setOutputFormatClass(TransformerOutputFormat.class);
         if (job.waitForCompletion(true)) {
             // job运行成功
-            this.calculateTotalMembers(job.getConfiguration());
+            calculateTotalMembers(job.getConfiguration());
+            IncrementalScanWindow.commit(conf);
             return 0;
         } else {
             // job运行失败
@@ -103,7 +107,7 @@ public class NewMemberRunner implements Tool {
      * 
      * @param conf
      */
-    private void calculateTotalMembers(Configuration conf) {
+    public static void calculateTotalMembers(Configuration conf) {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
@@ -250,6 +254,11 @@ public class NewMemberRunner implements Tool {
             }
         }
 
+        if (IncrementalScanWindow.isIncremental(args)) {
+            // 增量运行，运行日期由检查点决定
+            date = IncrementalScanWindow.open(conf, "new_member");
+        }
+
         // 要求date格式为: yyyy-MM-dd
         if (StringUtils.isBlank(date) || !TimeUtil.isValidateRunningDate(date)) {
             // date是一个无效时间数据
@@ -272,11 +281,6 @@ public class NewMemberRunner implements Tool {
         long startDate = TimeUtil.parseString2Long(date);
         long endDate = startDate + GlobalConstants.DAY_OF_MILLISECONDS;
 
-        Scan scan = new Scan();
-        // 定义hbase扫描的开始rowkey和结束rowkey
-        scan.setStartRow(Bytes.toBytes("" + startDate));
-        scan.setStopRow(Bytes.toBytes("" + endDate));
-
         FilterList filterList = new FilterList();
         // 定义mapper中需要获取的列名
         String[] columns = new String[] { EventLogConstants.LOG_COLUMN_NAME_MEMBER_ID, // 会员id
@@ -285,25 +289,9 @@ public class NewMemberRunner implements Tool {
                 EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, // 浏览器名称
                 EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION // 浏览器版本信息
         };
-        filterList.addFilter(this.getColumnFilter(columns));
-
-        scan.setAttribute(Scan.SCAN_ATTRIBUTES_TABLE_NAME, Bytes.toBytes(EventLogConstants.HBASE_NAME_EVENT_LOGS));
-        scan.setFilter(filterList);
-        return Lists.newArrayList(scan);
-    }
+        filterList.addFilter(TransformerBaseRunner.createColumnFilter(columns));
 
-    /**
-     * 获取这个列名过滤的column
-     * 
-     * @param columns
-     * @return
-     */
-    private Filter getColumnFilter(String[] columns) {
-        int length = columns.length;
-        byte[][] filter = new byte[length][];
-        for (int i = 0; i < length; i++) {
-            filter[i] = Bytes.toBytes(columns[i]);
-        }
-        return new MultipleColumnPrefixFilter(filter);
+        // 每个盐值分桶一个scan
+        return RowKeyUtil.createScans(conf, startDate, endDate, filterList);
     }
 }
@@ -8,11 +8,11 @@ import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
 import org.apache.hadoop.hbase.mapreduce.TableMapper;
 import org.apache.hadoop.hbase.util.Bytes;
-import org.apache.log4j.Logger;
 
 import com.jason.common.DateEnum;
 import com.jason.common.EventLogConstants;
 import com.jason.common.KpiType;
+import com.jason.common.RecordCounter;
 import com.jason.transformer.model.dim.StatsCommonDimension;
 import com.jason.transformer.model.dim.StatsUserDimension;
 import com.jason.transformer.model.dim.base.BrowserDimension;
@@ -29,7 +29,6 @@ import com.jason.transformer.mr.TransformerBaseMapper;
  *
  */
 public class NewInstallUserMapper extends TransformerBaseMapper<StatsUserDimension, TimeOutputValue> {
-    private static final Logger logger = Logger.getLogger(NewInstallUserMapper.class);
     private StatsUserDimension statsUserDimension = new StatsUserDimension(); //(用户基本分析和浏览器分析)定义的组合维度
     private TimeOutputValue timeOutputValue = new TimeOutputValue();  //设置id和时间的工具类
     
@@ -43,15 +42,14 @@ public class NewInstallUserMapper extends TransformerBaseMapper<StatsUserDimensi
         String serverTime = super.getServerTime(value);
         String platform = super.getPlatform(value);
         if (StringUtils.isBlank(uuid) || StringUtils.isBlank(serverTime) || StringUtils.isBlank(platform)) {
-            logger.warn("uuid&servertime&platform不能为空");
-            this.filterRecords++;
+            this.filter(RecordCounter.MISSING_FIELDS, "uuid&servertime&platform不能为空", null);
             return;
         }
         long longOfTime = Long.valueOf(serverTime.trim());
         timeOutputValue.setId(uuid); // 设置id为uuid
         timeOutputValue.setTime(longOfTime); // 设置时间为服务器时间
-        DateDimension dateDimension = DateDimension.buildDate(longOfTime, DateEnum.DAY);
-        List<PlatformDimension> platformDimensions = PlatformDimension.buildList(platform);
+        DateDimension dateDimension = this.resolveDate(DateDimension.buildDate(longOfTime, DateEnum.DAY));
+        List<PlatformDimension> platformDimensions = this.resolve(PlatformDimension.buildList(platform));
 
         // 设置date维度
         StatsCommonDimension statsCommonDimension = this.statsUserDimension.getStatsCommon(); //date,platform,kpi
@@ -60,8 +58,8 @@ public class NewInstallUserMapper extends TransformerBaseMapper<StatsUserDimensi
         String browserName = super.getBrowserName(value);
         String browserVersion = super.getBrowserVersion(value);
         //根据browser的不同设置不同的list
-        List<BrowserDimension> browserDimensions = BrowserDimension.buildList(browserName, browserVersion);
-        BrowserDimension defaultBrowser = new BrowserDimension("", "");
+        List<BrowserDimension> browserDimensions = this.resolve(BrowserDimension.buildList(browserName, browserVersion));
+        BrowserDimension defaultBrowser = this.resolve(new BrowserDimension("", ""));
         for (PlatformDimension pf : platformDimensions) {
             // 1. 设置为一个默认值
             statsUserDimension.setBrowser(defaultBrowser);
@@ -10,11 +10,8 @@ import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.hadoop.conf.Configuration;
-import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
 import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.filter.FilterList;
-import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
-import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.log4j.Logger;
 
@@ -27,6 +24,7 @@ import com.jason.transformer.model.dim.base.DateDimension;
 import com.jason.transformer.model.value.map.TimeOutputValue;
 import com.jason.transformer.model.value.reduce.MapWritableValue;
 import com.jason.transformer.mr.TransformerBaseRunner;
+import com.jason.util.EventFilterUtil;
 import com.jason.util.JdbcManager;
 import com.jason.util.TimeUtil;
 
@@ -59,9 +57,9 @@ public class NewInstallUserRunner extends TransformerBaseRunner {
     protected Filter fetchHbaseFilter() {
         FilterList filterList = new FilterList();
         // 过滤数据，只分析launch事件
-        filterList.addFilter(new SingleColumnValueFilter(Bytes.toBytes(EventLogConstants.EVENT_LOGS_FAMILY_NAME), Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME), CompareOp.EQUAL, Bytes.toBytes(EventEnum.LAUNCH.alias)));
+        filterList.addFilter(EventFilterUtil.createEventFilter(this.conf, EventEnum.LAUNCH));
         // 定义mapper中需要获取的列名
-        String[] columns = new String[] { EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME, EventLogConstants.LOG_COLUMN_NAME_UUID, EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, EventLogConstants.LOG_COLUMN_NAME_PLATFORM, EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION };
+        String[] columns = new String[] { EventFilterUtil.getEventColumn(this.conf), EventLogConstants.LOG_COLUMN_NAME_UUID, EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, EventLogConstants.LOG_COLUMN_NAME_PLATFORM, EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION };
         filterList.addFilter(this.getColumnFilter(columns));
         return filterList;
     }
@@ -71,7 +69,7 @@ public class NewInstallUserRunner extends TransformerBaseRunner {
         try {
             if (error == null && job.isSuccessful()) {
                 // job运行没有异常，而且运行成功，那么进行计算total user的代码
-                this.calculateTotalUsers(job.getConfiguration());
+                calculateTotalUsers(job.getConfiguration());
             } else if (error == null) {
                 // job运行没有产生异常，但是运行失败
                 throw new RuntimeException("job 运行失败");
@@ -91,7 +89,7 @@ public class NewInstallUserRunner extends TransformerBaseRunner {
      * 
      * @param conf
      */
-    private void calculateTotalUsers(Configuration conf) {
+    public static void calculateTotalUsers(Configuration conf) {
         Connection conn = null;
         PreparedStatement pstmt = null;
         ResultSet rs = null;
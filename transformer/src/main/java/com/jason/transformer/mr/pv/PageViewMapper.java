@@ -6,14 +6,14 @@ import java.util.List;
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.hbase.client.Result;
 import org.apache.hadoop.hbase.io.ImmutableBytesWritable;
-import org.apache.hadoop.hbase.mapreduce.TableMapper;
 import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.log4j.Logger;
 
 import com.jason.common.DateEnum;
 import com.jason.common.EventLogConstants;
 import com.jason.common.KpiType;
+import com.jason.common.RecordCounter;
+import com.jason.transformer.mr.TransformerBaseMapper;
 import com.jason.transformer.model.dim.StatsCommonDimension;
 import com.jason.transformer.model.dim.StatsUserDimension;
 import com.jason.transformer.model.dim.base.BrowserDimension;
@@ -29,33 +29,33 @@ import com.jason.transformer.model.dim.base.PlatformDimension;
  * @author jason
  *
  */
-public class PageViewMapper extends TableMapper<StatsUserDimension, NullWritable> {
-    private static final Logger logger = Logger.getLogger(PageViewMapper.class);
+public class PageViewMapper extends TransformerBaseMapper<StatsUserDimension, NullWritable> {
     public static final byte[] family = Bytes.toBytes(EventLogConstants.EVENT_LOGS_FAMILY_NAME);
     private StatsUserDimension statsUserDimension = new StatsUserDimension();
     private KpiDimension websitePageViewDimension = new KpiDimension(KpiType.WEBSITE_PAGEVIEW.name);
 
     @Override
     protected void map(ImmutableBytesWritable key, Result value, Context context) throws IOException, InterruptedException {
+        this.inputRecords++;
         // 1. 获取platform、time、url
-        String platform = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_PLATFORM)));
-        String serverTime = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME)));
-        String url = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_CURRENT_URL)));
+        String platform = this.getPlatform(value);
+        String serverTime = this.getServerTime(value);
+        String url = this.getCurrentUrl(value);
 
         // 2. 过滤数据
         if (StringUtils.isBlank(platform) || StringUtils.isBlank(url) || StringUtils.isBlank(serverTime) || !StringUtils.isNumeric(serverTime.trim())) {
-            logger.warn("平台&服务器时间&当前url不能为空，而且服务器时间必须为时间戳形式的字符串");
+            this.filter(RecordCounter.MISSING_FIELDS, "平台&服务器时间&当前url不能为空，而且服务器时间必须为时间戳形式的字符串", null);
             return ;
         }
 
         // 3. 创建platform维度信息
-        List<PlatformDimension> platforms = PlatformDimension.buildList(platform);
+        List<PlatformDimension> platforms = this.resolve(PlatformDimension.buildList(platform));
         // 4. 创建browser维度信息
-        String browserName = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME)));
-        String browserVersion = Bytes.toString(value.getValue(family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION)));
-        List<BrowserDimension> browsers = BrowserDimension.buildList(browserName, browserVersion);
+        String browserName = this.getBrowserName(value);
+        String browserVersion = this.getBrowserVersion(value);
+        List<BrowserDimension> browsers = this.resolve(BrowserDimension.buildList(browserName, browserVersion));
         // 5. 创建date维度信息
-        DateDimension dayOfDimenion = DateDimension.buildDate(Long.valueOf(serverTime.trim()), DateEnum.DAY);
+        DateDimension dayOfDimenion = this.resolveDate(DateDimension.buildDate(Long.valueOf(serverTime.trim()), DateEnum.DAY));
 
         // 6. 输出的写出
         StatsCommonDimension statsCommon = this.statsUserDimension.getStatsCommon();
@@ -67,6 +67,7 @@ public class PageViewMapper extends TableMapper<StatsUserDimension, NullWritable
                 this.statsUserDimension.setBrowser(br); // 设置browser dimension
                 // 输出
                 context.write(this.statsUserDimension, NullWritable.get());
+                this.outputRecords++;
             }
         }
     }
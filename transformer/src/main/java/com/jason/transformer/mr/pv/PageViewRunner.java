@@ -6,13 +6,8 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.client.Scan;
-import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
-import org.apache.hadoop.hbase.filter.Filter;
 import org.apache.hadoop.hbase.filter.FilterList;
-import org.apache.hadoop.hbase.filter.MultipleColumnPrefixFilter;
-import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
 import org.apache.hadoop.hbase.mapreduce.TableMapReduceUtil;
-import org.apache.hadoop.hbase.util.Bytes;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.util.Tool;
@@ -23,9 +18,12 @@ import com.jason.common.EventLogConstants;
 import com.jason.common.GlobalConstants;
 import com.jason.transformer.model.dim.StatsUserDimension;
 import com.jason.transformer.model.value.reduce.MapWritableValue;
+import com.jason.transformer.mr.IncrementalScanWindow;
+import com.jason.transformer.mr.TransformerBaseRunner;
 import com.jason.transformer.mr.TransformerOutputFormat;
+import com.jason.util.EventFilterUtil;
+import com.jason.util.RowKeyUtil;
 import com.jason.util.TimeUtil;
-import com.google.common.collect.Lists;
 
 /**
  * 计算website的pv值的mapreducer入口类<br/>
@@ -69,6 +67,10 @@ public class PageViewRunner implements Tool {
         Configuration conf = this.getConf();
         // 参数处理
         this.processArgs(conf, args);
+        if (IncrementalScanWindow.isSkipped(conf)) {
+            // 增量运行时etl还没有导入运行日期的数据，不运行job
+            return 0;
+        }
 
         // job创建
         Job job = Job.getInstance(conf, "website_pageview");
@@ -82,7 +84,11 @@ public class PageViewRunner implements Tool {
         job.setOutputValueClass(MapWritableValue.class);
         // 设置outputformat
         job.setOutputFormatClass(TransformerOutputFormat.class);
-        return job.waitForCompletion(true) ? 0 : -1;
+        if (job.waitForCompletion(true)) {
+            IncrementalScanWindow.commit(conf);
+            return 0;
+        }
+        return -1;
     }
 
     /**
@@ -102,6 +108,11 @@ public class PageViewRunner implements Tool {
             }
         }
 
+        if (IncrementalScanWindow.isIncremental(args)) {
+            // 增量运行，运行日期由检查点决定
+            date = IncrementalScanWindow.open(conf, "website_pageview");
+        }
+
         // 要求date格式为: yyyy-MM-dd
         if (StringUtils.isBlank(date) || !TimeUtil.isValidateRunningDate(date)) {
             // date是一个无效时间数据
@@ -123,42 +134,21 @@ public class PageViewRunner implements Tool {
         long startDate = TimeUtil.parseString2Long(date);
         long endDate = startDate + GlobalConstants.DAY_OF_MILLISECONDS;
 
-        Scan scan = new Scan();
-        // 定义hbase扫描的开始rowkey和结束rowkey
-        scan.setStartRow(Bytes.toBytes("" + startDate));
-        scan.setStopRow(Bytes.toBytes("" + endDate));
-
         FilterList filterList = new FilterList();
         // 只需要pageview事件
-        filterList.addFilter(new SingleColumnValueFilter(PageViewMapper.family, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME), CompareOp.EQUAL, Bytes.toBytes(EventLogConstants.EventEnum.PAGEVIEW.alias)));
+        filterList.addFilter(EventFilterUtil.createEventFilter(conf, EventLogConstants.EventEnum.PAGEVIEW));
         // 定义mapper中需要获取的列名
-        String[] columns = new String[] { EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME, // 获取事件名称
+        String[] columns = new String[] { EventFilterUtil.getEventColumn(conf), // 获取事件名称
                 EventLogConstants.LOG_COLUMN_NAME_CURRENT_URL, // 当前url
                 EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, // 服务器时间
                 EventLogConstants.LOG_COLUMN_NAME_PLATFORM, // 平台名称
                 EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, // 浏览器名称
                 EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION // 浏览器版本号
         };
-        filterList.addFilter(this.getColumnFilter(columns));
-
-        scan.setAttribute(Scan.SCAN_ATTRIBUTES_TABLE_NAME, Bytes.toBytes(EventLogConstants.HBASE_NAME_EVENT_LOGS));
-        scan.setFilter(filterList);
-        return Lists.newArrayList(scan);
-    }
+        filterList.addFilter(TransformerBaseRunner.createColumnFilter(columns));
 
-    /**
-     * 获取这个列名过滤的column
-     * 
-     * @param columns
-     * @return
-     */
-    private Filter getColumnFilter(String[] columns) {
-        int length = columns.length;
-        byte[][] filter = new byte[length][];
-        for (int i = 0; i < length; i++) {
-            filter[i] = Bytes.toBytes(columns[i]);
-        }
-        return new MultipleColumnPrefixFilter(filter);
+        // 每个盐值分桶一个scan
+        return RowKeyUtil.createScans(conf, startDate, endDate, filterList);
     }
 
 }
@@ -8,7 +8,6 @@ import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.MapWritable;
 import org.apache.hadoop.mapreduce.Reducer;
 
-import com.jason.common.DateEnum;
 import com.jason.common.GlobalConstants;
 import com.jason.common.KpiType;
 import com.jason.transformer.model.dim.StatsUserDimension;
@@ -85,7 +84,7 @@ public class SessionsReducer extends Reducer<StatsUserDimension, TimeOutputValue
             chain.addTime(time); // 更新时间
 
             // 处理hourly统计
-            int hour = TimeUtil.getDateInfo(time, DateEnum.HOUR);
+            int hour = TimeUtil.getHourOfDay(time);
             Map<String, TimeChain> htcm = this.hourlyTimeChainMap.get(hour);
             TimeChain hourlyChain = htcm.get(sid);
             if (hourlyChain == null) {
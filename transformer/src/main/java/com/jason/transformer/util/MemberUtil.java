@@ -17,11 +17,12 @@ import org.apache.commons.lang.StringUtils;
  *
  */
 public class MemberUtil {
-    private static Map<String, Boolean> cache = new LinkedHashMap<String, Boolean>() {
+    // member id对应的member_info.created，数据库中没有的时候为空字符串
+    private static Map<String, String> cache = new LinkedHashMap<String, String>() {
         private static final long serialVersionUID = -2861517041809284754L;
 
         @Override
-        protected boolean removeEldestEntry(java.util.Map.Entry<String, Boolean> eldest) {
+        protected boolean removeEldestEntry(java.util.Map.Entry<String, String> eldest) {
             return this.size() > 10000; // 最多保存1w个数据
         }
     };
@@ -67,37 +68,40 @@ public class MemberUtil {
     }
 
     /**
-     * 判断memberid是否是一个新会员id，如果是，则返回true。否则返回false。
+     * 判断memberid是否是运行日期的新会员id，如果是，则返回true。否则返回false。<br/>
+     * 数据库中没有对应的member id，或者member id就是在运行日期创建的(同一天重复运行时前一次运行已经插入)，都是新会员
      * 
      * @param memberId
      *            需要判断的member id
+     * @param date
+     *            运行日期，格式为yyyy-MM-dd
      * @param connection
      *            数据库连接信息
      * @return
      * @throws SQLException
      */
-    public static boolean isNewMemberId(String memberId, Connection connection) throws SQLException {
-        Boolean isNewMemberId = null;
+    public static boolean isNewMemberId(String memberId, String date, Connection connection) throws SQLException {
+        String created = null;
         if (StringUtils.isNotBlank(memberId)) {
             // 要求memberid不为空
-            isNewMemberId = cache.get(memberId);
-            if (isNewMemberId == null) {
+            created = cache.get(memberId);
+            if (created == null) {
                 // 表示该memberid没有进行数据库查询
                 PreparedStatement pstmt = null;
                 ResultSet rs = null;
 
                 try {
-                    pstmt = connection.prepareStatement("SELECT `member_id`,`last_visit_date` FROM `member_info` WHERE `member_id`=?");
+                    pstmt = connection.prepareStatement("SELECT `member_id`,`created` FROM `member_info` WHERE `member_id`=?");
                     pstmt.setString(1, memberId);
                     rs = pstmt.executeQuery();
                     if (rs.next()) {
-                        // 表示数据库中有对应的member id，那么该memberid不是新的会员id
-                        isNewMemberId = Boolean.valueOf(false);
+                        // 表示数据库中有对应的member id，保存创建日期(为null的时候不是新会员)
+                        created = String.valueOf(rs.getString("created")).trim();
                     } else {
                         // 表示数据库中没有对应的member id，那么表示该memberid是新的的会员id
-                        isNewMemberId = Boolean.valueOf(true);
+                        created = "";
                     }
-                    cache.put(memberId, isNewMemberId);
+                    cache.put(memberId, created);
                 } finally {
                     if (rs != null) {
                         try {
@@ -117,6 +121,13 @@ public class MemberUtil {
             }
         }
         // 结果的返回
-        return isNewMemberId == null ? false : isNewMemberId.booleanValue();
+        return created == null ? false : created.isEmpty() || created.equals(date);
+    }
+
+    /**
+     * 清空member id的查询缓存
+     */
+    public static void clearCache() {
+        cache.clear();
     }
 }
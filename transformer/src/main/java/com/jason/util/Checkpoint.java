@@ -0,0 +1,160 @@
+package com.jason.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+
+import com.jason.common.GlobalConstants;
+
+/**
+ * 保存在hdfs上的增量处理检查点<br/>
+ * 文件第一行为水位线(时间戳，-1表示没有)，之后每行一个已经处理过的条目(例如etl已经导入的文件路径)<br/>
+ * 每个检查点通过名称区分，保存在etl.checkpoint.dir目录下；保存的时候先写临时文件再重命名，避免job失败时留下不完整的文件
+ *
+ * @author jason
+ *
+ */
+public class Checkpoint {
+    /**
+     * 默认的检查点目录
+     */
+    public static final String DEFAULT_DIR = "/user/hadoop/checkpoint/";
+    /**
+     * etl使用的检查点名称
+     */
+    public static final String ETL = "etl";
+
+    private final String name;
+    private long watermark = -1;
+    private Set<String> entries = new LinkedHashSet<String>();
+
+    private Checkpoint(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 加载检查点，不存在的时候返回一个空的检查点
+     *
+     * @param conf
+     * @param name
+     * @return
+     * @throws IOException
+     */
+    public static Checkpoint load(Configuration conf, String name) throws IOException {
+        Checkpoint checkpoint = new Checkpoint(name);
+        Path path = getPath(conf, name);
+        FileSystem fs = path.getFileSystem(conf);
+        if (!fs.exists(path)) {
+            return checkpoint;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(fs.open(path), "UTF-8"));
+            String line = reader.readLine();
+            if (line != null && !line.trim().isEmpty()) {
+                checkpoint.watermark = Long.parseLong(line.trim());
+            }
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    checkpoint.entries.add(line);
+                }
+            }
+        } finally {
+            IOUtils.closeStream(reader);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * 保存检查点
+     *
+     * @param conf
+     * @throws IOException
+     */
+    public void save(Configuration conf) throws IOException {
+        Path path = getPath(conf, this.name);
+        Path tmp = new Path(path.getParent(), "_" + path.getName() + ".tmp");
+        FileSystem fs = path.getFileSystem(conf);
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(fs.create(tmp, true), "UTF-8");
+            writer.write(String.valueOf(this.watermark));
+            writer.write('\n');
+            for (String entry : this.entries) {
+                writer.write(entry);
+                writer.write('\n');
+            }
+        } finally {
+            IOUtils.closeStream(writer);
+        }
+        if (fs.exists(path)) {
+            fs.delete(path, false);
+        }
+        if (!fs.rename(tmp, path)) {
+            throw new IOException("保存检查点失败:" + path);
+        }
+    }
+
+    /**
+     * 获取水位线，表示在这个时间之前的数据已经处理完成
+     *
+     * @return 没有水位线返回-1
+     */
+    public long getWatermark() {
+        return this.watermark;
+    }
+
+    /**
+     * 设置水位线，水位线只会前进
+     *
+     * @param watermark
+     */
+    public void advance(long watermark) {
+        this.watermark = Math.max(this.watermark, watermark);
+    }
+
+    public boolean contains(String entry) {
+        return this.entries.contains(entry);
+    }
+
+    public void add(String entry) {
+        this.entries.add(entry);
+    }
+
+    /**
+     * 只保留以指定前缀开始的条目，用于清理已经超出处理范围的旧条目
+     *
+     * @param prefixes
+     */
+    public void retain(Collection<String> prefixes) {
+        Iterator<String> iterator = this.entries.iterator();
+        while (iterator.hasNext()) {
+            String entry = iterator.next();
+            boolean retained = false;
+            for (String prefix : prefixes) {
+                if (entry.startsWith(prefix)) {
+                    retained = true;
+                    break;
+                }
+            }
+            if (!retained) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static Path getPath(Configuration conf, String name) {
+        return new Path(conf.get(GlobalConstants.ETL_CHECKPOINT_DIR, DEFAULT_DIR).trim(), name);
+    }
+}
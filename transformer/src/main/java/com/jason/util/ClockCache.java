@@ -0,0 +1,277 @@
+package com.jason.util;
+
+/**
+ * 有容量上限的分段缓存，key为long类型，淘汰策略为CLOCK(second chance)<br/>
+ * 每个分段使用独立的锁，分段内部使用线性探测的开放地址哈希表，查询的时候不创建任何对象<br/>
+ * 同时记录命中、未命中以及淘汰的次数，方便输出到hadoop的计数器中
+ *
+ * @author jason
+ *
+ * @param <V>
+ */
+public class ClockCache<V> {
+    private static final int DEFAULT_SEGMENTS = 16; // 默认分段个数
+
+    private final Segment<V>[] segments;
+    private final int segmentMask;
+    private final int capacity;
+
+    /**
+     * 创建缓存，分段个数为默认值
+     *
+     * @param capacity
+     *            缓存的最大元素个数
+     */
+    public ClockCache(int capacity) {
+        this(capacity, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * 创建缓存
+     *
+     * @param capacity
+     *            缓存的最大元素个数
+     * @param concurrency
+     *            分段个数，会被调整为2的n次方
+     */
+    @SuppressWarnings("unchecked")
+    public ClockCache(int capacity, int concurrency) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("缓存容量必须大于0:" + capacity);
+        }
+        int size = 1;
+        while (size < concurrency && size < capacity) {
+            size <<= 1;
+        }
+        this.segments = new Segment[size];
+        int segmentCapacity = (capacity + size - 1) / size;
+        for (int i = 0; i < size; i++) {
+            this.segments[i] = new Segment<V>(segmentCapacity);
+        }
+        this.segmentMask = size - 1;
+        this.capacity = segmentCapacity * size;
+    }
+
+    /**
+     * 获取key对应的缓存值，没有的话返回null
+     *
+     * @param key
+     * @return
+     */
+    public V get(long key) {
+        int hash = hash(key);
+        return this.segments[hash & this.segmentMask].get(key, hash);
+    }
+
+    /**
+     * 添加缓存值，如果分段已满，那么根据clock算法淘汰一个元素
+     *
+     * @param key
+     * @param value
+     *            不允许为null
+     */
+    public void put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("缓存值不能为null");
+        }
+        int hash = hash(key);
+        this.segments[hash & this.segmentMask].put(key, hash, value);
+    }
+
+    /**
+     * 缓存的最大容量
+     *
+     * @return
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * 当前缓存的元素个数
+     *
+     * @return
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 命中次数
+     *
+     * @return
+     */
+    public long hitCount() {
+        long count = 0;
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                count += segment.hits;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 未命中次数
+     *
+     * @return
+     */
+    public long missCount() {
+        long count = 0;
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                count += segment.misses;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 淘汰次数
+     *
+     * @return
+     */
+    public long evictionCount() {
+        long count = 0;
+        for (Segment<V> segment : this.segments) {
+            synchronized (segment) {
+                count += segment.evictions;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 打散long类型的key，高位和低位都参与分段以及哈希表的定位
+     *
+     * @param key
+     * @return
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * 缓存分段，所有方法在分段对象上同步
+     *
+     * @author jason
+     *
+     * @param <V>
+     */
+    private static final class Segment<V> {
+        private final long[] keys; // 每个槽位的key
+        private final Object[] values; // 每个槽位的value
+        private final boolean[] referenced; // clock算法的访问标志
+        private final int[] table; // 开放地址哈希表，保存槽位下标+1，0表示空
+        private final int tableMask;
+        private int size;
+        private int hand; // clock指针
+        private long hits, misses, evictions;
+
+        Segment(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.referenced = new boolean[capacity];
+            int tableSize = 2;
+            while (tableSize < capacity * 2) {
+                tableSize <<= 1;
+            }
+            this.table = new int[tableSize];
+            this.tableMask = tableSize - 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized V get(long key, int hash) {
+            int slot = this.find(key, hash);
+            if (slot < 0) {
+                this.misses++;
+                return null;
+            }
+            this.hits++;
+            this.referenced[slot] = true;
+            return (V) this.values[slot];
+        }
+
+        synchronized void put(long key, int hash, V value) {
+            int slot = this.find(key, hash);
+            if (slot >= 0) {
+                this.values[slot] = value;
+                this.referenced[slot] = true;
+                return;
+            }
+            if (this.size < this.keys.length) {
+                slot = this.size++;
+            } else {
+                // 转动指针，跳过最近被访问过的槽位(同时清除访问标志)，淘汰第一个没有被访问过的槽位
+                while (this.referenced[this.hand]) {
+                    this.referenced[this.hand] = false;
+                    this.hand = (this.hand + 1) % this.keys.length;
+                }
+                slot = this.hand;
+                this.hand = (this.hand + 1) % this.keys.length;
+                this.removeFromTable(this.keys[slot], hash(this.keys[slot]));
+                this.evictions++;
+            }
+            this.keys[slot] = key;
+            this.values[slot] = value;
+            this.referenced[slot] = false;
+            int index = (hash >>> 16) & this.tableMask;
+            while (this.table[index] != 0) {
+                index = (index + 1) & this.tableMask;
+            }
+            this.table[index] = slot + 1;
+        }
+
+        /**
+         * 查找key所在的槽位，没有找到返回-1
+         *
+         * @param key
+         * @param hash
+         * @return
+         */
+        private int find(long key, int hash) {
+            int index = (hash >>> 16) & this.tableMask;
+            int entry;
+            while ((entry = this.table[index]) != 0) {
+                if (this.keys[entry - 1] == key) {
+                    return entry - 1;
+                }
+                index = (index + 1) & this.tableMask;
+            }
+            return -1;
+        }
+
+        /**
+         * 从哈希表中删除key，后面的元素向前移动，保证线性探测的连续性
+         *
+         * @param key
+         * @param hash
+         */
+        private void removeFromTable(long key, int hash) {
+            int index = (hash >>> 16) & this.tableMask;
+            while (this.keys[this.table[index] - 1] != key) {
+                index = (index + 1) & this.tableMask;
+            }
+            int hole = index;
+            index = (index + 1) & this.tableMask;
+            int entry;
+            while ((entry = this.table[index]) != 0) {
+                int home = (hash(this.keys[entry - 1]) >>> 16) & this.tableMask;
+                // 如果元素的初始位置不在(hole, index]区间内，那么可以移动到hole
+                if (((index - home) & this.tableMask) >= ((index - hole) & this.tableMask)) {
+                    this.table[hole] = entry;
+                    hole = index;
+                }
+                index = (index + 1) & this.tableMask;
+            }
+            this.table[hole] = 0;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.jason.util;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.jason.common.EventLogConstants;
+
+/**
+ * event_logs表一行数据的紧凑编码，所有字段打包到一个cell中<br/>
+ * 格式为: 1字节版本号 + 若干个字段，每个字段为: varint(字段id << 1 | 是否字典编码) + 字段值<br/>
+ * 字段id为0表示不在固定字段表中的列(例如kv_开头的事件参数)，后面紧跟varint长度+列名；
+ * 字典编码的字段值为varint(字典下标)，否则为varint长度+utf-8字节<br/>
+ * 字段表和字典只能在末尾追加，不能修改已有的顺序，否则已经写入的数据没法解析<br/>
+ * 写入时使用{@link Builder}，读取时调用{@link #reset(byte[], int, int)}绑定cell的字节数组，第一次访问的时候才建立字段索引，只解码访问到的字段；
+ * 其他列在第一次访问其他列的时候才解码
+ *
+ * @author jason
+ *
+ */
+public class CompactEventRecord {
+    /**
+     * 打包后的列名，列名以下划线开头，不会和日志参数的列名冲突
+     */
+    public static final String COLUMN_NAME = "_r";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte VERSION = 1;
+    private static final String UNKNOWN = "unknown";
+
+    // 固定字段表，字段id为下标+1
+    private static final String[] FIELDS = new String[] { EventLogConstants.LOG_COLUMN_NAME_IP, EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME, EventLogConstants.LOG_COLUMN_NAME_VERSION, EventLogConstants.LOG_COLUMN_NAME_UUID, EventLogConstants.LOG_COLUMN_NAME_MEMBER_ID, EventLogConstants.LOG_COLUMN_NAME_SESSION_ID,
+            EventLogConstants.LOG_COLUMN_NAME_CLIENT_TIME, EventLogConstants.LOG_COLUMN_NAME_LANGUAGE, EventLogConstants.LOG_COLUMN_NAME_USER_AGENT, EventLogConstants.LOG_COLUMN_NAME_RESOLUTION, EventLogConstants.LOG_COLUMN_NAME_PLATFORM, EventLogConstants.LOG_COLUMN_NAME_CURRENT_URL, EventLogConstants.LOG_COLUMN_NAME_REFERRER_URL,
+            EventLogConstants.LOG_COLUMN_NAME_TITLE, EventLogConstants.LOG_COLUMN_NAME_ORDER_ID, EventLogConstants.LOG_COLUMN_NAME_ORDER_NAME, EventLogConstants.LOG_COLUMN_NAME_ORDER_CURRENCY_AMOUNT, EventLogConstants.LOG_COLUMN_NAME_ORDER_CURRENCY_TYPE, EventLogConstants.LOG_COLUMN_NAME_ORDER_PAYMENT_TYPE, EventLogConstants.LOG_COLUMN_NAME_EVENT_CATEGORY,
+            EventLogConstants.LOG_COLUMN_NAME_EVENT_ACTION, EventLogConstants.LOG_COLUMN_NAME_EVENT_DURATION, EventLogConstants.LOG_COLUMN_NAME_OS_NAME, EventLogConstants.LOG_COLUMN_NAME_OS_VERSION, EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, EventLogConstants.LOG_COLUMN_NAME_BROWSER_VERSION, EventLogConstants.LOG_COLUMN_NAME_COUNTRY,
+            EventLogConstants.LOG_COLUMN_NAME_PROVINCE, EventLogConstants.LOG_COLUMN_NAME_CITY };
+    // 取值较少的字段的字典，下标和FIELDS一致，null表示该字段不使用字典
+    private static final String[][] DICTIONARIES = new String[FIELDS.length][];
+    private static final byte[][] FIELD_BYTES = new byte[FIELDS.length][];
+    private static final byte[][][] DICTIONARY_BYTES = new byte[FIELDS.length][][];
+    private static final Map<String, Integer> FIELD_IDS = new HashMap<String, Integer>();
+
+    static {
+        String[] events = new String[EventLogConstants.EventEnum.values().length];
+        for (EventLogConstants.EventEnum event : EventLogConstants.EventEnum.values()) {
+            events[event.ordinal()] = event.alias;
+        }
+        dictionary(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME, events);
+        dictionary(EventLogConstants.LOG_COLUMN_NAME_PLATFORM, "website", "java_server", "android", "ios");
+        dictionary(EventLogConstants.LOG_COLUMN_NAME_LANGUAGE, "zh-CN", "zh-cn", "en-US", "en-us", "zh-TW", "en");
+        dictionary(EventLogConstants.LOG_COLUMN_NAME_ORDER_CURRENCY_TYPE, "RMB", "CNY", "USD");
+        dictionary(EventLogConstants.LOG_COLUMN_NAME_ORDER_PAYMENT_TYPE, "alipay", "weixinpay", "unionpay");
+        dictionary(EventLogConstants.LOG_COLUMN_NAME_OS_NAME, UNKNOWN, "Windows", "OS X", "Linux", "Android", "iOS", "Windows Phone", "Chrome OS");
+        dictionary(EventLogConstants.LOG_COLUMN_NAME_BROWSER_NAME, UNKNOWN, "Chrome", "Firefox", "IE", "Safari", "Mobile Safari", "Opera", "Edge", "QQ Browser", "UC Browser", "Sogou Explorer", "Maxthon", "Chrome Mobile", "Android Webkit");
+        dictionary(EventLogConstants.LOG_COLUMN_NAME_COUNTRY, UNKNOWN, "中国");
+        dictionary(EventLogConstants.LOG_COLUMN_NAME_PROVINCE, UNKNOWN);
+        dictionary(EventLogConstants.LOG_COLUMN_NAME_CITY, UNKNOWN);
+        for (int i = 0; i < FIELDS.length; i++) {
+            FIELD_BYTES[i] = FIELDS[i].getBytes(UTF8);
+            FIELD_IDS.put(FIELDS[i], i + 1);
+            if (DICTIONARIES[i] != null) {
+                DICTIONARY_BYTES[i] = new byte[DICTIONARIES[i].length][];
+                for (int j = 0; j < DICTIONARIES[i].length; j++) {
+                    DICTIONARY_BYTES[i][j] = DICTIONARIES[i][j].getBytes(UTF8);
+                }
+            }
+        }
+    }
+
+    private static void dictionary(String field, String... values) {
+        DICTIONARIES[Arrays.asList(FIELDS).indexOf(field)] = values;
+    }
+
+    // 当前绑定的字节数组
+    private byte[] bytes;
+    private int offset, length;
+    private boolean indexed; // 是否已经建立了字段索引
+    private boolean othersDecoded; // 是否已经解码了其他列
+    // 固定字段的值位置，下标为字段id-1，dictionary[i] >= 0表示字典编码
+    private final int[] valueOffsets = new int[FIELDS.length];
+    private final int[] valueLengths = new int[FIELDS.length];
+    private final int[] dictionaryValues = new int[FIELDS.length];
+    // 其他列
+    private final Map<String, String> others = new HashMap<String, String>();
+
+    /**
+     * 绑定一个打包后的cell，不拷贝字节数组
+     *
+     * @param bytes
+     * @param offset
+     * @param length
+     */
+    public void reset(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.indexed = false;
+        this.othersDecoded = false;
+    }
+
+    /**
+     * 获取列的值，不存在返回null
+     *
+     * @param column
+     * @return
+     */
+    public String get(String column) {
+        this.index();
+        Integer id = FIELD_IDS.get(column);
+        if (id == null) {
+            this.decodeOthers();
+            return this.others.get(column);
+        }
+        int i = id - 1;
+        if (this.dictionaryValues[i] >= 0) {
+            return DICTIONARIES[i][this.dictionaryValues[i]];
+        }
+        if (this.valueOffsets[i] < 0) {
+            return null;
+        }
+        return new String(this.bytes, this.valueOffsets[i], this.valueLengths[i], UTF8);
+    }
+
+    /**
+     * 获取不在固定字段表中的、以prefix开头的所有列
+     *
+     * @param prefix
+     * @return
+     */
+    public Map<String, String> getOthers(String prefix) {
+        this.decodeOthers();
+        Map<String, String> map = new HashMap<String, String>();
+        for (Map.Entry<String, String> entry : this.others.entrySet()) {
+            if (entry.getKey().startsWith(prefix)) {
+                map.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return map;
+    }
+
+    /**
+     * 扫描一遍cell，记录每个固定字段值的位置，其他列只跳过不解码
+     */
+    private void index() {
+        if (this.indexed) {
+            return;
+        }
+        Arrays.fill(this.valueOffsets, -1);
+        Arrays.fill(this.dictionaryValues, -1);
+        int end = this.offset + this.length;
+        if (this.length == 0 || this.bytes[this.offset] != VERSION) {
+            throw new IllegalArgumentException("不支持的紧凑编码版本");
+        }
+        int[] pos = new int[] { this.offset + 1 };
+        while (pos[0] < end) {
+            int header = readVarint(this.bytes, pos);
+            int id = header >>> 1;
+            boolean dictionary = (header & 1) == 1;
+            if (id == 0) {
+                skip(this.bytes, pos); // 列名
+                skip(this.bytes, pos); // 列值
+            } else if (dictionary) {
+                this.dictionaryValues[id - 1] = readVarint(this.bytes, pos);
+            } else {
+                int valueLength = readVarint(this.bytes, pos);
+                this.valueOffsets[id - 1] = pos[0];
+                this.valueLengths[id - 1] = valueLength;
+                pos[0] += valueLength;
+            }
+        }
+        this.indexed = true;
+    }
+
+    /**
+     * 再扫描一遍cell，解码其他列，固定字段只跳过
+     */
+    private void decodeOthers() {
+        if (this.othersDecoded) {
+            return;
+        }
+        this.index(); // 同时校验版本号
+        this.others.clear();
+        int end = this.offset + this.length;
+        int[] pos = new int[] { this.offset + 1 };
+        while (pos[0] < end) {
+            int header = readVarint(this.bytes, pos);
+            int id = header >>> 1;
+            if (id == 0) {
+                int nameLength = readVarint(this.bytes, pos);
+                String name = new String(this.bytes, pos[0], nameLength, UTF8);
+                pos[0] += nameLength;
+                int valueLength = readVarint(this.bytes, pos);
+                this.others.put(name, new String(this.bytes, pos[0], valueLength, UTF8));
+                pos[0] += valueLength;
+            } else if ((header & 1) == 1) {
+                readVarint(this.bytes, pos); // 字典下标
+            } else {
+                skip(this.bytes, pos);
+            }
+        }
+        this.othersDecoded = true;
+    }
+
+    /**
+     * 跳过一个varint长度+字节的值
+     *
+     * @param bytes
+     * @param pos
+     */
+    private static void skip(byte[] bytes, int[] pos) {
+        int length = readVarint(bytes, pos);
+        pos[0] += length;
+    }
+
+    private static int readVarint(byte[] bytes, int[] pos) {
+        int value = 0, shift = 0;
+        byte b;
+        do {
+            b = bytes[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * 将一行数据的所有列编码到一个字节数组中，可以重复使用
+     *
+     * @author jason
+     *
+     */
+    public static class Builder {
+        private byte[] buffer = new byte[256];
+        private int size;
+
+        public Builder() {
+            this.reset();
+        }
+
+        /**
+         * 清空已经添加的列
+         */
+        public void reset() {
+            this.buffer[0] = VERSION;
+            this.size = 1;
+        }
+
+        /**
+         * 添加一列
+         *
+         * @param key
+         * @param keyOffset
+         * @param keyLength
+         * @param value
+         * @param valueOffset
+         * @param valueLength
+         */
+        public void add(byte[] key, int keyOffset, int keyLength, byte[] value, int valueOffset, int valueLength) {
+            int id = fieldId(key, keyOffset, keyLength);
+            if (id == 0) {
+                this.writeVarint(0);
+                this.writeBytes(key, keyOffset, keyLength);
+                this.writeBytes(value, valueOffset, valueLength);
+                return;
+            }
+            int index = dictionaryIndex(id - 1, value, valueOffset, valueLength);
+            if (index >= 0) {
+                this.writeVarint(id << 1 | 1);
+                this.writeVarint(index);
+            } else {
+                this.writeVarint(id << 1);
+                this.writeBytes(value, valueOffset, valueLength);
+            }
+        }
+
+        /**
+         * 编码结果
+         *
+         * @return
+         */
+        public byte[] toBytes() {
+            return Arrays.copyOf(this.buffer, this.size);
+        }
+
+        private void writeBytes(byte[] bytes, int offset, int length) {
+            this.writeVarint(length);
+            this.ensureCapacity(length);
+            System.arraycopy(bytes, offset, this.buffer, this.size, length);
+            this.size += length;
+        }
+
+        private void writeVarint(int value) {
+            this.ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                this.buffer[this.size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.buffer[this.size++] = (byte) value;
+        }
+
+        private void ensureCapacity(int length) {
+            if (this.size + length > this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.size + length));
+            }
+        }
+
+        private static int fieldId(byte[] key, int offset, int length) {
+            for (int i = 0; i < FIELD_BYTES.length; i++) {
+                if (equals(FIELD_BYTES[i], key, offset, length)) {
+                    return i + 1;
+                }
+            }
+            return 0;
+        }
+
+        private static int dictionaryIndex(int field, byte[] value, int offset, int length) {
+            byte[][] dictionary = DICTIONARY_BYTES[field];
+            if (dictionary != null) {
+                for (int i = 0; i < dictionary.length; i++) {
+                    if (equals(dictionary[i], value, offset, length)) {
+                        return i;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        private static boolean equals(byte[] expected, byte[] bytes, int offset, int length) {
+            if (expected.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (expected[i] != bytes[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.jason.util;
+
+import java.util.Calendar;
+
+/**
+ * 预先计算好的日期表，按照默认时区保存[FIRST_YEAR, LAST_YEAR)之间每一天的开始时间戳以及年、月、日、周等信息<br/>
+ * 查询的时候通过整数运算定位到所属的天，不需要创建Calendar对象；表中的数据在类加载的时候使用Calendar计算，
+ * 所以结果和Calendar完全一致(包括周的计算规则以及夏令时)<br/>
+ * 超出范围的时间戳返回-1，调用方需要回退到Calendar的计算方式
+ *
+ * @author jason
+ *
+ */
+public final class DayTable {
+    /**
+     * 表中的第一年
+     */
+    public static final int FIRST_YEAR = 1990;
+    /**
+     * 表中最后一年的下一年
+     */
+    public static final int LAST_YEAR = 2060;
+    private static final long DAY_OF_MILLISECONDS = 86400000L;
+    private static final long HOUR_OF_MILLISECONDS = 3600000L;
+
+    private static final int DAYS; // 总天数
+    private static final long[] STARTS; // 每天的开始时间戳，最后一个元素为结束时间
+    private static final short[] YEARS;
+    private static final byte[] MONTHS; // 1-12
+    private static final byte[] DAYS_OF_MONTH;
+    private static final byte[] WEEKS; // Calendar.WEEK_OF_YEAR
+    private static final int[] FIRST_DAYS_OF_WEEK; // 所属周第一天的下标，不在表中为-1
+    private static final int[] MONTH_STARTS; // 每个月第一天的下标，下标为(year - FIRST_YEAR) * 12 + month - 1
+
+    static {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(LAST_YEAR, 0, 1);
+        long end = calendar.getTimeInMillis();
+        calendar.clear();
+        calendar.set(FIRST_YEAR, 0, 1);
+        int capacity = (int) ((end - calendar.getTimeInMillis()) / DAY_OF_MILLISECONDS) + 2;
+
+        long[] starts = new long[capacity];
+        short[] years = new short[capacity];
+        byte[] months = new byte[capacity];
+        byte[] days = new byte[capacity];
+        byte[] weeks = new byte[capacity];
+        int[] monthStarts = new int[(LAST_YEAR - FIRST_YEAR) * 12];
+        int count = 0;
+        while (calendar.getTimeInMillis() < end) {
+            starts[count] = calendar.getTimeInMillis();
+            years[count] = (short) calendar.get(Calendar.YEAR);
+            months[count] = (byte) (calendar.get(Calendar.MONTH) + 1);
+            days[count] = (byte) calendar.get(Calendar.DAY_OF_MONTH);
+            weeks[count] = (byte) calendar.get(Calendar.WEEK_OF_YEAR);
+            if (days[count] == 1) {
+                monthStarts[(years[count] - FIRST_YEAR) * 12 + months[count] - 1] = count;
+            }
+            count++;
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            // 零点进入夏令时的时区这一天从1点开始，add之后会保留小时数，所以每次都需要重新设置到零点
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+        }
+        starts[count] = end;
+
+        DAYS = count;
+        STARTS = starts;
+        YEARS = years;
+        MONTHS = months;
+        DAYS_OF_MONTH = days;
+        WEEKS = weeks;
+        MONTH_STARTS = monthStarts;
+        FIRST_DAYS_OF_WEEK = new int[count];
+        for (int i = 0; i < count; i++) {
+            long firstDay = firstDayOfWeekByCalendar(starts[i]);
+            int index = indexOf(firstDay);
+            // 只有正好是某一天开始时间的时候才使用表中的数据
+            FIRST_DAYS_OF_WEEK[i] = index >= 0 && starts[index] == firstDay ? index : -1;
+        }
+    }
+
+    private DayTable() {
+    }
+
+    /**
+     * 获取时间戳所属天在表中的下标
+     *
+     * @param time
+     * @return 不在表的范围内返回-1
+     */
+    public static int indexOf(long time) {
+        if (time < STARTS[0] || time >= STARTS[DAYS]) {
+            return -1;
+        }
+        // 先按照每天24小时估算，再根据实际的开始时间调整(夏令时的时候一天不是24小时)
+        int index = (int) Math.min((time - STARTS[0]) / DAY_OF_MILLISECONDS, DAYS - 1);
+        while (STARTS[index] > time) {
+            index--;
+        }
+        while (STARTS[index + 1] <= time) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * 表中的总天数
+     *
+     * @return
+     */
+    public static int size() {
+        return DAYS;
+    }
+
+    /**
+     * 天的开始时间戳
+     *
+     * @param index
+     * @return
+     */
+    public static long startOf(int index) {
+        return STARTS[index];
+    }
+
+    public static int year(int index) {
+        return YEARS[index];
+    }
+
+    public static int month(int index) {
+        return MONTHS[index];
+    }
+
+    public static int season(int index) {
+        return (MONTHS[index] + 2) / 3;
+    }
+
+    public static int day(int index) {
+        return DAYS_OF_MONTH[index];
+    }
+
+    public static int week(int index) {
+        return WEEKS[index];
+    }
+
+    /**
+     * 所属周第一天(和TimeUtil.getFirstDayOfThisWeek一致)的下标
+     *
+     * @param index
+     * @return 不在表中返回-1
+     */
+    public static int firstDayOfWeek(int index) {
+        return FIRST_DAYS_OF_WEEK[index];
+    }
+
+    /**
+     * 所属月第一天的下标
+     *
+     * @param index
+     * @return
+     */
+    public static int firstDayOfMonth(int index) {
+        return MONTH_STARTS[(YEARS[index] - FIRST_YEAR) * 12 + MONTHS[index] - 1];
+    }
+
+    /**
+     * 所属季度第一天的下标
+     *
+     * @param index
+     * @return
+     */
+    public static int firstDayOfSeason(int index) {
+        return MONTH_STARTS[(YEARS[index] - FIRST_YEAR) * 12 + (season(index) - 1) * 3];
+    }
+
+    /**
+     * 所属年第一天的下标
+     *
+     * @param index
+     * @return
+     */
+    public static int firstDayOfYear(int index) {
+        return MONTH_STARTS[(YEARS[index] - FIRST_YEAR) * 12];
+    }
+
+    /**
+     * 获取time在所属天中的小时数，time必须属于index对应的天
+     *
+     * @param index
+     * @param time
+     * @return 如果这一天不是24小时(夏令时切换)返回-1
+     */
+    public static int hour(int index, long time) {
+        if (STARTS[index + 1] - STARTS[index] != DAY_OF_MILLISECONDS) {
+            return -1;
+        }
+        return (int) ((time - STARTS[index]) / HOUR_OF_MILLISECONDS);
+    }
+
+    private static long firstDayOfWeekByCalendar(long time) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(time);
+        cal.set(Calendar.DAY_OF_WEEK, 1);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return cal.getTimeInMillis();
+    }
+}
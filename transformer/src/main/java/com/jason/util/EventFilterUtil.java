@@ -0,0 +1,59 @@
+package com.jason.util;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.filter.CompareFilter.CompareOp;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.filter.SingleColumnValueFilter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.jason.common.EventLogConstants;
+import com.jason.common.EventLogConstants.EventEnum;
+import com.jason.common.GlobalConstants;
+
+/**
+ * 按照事件类型过滤event_logs表的工具类<br/>
+ * 默认比较en列的事件别名；event.logs.event.code.filter=true的时候比较_e列中一个字节的事件编码，
+ * 要求扫描范围内的数据都是写入_e列之后的etl导入的，没有_e列的行会被过滤掉
+ *
+ * @author jason
+ *
+ */
+public class EventFilterUtil {
+    private static final byte[] FAMILY = Bytes.toBytes(EventLogConstants.EVENT_LOGS_FAMILY_NAME);
+
+    /**
+     * 是否使用事件编码过滤
+     *
+     * @param conf
+     * @return
+     */
+    public static boolean isCodeFilter(Configuration conf) {
+        return conf.getBoolean(GlobalConstants.EVENT_LOGS_EVENT_CODE_FILTER, false);
+    }
+
+    /**
+     * 获取过滤使用的列名，SingleColumnValueFilter要求过滤的列是scan的返回列
+     *
+     * @param conf
+     * @return
+     */
+    public static String getEventColumn(Configuration conf) {
+        return isCodeFilter(conf) ? EventLogConstants.LOG_COLUMN_NAME_EVENT_CODE : EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME;
+    }
+
+    /**
+     * 创建只保留指定事件的过滤器
+     *
+     * @param conf
+     * @param event
+     * @return
+     */
+    public static Filter createEventFilter(Configuration conf, EventEnum event) {
+        if (isCodeFilter(conf)) {
+            SingleColumnValueFilter filter = new SingleColumnValueFilter(FAMILY, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_EVENT_CODE), CompareOp.EQUAL, new byte[] { event.code });
+            filter.setFilterIfMissing(true);
+            return filter;
+        }
+        return new SingleColumnValueFilter(FAMILY, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME), CompareOp.EQUAL, Bytes.toBytes(event.alias));
+    }
+}
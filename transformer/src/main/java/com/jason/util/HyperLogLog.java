@@ -0,0 +1,239 @@
+package com.jason.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.jason.common.GlobalConstants;
+
+/**
+ * 近似去重计数使用的HyperLogLog sketch<br/>
+ * 2^p个寄存器，每个寄存器一个字节，占用的内存和插入的元素个数无关，相对标准误差约为1.04/sqrt(2^p)<br/>
+ * 精度相同的sketch可以直接合并(寄存器取最大值)，所以mapper端的combiner和reducer都可以只保存sketch<br/>
+ * 序列化的时候非0寄存器比较少就只写非0寄存器的位置(差值)和值，否则写全部寄存器
+ *
+ * @author jason
+ *
+ */
+public class HyperLogLog implements Writable {
+    public static final double DEFAULT_ERROR = 0.01; // 默认相对标准误差
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 16;
+    public static final double MIN_ERROR = 1.04 / Math.sqrt(1 << MAX_PRECISION); // 最大精度能达到的相对标准误差，约为0.0041
+
+    private int precision;
+    private byte[] registers;
+
+    /**
+     * 反序列化使用的构造函数，精度在readFields的时候确定
+     */
+    public HyperLogLog() {
+        this.precision = 0;
+        this.registers = new byte[0];
+    }
+
+    /**
+     * 创建sketch
+     *
+     * @param precision
+     *            寄存器个数为2^precision，范围为[4,16]
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog精度必须在[" + MIN_PRECISION + "," + MAX_PRECISION + "]之间:" + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * 根据配置的误差(transformer.distinct.approximate.error)创建sketch
+     *
+     * @param conf
+     * @return
+     */
+    public static HyperLogLog create(Configuration conf) {
+        return new HyperLogLog(getPrecision(conf.getFloat(GlobalConstants.TRANSFORMER_DISTINCT_APPROXIMATE_ERROR, (float) DEFAULT_ERROR)));
+    }
+
+    /**
+     * 获取满足相对标准误差需要的最小精度
+     *
+     * @param error
+     *            相对标准误差，例如0.01；不能小于最大精度能达到的误差(MIN_ERROR)
+     * @return
+     */
+    public static int getPrecision(double error) {
+        if (!(error > 0 && error < 1)) {
+            throw new IllegalArgumentException("相对标准误差必须在(0,1)之间:" + error);
+        }
+        if (error < MIN_ERROR) {
+            // 超过最大精度的时候不能静默降低精度，否则实际误差比配置的大
+            throw new IllegalArgumentException("相对标准误差不能小于" + MIN_ERROR + "(精度" + MAX_PRECISION + "):" + error);
+        }
+        double m = (1.04 / error) * (1.04 / error);
+        int precision = MIN_PRECISION;
+        while (precision < MAX_PRECISION && (1 << precision) < m) {
+            precision++;
+        }
+        return precision;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * 添加一个元素
+     *
+     * @param value
+     */
+    public void offer(String value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (64 - this.precision));
+        // 剩余的位中第一个1出现的位置，最后补一个1保证不会超过64-precision+1
+        int rank = Long.numberOfLeadingZeros((hash << this.precision) | (1L << (this.precision - 1))) + 1;
+        if (rank > this.registers[index]) {
+            this.registers[index] = (byte) rank;
+        }
+    }
+
+    /**
+     * 合并另外一个sketch，两个sketch的精度必须相同
+     *
+     * @param other
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != this.precision) {
+            throw new IllegalArgumentException("不能合并精度不同的HyperLogLog:" + this.precision + "," + other.precision);
+        }
+        for (int i = 0; i < this.registers.length; i++) {
+            if (other.registers[i] > this.registers[i]) {
+                this.registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * 获取去重后元素个数的估计值
+     *
+     * @return
+     */
+    public long cardinality() {
+        int m = this.registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : this.registers) {
+            sum += Math.scalb(1.0, -register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros != 0) {
+            // 基数比较小的时候使用linear counting
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * 清空所有寄存器，精度不变
+     */
+    public void clear() {
+        Arrays.fill(this.registers, (byte) 0);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(this.precision);
+        int count = 0; // 非0寄存器个数
+        for (byte register : this.registers) {
+            if (register != 0) {
+                count++;
+            }
+        }
+        WritableUtils.writeVInt(out, count);
+        if (this.isSparse(count)) {
+            int last = 0;
+            for (int i = 0; i < this.registers.length; i++) {
+                if (this.registers[i] != 0) {
+                    WritableUtils.writeVInt(out, i - last);
+                    out.writeByte(this.registers[i]);
+                    last = i;
+                }
+            }
+        } else {
+            out.write(this.registers);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int precision = in.readByte();
+        if (precision != this.precision) {
+            this.precision = precision;
+            this.registers = new byte[1 << precision];
+        } else {
+            this.clear();
+        }
+        int count = WritableUtils.readVInt(in);
+        if (this.isSparse(count)) {
+            int index = 0;
+            for (int i = 0; i < count; i++) {
+                index += WritableUtils.readVInt(in);
+                this.registers[index] = in.readByte();
+            }
+        } else {
+            in.readFully(this.registers);
+        }
+    }
+
+    /**
+     * 非0寄存器的个数比较少的时候使用稀疏格式序列化，每个寄存器最多占用4个字节
+     *
+     * @param count
+     * @return
+     */
+    private boolean isSparse(int count) {
+        return count * 4 < this.registers.length;
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+        case 16:
+            return 0.673;
+        case 32:
+            return 0.697;
+        case 64:
+            return 0.709;
+        default:
+            return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    /**
+     * 64位hash，FNV-1a之后再用murmur3的fmix64打散，保证高位也分布均匀
+     *
+     * @param value
+     * @return
+     */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
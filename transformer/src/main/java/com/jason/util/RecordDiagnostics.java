@@ -0,0 +1,129 @@
+package com.jason.util;
+
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.log4j.Logger;
+
+import com.jason.common.RecordCounter;
+
+/**
+ * mapper中异常记录的诊断工具<br/>
+ * 每个原因的出现次数先在内存中累加，cleanup的时候一次性输出到hadoop计数器中；
+ * 日志只输出抽样: 每个原因的前几次全部输出，之后每个时间间隔内最多输出一次，并带上期间被忽略的次数<br/>
+ * 被忽略的日志不会拼接消息字符串，脏数据很多的时候也不会刷爆task日志
+ * 
+ * @author jason
+ *
+ */
+public class RecordDiagnostics {
+    /**
+     * 默认的日志抽样间隔，单位毫秒
+     */
+    public static final long DEFAULT_SAMPLE_INTERVAL = 60000L;
+    private static final int FIRST_SAMPLES = 10; // 每个原因前几次全部输出
+    private final Logger logger;
+    private final long interval;
+    private final long[] counts = new long[RecordCounter.values().length];
+    private final long[] lastLogTimes = new long[RecordCounter.values().length];
+    private final long[] suppressed = new long[RecordCounter.values().length];
+
+    /**
+     * @param logger
+     * @param interval
+     *            日志抽样间隔，单位毫秒
+     */
+    public RecordDiagnostics(Logger logger, long interval) {
+        this.logger = logger;
+        this.interval = interval;
+    }
+
+    /**
+     * 记录一次warn级别的问题
+     * 
+     * @param reason
+     * @param message
+     * @param detail
+     *            附加在消息后面的明细，只有抽样命中的时候才会转换成字符串，可以为null
+     */
+    public void warn(RecordCounter reason, String message, Object detail) {
+        this.warn(reason, message, detail, null);
+    }
+
+    /**
+     * 记录一次warn级别的问题，带上异常信息
+     * 
+     * @param reason
+     * @param message
+     * @param detail
+     * @param e
+     *            可以为null
+     */
+    public void warn(RecordCounter reason, String message, Object detail, Throwable e) {
+        if (this.sample(reason)) {
+            this.logger.warn(this.format(reason, message, detail), e);
+        }
+    }
+
+    /**
+     * 记录一次error级别的问题
+     * 
+     * @param reason
+     * @param message
+     * @param detail
+     * @param e
+     */
+    public void error(RecordCounter reason, String message, Object detail, Throwable e) {
+        if (this.sample(reason)) {
+            this.logger.error(this.format(reason, message, detail), e);
+        }
+    }
+
+    /**
+     * 累加次数，并判断这一次是否需要输出日志
+     * 
+     * @param reason
+     * @return
+     */
+    private boolean sample(RecordCounter reason) {
+        int index = reason.ordinal();
+        if (++this.counts[index] <= FIRST_SAMPLES) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now - this.lastLogTimes[index] >= this.interval) {
+            this.lastLogTimes[index] = now;
+            return true;
+        }
+        this.suppressed[index]++;
+        return false;
+    }
+
+    private String format(RecordCounter reason, String message, Object detail) {
+        int index = reason.ordinal();
+        StringBuilder sb = new StringBuilder();
+        sb.append('[').append(reason.name()).append(" #").append(this.counts[index]);
+        if (this.suppressed[index] > 0) {
+            sb.append(", 忽略了").append(this.suppressed[index]).append("条");
+            this.suppressed[index] = 0;
+        }
+        sb.append("] ").append(message);
+        if (detail != null) {
+            sb.append(detail);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 将累加的次数输出到hadoop计数器中，并清零
+     * 
+     * @param context
+     */
+    public void flush(TaskAttemptContext context) {
+        for (RecordCounter reason : RecordCounter.values()) {
+            int index = reason.ordinal();
+            if (this.counts[index] > 0) {
+                context.getCounter(reason).increment(this.counts[index]);
+                this.counts[index] = 0;
+            }
+        }
+    }
+}
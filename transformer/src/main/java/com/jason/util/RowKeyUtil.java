@@ -0,0 +1,167 @@
+package com.jason.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.client.Scan;
+import org.apache.hadoop.hbase.filter.Filter;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.jason.common.EventLogConstants;
+import com.jason.common.GlobalConstants;
+import com.jason.util.rowkey.BinaryRowKeyCodec;
+import com.jason.util.rowkey.IRowKeyCodec;
+import com.jason.util.rowkey.StringRowKeyCodec;
+
+/**
+ * event_logs表rowkey相关的工具类<br/>
+ * 写入使用event.logs.rowkey.format指定的格式(string/binary)，读取的时候可以通过event.logs.rowkey.read.formats同时指定多个格式，
+ * 用于格式迁移期间新旧数据的同时读取(不同格式的rowkey区间不重叠)<br/>
+ * 分桶个数为0表示不加盐，加盐之后同一天的数据分散在N个rowkey区间中，写入的时候打散到多个region，读取的时候需要N个scan
+ *
+ * @author jason
+ *
+ */
+public class RowKeyUtil {
+    /**
+     * 字符串格式: [盐值_]服务器时间_crc
+     */
+    public static final String FORMAT_STRING = "string";
+    /**
+     * 二进制格式: [盐值]+8字节时间戳+4字节crc
+     */
+    public static final String FORMAT_BINARY = "binary";
+
+    /**
+     * 根据uuid memberid servertime创建rowkey，hash为(uuid+memberid+事件别名)的crc32<br/>
+     * etl写入和rowkey格式迁移都使用这个方法，保证同一条记录不管从哪里写入，rowkey和盐值都相同
+     *
+     * @param codec
+     * @param crc32
+     *            可重用的crc32对象
+     * @param uuid
+     * @param memberId
+     * @param eventAliasName
+     * @param serverTime
+     * @return
+     */
+    public static byte[] generateRowKey(IRowKeyCodec codec, CRC32 crc32, String uuid, String memberId, String eventAliasName, long serverTime) {
+        crc32.reset();
+        if (StringUtils.isNotBlank(uuid)) {
+            crc32.update(uuid.getBytes());
+        }
+        if (StringUtils.isNotBlank(memberId)) {
+            crc32.update(memberId.getBytes());
+        }
+        crc32.update(eventAliasName.getBytes());
+        return codec.encode(serverTime, crc32.getValue());
+    }
+
+    /**
+     * 获取配置的盐值分桶个数，etl和transformer必须使用相同的配置
+     *
+     * @param conf
+     * @return
+     */
+    public static int getSaltBuckets(Configuration conf) {
+        return Math.max(0, conf.getInt(GlobalConstants.EVENT_LOGS_SALT_BUCKETS, 0));
+    }
+
+    /**
+     * 创建指定格式的rowkey编解码器
+     *
+     * @param format
+     * @param saltBuckets
+     * @return
+     */
+    public static IRowKeyCodec createCodec(String format, int saltBuckets) {
+        if (FORMAT_STRING.equalsIgnoreCase(format)) {
+            return new StringRowKeyCodec(saltBuckets);
+        } else if (FORMAT_BINARY.equalsIgnoreCase(format)) {
+            return new BinaryRowKeyCodec(saltBuckets);
+        }
+        throw new IllegalArgumentException("不支持的rowkey格式:" + format);
+    }
+
+    /**
+     * 获取写入使用的rowkey编解码器，默认为字符串格式
+     *
+     * @param conf
+     * @return
+     */
+    public static IRowKeyCodec getCodec(Configuration conf) {
+        return createCodec(conf.get(GlobalConstants.EVENT_LOGS_ROWKEY_FORMAT, FORMAT_STRING).trim(), getSaltBuckets(conf));
+    }
+
+    /**
+     * 获取读取使用的rowkey编解码器集合，没有配置的时候和写入格式一致
+     *
+     * @param conf
+     * @return
+     */
+    public static List<IRowKeyCodec> getReadCodecs(Configuration conf) {
+        String formats = conf.get(GlobalConstants.EVENT_LOGS_ROWKEY_READ_FORMATS);
+        if (StringUtils.isBlank(formats)) {
+            List<IRowKeyCodec> codecs = new ArrayList<IRowKeyCodec>();
+            codecs.add(getCodec(conf));
+            return codecs;
+        }
+        Set<String> names = new LinkedHashSet<String>();
+        for (String format : formats.split(",")) {
+            if (StringUtils.isNotBlank(format)) {
+                names.add(format.trim().toLowerCase());
+            }
+        }
+        List<IRowKeyCodec> codecs = new ArrayList<IRowKeyCodec>();
+        for (String format : names) {
+            codecs.add(createCodec(format, getSaltBuckets(conf)));
+        }
+        return codecs;
+    }
+
+    /**
+     * 创建扫描[startTime, endTime)时间范围的scan集合，每个读取格式的每个盐值一个scan
+     *
+     * @param conf
+     * @param startTime
+     * @param endTime
+     * @param filter
+     *            所有scan共用的过滤器，可以为null
+     * @return
+     */
+    public static List<Scan> createScans(Configuration conf, long startTime, long endTime, Filter filter) {
+        return createScans(getReadCodecs(conf), startTime, endTime, filter);
+    }
+
+    /**
+     * 创建指定编解码器的scan集合
+     *
+     * @param codecs
+     * @param startTime
+     * @param endTime
+     * @param filter
+     * @return
+     */
+    public static List<Scan> createScans(List<IRowKeyCodec> codecs, long startTime, long endTime, Filter filter) {
+        List<Scan> scans = new ArrayList<Scan>();
+        for (IRowKeyCodec codec : codecs) {
+            for (byte[][] range : codec.getScanRanges(startTime, endTime)) {
+                Scan scan = new Scan();
+                // 定义hbase扫描的开始rowkey和结束rowkey
+                scan.setStartRow(range[0]);
+                scan.setStopRow(range[1]);
+                scan.setAttribute(Scan.SCAN_ATTRIBUTES_TABLE_NAME, Bytes.toBytes(EventLogConstants.HBASE_NAME_EVENT_LOGS));
+                if (filter != null) {
+                    scan.setFilter(filter);
+                }
+                scans.add(scan);
+            }
+        }
+        return scans;
+    }
+}
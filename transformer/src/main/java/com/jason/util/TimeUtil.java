@@ -1,5 +1,6 @@
 package com.jason.util;
 
+import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -19,6 +20,8 @@ import com.jason.common.DateEnum;
  */
 public class TimeUtil {
     public static final String DATE_FORMAT = "yyyy-MM-dd";
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+    private static final long MAX_NGINX_SECONDS = Long.MAX_VALUE / 100000; // 秒数超过这个值的时候转换成毫秒会溢出
 
     /**
      * 获取昨日的日期格式字符串数据
@@ -119,8 +122,51 @@ public class TimeUtil {
      * @return
      */
     public static long parseNginxServerTime2Long(String input) {
-        Date date = parseNginxServerTime2Date(input);
-        return date == null ? -1L : date.getTime();
+        if (StringUtils.isBlank(input)) {
+            return -1L;
+        }
+        byte[] bytes = input.trim().getBytes(US_ASCII);
+        return parseNginxServerTime2Long(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 直接从字节数组中解析nginx服务器时间，格式为: 秒数[.毫秒]，毫秒超过3位的部分直接截断<br/>
+     * 只扫描一遍数字，不创建字符串和Calendar对象，也不经过double运算，结果是精确的毫秒数
+     * 
+     * @param bytes
+     * @param offset
+     * @param len
+     * @return 如果解析失败，返回-1
+     */
+    public static long parseNginxServerTime2Long(byte[] bytes, int offset, int len) {
+        long result = 0;
+        int fraction = -1; // 小数点之后已经处理的位数，-1表示还没有遇到小数点
+        for (int i = offset, end = offset + len; i < end; i++) {
+            byte b = bytes[i];
+            if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (b >= '0' && b <= '9') {
+                if (fraction < 0) {
+                    if (result > MAX_NGINX_SECONDS) {
+                        return -1L;
+                    }
+                    result = result * 10 + (b - '0');
+                } else if (fraction < 3) {
+                    result = result * 10 + (b - '0');
+                    fraction++;
+                }
+            } else {
+                return -1L;
+            }
+        }
+        if (len == 0 || (fraction >= 0 && len == 1)) {
+            // 空字符串或者只有一个小数点
+            return -1L;
+        }
+        for (int i = Math.max(fraction, 0); i < 3; i++) {
+            result *= 10; // 补齐到毫秒
+        }
+        return result;
     }
 
     /**
@@ -131,17 +177,8 @@ public class TimeUtil {
      * @return
      */
     public static Date parseNginxServerTime2Date(String input) {
-        if (StringUtils.isNotBlank(input)) {
-            try {
-                long timestamp = Double.valueOf(Double.valueOf(input.trim()) * 1000).longValue();
-                Calendar calendar = Calendar.getInstance();
-                calendar.setTimeInMillis(timestamp);
-                return calendar.getTime();
-            } catch (Exception e) {
-                // nothing
-            }
-        }
-        return null;
+        long timestamp = parseNginxServerTime2Long(input);
+        return timestamp < 0 ? null : new Date(timestamp);
     }
 
     /**
@@ -153,6 +190,49 @@ public class TimeUtil {
      * @return 如果没有匹配的type，抛出异常信息
      */
     public static int getDateInfo(long time, DateEnum type) {
+        int index = DayTable.indexOf(time);
+        if (index >= 0) {
+            // 在预先计算的日期表范围内，直接查表
+            if (DateEnum.YEAR.equals(type)) {
+                return DayTable.year(index);
+            } else if (DateEnum.SEASON.equals(type)) {
+                return DayTable.season(index);
+            } else if (DateEnum.MONTH.equals(type)) {
+                return DayTable.month(index);
+            } else if (DateEnum.WEEK.equals(type)) {
+                return DayTable.week(index);
+            } else if (DateEnum.DAY.equals(type)) {
+                return DayTable.day(index);
+            } else if (DateEnum.HOUR.equals(type)) {
+                int hour = DayTable.hour(index, time);
+                if (hour >= 0) {
+                    return hour;
+                }
+            }
+        }
+        return getDateInfoByCalendar(time, type);
+    }
+
+    /**
+     * 获取时间戳所属的小时，reducer中按小时统计的时候使用
+     * 
+     * @param time
+     * @return
+     */
+    public static int getHourOfDay(long time) {
+        int index = DayTable.indexOf(time);
+        int hour = index < 0 ? -1 : DayTable.hour(index, time);
+        return hour >= 0 ? hour : getDateInfoByCalendar(time, DateEnum.HOUR);
+    }
+
+    /**
+     * 使用Calendar获取时间信息，超出日期表范围的时候使用
+     * 
+     * @param time
+     * @param type
+     * @return
+     */
+    private static int getDateInfoByCalendar(long time, DateEnum type) {
         Calendar calendar = Calendar.getInstance();
         calendar.setTimeInMillis(time);
         if (DateEnum.YEAR.equals(type)) {
@@ -186,6 +266,10 @@ public class TimeUtil {
      * @return
      */
     public static long getFirstDayOfThisWeek(long time) {
+        int index = DayTable.indexOf(time);
+        if (index >= 0 && DayTable.firstDayOfWeek(index) >= 0) {
+            return DayTable.startOf(DayTable.firstDayOfWeek(index));
+        }
         Calendar cal = Calendar.getInstance();
         cal.setTimeInMillis(time);
         cal.set(Calendar.DAY_OF_WEEK, 1);
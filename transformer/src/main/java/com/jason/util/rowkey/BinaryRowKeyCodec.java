@@ -0,0 +1,99 @@
+package com.jason.util.rowkey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 定长二进制格式的rowkey: [1字节盐值] + 8字节大端服务器时间 + 4字节crc32<br/>
+ * 盐值为crc % 分桶个数(最多48个分桶，保证第一个字节小于'0'，和字符串格式的rowkey区间不重叠)；
+ * 时间戳为正数，大端编码后字节序和数值序一致，扫描区间不依赖时间戳的位数
+ *
+ * @author jason
+ *
+ */
+public class BinaryRowKeyCodec implements IRowKeyCodec {
+    /**
+     * 最大的盐值分桶个数
+     */
+    public static final int MAX_SALT_BUCKETS = '0';
+    private final int saltBuckets;
+    private final int saltLength;
+
+    /**
+     * @param saltBuckets
+     *            盐值分桶个数，小于等于0表示不加盐
+     */
+    public BinaryRowKeyCodec(int saltBuckets) {
+        if (saltBuckets > MAX_SALT_BUCKETS) {
+            throw new IllegalArgumentException("二进制rowkey的盐值分桶个数不能超过" + MAX_SALT_BUCKETS + ":" + saltBuckets);
+        }
+        this.saltBuckets = Math.max(0, saltBuckets);
+        this.saltLength = this.saltBuckets > 0 ? 1 : 0;
+    }
+
+    @Override
+    public byte[] encode(long serverTime, long hash) {
+        byte[] row = new byte[this.saltLength + Bytes.SIZEOF_LONG + Bytes.SIZEOF_INT];
+        if (this.saltLength > 0) {
+            row[0] = (byte) ((hash & 0xFFFFFFFFL) % this.saltBuckets);
+        }
+        Bytes.putLong(row, this.saltLength, serverTime);
+        Bytes.putInt(row, this.saltLength + Bytes.SIZEOF_LONG, (int) hash);
+        return row;
+    }
+
+    @Override
+    public long decodeServerTime(byte[] row) {
+        return Bytes.toLong(row, this.saltLength);
+    }
+
+    @Override
+    public long decodeHash(byte[] row) {
+        return Bytes.toInt(row, this.saltLength + Bytes.SIZEOF_LONG) & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public boolean accept(byte[] row) {
+        return row != null && row.length == this.saltLength + Bytes.SIZEOF_LONG + Bytes.SIZEOF_INT && (this.saltLength == 0 || (row[0] & 0xFF) < this.saltBuckets);
+    }
+
+    @Override
+    public byte[][] getSplitKeys() {
+        if (this.saltBuckets <= 1) {
+            return null;
+        }
+        byte[][] splitKeys = new byte[this.saltBuckets - 1][];
+        for (int i = 1; i < this.saltBuckets; i++) {
+            splitKeys[i - 1] = new byte[] { (byte) i };
+        }
+        return splitKeys;
+    }
+
+    @Override
+    public List<byte[][]> getScanRanges(long startTime, long endTime) {
+        List<byte[][]> ranges = new ArrayList<byte[][]>();
+        int buckets = Math.max(1, this.saltBuckets);
+        for (int i = 0; i < buckets; i++) {
+            ranges.add(new byte[][] { this.prefix(i, startTime), this.prefix(i, endTime) });
+        }
+        return ranges;
+    }
+
+    /**
+     * 盐值+时间戳组成的rowkey前缀
+     *
+     * @param bucket
+     * @param time
+     * @return
+     */
+    private byte[] prefix(int bucket, long time) {
+        byte[] prefix = new byte[this.saltLength + Bytes.SIZEOF_LONG];
+        if (this.saltLength > 0) {
+            prefix[0] = (byte) bucket;
+        }
+        Bytes.putLong(prefix, this.saltLength, time);
+        return prefix;
+    }
+}
@@ -0,0 +1,64 @@
+package com.jason.util.rowkey;
+
+import java.util.List;
+
+/**
+ * event_logs表rowkey的编解码接口<br/>
+ * rowkey由服务器时间和uuid+memberid+event的crc32值组成，可以带有crc % N的盐值前缀，
+ * 不同的实现决定具体的字节格式，同时负责生成预分区边界以及按照时间范围扫描的rowkey区间
+ *
+ * @author jason
+ *
+ */
+public interface IRowKeyCodec {
+    /**
+     * 编码rowkey
+     *
+     * @param serverTime
+     *            服务器时间
+     * @param hash
+     *            uuid+memberid+event的crc32值
+     * @return
+     */
+    byte[] encode(long serverTime, long hash);
+
+    /**
+     * 从rowkey中解析出服务器时间
+     *
+     * @param row
+     * @return
+     */
+    long decodeServerTime(byte[] row);
+
+    /**
+     * 从rowkey中解析出保存的hash值
+     *
+     * @param row
+     * @return
+     */
+    long decodeHash(byte[] row);
+
+    /**
+     * 判断rowkey是否是当前格式
+     *
+     * @param row
+     * @return
+     */
+    boolean accept(byte[] row);
+
+    /**
+     * 建表时的预分区边界
+     *
+     * @return 不需要预分区的时候返回null
+     */
+    byte[][] getSplitKeys();
+
+    /**
+     * 获取[startTime, endTime)时间范围对应的rowkey区间，每个盐值一个区间
+     *
+     * @param startTime
+     * @param endTime
+     * @return 每个元素是一个{startRow, stopRow}数组
+     */
+    List<byte[][]> getScanRanges(long startTime, long endTime);
+}
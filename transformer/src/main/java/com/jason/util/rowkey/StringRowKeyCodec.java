@@ -0,0 +1,105 @@
+package com.jason.util.rowkey;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hbase.util.Bytes;
+
+/**
+ * 字符串格式的rowkey: [盐值_]服务器时间_crc，crc取模100000000<br/>
+ * 盐值为crc % 分桶个数，按照分桶个数-1的位数左补0，保证字典序和数值序一致；
+ * 扫描区间依赖所有时间戳的十进制位数相同
+ *
+ * @author jason
+ *
+ */
+public class StringRowKeyCodec implements IRowKeyCodec {
+    private static final String SEPARATOR = "_";
+    private final int saltBuckets;
+
+    /**
+     * @param saltBuckets
+     *            盐值分桶个数，小于等于0表示不加盐
+     */
+    public StringRowKeyCodec(int saltBuckets) {
+        this.saltBuckets = Math.max(0, saltBuckets);
+    }
+
+    @Override
+    public byte[] encode(long serverTime, long hash) {
+        StringBuilder sb = new StringBuilder();
+        if (this.saltBuckets > 0) {
+            sb.append(this.salt((int) (hash % this.saltBuckets))).append(SEPARATOR);
+        }
+        sb.append(serverTime).append(SEPARATOR).append(hash % 100000000L);
+        return Bytes.toBytes(sb.toString());
+    }
+
+    @Override
+    public long decodeServerTime(byte[] row) {
+        String[] parts = this.split(row);
+        return Long.parseLong(parts[parts.length - 2]);
+    }
+
+    @Override
+    public long decodeHash(byte[] row) {
+        String[] parts = this.split(row);
+        return Long.parseLong(parts[parts.length - 1]);
+    }
+
+    @Override
+    public boolean accept(byte[] row) {
+        // 字符串格式的rowkey以数字开头
+        return row != null && row.length > 0 && row[0] >= '0' && row[0] <= '9';
+    }
+
+    @Override
+    public byte[][] getSplitKeys() {
+        if (this.saltBuckets <= 1) {
+            return null;
+        }
+        byte[][] splitKeys = new byte[this.saltBuckets - 1][];
+        for (int i = 1; i < this.saltBuckets; i++) {
+            splitKeys[i - 1] = Bytes.toBytes(this.salt(i) + SEPARATOR);
+        }
+        return splitKeys;
+    }
+
+    @Override
+    public List<byte[][]> getScanRanges(long startTime, long endTime) {
+        List<byte[][]> ranges = new ArrayList<byte[][]>();
+        if (this.saltBuckets <= 0) {
+            ranges.add(new byte[][] { Bytes.toBytes("" + startTime), Bytes.toBytes("" + endTime) });
+        } else {
+            for (int i = 0; i < this.saltBuckets; i++) {
+                String prefix = this.salt(i) + SEPARATOR;
+                ranges.add(new byte[][] { Bytes.toBytes(prefix + startTime), Bytes.toBytes(prefix + endTime) });
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * 获取指定分桶的盐值前缀，按照最大分桶号的位数左补0
+     *
+     * @param bucket
+     * @return
+     */
+    private String salt(int bucket) {
+        String value = String.valueOf(bucket);
+        int width = String.valueOf(this.saltBuckets - 1).length();
+        StringBuilder sb = new StringBuilder(width);
+        for (int i = value.length(); i < width; i++) {
+            sb.append('0');
+        }
+        return sb.append(value).toString();
+    }
+
+    private String[] split(byte[] row) {
+        String[] parts = Bytes.toString(row).split(SEPARATOR);
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("非法的rowkey:" + Bytes.toStringBinary(row));
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,100 @@
+package com.etl.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jason.etl.util.UserAgentUtil.UserAgentInfo;
+import com.jason.etl.util.ua.CompiledUserAgentParser;
+import com.jason.etl.util.ua.UASparserUserAgentParser;
+
+/**
+ * 对比CompiledUserAgentParser和uasparser的解析结果，有不一致的时候抛出AssertionError<br/>
+ * 1. CompiledUserAgentParser的结果必须和下面固定的期望值完全一致<br/>
+ * 2. 浏览器名称、浏览器版本号、操作系统名称必须和uasparser一致；操作系统版本号的命名规则不同(见CompiledUserAgentParser的说明)，只输出差异
+ */
+public class TestCompiledUserAgentParser {
+	// user agent, 浏览器名称, 浏览器版本号, 操作系统名称, 操作系统版本号
+	private static final String[][] USER_AGENTS = new String[][] {
+			{ "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/46.0.2490.71 Safari/537.36",
+					"Chrome", "46.0.2490.71", "Windows", "Windows 7" },
+			{ "Mozilla/5.0 (Windows NT 6.1; WOW64; Trident/7.0; SLCC2; .NET CLR 2.0.50727; .NET CLR 3.5.30729; .NET CLR 3.0.30729; Media Center PC 6.0; .NET4.0C; .NET4.0E; GWX:QUALIFIED; rv:11.0) like Gecko",
+					"IE", "11.0", "Windows", "Windows 7" },
+			{ "Mozilla/4.0 (compatible; MSIE 7.0; Windows NT 6.1; WOW64; Trident/7.0; SLCC2; .NET CLR 2.0.50727; .NET CLR 3.5.30729; .NET CLR 3.0.30729; Media Center PC 6.0; .NET4.0C; .NET4.0E; GWX:QUALIFIED)",
+					"IE", "7.0", "Windows", "Windows 7" },
+			{ "Mozilla/4.0 (compatible; MSIE 8.0; Windows NT 5.1; Trident/4.0)",
+					"IE", "8.0", "Windows", "Windows XP" },
+			{ "Mozilla/5.0 (compatible; MSIE 9.0; Windows NT 6.1; Trident/5.0)",
+					"IE", "9.0", "Windows", "Windows 7" },
+			{ "Mozilla/5.0 (compatible; MSIE 10.0; Windows NT 6.2; Trident/6.0)",
+					"IE", "10.0", "Windows", "Windows 8" },
+			{ "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/46.0.2486.0 Safari/537.36 Edge/13.10586",
+					"Edge", "13.10586", "Windows", "Windows 10" },
+			{ "Mozilla/5.0 (Windows NT 6.3; WOW64; rv:42.0) Gecko/20100101 Firefox/42.0",
+					"Firefox", "42.0", "Windows", "Windows 8.1" },
+			{ "Mozilla/5.0 (X11; Ubuntu; Linux x86_64; rv:41.0) Gecko/20100101 Firefox/41.0",
+					"Firefox", "41.0", "Linux", "Ubuntu" },
+			{ "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/45.0.2454.101 Safari/537.36",
+					"Chrome", "45.0.2454.101", "Linux", "Linux" },
+			{ "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_11_1) AppleWebKit/601.2.7 (KHTML, like Gecko) Version/9.0.1 Safari/601.2.7",
+					"Safari", "9.0.1", "OS X", "OS X 10.11.1" },
+			{ "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_10_5) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/46.0.2490.86 Safari/537.36",
+					"Chrome", "46.0.2490.86", "OS X", "OS X 10.10.5" },
+			{ "Mozilla/5.0 (iPhone; CPU iPhone OS 9_1 like Mac OS X) AppleWebKit/601.1.46 (KHTML, like Gecko) Version/9.0 Mobile/13B143 Safari/601.1",
+					"Mobile Safari", "9.0", "iOS", "iOS 9.1" },
+			{ "Mozilla/5.0 (iPad; CPU OS 8_4_1 like Mac OS X) AppleWebKit/600.1.4 (KHTML, like Gecko) Version/8.0 Mobile/12H321 Safari/600.1.4",
+					"Mobile Safari", "8.0", "iOS", "iOS 8.4.1" },
+			{ "Mozilla/5.0 (Linux; Android 5.1.1; Nexus 6 Build/LYZ28E) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/46.0.2490.76 Mobile Safari/537.36",
+					"Chrome", "46.0.2490.76", "Android", "Android 5.1.1" },
+			{ "Mozilla/5.0 (Linux; U; Android 4.4.2; zh-cn; HM NOTE 1LTE Build/KVT49L) AppleWebKit/533.1 (KHTML, like Gecko) Version/4.0 Mobile Safari/533.1",
+					"Android Webkit", "4.0", "Android", "Android 4.4.2" },
+			{ "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/45.0.2454.101 Safari/537.36 OPR/32.0.1948.69",
+					"Opera", "32.0.1948.69", "Windows", "Windows 7" },
+			{ "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/535.1 (KHTML, like Gecko) Chrome/38.0.2125.122 Safari/537.36 SE 2.X MetaSr 1.0",
+					"Sogou Explorer", "unknown", "Windows", "Windows 7" },
+			{ "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/38.0.2125.122 Safari/537.36 QQBrowser/9.2.5063.400",
+					"QQ Browser", "9.2.5063.400", "Windows", "Windows 7" },
+			{ "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) Maxthon/4.4.7.3000 Chrome/30.0.1599.101 Safari/537.36",
+					"Maxthon", "4.4.7.3000", "Windows", "Windows 7" },
+			{ "Mozilla/5.0 (Linux; U; Android 4.4.4; zh-CN; MI 4LTE Build/KTU84P) AppleWebKit/534.30 (KHTML, like Gecko) Version/4.0 UCBrowser/10.7.6.805 U3/0.8.0 Mobile Safari/534.30",
+					"UC Browser", "10.7.6.805", "Android", "Android 4.4.4" },
+			{ "Opera/9.80 (Windows NT 6.1; U; zh-cn) Presto/2.9.168 Version/11.50",
+					"Opera", "11.50", "Windows", "Windows 7" },
+			{ "Mozilla/5.0 (X11; CrOS x86_64 7262.57.0) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/45.0.2454.98 Safari/537.36",
+					"Chrome", "45.0.2454.98", "Chrome OS", "Chrome OS" },
+			{ "Mozilla/5.0 (Windows Phone 8.1; ARM; Trident/7.0; Touch; rv:11.0; IEMobile/11.0; NOKIA; Lumia 630) like Gecko",
+					"IE", "11.0", "Windows Phone", "Windows Phone" },
+			{ "Mozilla/5.0 (iPhone; CPU iPhone OS 8_1_2 like Mac OS X) AppleWebKit/600.1.4 (KHTML, like Gecko) CriOS/46.0.2490.73 Mobile/12B440 Safari/600.1.4",
+					"Chrome Mobile", "46.0.2490.73", "iOS", "iOS 8.1.2" } };
+
+	public static void main(String[] args) throws Exception {
+		CompiledUserAgentParser compiled = new CompiledUserAgentParser();
+		UASparserUserAgentParser uasparser = new UASparserUserAgentParser();
+		List<String> failures = new ArrayList<String>();
+		for (String[] row : USER_AGENTS) {
+			String userAgent = row[0];
+			UserAgentInfo actual = compiled.parse(userAgent);
+			UserAgentInfo expected = new UserAgentInfo(row[1], row[2], row[3], row[4]);
+			if (!expected.toString().equals(actual.toString())) {
+				failures.add("和期望值不一致: " + userAgent + "\n\texpected: " + expected + "\n\tcompiled: " + actual);
+			}
+
+			UserAgentInfo uas = uasparser.parse(userAgent);
+			if (!equals(uas.getBrowserName(), actual.getBrowserName()) || !equals(uas.getBrowserVersion(), actual.getBrowserVersion()) || !equals(uas.getOsName(), actual.getOsName())) {
+				failures.add("和uasparser不一致: " + userAgent + "\n\tuasparser: " + uas + "\n\tcompiled : " + actual);
+			} else if (!equals(uas.getOsVersion(), actual.getOsVersion())) {
+				System.out.println("操作系统版本号命名不同: " + uas.getOsVersion() + " -> " + actual.getOsVersion());
+			}
+		}
+		if (!failures.isEmpty()) {
+			for (String failure : failures) {
+				System.out.println(failure);
+			}
+			throw new AssertionError("不一致的个数:" + failures.size() + "/" + USER_AGENTS.length);
+		}
+		System.out.println("全部一致:" + USER_AGENTS.length);
+	}
+
+	private static boolean equals(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+}
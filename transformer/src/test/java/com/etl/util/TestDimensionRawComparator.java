@@ -0,0 +1,173 @@
+package com.etl.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+
+import com.jason.common.KpiType;
+import com.jason.transformer.model.dim.StatsCommonDimension;
+import com.jason.transformer.model.dim.StatsInboundBounceDimension;
+import com.jason.transformer.model.dim.StatsInboundDimension;
+import com.jason.transformer.model.dim.StatsLocationDimension;
+import com.jason.transformer.model.dim.StatsUserDimension;
+import com.jason.transformer.model.dim.base.BaseDimension;
+import com.jason.transformer.model.dim.base.BrowserDimension;
+import com.jason.transformer.model.dim.base.DateDimension;
+import com.jason.transformer.model.dim.base.InboundDimension;
+import com.jason.transformer.model.dim.base.KpiDimension;
+import com.jason.transformer.model.dim.base.LocationDimension;
+import com.jason.transformer.model.dim.base.PlatformDimension;
+import com.jason.transformer.mr.fused.KpiModule;
+import com.jason.transformer.mr.fused.TaggedKey;
+import com.jason.transformer.mr.inbound.bounce.InboundBounceSecondSort.InboundBounceGroupingComparator;
+
+/**
+ * 随机生成map输出key并序列化，要求注册的raw comparator和compareTo的结果符号一致，
+ * 包括所有的Stats*Dimension、二次排序的分组comparator以及合并扫描job的TaggedKey
+ */
+public class TestDimensionRawComparator {
+	private static final int ROUNDS = 20000;
+	private static final String[] STRINGS = new String[] { "", "a", "ab", "b", "中国", "中", "北京", "x", "😀", "Chrome", "Chrome 45" };
+	private static final Random random = new Random(7);
+
+	public static void main(String[] args) throws IOException {
+		for (int n = 0; n < ROUNDS; n++) {
+			StatsUserDimension u1 = randomUser(), u2 = random.nextBoolean() ? randomUser() : new StatsUserDimension(u1.getStatsCommon(), new BrowserDimension(randomString(), randomString()));
+			u2.getBrowser().setId(randomInt());
+			check(u1, u2);
+			check(u1, u1);
+			check(roundTrip(u1), u1);
+
+			StatsLocationDimension l1 = randomLocation(), l2 = random.nextBoolean() ? randomLocation() : new StatsLocationDimension(l1.getStatsCommon(), new LocationDimension(randomInt(), randomString(), randomString(), randomString()));
+			check(l1, l2);
+			check(roundTrip(l1), l1);
+
+			StatsInboundDimension i1 = randomInbound(), i2 = randomInbound();
+			check(i1, i2);
+			check(roundTrip(i1), i1);
+
+			StatsInboundBounceDimension b1 = randomBounce(), b2 = random.nextBoolean() ? randomBounce() : new StatsInboundBounceDimension(b1.getStatsCommon(), randomString(), random.nextInt(3) - 1);
+			check(b1, b2);
+			check(roundTrip(b1), b1);
+			// 分组只比较StatsCommonDimension
+			check(new InboundBounceGroupingComparator(), b1, b2, b1.getStatsCommon().compareTo(b2.getStatsCommon()));
+
+			TaggedKey t1 = randomTaggedKey(), t2 = random.nextBoolean() ? randomTaggedKey() : tag(t1.getModule(), randomKey(t1.getModule()));
+			check(t1, t2);
+			check(t1, t1);
+		}
+		System.out.println("raw comparator和compareTo的结果一致");
+	}
+
+	private static void check(BaseDimension a, BaseDimension b) throws IOException {
+		check(WritableComparator.get(a.getClass()), a, b, a.compareTo(b));
+	}
+
+	private static void check(TaggedKey a, TaggedKey b) throws IOException {
+		check(WritableComparator.get(TaggedKey.class), a, b, a.compareTo(b));
+	}
+
+	private static void check(WritableComparator comparator, Writable a, Writable b, int expected) throws IOException {
+		byte[] x = serialize(a), y = serialize(b);
+		// 前面多写两个字节，检查comparator使用了传入的开始位置
+		int actual = comparator.compare(x, 2, x.length - 2, y, 2, y.length - 2);
+		if (Integer.signum(actual) != Integer.signum(expected)) {
+			throw new AssertionError(comparator.getClass().getSimpleName() + "比较结果不一致: " + a + " vs " + b + "，compareTo=" + expected + "，raw=" + actual);
+		}
+	}
+
+	private static byte[] serialize(Writable writable) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		bytes.write(new byte[] { 9, 9 });
+		writable.write(new DataOutputStream(bytes));
+		return bytes.toByteArray();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends BaseDimension> T roundTrip(T dimension) throws IOException {
+		byte[] bytes = serialize(dimension);
+		T copy;
+		try {
+			copy = (T) dimension.getClass().newInstance();
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+		copy.readFields(new DataInputStream(new ByteArrayInputStream(bytes, 2, bytes.length - 2)));
+		if (copy.compareTo(dimension) != 0 || !Arrays.equals(serialize(copy), bytes)) {
+			throw new AssertionError("序列化之后不相等: " + dimension);
+		}
+		return copy;
+	}
+
+	private static String randomString() {
+		return STRINGS[random.nextInt(STRINGS.length)];
+	}
+
+	// 大部分取值很小(比较的时候容易相等)，偶尔为负数检查varint的编码
+	private static int randomInt() {
+		return random.nextInt(3) - (random.nextInt(10) == 0 ? 100000 : 0);
+	}
+
+	private static StatsCommonDimension randomCommon() {
+		DateDimension date = new DateDimension(random.nextInt(3), randomInt(), randomInt(), randomInt(), randomInt(), randomInt(), randomString(), new Date(random.nextLong()));
+		PlatformDimension platform = new PlatformDimension(randomInt(), randomString());
+		if (random.nextBoolean()) {
+			// 维度id已经解析的情况
+			platform.setId(random.nextInt(3) + (random.nextInt(5) == 0 ? 1000 : 0));
+		}
+		String kpiName = random.nextBoolean() ? randomString() : KpiType.values()[random.nextInt(KpiType.values().length)].name;
+		return new StatsCommonDimension(date, platform, new KpiDimension(randomInt(), kpiName));
+	}
+
+	private static StatsUserDimension randomUser() {
+		StatsUserDimension dimension = new StatsUserDimension(randomCommon(), new BrowserDimension(randomString(), randomString()));
+		dimension.getBrowser().setId(randomInt());
+		return dimension;
+	}
+
+	private static StatsLocationDimension randomLocation() {
+		return new StatsLocationDimension(randomCommon(), new LocationDimension(randomInt(), randomString(), randomString(), randomString()));
+	}
+
+	private static StatsInboundDimension randomInbound() {
+		StatsInboundDimension dimension = new StatsInboundDimension(randomCommon(), new InboundDimension());
+		dimension.getInbound().setId(randomInt());
+		return dimension;
+	}
+
+	private static StatsInboundBounceDimension randomBounce() {
+		return new StatsInboundBounceDimension(randomCommon(), randomString(), random.nextInt(3) - 1);
+	}
+
+	private static BaseDimension randomKey(KpiModule module) {
+		if (module.keyClass == StatsUserDimension.class) {
+			return randomUser();
+		} else if (module.keyClass == StatsLocationDimension.class) {
+			return randomLocation();
+		} else if (module.keyClass == StatsInboundDimension.class) {
+			return randomInbound();
+		} else if (module.keyClass == StatsInboundBounceDimension.class) {
+			return randomBounce();
+		}
+		throw new IllegalArgumentException("没有对应的随机key: " + module.keyClass);
+	}
+
+	private static TaggedKey randomTaggedKey() {
+		KpiModule module = KpiModule.values()[random.nextInt(KpiModule.values().length)];
+		return tag(module, randomKey(module));
+	}
+
+	private static TaggedKey tag(KpiModule module, BaseDimension key) {
+		TaggedKey taggedKey = new TaggedKey();
+		taggedKey.set(module, key);
+		return taggedKey;
+	}
+}
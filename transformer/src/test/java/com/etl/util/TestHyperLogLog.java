@@ -0,0 +1,153 @@
+package com.etl.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.jason.util.HyperLogLog;
+
+/**
+ * 检查HyperLogLog的精度计算、添加/合并/估计，以及稀疏和稠密两种格式的序列化
+ */
+public class TestHyperLogLog {
+	private static final int PRECISION = HyperLogLog.getPrecision(HyperLogLog.DEFAULT_ERROR);
+
+	public static void main(String[] args) throws IOException {
+		checkPrecision();
+		checkOffer();
+		checkEstimate();
+		checkMerge();
+		checkSerialization();
+		System.out.println("HyperLogLog的估计和序列化结果正确");
+	}
+
+	private static void checkPrecision() {
+		assertEquals(14, HyperLogLog.getPrecision(0.01), "误差0.01对应的精度");
+		assertEquals(4, HyperLogLog.getPrecision(0.5), "误差0.5对应的精度");
+		assertEquals(16, HyperLogLog.getPrecision(HyperLogLog.MIN_ERROR), "最小误差对应的精度");
+		// 超过最大精度、不在(0,1)之间的误差都不能使用
+		for (double error : new double[] { 0.004, 0.001, 0, -0.01, 1, Double.NaN }) {
+			try {
+				HyperLogLog.getPrecision(error);
+				throw new AssertionError("误差" + error + "应该抛出异常");
+			} catch (IllegalArgumentException e) {
+				// 正常情况
+			}
+		}
+	}
+
+	private static void checkOffer() {
+		HyperLogLog hll = new HyperLogLog(PRECISION);
+		assertEquals(0, hll.cardinality(), "空sketch的估计值");
+		offer(hll, 0, 100);
+		long cardinality = hll.cardinality();
+		if (Math.abs(cardinality - 100) > 2) {
+			throw new AssertionError("添加100个元素的估计值错误:" + cardinality);
+		}
+		// 重复添加不改变估计值
+		for (int n = 0; n < 5; n++) {
+			offer(hll, 0, 100);
+		}
+		assertEquals(cardinality, hll.cardinality(), "重复添加之后的估计值");
+		hll.clear();
+		assertEquals(0, hll.cardinality(), "clear之后的估计值");
+		assertEquals(PRECISION, hll.getPrecision(), "clear之后的精度");
+	}
+
+	private static void checkEstimate() {
+		// 小基数、linear counting(<=2.5m)以及使用原始估计的大基数
+		for (int precision : new int[] { 10, PRECISION }) {
+			int m = 1 << precision;
+			for (int n : new int[] { 1, 10, 100, m, 2 * m, 5 * m, 50 * m }) {
+				HyperLogLog hll = new HyperLogLog(precision);
+				offer(hll, 0, n);
+				double error = 1.04 / Math.sqrt(m);
+				// 4倍标准误差之内
+				if (Math.abs(hll.cardinality() - n) > 4 * error * n + 1) {
+					throw new AssertionError("精度" + precision + "的估计值超出误差范围，实际" + n + "，估计" + hll.cardinality());
+				}
+			}
+		}
+	}
+
+	private static void checkMerge() throws IOException {
+		HyperLogLog a = new HyperLogLog(PRECISION), b = new HyperLogLog(PRECISION), union = new HyperLogLog(PRECISION);
+		offer(a, 0, 30000);
+		offer(b, 20000, 60000);
+		offer(union, 0, 60000);
+		a.merge(b);
+		// 合并之后和直接添加所有元素的寄存器完全相同
+		assertEquals(serialize(union), serialize(a), "合并之后的sketch");
+		assertEquals(union.cardinality(), a.cardinality(), "合并之后的估计值");
+		// 和空sketch合并不变
+		a.merge(new HyperLogLog(PRECISION));
+		assertEquals(serialize(union), serialize(a), "合并空sketch之后的sketch");
+		try {
+			a.merge(new HyperLogLog(PRECISION - 1));
+			throw new AssertionError("合并精度不同的sketch应该抛出异常");
+		} catch (IllegalArgumentException e) {
+			// 正常情况
+		}
+	}
+
+	private static void checkSerialization() throws IOException {
+		int m = 1 << PRECISION;
+		HyperLogLog sparse = new HyperLogLog(PRECISION), dense = new HyperLogLog(PRECISION);
+		offer(sparse, 0, 100);
+		offer(dense, 0, 10 * m);
+		byte[] sparseBytes = serialize(sparse), denseBytes = serialize(dense);
+		if (sparseBytes.length >= m) {
+			throw new AssertionError("非0寄存器比较少的时候应该使用稀疏格式，长度为" + sparseBytes.length);
+		}
+		if (denseBytes.length < m) {
+			throw new AssertionError("非0寄存器比较多的时候应该使用稠密格式，长度为" + denseBytes.length);
+		}
+		// 反序列化到精度不同的旧对象以及精度相同的旧对象(需要先清空)
+		HyperLogLog reused = new HyperLogLog(PRECISION - 2);
+		for (byte[] bytes : new byte[][] { denseBytes, sparseBytes, denseBytes }) {
+			reused.readFields(new DataInputStream(new ByteArrayInputStream(bytes)));
+			assertEquals(bytes, serialize(reused), "反序列化之后的sketch");
+			assertEquals(PRECISION, reused.getPrecision(), "反序列化之后的精度");
+		}
+		HyperLogLog copy = deserialize(sparseBytes);
+		assertEquals(sparse.cardinality(), copy.cardinality(), "稀疏格式反序列化之后的估计值");
+		copy = deserialize(denseBytes);
+		assertEquals(dense.cardinality(), copy.cardinality(), "稠密格式反序列化之后的估计值");
+		// 反序列化之后还可以继续合并
+		copy.merge(sparse);
+		assertEquals(denseBytes, serialize(copy), "反序列化之后合并的sketch");
+	}
+
+	private static void offer(HyperLogLog hll, int from, int to) {
+		for (int i = from; i < to; i++) {
+			hll.offer("uuid-" + i);
+		}
+	}
+
+	private static byte[] serialize(HyperLogLog hll) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		hll.write(new DataOutputStream(bytes));
+		return bytes.toByteArray();
+	}
+
+	private static HyperLogLog deserialize(byte[] bytes) throws IOException {
+		HyperLogLog hll = new HyperLogLog();
+		hll.readFields(new DataInputStream(new ByteArrayInputStream(bytes)));
+		return hll;
+	}
+
+	private static void assertEquals(byte[] expected, byte[] actual, String message) {
+		if (!Arrays.equals(expected, actual)) {
+			throw new AssertionError(message + "的序列化结果不同，期望长度" + expected.length + "，实际长度" + actual.length);
+		}
+	}
+
+	private static void assertEquals(long expected, long actual, String message) {
+		if (expected != actual) {
+			throw new AssertionError(message + "错误，期望" + expected + "，实际" + actual);
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package com.etl.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.jason.transformer.util.MemberUtil;
+
+/**
+ * 增量运行时同一天会重复运行多次，前一次运行已经把当天的新会员插入member_info(created为运行日期)，
+ * 再次运行的时候这些会员仍然是新会员，新会员个数不能变少
+ */
+public class TestNewMemberRerun {
+	private static final String DAY1 = "2015-12-08";
+	private static final String DAY2 = "2015-12-09";
+
+	public static void main(String[] args) throws SQLException {
+		// member_info表: member_id -> created
+		Map<String, String> table = new HashMap<String, String>();
+		table.put("old1", "2015-12-07");
+		Connection connection = createConnection(table);
+
+		// 当天的第一次增量运行只看到部分数据
+		assertEquals(1, run(DAY1, Arrays.asList("a", "old1"), table, connection, false), "第一次增量运行");
+		// 之后的每次运行都重新统计一整天，结果和一次性统计的相同
+		for (boolean clearCache : new boolean[] { false, true }) {
+			assertEquals(3, run(DAY1, Arrays.asList("old1", "a", "b", "a", "c"), table, connection, clearCache), "重复运行" + DAY1 + (clearCache ? "(新的jvm)" : ""));
+			assertEquals(3, run(DAY1, Arrays.asList("old1", "a", "b", "a", "c"), table, connection, clearCache), "再次重复运行" + DAY1 + (clearCache ? "(新的jvm)" : ""));
+		}
+		// 第二天前一天创建的会员不再是新会员，缓存中的结果也要按照运行日期判断
+		for (boolean clearCache : new boolean[] { false, true }) {
+			assertEquals(1, run(DAY2, Arrays.asList("a", "d", "old1", "bad id!"), table, connection, clearCache), "运行" + DAY2 + (clearCache ? "(新的jvm)" : ""));
+		}
+		assertEquals(DAY1, table.get("a"), "重复运行之后a的创建日期");
+		System.out.println("同一天重复运行的新会员个数相同");
+	}
+
+	/**
+	 * 模拟一次NewMemberRunner的运行: mapper过滤出新会员，reducer去重计数，collector插入member_info(已经存在的时候只更新last_visit_date)
+	 */
+	private static int run(String date, Iterable<String> memberIds, Map<String, String> table, Connection connection, boolean clearCache) throws SQLException {
+		if (clearCache) {
+			MemberUtil.clearCache();
+		}
+		Set<String> newMembers = new LinkedHashSet<String>();
+		for (String memberId : memberIds) {
+			if (MemberUtil.isValidateMemberId(memberId) && MemberUtil.isNewMemberId(memberId, date, connection)) {
+				newMembers.add(memberId);
+			}
+		}
+		for (String memberId : newMembers) {
+			if (!table.containsKey(memberId)) {
+				table.put(memberId, date);
+			}
+		}
+		return newMembers.size();
+	}
+
+	/**
+	 * 只支持MemberUtil使用的查询语句的数据库连接
+	 */
+	private static Connection createConnection(final Map<String, String> table) {
+		return (Connection) proxy(Connection.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (!"prepareStatement".equals(method.getName())) {
+					return null;
+				}
+				if (!((String) args[0]).contains("FROM `member_info` WHERE `member_id`=?")) {
+					throw new AssertionError("不支持的sql:" + args[0]);
+				}
+				final String[] memberId = new String[1];
+				return proxy(PreparedStatement.class, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						if ("setString".equals(method.getName())) {
+							memberId[0] = (String) args[1];
+						} else if ("executeQuery".equals(method.getName())) {
+							return createResultSet(table.containsKey(memberId[0]) ? table.get(memberId[0]) : null, table.containsKey(memberId[0]));
+						}
+						return null;
+					}
+				});
+			}
+		});
+	}
+
+	private static ResultSet createResultSet(final String created, final boolean exists) {
+		return (ResultSet) proxy(ResultSet.class, new InvocationHandler() {
+			private boolean next = exists;
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ("next".equals(method.getName())) {
+					boolean result = this.next;
+					this.next = false;
+					return result;
+				} else if ("getString".equals(method.getName()) && "created".equals(args[0])) {
+					return created;
+				}
+				return null;
+			}
+		});
+	}
+
+	private static Object proxy(Class<?> type, InvocationHandler handler) {
+		return Proxy.newProxyInstance(TestNewMemberRerun.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	private static void assertEquals(Object expected, Object actual, String message) {
+		if (!expected.equals(actual)) {
+			throw new AssertionError(message + "的结果错误，期望" + expected + "，实际" + actual);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.etl.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.Cell;
+import org.apache.hadoop.hbase.KeyValue;
+import org.apache.hadoop.hbase.client.Result;
+import org.apache.hadoop.hbase.util.Bytes;
+
+import com.jason.common.EventLogConstants;
+import com.jason.common.GlobalConstants;
+import com.jason.etl.mr.ald.RowKeyMigrationRunner;
+import com.jason.etl.mr.ald.RowKeyMigrationRunner.RowKeyMigrationMapper;
+import com.jason.util.CompactEventRecord;
+import com.jason.util.RowKeyUtil;
+import com.jason.util.rowkey.IRowKeyCodec;
+
+/**
+ * 同一条记录直接用新格式写入，和先用旧格式写入再迁移，得到的rowkey必须相同<br/>
+ * 旧格式的行按照etl写入的方式构造(每个参数一列，或者紧凑编码的_r列)，由RowKeyMigrationMapper从列中获取uuid、memberid和事件名称
+ */
+public class TestRowKeyMigration {
+	private static final byte[] FAMILY = Bytes.toBytes(EventLogConstants.EVENT_LOGS_FAMILY_NAME);
+	// uuid, memberId, 事件别名, 服务器时间
+	private static final String[][] EVENTS = new String[][] { //
+			{ "4B16B8BB-D6AA-4118-87F8-C58680D22657", null, "e_l", "1449584843121" }, //
+			{ "4B16B8BB-D6AA-4118-87F8-C58680D22657", "zhangsan", "e_pv", "1449584843122" }, //
+			{ null, "lisi", "e_cr", "1449587000000" }, //
+			{ "0AD5F8F2-6B52-4B0C-A40B-0E1D2D3C4B5A", " ", "e_e", "1449590000999" }, //
+			{ "9F1C2E3D-4A5B-6C7D-8E9F-0A1B2C3D4E5F", "wangwu", "e_cs", "1449671999999" } };
+
+	public static void main(String[] args) {
+		for (int saltBuckets : new int[] { 0, 7, 16 }) {
+			for (boolean compact : new boolean[] { false, true }) {
+				check(RowKeyUtil.FORMAT_STRING, RowKeyUtil.FORMAT_BINARY, saltBuckets, compact);
+				check(RowKeyUtil.FORMAT_BINARY, RowKeyUtil.FORMAT_STRING, saltBuckets, compact);
+			}
+		}
+		System.out.println("rowkey迁移和直接写入的结果一致");
+	}
+
+	private static void check(String fromFormat, String toFormat, int saltBuckets, boolean compact) {
+		IRowKeyCodec from = RowKeyUtil.createCodec(fromFormat, saltBuckets), to = RowKeyUtil.createCodec(toFormat, saltBuckets);
+		RowKeyMigrationMapper mapper = createMapper(fromFormat, toFormat, saltBuckets);
+		CRC32 crc32 = new CRC32();
+		for (String[] event : EVENTS) {
+			long serverTime = Long.parseLong(event[3]);
+			// etl直接用新格式写入(AnalyserLogDataMapper.generateRowKey)
+			byte[] expected = RowKeyUtil.generateRowKey(to, crc32, event[0], event[1], event[2], serverTime);
+			// etl用旧格式写入，迁移的时候从rowkey中获取时间，从列中重新计算hash
+			byte[] oldRow = RowKeyUtil.generateRowKey(from, crc32, event[0], event[1], event[2], serverTime);
+			if (!from.accept(oldRow)) {
+				throw new AssertionError("旧格式不能识别自己编码的rowkey:" + Arrays.toString(event));
+			}
+			Map<String, String> columns = new LinkedHashMap<String, String>();
+			columns.put(EventLogConstants.LOG_COLUMN_NAME_UUID, event[0]);
+			columns.put(EventLogConstants.LOG_COLUMN_NAME_MEMBER_ID, event[1]);
+			columns.put(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME, event[2]);
+			columns.put(EventLogConstants.LOG_COLUMN_NAME_SERVER_TIME, event[3]);
+			columns.put(EventLogConstants.LOG_COLUMN_NAME_PLATFORM, "website");
+			columns.put("x_custom", "1"); // 没有字段编号的参数
+			byte[] migrated = mapper.generateRowKey(createRow(oldRow, columns, compact));
+			if (!Arrays.equals(expected, migrated)) {
+				throw new AssertionError((compact ? "紧凑编码" : "普通列") + "迁移后的rowkey和直接写入的不同:" + Arrays.toString(event) + "，期望" + Arrays.toString(expected) + "，实际" + Arrays.toString(migrated));
+			}
+			if (to.decodeServerTime(migrated) != serverTime) {
+				throw new AssertionError("迁移后的服务器时间错误:" + Arrays.toString(event));
+			}
+			// 没有事件名称的行不能计算rowkey，由mapper计入MISSING_FIELDS并跳过
+			columns.remove(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME);
+			if (mapper.generateRowKey(createRow(oldRow, columns, compact)) != null) {
+				throw new AssertionError((compact ? "紧凑编码" : "普通列") + "没有事件名称的行不应该迁移:" + Arrays.toString(event));
+			}
+		}
+	}
+
+	private static RowKeyMigrationMapper createMapper(String fromFormat, String toFormat, int saltBuckets) {
+		Configuration conf = new Configuration();
+		conf.set(RowKeyMigrationRunner.MIGRATION_FROM_FORMAT, fromFormat);
+		conf.set(RowKeyMigrationRunner.MIGRATION_TO_FORMAT, toFormat);
+		conf.setInt(GlobalConstants.EVENT_LOGS_SALT_BUCKETS, saltBuckets);
+		RowKeyMigrationMapper mapper = new RowKeyMigrationMapper();
+		mapper.configure(conf);
+		return mapper;
+	}
+
+	/**
+	 * 按照etl写入的方式构造一行数据：空白的参数不写入，普通格式每个参数一列，紧凑格式打包到_r列并额外保留事件名称列
+	 */
+	private static Result createRow(byte[] row, Map<String, String> columns, boolean compact) {
+		List<Cell> cells = new ArrayList<Cell>();
+		CompactEventRecord.Builder builder = new CompactEventRecord.Builder();
+		for (Map.Entry<String, String> entry : columns.entrySet()) {
+			if (entry.getValue() == null || entry.getValue().trim().isEmpty()) {
+				continue;
+			}
+			byte[] key = Bytes.toBytes(entry.getKey()), value = Bytes.toBytes(entry.getValue());
+			if (compact) {
+				builder.add(key, 0, key.length, value, 0, value.length);
+			} else {
+				cells.add(new KeyValue(row, FAMILY, key, value));
+			}
+		}
+		if (compact) {
+			cells.add(new KeyValue(row, FAMILY, Bytes.toBytes(CompactEventRecord.COLUMN_NAME), builder.toBytes()));
+			String eventName = columns.get(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME);
+			if (eventName != null) {
+				cells.add(new KeyValue(row, FAMILY, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_EVENT_NAME), Bytes.toBytes(eventName)));
+			}
+		}
+		cells.add(new KeyValue(row, FAMILY, Bytes.toBytes(EventLogConstants.LOG_COLUMN_NAME_EVENT_CODE), new byte[] { 1 }));
+		// Result要求cell按照列的顺序排列
+		Collections.sort(cells, KeyValue.COMPARATOR);
+		return Result.create(cells.toArray(new Cell[cells.size()]));
+	}
+}
@@ -0,0 +1,132 @@
+package com.etl.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import com.jason.transformer.model.dim.StatsCommonDimension;
+import com.jason.transformer.model.dim.StatsUserDimension;
+import com.jason.transformer.model.dim.base.BrowserDimension;
+import com.jason.transformer.model.dim.base.DateDimension;
+import com.jason.transformer.model.dim.base.KpiDimension;
+import com.jason.transformer.model.dim.base.PlatformDimension;
+
+/**
+ * 检查StatsUserDimension中浏览器维度的varint序列化格式，id不为0的时候compareTo和raw comparator都只比较id，以及clone保留id
+ */
+public class TestStatsUserDimension {
+	private static final StatsCommonDimension COMMON = new StatsCommonDimension(new DateDimension(2015, 4, 12, 50, 12, 10, "day", new Date(1449584843121L)), new PlatformDimension(1, "website"), new KpiDimension(2, "new_install_user"));
+
+	public static void main(String[] args) throws IOException {
+		checkLayout();
+		checkIdShortCircuit();
+		checkClone();
+		System.out.println("StatsUserDimension的序列化和比较结果正确");
+	}
+
+	private static void checkLayout() throws IOException {
+		int commonLength = serialize(COMMON).length;
+		// id为0的时候只写一个字节的0，后面跟着名称和版本
+		byte[] bytes = serialize(user(0, "Chrome", "45"));
+		byte[] expected = concat(new byte[] { 0 }, utf("Chrome"), utf("45"));
+		assertEquals(expected, Arrays.copyOfRange(bytes, commonLength, bytes.length), "id为0的浏览器维度");
+		assertEquals(expected.length, BrowserDimension.getRawLength(bytes, commonLength), "id为0的浏览器维度长度");
+		// id不为0的时候只写varint编码的id
+		for (int id : new int[] { 1, -1, 127, 128, -113, 300, 100000, Integer.MAX_VALUE, Integer.MIN_VALUE }) {
+			bytes = serialize(user(id, "Chrome", "45"));
+			expected = vint(id);
+			assertEquals(expected, Arrays.copyOfRange(bytes, commonLength, bytes.length), "id为" + id + "的浏览器维度");
+			assertEquals(expected.length, BrowserDimension.getRawLength(bytes, commonLength), "id为" + id + "的浏览器维度长度");
+		}
+	}
+
+	private static void checkIdShortCircuit() throws IOException {
+		// id相同的时候不再比较名称和版本(解析之后名称和版本为null)
+		check(user(5, "Chrome", "45"), user(5, "Firefox", "1"), 0);
+		check(user(5, null, null), user(5, "Firefox", null), 0);
+		// id不同的时候按照id比较，和名称的顺序无关
+		check(user(3, "Firefox", "1"), user(5, "Chrome", "45"), -1);
+		check(user(300, "Chrome", "45"), user(-1, "Firefox", "1"), 1);
+		// 已经解析的排在没有解析的前面还是后面取决于id的符号
+		check(user(5, null, null), user(0, "Chrome", "45"), 1);
+		check(user(-5, null, null), user(0, "Chrome", "45"), -1);
+		// id都为0的时候比较名称和版本
+		check(user(0, "Chrome", "45"), user(0, "Chrome", "46"), -1);
+		check(user(0, "Firefox", ""), user(0, "Chrome", "45"), 1);
+	}
+
+	private static void checkClone() throws IOException {
+		StatsUserDimension dimension = user(42, "Chrome", "45");
+		StatsUserDimension copy = StatsUserDimension.clone(dimension);
+		if (copy.getBrowser().getId() != 42 || copy.getBrowser() == dimension.getBrowser()) {
+			throw new AssertionError("clone之后浏览器维度的id丢失: " + copy.getBrowser().getId());
+		}
+		check(copy, dimension, 0);
+		assertEquals(serialize(dimension), serialize(copy), "clone之后的序列化结果");
+	}
+
+	private static void check(StatsUserDimension a, StatsUserDimension b, int expected) throws IOException {
+		int actual = a.compareTo(b);
+		if (Integer.signum(actual) != expected) {
+			throw new AssertionError("compareTo结果错误: " + a.getBrowser().getId() + " vs " + b.getBrowser().getId() + "，期望" + expected + "，实际" + actual);
+		}
+		if (a.getBrowser().getId() != 0 && b.getBrowser().getId() != 0 && Integer.signum(b.compareTo(a)) != -expected) {
+			throw new AssertionError("compareTo不对称: " + a.getBrowser().getId() + " vs " + b.getBrowser().getId());
+		}
+		byte[] x = serialize(a), y = serialize(b);
+		actual = WritableComparator.get(StatsUserDimension.class).compare(x, 0, x.length, y, 0, y.length);
+		if (Integer.signum(actual) != expected) {
+			throw new AssertionError("raw comparator结果错误: " + a.getBrowser().getId() + " vs " + b.getBrowser().getId() + "，期望" + expected + "，实际" + actual);
+		}
+	}
+
+	private static StatsUserDimension user(int id, String browserName, String browserVersion) {
+		BrowserDimension browser = new BrowserDimension(browserName, browserVersion);
+		browser.setId(id);
+		return new StatsUserDimension(COMMON, browser);
+	}
+
+	private static void assertEquals(byte[] expected, byte[] actual, String message) {
+		if (!Arrays.equals(expected, actual)) {
+			throw new AssertionError(message + "的序列化结果错误，期望" + Arrays.toString(expected) + "，实际" + Arrays.toString(actual));
+		}
+	}
+
+	private static void assertEquals(int expected, int actual, String message) {
+		if (expected != actual) {
+			throw new AssertionError(message + "错误，期望" + expected + "，实际" + actual);
+		}
+	}
+
+	private static byte[] serialize(Writable writable) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		writable.write(new DataOutputStream(bytes));
+		return bytes.toByteArray();
+	}
+
+	private static byte[] vint(int value) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		WritableUtils.writeVInt(new DataOutputStream(bytes), value);
+		return bytes.toByteArray();
+	}
+
+	private static byte[] utf(String value) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		new DataOutputStream(bytes).writeUTF(value);
+		return bytes.toByteArray();
+	}
+
+	private static byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		for (byte[] part : parts) {
+			bytes.write(part, 0, part.length);
+		}
+		return bytes.toByteArray();
+	}
+}